@@ -28,7 +28,6 @@ import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
-import android.os.PersistableBundle;
 import android.telephony.CarrierConfigManager;
 import android.telephony.PinResult;
 import android.telephony.SubscriptionInfo;
@@ -55,6 +54,7 @@ import android.widget.Toast;
 import androidx.preference.Preference;
 import androidx.preference.SwitchPreference;
 
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.ProxySubscriptionManager;
 import com.android.settings.network.SubscriptionUtil;
 
@@ -731,12 +731,12 @@ public class IccLockSettings extends SettingsPreferenceFragment
 
     private boolean isSubscriptionVisible(CarrierConfigManager carrierConfigManager,
             SubscriptionInfo subInfo) {
-        final PersistableBundle bundle = carrierConfigManager
-                .getConfigForSubId(subInfo.getSubscriptionId());
-        if (bundle == null) {
+        final int subId = subInfo.getSubscriptionId();
+        if (!CarrierConfigCache.hasConfig(getContext(), carrierConfigManager, subId)) {
             return false;
         }
-        return !bundle.getBoolean(CarrierConfigManager.KEY_HIDE_SIM_LOCK_SETTINGS_BOOL);
+        return !CarrierConfigCache.getBoolean(getContext(), carrierConfigManager, subId,
+                CarrierConfigManager.KEY_HIDE_SIM_LOCK_SETTINGS_BOOL, false /* defaultValue */);
     }
 
     private OnTabChangeListener mTabListener = new OnTabChangeListener() {
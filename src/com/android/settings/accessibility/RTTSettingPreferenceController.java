@@ -20,7 +20,6 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
-import android.os.PersistableBundle;
 import android.provider.Settings;
 import android.telecom.PhoneAccount;
 import android.telecom.PhoneAccountHandle;
@@ -36,6 +35,7 @@ import androidx.preference.PreferenceScreen;
 import com.android.settings.R;
 import com.android.settings.accessibility.rtt.TelecomUtil;
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.network.CarrierConfigCache;
 
 import java.util.List;
 
@@ -108,11 +108,10 @@ public class RTTSettingPreferenceController extends BasePreferenceController {
             Log.d(TAG, "rtt calling supported by telecom:: " + isRttCallingSupported);
 
             if (isRttCallingSupported) {
-                PersistableBundle carrierConfig = mCarrierConfigManager.getConfigForSubId(subId);
                 // If IGNORE_RTT_MODE_SETTING_BOOL=true, RTT visibility is not supported because
                 // this means we must use the legacy Telecom setting, which does not support RTT
                 // visibility.
-                if (carrierConfig != null
+                if (CarrierConfigCache.hasConfig(mContext, mCarrierConfigManager, subId)
                         && getBooleanCarrierConfig(
                         CarrierConfigManager.KEY_IGNORE_RTT_MODE_SETTING_BOOL)) {
                     Log.d(TAG, "RTT visibility setting is supported.");
@@ -149,11 +148,11 @@ public class RTTSettingPreferenceController extends BasePreferenceController {
 
         // If an invalid subId is used, this bundle will contain default values.
         final int subId = SubscriptionManager.getDefaultVoiceSubscriptionId();
-        final PersistableBundle bundle = mCarrierConfigManager.getConfigForSubId(subId);
-
-        return bundle != null
-                ? bundle.getBoolean(key)
-                : CarrierConfigManager.getDefaultConfig().getBoolean(key);
+        if (!CarrierConfigCache.hasConfig(mContext, mCarrierConfigManager, subId)) {
+            return CarrierConfigManager.getDefaultConfig().getBoolean(key);
+        }
+        return CarrierConfigCache.getBoolean(mContext, mCarrierConfigManager, subId, key,
+                false /* defaultValue */);
     }
 
     /** Returns whether is a correct default dialer which supports RTT. */
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import android.app.AppOpsManager;
+import android.util.ArrayMap;
+
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * Caches a per package state derived from an app op, so that an app state bridge reloading its
+ * extra info only asks {@link AppOpsManager} about the packages whose mode changed since the
+ * previous load.
+ *
+ * <p>{@link AppOpsManager#getPackagesForOps(int[])} only reports the modes set per package, and
+ * there is no bulk query for the modes set per uid, so the state of each package is loaded once
+ * and dropped when the app op changes for that package.
+ */
+class AppOpStateCache<T> {
+
+    /** Loads the state of a package that is missing from the cache. */
+    interface Loader<T> {
+        T load(String packageName, int uid);
+    }
+
+    private final AppOpsManager mAppOpsManager;
+    private final String mOp;
+    private final Loader<T> mLoader;
+    private final ArrayMap<String, T> mStates = new ArrayMap<>();
+    private final AppOpsManager.OnOpChangedListener mListener = this::onOpChanged;
+
+    private boolean mWatching;
+
+    AppOpStateCache(AppOpsManager appOpsManager, String op, Loader<T> loader) {
+        mAppOpsManager = appOpsManager;
+        mOp = op;
+        mLoader = loader;
+    }
+
+    /**
+     * Returns the state of the package, loading it if it is not cached. The cache only starts
+     * being used once the first lookup registered the app op listener that keeps it up to date.
+     */
+    T get(String packageName, int uid) {
+        synchronized (mStates) {
+            if (!mWatching) {
+                mAppOpsManager.startWatchingMode(mOp, null /* packageName */, mListener);
+                mWatching = true;
+            }
+            final String key = getKey(packageName, uid);
+            if (mStates.containsKey(key)) {
+                return mStates.get(key);
+            }
+            final T state = mLoader.load(packageName, uid);
+            mStates.put(key, state);
+            return state;
+        }
+    }
+
+    /** Drops the cached state of the package, e.g. before a forced reload of that package. */
+    void invalidate(String packageName, int uid) {
+        synchronized (mStates) {
+            mStates.remove(getKey(packageName, uid));
+        }
+    }
+
+    /** Drops all cached states, e.g. when the packages changed. */
+    void clear() {
+        synchronized (mStates) {
+            mStates.clear();
+        }
+    }
+
+    /** Stops listening to app op changes and drops all cached states. */
+    void release() {
+        synchronized (mStates) {
+            if (mWatching) {
+                mAppOpsManager.stopWatchingMode(mListener);
+                mWatching = false;
+            }
+            mStates.clear();
+        }
+    }
+
+    @VisibleForTesting
+    void onOpChanged(String op, String packageName) {
+        synchronized (mStates) {
+            // A mode set per uid is reported for each of its packages, the uid is not known here.
+            for (int i = mStates.size() - 1; i >= 0; i--) {
+                if (mStates.keyAt(i).endsWith("|" + packageName)) {
+                    mStates.removeAt(i);
+                }
+            }
+        }
+    }
+
+    private static String getKey(String packageName, int uid) {
+        return uid + "|" + packageName;
+    }
+}
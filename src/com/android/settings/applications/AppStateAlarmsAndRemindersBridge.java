@@ -19,11 +19,13 @@ package com.android.settings.applications;
 import android.Manifest;
 import android.app.AlarmManager;
 import android.app.AppGlobals;
+import android.app.AppOpsManager;
 import android.app.compat.CompatChanges;
 import android.content.Context;
 import android.content.pm.IPackageManager;
 import android.os.RemoteException;
 import android.os.UserHandle;
+import android.util.ArraySet;
 import android.util.Log;
 
 import com.android.internal.annotations.VisibleForTesting;
@@ -34,7 +36,9 @@ import com.android.settingslib.applications.ApplicationsState.AppFilter;
 
 import libcore.util.EmptyArray;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Connects app op info to the ApplicationsState. Extends {@link AppStateAppOpsBridge} to tailor
@@ -49,12 +53,16 @@ public class AppStateAlarmsAndRemindersBridge extends AppStateBaseBridge {
     AlarmManager mAlarmManager;
     @VisibleForTesting
     String[] mRequesterPackages;
+    @VisibleForTesting
+    AppOpStateCache<Boolean> mGrantedCache;
 
     public AppStateAlarmsAndRemindersBridge(Context context, ApplicationsState appState,
             Callback callback) {
         super(appState, callback);
 
         mAlarmManager = context.getSystemService(AlarmManager.class);
+        mGrantedCache = new AppOpStateCache<>(context.getSystemService(AppOpsManager.class),
+                AppOpsManager.OPSTR_SCHEDULE_EXACT_ALARM, this::hasScheduleExactAlarm);
         final IPackageManager iPm = AppGlobals.getPackageManager();
         try {
             mRequesterPackages = iPm.getAppOpPermissionPackages(PERMISSION);
@@ -74,25 +82,60 @@ public class AppStateAlarmsAndRemindersBridge extends AppStateBaseBridge {
      * package and uid.
      */
     public AlarmsAndRemindersState createPermissionState(String packageName, int uid) {
-        final int userId = UserHandle.getUserId(uid);
+        return new AlarmsAndRemindersState(isPermissionRequested(packageName, uid),
+                hasScheduleExactAlarm(packageName, uid));
+    }
+
+    private boolean isPermissionRequested(String packageName, int uid) {
+        return ArrayUtils.contains(mRequesterPackages, packageName)
+                && isChangeEnabled(packageName, UserHandle.getUserId(uid));
+    }
 
-        final boolean permissionRequested = ArrayUtils.contains(mRequesterPackages, packageName)
-                && isChangeEnabled(packageName, userId);
-        final boolean permissionGranted = mAlarmManager.hasScheduleExactAlarm(packageName, userId);
-        return new AlarmsAndRemindersState(permissionRequested, permissionGranted);
+    private boolean hasScheduleExactAlarm(String packageName, int uid) {
+        return mAlarmManager.hasScheduleExactAlarm(packageName, UserHandle.getUserId(uid));
     }
 
     @Override
     protected void updateExtraInfo(AppEntry app, String pkg, int uid) {
-        app.extraInfo = createPermissionState(pkg, uid);
+        mGrantedCache.invalidate(pkg, uid);
+        app.extraInfo = createCachedPermissionState(pkg, uid);
+    }
+
+    @Override
+    public void onPackageListChanged() {
+        // An update of a package may change whether it is granted the permission by default.
+        mGrantedCache.clear();
+        super.onPackageListChanged();
+    }
+
+    @Override
+    public void release() {
+        super.release();
+        mGrantedCache.release();
+    }
+
+    private AlarmsAndRemindersState createCachedPermissionState(String packageName, int uid) {
+        return new AlarmsAndRemindersState(isPermissionRequested(packageName, uid),
+                mGrantedCache.get(packageName, uid));
     }
 
     @Override
     protected void loadAllExtraInfo() {
+        final Set<String> requesters = new ArraySet<>(Arrays.asList(mRequesterPackages));
         final List<AppEntry> allApps = mAppSession.getAllApps();
         for (int i = 0; i < allApps.size(); i++) {
             final AppEntry currentEntry = allApps.get(i);
-            updateExtraInfo(currentEntry, currentEntry.info.packageName, currentEntry.info.uid);
+            final String packageName = currentEntry.info.packageName;
+            if (requesters.contains(packageName)) {
+                // The grant is set per uid, which app ops can't report in bulk. The cache only
+                // asks again about the packages whose app op changed since the previous load.
+                currentEntry.extraInfo = createCachedPermissionState(packageName,
+                        currentEntry.info.uid);
+            } else {
+                // Apps that don't request the permission are never listed, skip the binder calls.
+                currentEntry.extraInfo = new AlarmsAndRemindersState(
+                        false /* permissionRequested */, false /* permissionGranted */);
+            }
         }
     }
 
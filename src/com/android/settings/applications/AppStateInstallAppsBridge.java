@@ -22,14 +22,19 @@ import android.content.Context;
 import android.content.pm.IPackageManager;
 import android.content.pm.PackageManager;
 import android.os.RemoteException;
+import android.util.ArraySet;
 import android.util.Log;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.android.internal.util.ArrayUtils;
 import com.android.settingslib.applications.ApplicationsState;
 import com.android.settingslib.applications.ApplicationsState.AppEntry;
 import com.android.settingslib.applications.ApplicationsState.AppFilter;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Connects app op info to the ApplicationsState. Wraps around the generic AppStateBaseBridge
@@ -42,29 +47,86 @@ public class AppStateInstallAppsBridge extends AppStateBaseBridge {
 
     private final IPackageManager mIpm;
     private final AppOpsManager mAppOpsManager;
+    private final AppOpStateCache<Integer> mModeCache;
 
     public AppStateInstallAppsBridge(Context context, ApplicationsState appState,
             Callback callback) {
+        this(appState, callback, AppGlobals.getPackageManager(),
+                (AppOpsManager) context.getSystemService(Context.APP_OPS_SERVICE));
+    }
+
+    @VisibleForTesting
+    AppStateInstallAppsBridge(ApplicationsState appState, Callback callback,
+            IPackageManager ipm, AppOpsManager appOpsManager) {
         super(appState, callback);
-        mIpm = AppGlobals.getPackageManager();
-        mAppOpsManager = (AppOpsManager) context.getSystemService(Context.APP_OPS_SERVICE);
+        mIpm = ipm;
+        mAppOpsManager = appOpsManager;
+        mModeCache = new AppOpStateCache<>(appOpsManager,
+                AppOpsManager.OPSTR_REQUEST_INSTALL_PACKAGES,
+                (packageName, uid) -> getAppOpMode(AppOpsManager.OP_REQUEST_INSTALL_PACKAGES, uid,
+                        packageName));
     }
 
     @Override
     protected void updateExtraInfo(AppEntry app, String packageName, int uid) {
-        app.extraInfo = createInstallAppsStateFor(packageName, uid);
+        mModeCache.invalidate(packageName, uid);
+        final InstallAppsState appState = new InstallAppsState();
+        appState.permissionRequested = hasRequestedAppOpPermission(
+                Manifest.permission.REQUEST_INSTALL_PACKAGES, packageName);
+        appState.appOpMode = mModeCache.get(packageName, uid);
+        app.extraInfo = appState;
     }
 
     @Override
     protected void loadAllExtraInfo() {
-        // TODO: consider making this a batch operation with a single binder call
+        // One query for the requesting packages and one for the packages with an app op mode,
+        // instead of one of each per app. The mode of a package may be overridden by the mode of
+        // its uid, so the effective mode of those packages comes from the mode cache, which only
+        // asks app ops again about the packages whose mode changed since the previous load.
+        final Set<String> requesters = new ArraySet<>();
+        try {
+            final String[] packages = mIpm.getAppOpPermissionPackages(
+                    Manifest.permission.REQUEST_INSTALL_PACKAGES);
+            if (packages != null) {
+                requesters.addAll(Arrays.asList(packages));
+            }
+        } catch (RemoteException exc) {
+            Log.e(TAG, "PackageManager dead. Cannot get permission info");
+        }
+        final Set<String> packagesWithMode = new ArraySet<>();
+        final List<AppOpsManager.PackageOps> packageOps = mAppOpsManager.getPackagesForOps(
+                new int[]{AppOpsManager.OP_REQUEST_INSTALL_PACKAGES});
+        if (packageOps != null) {
+            for (AppOpsManager.PackageOps packageOp : packageOps) {
+                packagesWithMode.add(getKey(packageOp.getUid(), packageOp.getPackageName()));
+            }
+        }
+
         final List<AppEntry> allApps = mAppSession.getAllApps();
         for (int i = 0; i < allApps.size(); i++) {
-            AppEntry currentEntry = allApps.get(i);
-            updateExtraInfo(currentEntry, currentEntry.info.packageName, currentEntry.info.uid);
+            final AppEntry currentEntry = allApps.get(i);
+            final String packageName = currentEntry.info.packageName;
+            final int uid = currentEntry.info.uid;
+            final InstallAppsState appState = new InstallAppsState();
+            appState.permissionRequested = requesters.contains(packageName);
+            if (appState.permissionRequested
+                    || packagesWithMode.contains(getKey(uid, packageName))) {
+                appState.appOpMode = mModeCache.get(packageName, uid);
+            }
+            currentEntry.extraInfo = appState;
         }
     }
 
+    @Override
+    public void release() {
+        super.release();
+        mModeCache.release();
+    }
+
+    private static String getKey(int uid, String packageName) {
+        return uid + "|" + packageName;
+    }
+
     private boolean hasRequestedAppOpPermission(String permission, String packageName) {
         try {
             String[] packages = mIpm.getAppOpPermissionPackages(permission);
@@ -34,6 +34,7 @@ import java.util.List;
 public class AppStateMediaManagementAppsBridge extends AppStateAppOpsBridge {
 
     private final AppOpsManager mAppOpsManager;
+    private final AppOpStateCache<Integer> mModeCache;
 
     public AppStateMediaManagementAppsBridge(Context context, ApplicationsState appState,
             Callback callback) {
@@ -42,11 +43,16 @@ public class AppStateMediaManagementAppsBridge extends AppStateAppOpsBridge {
                 new String[]{Manifest.permission.MANAGE_MEDIA});
 
         mAppOpsManager = context.getSystemService(AppOpsManager.class);
+        mModeCache = new AppOpStateCache<>(mAppOpsManager, AppOpsManager.OPSTR_MANAGE_MEDIA,
+                this::getAppOpMode);
     }
 
     @Override
     protected void updateExtraInfo(AppEntry app, String pkg, int uid) {
-        app.extraInfo = createPermissionState(pkg, uid);
+        mModeCache.invalidate(pkg, uid);
+        final PermissionState permissionState = getPermissionInfo(pkg, uid);
+        permissionState.appOpMode = mModeCache.get(pkg, uid);
+        app.extraInfo = permissionState;
     }
 
     @Override
@@ -57,22 +63,36 @@ public class AppStateMediaManagementAppsBridge extends AppStateAppOpsBridge {
         for (int i = 0; i < appCount; i++) {
             final AppEntry appEntry = allApps.get(i);
             if (appEntry.extraInfo instanceof PermissionState) {
-                updateExtraInfo(appEntry, appEntry.info.packageName, appEntry.info.uid);
+                // The permission state was loaded in bulk above, only the mode set per uid is
+                // missing from the app ops snapshot. The mode cache only asks app ops again about
+                // the packages whose mode changed since the previous load.
+                ((PermissionState) appEntry.extraInfo).appOpMode =
+                        mModeCache.get(appEntry.info.packageName, appEntry.info.uid);
             }
         }
     }
 
+    @Override
+    public void release() {
+        super.release();
+        mModeCache.release();
+    }
+
     /**
      * Returns information regarding {@link Manifest.permission#MANAGE_MEDIA} for the given
      * package and uid.
      */
     public PermissionState createPermissionState(String packageName, int uid) {
         final PermissionState permissionState = getPermissionInfo(packageName, uid);
-        permissionState.appOpMode = mAppOpsManager.unsafeCheckOpNoThrow(
-                AppOpsManager.OPSTR_MANAGE_MEDIA, uid, packageName);
+        permissionState.appOpMode = getAppOpMode(packageName, uid);
         return permissionState;
     }
 
+    private int getAppOpMode(String packageName, int uid) {
+        return mAppOpsManager.unsafeCheckOpNoThrow(AppOpsManager.OPSTR_MANAGE_MEDIA, uid,
+                packageName);
+    }
+
     /**
      * Used by {@link com.android.settings.applications.manageapplications.AppFilterRegistry} to
      * determine which apps get to appear on the Special App Access list.
@@ -18,13 +18,16 @@ package com.android.settings.applications;
 import android.app.usage.IUsageStatsManager;
 import android.app.usage.UsageEvents;
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
 import android.os.RemoteException;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.text.format.DateUtils;
 import android.util.ArrayMap;
+import android.util.ArraySet;
 import android.util.Log;
 import android.util.Slog;
+import android.util.SparseArray;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.CompoundButton;
@@ -42,6 +45,7 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Connects the info provided by ApplicationsState and UsageStatsManager.
@@ -55,6 +59,7 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
     private IUsageStatsManager mUsageStatsManager;
     protected List<Integer> mUserIds;
     private NotificationBackend mBackend;
+    private final SparseArray<NotificationUsageStore> mUsageStores = new SparseArray<>();
     private static final int DAYS_TO_CHECK = 7;
 
     public AppStateNotificationBridge(Context context, ApplicationsState appState,
@@ -70,6 +75,9 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
         if (workUserId != UserHandle.USER_NULL) {
             mUserIds.add(workUserId);
         }
+        for (int userId : mUserIds) {
+            mUsageStores.put(userId, new NotificationUsageStore(mContext, userId));
+        }
     }
 
     @Override
@@ -83,22 +91,60 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
         }
 
         final Map<String, NotificationsSentState> map = getAggregatedUsageEvents();
+        final Set<String> systemApps = mBackend.getSystemApps(mContext);
+        final Set<String> bannedApps = getBannedApps(apps);
         for (AppEntry entry : apps) {
-            NotificationsSentState stats =
-                    map.get(getKey(UserHandle.getUserId(entry.info.uid), entry.info.packageName));
+            final String key =
+                    getKey(UserHandle.getUserId(entry.info.uid), entry.info.packageName);
+            NotificationsSentState stats = map.get(key);
             if (stats == null) {
                 stats = new NotificationsSentState();
             }
             calculateAvgSentCounts(stats);
-            addBlockStatus(entry, stats);
+            addBlockStatus(stats, bannedApps.contains(key),
+                    systemApps.contains(entry.info.packageName));
             entry.extraInfo = stats;
         }
     }
 
+    /**
+     * Returns the keys of the apps whose notifications are banned, with one pass per user.
+     */
+    private Set<String> getBannedApps(List<AppEntry> apps) {
+        final SparseArray<List<ApplicationInfo>> appsByUser = new SparseArray<>();
+        for (AppEntry entry : apps) {
+            final int userId = UserHandle.getUserId(entry.info.uid);
+            List<ApplicationInfo> userApps = appsByUser.get(userId);
+            if (userApps == null) {
+                userApps = new ArrayList<>();
+                appsByUser.put(userId, userApps);
+            }
+            userApps.add(entry.info);
+        }
+        final Set<String> bannedApps = new ArraySet<>();
+        for (int i = 0; i < appsByUser.size(); i++) {
+            final int userId = appsByUser.keyAt(i);
+            for (String pkg : mBackend.getNotificationsBannedPackages(userId,
+                    appsByUser.valueAt(i))) {
+                bannedApps.add(getKey(userId, pkg));
+            }
+        }
+        return bannedApps;
+    }
+
     @Override
     protected void updateExtraInfo(AppEntry entry, String pkg, int uid) {
-        NotificationsSentState stats = getAggregatedUsageEvents(
-                UserHandle.getUserId(entry.info.uid), entry.info.packageName);
+        final int userId = UserHandle.getUserId(entry.info.uid);
+        final NotificationUsageStore store = mUsageStores.get(userId);
+        NotificationsSentState stats;
+        if (store != null && store.isLoaded()) {
+            // Only reads the events since the last load.
+            store.update(mUsageStatsManager, mContext.getPackageName(),
+                    System.currentTimeMillis(), DAYS_TO_CHECK);
+            stats = store.get(entry.info.packageName);
+        } else {
+            stats = getAggregatedUsageEvents(userId, entry.info.packageName);
+        }
         calculateAvgSentCounts(stats);
         addBlockStatus(entry, stats);
         entry.extraInfo = stats;
@@ -126,12 +172,20 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
 
     private void addBlockStatus(AppEntry entry, NotificationsSentState stats) {
         if (stats != null) {
-            stats.blocked = mBackend.getNotificationsBanned(entry.info.packageName, entry.info.uid);
-            stats.systemApp = mBackend.isSystemApp(mContext, entry.info);
-            stats.blockable = !stats.systemApp || (stats.systemApp && stats.blocked);
+            // Only this app changed, so only its state is queried.
+            addBlockStatus(stats,
+                    mBackend.getNotificationsBanned(entry.info.packageName, entry.info.uid),
+                    mBackend.isSystemApp(mContext, entry.info));
         }
     }
 
+    private void addBlockStatus(NotificationsSentState stats, boolean blocked,
+            boolean systemApp) {
+        stats.blocked = blocked;
+        stats.systemApp = systemApp;
+        stats.blockable = !stats.systemApp || (stats.systemApp && stats.blocked);
+    }
+
     private void calculateAvgSentCounts(NotificationsSentState stats) {
         if (stats != null) {
             stats.avgSentDaily = Math.round((float) stats.sentCount / DAYS_TO_CHECK);
@@ -145,35 +199,10 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
         ArrayMap<String, NotificationsSentState> aggregatedStats = new ArrayMap<>();
 
         long now = System.currentTimeMillis();
-        long startTime = now - (DateUtils.DAY_IN_MILLIS * DAYS_TO_CHECK);
         for (int userId : mUserIds) {
-            UsageEvents events = null;
-            try {
-                events = mUsageStatsManager.queryEventsForUser(
-                        startTime, now, userId, mContext.getPackageName());
-            } catch (RemoteException e) {
-                e.printStackTrace();
-            }
-            if (events != null) {
-                UsageEvents.Event event = new UsageEvents.Event();
-                while (events.hasNextEvent()) {
-                    events.getNextEvent(event);
-                    NotificationsSentState stats =
-                            aggregatedStats.get(getKey(userId, event.getPackageName()));
-                    if (stats == null) {
-                        stats = new NotificationsSentState();
-                        aggregatedStats.put(getKey(userId, event.getPackageName()), stats);
-                    }
-
-                    if (event.getEventType() == UsageEvents.Event.NOTIFICATION_INTERRUPTION) {
-                        if (event.getTimeStamp() > stats.lastSent) {
-                            stats.lastSent = event.getTimeStamp();
-                        }
-                        stats.sentCount++;
-                    }
-
-                }
-            }
+            final NotificationUsageStore store = mUsageStores.get(userId);
+            store.update(mUsageStatsManager, mContext.getPackageName(), now, DAYS_TO_CHECK);
+            store.collect(aggregatedStats);
         }
         return aggregatedStats;
     }
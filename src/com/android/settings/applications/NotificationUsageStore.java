@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import android.app.usage.IUsageStatsManager;
+import android.app.usage.UsageEvents;
+import android.content.Context;
+import android.os.RemoteException;
+import android.text.format.DateUtils;
+import android.util.ArrayMap;
+import android.util.Log;
+import android.util.SparseIntArray;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.settings.applications.AppStateNotificationBridge.NotificationsSentState;
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Notifications sent per package by a single user, kept as hourly counts on disk.
+ *
+ * <p>Each {@link #update} only reads the usage events logged since the previous one, so the
+ * notification screens don't have to scan the whole window on every visit. Only the hours which
+ * start within the window are kept, so the counts never cover more than the window. The store is
+ * written in the background, once for all the updates made while a write is pending.
+ */
+class NotificationUsageStore {
+
+    private static final String TAG = "NotificationUsageStore";
+
+    @VisibleForTesting
+    static final String STORE_DIR = "notification_usage";
+    private static final int VERSION = 2;
+
+    private final File mFile;
+    private final int mUserId;
+    private final ArrayMap<String, PackageUsage> mPackages = new ArrayMap<>();
+    private final Object mWriteLock = new Object();
+    private long mHighWaterMark;
+    private boolean mLoaded;
+    private boolean mWritePending;
+
+    NotificationUsageStore(Context context, int userId) {
+        final File filesDir = context.getNoBackupFilesDir();
+        mFile = filesDir != null
+                ? new File(new File(filesDir, STORE_DIR), String.valueOf(userId)) : null;
+        mUserId = userId;
+    }
+
+    /**
+     * Whether {@link #update} already ran in this process.
+     */
+    synchronized boolean isLoaded() {
+        return mLoaded;
+    }
+
+    /**
+     * Counts the notifications sent since the last update, and drops the hours before
+     * {@code windowDays} days ago.
+     */
+    @WorkerThread
+    synchronized void update(IUsageStatsManager usageStatsManager, String callingPackage,
+            long now, int windowDays) {
+        if (!mLoaded) {
+            read();
+            mLoaded = true;
+        }
+        final long windowStart = now - DateUtils.DAY_IN_MILLIS * windowDays;
+        if (mHighWaterMark > now) {
+            // The clock went back, the stored hours can't be trusted anymore.
+            mPackages.clear();
+            mHighWaterMark = 0;
+        }
+        // The first hour which starts within the window.
+        final int firstHour = getHour(windowStart + DateUtils.HOUR_IN_MILLIS - 1);
+        prune(firstHour);
+
+        UsageEvents events = null;
+        try {
+            events = usageStatsManager.queryEventsForUser(Math.max(mHighWaterMark, windowStart),
+                    now, mUserId, callingPackage);
+        } catch (RemoteException e) {
+            Log.w(TAG, "Failed to query usage events", e);
+            return;
+        }
+        if (events != null) {
+            final UsageEvents.Event event = new UsageEvents.Event();
+            while (events.hasNextEvent()) {
+                events.getNextEvent(event);
+                if (event.getEventType() == UsageEvents.Event.NOTIFICATION_INTERRUPTION
+                        && getHour(event.getTimeStamp()) >= firstHour) {
+                    record(event.getPackageName(), event.getTimeStamp());
+                }
+            }
+        }
+        mHighWaterMark = now;
+        scheduleWrite();
+    }
+
+    /**
+     * Adds the state of every package that sent notifications to {@code out}, keyed by
+     * {@link AppStateNotificationBridge#getKey}.
+     */
+    synchronized void collect(Map<String, NotificationsSentState> out) {
+        final int size = mPackages.size();
+        for (int i = 0; i < size; i++) {
+            out.put(AppStateNotificationBridge.getKey(mUserId, mPackages.keyAt(i)),
+                    mPackages.valueAt(i).toState());
+        }
+    }
+
+    /**
+     * Returns the state of {@code pkg}, or null if it didn't send notifications.
+     */
+    synchronized NotificationsSentState get(String pkg) {
+        final PackageUsage usage = mPackages.get(pkg);
+        return usage != null ? usage.toState() : null;
+    }
+
+    private void record(String pkg, long timestamp) {
+        PackageUsage usage = mPackages.get(pkg);
+        if (usage == null) {
+            usage = new PackageUsage();
+            mPackages.put(pkg, usage);
+        }
+        final int hour = getHour(timestamp);
+        usage.mHourlyCounts.put(hour, usage.mHourlyCounts.get(hour) + 1);
+        if (timestamp > usage.mLastSent) {
+            usage.mLastSent = timestamp;
+        }
+    }
+
+    private void prune(int firstHour) {
+        for (int i = mPackages.size() - 1; i >= 0; i--) {
+            final SparseIntArray counts = mPackages.valueAt(i).mHourlyCounts;
+            // Hours are sorted, drop them from the start.
+            while (counts.size() > 0 && counts.keyAt(0) < firstHour) {
+                counts.removeAt(0);
+            }
+            if (counts.size() == 0) {
+                mPackages.removeAt(i);
+            }
+        }
+    }
+
+    private static int getHour(long timestamp) {
+        return (int) (timestamp / DateUtils.HOUR_IN_MILLIS);
+    }
+
+    private void read() {
+        if (mFile == null || !mFile.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(mFile)))) {
+            if (in.readInt() != VERSION) {
+                return;
+            }
+            final long highWaterMark = in.readLong();
+            final int packageCount = in.readInt();
+            final ArrayMap<String, PackageUsage> packages = new ArrayMap<>(packageCount);
+            for (int i = 0; i < packageCount; i++) {
+                final String pkg = in.readUTF();
+                final PackageUsage usage = new PackageUsage();
+                usage.mLastSent = in.readLong();
+                final int hourCount = in.readInt();
+                for (int j = 0; j < hourCount; j++) {
+                    usage.mHourlyCounts.append(in.readInt(), in.readInt());
+                }
+                packages.put(pkg, usage);
+            }
+            mHighWaterMark = highWaterMark;
+            mPackages.putAll(packages);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read notification usage of user " + mUserId, e);
+        }
+    }
+
+    private void scheduleWrite() {
+        if (mFile == null || mWritePending) {
+            return;
+        }
+        mWritePending = true;
+        ThreadUtils.postOnBackgroundThread(this::write);
+    }
+
+    private void write() {
+        // Writes are serialized, and each one saves the state at the time it runs.
+        synchronized (mWriteLock) {
+            final byte[] data;
+            synchronized (this) {
+                mWritePending = false;
+                data = serialize();
+            }
+            if (data != null) {
+                writeFile(data);
+            }
+        }
+    }
+
+    private byte[] serialize() {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(VERSION);
+            out.writeLong(mHighWaterMark);
+            final int packageCount = mPackages.size();
+            out.writeInt(packageCount);
+            for (int i = 0; i < packageCount; i++) {
+                final PackageUsage usage = mPackages.valueAt(i);
+                out.writeUTF(mPackages.keyAt(i));
+                out.writeLong(usage.mLastSent);
+                final int hourCount = usage.mHourlyCounts.size();
+                out.writeInt(hourCount);
+                for (int j = 0; j < hourCount; j++) {
+                    out.writeInt(usage.mHourlyCounts.keyAt(j));
+                    out.writeInt(usage.mHourlyCounts.valueAt(j));
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to serialize notification usage of user " + mUserId, e);
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    private void writeFile(byte[] data) {
+        final File dir = mFile.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            return;
+        }
+        final File tmpFile = new File(dir, mFile.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmpFile)) {
+            out.write(data);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write notification usage of user " + mUserId, e);
+            tmpFile.delete();
+            return;
+        }
+        if (!tmpFile.renameTo(mFile)) {
+            tmpFile.delete();
+        }
+    }
+
+    private static class PackageUsage {
+        private final SparseIntArray mHourlyCounts = new SparseIntArray();
+        private long mLastSent;
+
+        NotificationsSentState toState() {
+            final NotificationsSentState state = new NotificationsSentState();
+            state.lastSent = mLastSent;
+            for (int i = 0; i < mHourlyCounts.size(); i++) {
+                state.sentCount += mHourlyCounts.valueAt(i);
+            }
+            return state;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.WorkerThread;
+import androidx.preference.Preference;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A preference controller that splits its state update into a background phase and a main
+ * thread phase.
+ *
+ * <p>When a {@link com.android.settings.dashboard.DashboardFragment} updates its controllers in
+ * parallel, {@link #computeState()} runs on a background thread and
+ * {@link #applyState(Preference, Object)} is batched with every other controller of the page
+ * into a single main thread pass. Controllers that don't implement this interface keep calling
+ * {@code updateState} on the main thread.
+ *
+ * @param <T> the state computed in the background
+ */
+public interface BackgroundStateController<T> {
+
+    /**
+     * Computes the state of the preference. This must not touch any view.
+     */
+    @WorkerThread
+    T computeState();
+
+    /**
+     * Applies the state returned by {@link #computeState()} to the preference.
+     */
+    @MainThread
+    void applyState(Preference preference, T state);
+
+    /**
+     * Returns the preference keys of the controllers whose state must be computed and applied
+     * before this one.
+     */
+    default List<String> getDependencyKeys() {
+        return Collections.emptyList();
+    }
+}
@@ -25,6 +25,7 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.net.Uri;
 import android.os.AsyncTask;
 import android.text.TextUtils;
 import android.util.ArraySet;
@@ -57,6 +58,8 @@ public class CategoryMixin implements LifecycleObserver {
     private final Context mContext;
     private final PackageReceiver mPackageReceiver = new PackageReceiver();
     private final List<CategoryListener> mCategoryListeners = new ArrayList<>();
+    // Packages of the broadcasts not handled by a CategoriesUpdateTask yet.
+    private final Set<String> mChangedPackages = new ArraySet<>();
     private int mCategoriesUpdateTaskCount;
 
     public CategoryMixin(Context context) {
@@ -162,7 +165,17 @@ public class CategoryMixin implements LifecycleObserver {
         @Override
         protected Set<String> doInBackground(Boolean... params) {
             mPreviousTileMap = mCategoryManager.getTileByComponentMap();
-            mCategoryManager.reloadAllCategories(mContext);
+            if (params[0]) {
+                // Only the changed packages can change the tiles.
+                final Set<String> changedPackages;
+                synchronized (mChangedPackages) {
+                    changedPackages = new ArraySet<>(mChangedPackages);
+                    mChangedPackages.clear();
+                }
+                mCategoryManager.reloadCategoriesForPackages(mContext, changedPackages);
+            } else {
+                mCategoryManager.reloadAllCategories(mContext);
+            }
             mCategoryManager.updateCategoryFromDenylist(sTileDenylist);
             return getChangedCategories(params[0]);
         }
@@ -219,6 +232,12 @@ public class CategoryMixin implements LifecycleObserver {
     private class PackageReceiver extends BroadcastReceiver {
         @Override
         public void onReceive(Context context, Intent intent) {
+            final Uri data = intent.getData();
+            if (data != null) {
+                synchronized (mChangedPackages) {
+                    mChangedPackages.add(data.getSchemeSpecificPart());
+                }
+            }
             updateCategories(true /* fromBroadcast */);
         }
     }
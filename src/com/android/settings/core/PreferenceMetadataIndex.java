@@ -0,0 +1,344 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.annotation.Nullable;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.os.Build;
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Versioned index of the metadata declared in preference xml files.
+ *
+ * <p>Every preference xml is walked at most once per resource configuration. The result is kept
+ * in memory and written to a small binary file, so later processes can serve
+ * {@link PreferenceXmlParserUtils#extractMetadata} without touching the xml again. The file is
+ * dropped whenever the build fingerprint, the Settings apk or the index format changes, and each
+ * configuration and set of resource overlays has its own file.
+ */
+class PreferenceMetadataIndex {
+
+    private static final String TAG = "PrefMetadataIndex";
+
+    @VisibleForTesting
+    static final int VERSION = 1;
+    @VisibleForTesting
+    static final String INDEX_DIR = "preference_metadata_index";
+
+    private static PreferenceMetadataIndex sInstance;
+
+    private final File mIndexDir;
+    private final String mVersionStamp;
+    private final Map<String, ConfigIndex> mConfigIndexes = new ConcurrentHashMap<>();
+    private final Object mSaveLock = new Object();
+
+    static synchronized PreferenceMetadataIndex getInstance(Context context) {
+        if (sInstance == null) {
+            final Context appContext = context.getApplicationContext() != null
+                    ? context.getApplicationContext() : context;
+            sInstance = new PreferenceMetadataIndex(appContext);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    static synchronized void clearInstance() {
+        sInstance = null;
+    }
+
+    @VisibleForTesting
+    PreferenceMetadataIndex(Context context) {
+        final File cacheDir = context.getCacheDir();
+        mIndexDir = cacheDir != null ? new File(cacheDir, INDEX_DIR) : null;
+        mVersionStamp = buildVersionStamp(context);
+    }
+
+    /**
+     * Returns the indexed entries of {@code xmlResId} for the configuration of
+     * {@code resources}, or null if the screen has not been indexed yet.
+     */
+    @Nullable
+    List<Entry> get(Resources resources, int xmlResId) {
+        return getConfigIndex(resources).get(xmlResId);
+    }
+
+    /**
+     * Stores the entries of {@code xmlResId} and schedules a write of the backing file.
+     */
+    void put(Resources resources, int xmlResId, List<Entry> entries) {
+        final ConfigIndex configIndex = getConfigIndex(resources);
+        configIndex.put(xmlResId, Collections.unmodifiableList(entries));
+        if (configIndex.mSavePending.compareAndSet(false, true)) {
+            ThreadUtils.postOnBackgroundThread(() -> {
+                configIndex.mSavePending.set(false);
+                save(configIndex);
+            });
+        }
+    }
+
+    private ConfigIndex getConfigIndex(Resources resources) {
+        return mConfigIndexes.computeIfAbsent(getConfigKey(resources), this::load);
+    }
+
+    /**
+     * Builds a key out of everything that can select a different xml or string resource: the
+     * resource configuration and the apks the resources are loaded from, which include the
+     * enabled runtime resource overlays.
+     */
+    @VisibleForTesting
+    static String getConfigKey(Resources resources) {
+        final String[] apkPaths = resources.getAssets().getApkPaths();
+        return getConfigKey(resources.getConfiguration()) + '|'
+                + (apkPaths != null ? String.join(",", apkPaths) : "");
+    }
+
+    /**
+     * Builds a key out of every configuration field that can select a different xml or string
+     * resource.
+     */
+    @VisibleForTesting
+    static String getConfigKey(Configuration config) {
+        return new StringBuilder()
+                .append(config.mcc).append('-')
+                .append(config.mnc).append('-')
+                .append(config.getLocales().toLanguageTags()).append('-')
+                .append(config.getLayoutDirection()).append('-')
+                .append(config.smallestScreenWidthDp).append('-')
+                .append(config.screenWidthDp).append('-')
+                .append(config.screenHeightDp).append('-')
+                .append(config.screenLayout).append('-')
+                .append(config.uiMode).append('-')
+                .append(config.densityDpi).append('-')
+                .append(config.fontScale).append('-')
+                .append(config.orientation).append('-')
+                .append(config.touchscreen).append('-')
+                .append(config.keyboard).append('-')
+                .append(config.navigation).append('-')
+                // Bumped when the overlays of the resources change.
+                .append(config.assetsSeq)
+                .toString();
+    }
+
+    private static String buildVersionStamp(Context context) {
+        long lastUpdateTime = 0L;
+        try {
+            lastUpdateTime = context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0 /* flags */).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException | RuntimeException e) {
+            Log.w(TAG, "Unable to read package info, index is bound to the build only");
+        }
+        return VERSION + "|" + Build.FINGERPRINT + "|" + lastUpdateTime;
+    }
+
+    private File getIndexFile(String configKey) {
+        return new File(mIndexDir, Integer.toHexString(configKey.hashCode()));
+    }
+
+    private ConfigIndex load(String configKey) {
+        final ConfigIndex configIndex = new ConfigIndex(configKey);
+        if (mIndexDir == null) {
+            return configIndex;
+        }
+        final File file = getIndexFile(configKey);
+        if (!file.exists()) {
+            return configIndex;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (!mVersionStamp.equals(in.readUTF()) || !configKey.equals(in.readUTF())) {
+                Log.d(TAG, "Discarding stale index " + file.getName());
+                return configIndex;
+            }
+            final int screenCount = in.readInt();
+            for (int i = 0; i < screenCount; i++) {
+                final int xmlResId = in.readInt();
+                final int entryCount = in.readInt();
+                final List<Entry> entries = new ArrayList<>(entryCount);
+                for (int j = 0; j < entryCount; j++) {
+                    entries.add(Entry.readFrom(in));
+                }
+                configIndex.put(xmlResId, Collections.unmodifiableList(entries));
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read index " + file.getName(), e);
+            return new ConfigIndex(configKey);
+        }
+        return configIndex;
+    }
+
+    @VisibleForTesting
+    void save(ConfigIndex configIndex) {
+        // Saves of the same file may run on several background threads.
+        synchronized (mSaveLock) {
+            if (mIndexDir == null || (!mIndexDir.exists() && !mIndexDir.mkdirs())) {
+                return;
+            }
+            final SparseArray<List<Entry>> screens = configIndex.snapshot();
+            final File file = getIndexFile(configIndex.mConfigKey);
+            final File tmpFile;
+            try {
+                tmpFile = File.createTempFile(file.getName(), ".tmp", mIndexDir);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to create index " + file.getName(), e);
+                return;
+            }
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                out.writeUTF(mVersionStamp);
+                out.writeUTF(configIndex.mConfigKey);
+                out.writeInt(screens.size());
+                for (int i = 0; i < screens.size(); i++) {
+                    final List<Entry> entries = screens.valueAt(i);
+                    out.writeInt(screens.keyAt(i));
+                    out.writeInt(entries.size());
+                    for (Entry entry : entries) {
+                        entry.writeTo(out);
+                    }
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to write index " + file.getName(), e);
+                tmpFile.delete();
+                return;
+            }
+            if (!tmpFile.renameTo(file)) {
+                tmpFile.delete();
+            }
+        }
+    }
+
+    /**
+     * All indexed screens for a single resource configuration.
+     */
+    @VisibleForTesting
+    static class ConfigIndex {
+        private final String mConfigKey;
+        private final SparseArray<List<Entry>> mScreens = new SparseArray<>();
+        private final AtomicBoolean mSavePending = new AtomicBoolean();
+
+        ConfigIndex(String configKey) {
+            mConfigKey = configKey;
+        }
+
+        synchronized List<Entry> get(int xmlResId) {
+            return mScreens.get(xmlResId);
+        }
+
+        synchronized void put(int xmlResId, List<Entry> entries) {
+            mScreens.put(xmlResId, entries);
+        }
+
+        synchronized SparseArray<List<Entry>> snapshot() {
+            return mScreens.clone();
+        }
+    }
+
+    /**
+     * Every attribute {@link PreferenceXmlParserUtils} can extract for a single xml node.
+     */
+    static class Entry {
+        final String mNodeName;
+        final String mKey;
+        final String mController;
+        final String mTitle;
+        final String mSummary;
+        final int mIcon;
+        final String mKeywords;
+        final boolean mSearchable;
+        final boolean mAppended;
+        final String mUnavailableSliceSubtitle;
+        final boolean mForWork;
+
+        Entry(String nodeName, String key, String controller, String title, String summary,
+                int icon, String keywords, boolean searchable, boolean appended,
+                String unavailableSliceSubtitle, boolean forWork) {
+            mNodeName = nodeName;
+            mKey = key;
+            mController = controller;
+            mTitle = title;
+            mSummary = summary;
+            mIcon = icon;
+            mKeywords = keywords;
+            mSearchable = searchable;
+            mAppended = appended;
+            mUnavailableSliceSubtitle = unavailableSliceSubtitle;
+            mForWork = forWork;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeUTF(mNodeName);
+            writeNullableString(out, mKey);
+            writeNullableString(out, mController);
+            writeNullableString(out, mTitle);
+            writeNullableString(out, mSummary);
+            out.writeInt(mIcon);
+            writeNullableString(out, mKeywords);
+            out.writeBoolean(mSearchable);
+            out.writeBoolean(mAppended);
+            writeNullableString(out, mUnavailableSliceSubtitle);
+            out.writeBoolean(mForWork);
+        }
+
+        static Entry readFrom(DataInputStream in) throws IOException {
+            return new Entry(in.readUTF(),
+                    readNullableString(in),
+                    readNullableString(in),
+                    readNullableString(in),
+                    readNullableString(in),
+                    in.readInt(),
+                    readNullableString(in),
+                    in.readBoolean(),
+                    in.readBoolean(),
+                    readNullableString(in),
+                    in.readBoolean());
+        }
+
+        private static void writeNullableString(DataOutputStream out, String value)
+                throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeUTF(value);
+            }
+        }
+
+        private static String readNullableString(DataInputStream in) throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
+    }
+}
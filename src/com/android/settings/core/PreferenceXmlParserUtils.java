@@ -20,6 +20,7 @@ import android.annotation.NonNull;
 import android.annotation.Nullable;
 import android.annotation.XmlRes;
 import android.content.Context;
+import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.content.res.XmlResourceParser;
 import android.os.Bundle;
@@ -58,6 +59,10 @@ public class PreferenceXmlParserUtils {
     public static final int PREPEND_VALUE = 0;
     public static final int APPEND_VALUE = 1;
 
+    // Whether the metadata is served from PreferenceMetadataIndex, or always parsed from the xml.
+    @VisibleForTesting
+    static boolean sUseMetadataIndex = true;
+
     /**
      * Flag definition to indicate which metadata should be extracted when
      * {@link #extractMetadata(Context, int, int)} is called. The flags can be combined by using |
@@ -170,6 +175,9 @@ public class PreferenceXmlParserUtils {
     /**
      * Extracts metadata from preference xml and put them into a {@link Bundle}.
      *
+     * <p>Metadata is served from {@link PreferenceMetadataIndex} when the screen has been indexed
+     * for the current resource configuration, the xml is only walked on an index miss.
+     *
      * @param xmlResId xml res id of a preference screen
      * @param flags    Should be one or more of {@link MetadataFlag}.
      */
@@ -181,6 +189,35 @@ public class PreferenceXmlParserUtils {
             Log.d(TAG, xmlResId + " is invalid.");
             return metadata;
         }
+        List<PreferenceMetadataIndex.Entry> entries;
+        if (sUseMetadataIndex) {
+            final Resources resources = context.getResources();
+            final PreferenceMetadataIndex index = PreferenceMetadataIndex.getInstance(context);
+            entries = index.get(resources, xmlResId);
+            if (entries == null) {
+                entries = parseEntries(context, xmlResId);
+                index.put(resources, xmlResId, entries);
+            }
+        } else {
+            entries = parseEntries(context, xmlResId);
+        }
+
+        final boolean hasPrefScreenFlag = hasFlag(flags, MetadataFlag.FLAG_INCLUDE_PREF_SCREEN);
+        for (PreferenceMetadataIndex.Entry entry : entries) {
+            if (!hasPrefScreenFlag && TextUtils.equals(PREF_SCREEN_TAG, entry.mNodeName)) {
+                continue;
+            }
+            metadata.add(toBundle(entry, flags));
+        }
+        return metadata;
+    }
+
+    /**
+     * Walks the preference xml and extracts every supported attribute of each preference node.
+     */
+    private static List<PreferenceMetadataIndex.Entry> parseEntries(Context context,
+            @XmlRes int xmlResId) throws IOException, XmlPullParserException {
+        final List<PreferenceMetadataIndex.Entry> entries = new ArrayList<>();
         final XmlResourceParser parser = context.getResources().getXml(xmlResId);
 
         int type;
@@ -189,74 +226,79 @@ public class PreferenceXmlParserUtils {
             // Parse next until start tag is found
         }
         final int outerDepth = parser.getDepth();
-        final boolean hasPrefScreenFlag = hasFlag(flags, MetadataFlag.FLAG_INCLUDE_PREF_SCREEN);
         do {
             if (type != XmlPullParser.START_TAG) {
                 continue;
             }
             final String nodeName = parser.getName();
-            if (!hasPrefScreenFlag && TextUtils.equals(PREF_SCREEN_TAG, nodeName)) {
-                continue;
-            }
             if (!SUPPORTED_PREF_TYPES.contains(nodeName) && !nodeName.endsWith("Preference")) {
                 continue;
             }
-            final Bundle preferenceMetadata = new Bundle();
             final AttributeSet attrs = Xml.asAttributeSet(parser);
 
             final TypedArray preferenceAttributes = context.obtainStyledAttributes(attrs,
                     R.styleable.Preference);
-            TypedArray preferenceScreenAttributes = null;
-            if (hasPrefScreenFlag) {
-                preferenceScreenAttributes = context.obtainStyledAttributes(
-                        attrs, R.styleable.PreferenceScreen);
-            }
-
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_TYPE)) {
-                preferenceMetadata.putString(METADATA_PREF_TYPE, nodeName);
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_KEY)) {
-                preferenceMetadata.putString(METADATA_KEY, getKey(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_CONTROLLER)) {
-                preferenceMetadata.putString(METADATA_CONTROLLER,
-                        getController(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_TITLE)) {
-                preferenceMetadata.putString(METADATA_TITLE, getTitle(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_SUMMARY)) {
-                preferenceMetadata.putString(METADATA_SUMMARY, getSummary(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_ICON)) {
-                preferenceMetadata.putInt(METADATA_ICON, getIcon(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_KEYWORDS)) {
-                preferenceMetadata.putString(METADATA_KEYWORDS, getKeywords(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_SEARCHABLE)) {
-                preferenceMetadata.putBoolean(METADATA_SEARCHABLE,
-                        isSearchable(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_APPEND) && hasPrefScreenFlag) {
-                preferenceMetadata.putBoolean(METADATA_APPEND,
-                        isAppended(preferenceScreenAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_UNAVAILABLE_SLICE_SUBTITLE)) {
-                preferenceMetadata.putString(METADATA_UNAVAILABLE_SLICE_SUBTITLE,
-                        getUnavailableSliceSubtitle(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_FOR_WORK)) {
-                preferenceMetadata.putBoolean(METADATA_FOR_WORK,
-                        isForWork(preferenceAttributes));
-            }
-            metadata.add(preferenceMetadata);
+            final TypedArray preferenceScreenAttributes = context.obtainStyledAttributes(
+                    attrs, R.styleable.PreferenceScreen);
+
+            entries.add(new PreferenceMetadataIndex.Entry(nodeName,
+                    getKey(preferenceAttributes),
+                    getController(preferenceAttributes),
+                    getTitle(preferenceAttributes),
+                    getSummary(preferenceAttributes),
+                    getIcon(preferenceAttributes),
+                    getKeywords(preferenceAttributes),
+                    isSearchable(preferenceAttributes),
+                    isAppended(preferenceScreenAttributes),
+                    getUnavailableSliceSubtitle(preferenceAttributes),
+                    isForWork(preferenceAttributes)));
 
             preferenceAttributes.recycle();
+            preferenceScreenAttributes.recycle();
         } while ((type = parser.next()) != XmlPullParser.END_DOCUMENT
                 && (type != XmlPullParser.END_TAG || parser.getDepth() > outerDepth));
         parser.close();
-        return metadata;
+        return entries;
+    }
+
+    private static Bundle toBundle(PreferenceMetadataIndex.Entry entry, int flags) {
+        final Bundle preferenceMetadata = new Bundle();
+        if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_TYPE)) {
+            preferenceMetadata.putString(METADATA_PREF_TYPE, entry.mNodeName);
+        }
+        if (hasFlag(flags, MetadataFlag.FLAG_NEED_KEY)) {
+            preferenceMetadata.putString(METADATA_KEY, entry.mKey);
+        }
+        if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_CONTROLLER)) {
+            preferenceMetadata.putString(METADATA_CONTROLLER, entry.mController);
+        }
+        if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_TITLE)) {
+            preferenceMetadata.putString(METADATA_TITLE, entry.mTitle);
+        }
+        if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_SUMMARY)) {
+            preferenceMetadata.putString(METADATA_SUMMARY, entry.mSummary);
+        }
+        if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_ICON)) {
+            preferenceMetadata.putInt(METADATA_ICON, entry.mIcon);
+        }
+        if (hasFlag(flags, MetadataFlag.FLAG_NEED_KEYWORDS)) {
+            preferenceMetadata.putString(METADATA_KEYWORDS, entry.mKeywords);
+        }
+        if (hasFlag(flags, MetadataFlag.FLAG_NEED_SEARCHABLE)) {
+            preferenceMetadata.putBoolean(METADATA_SEARCHABLE, entry.mSearchable);
+        }
+        if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_APPEND)
+                && hasFlag(flags, MetadataFlag.FLAG_INCLUDE_PREF_SCREEN)) {
+            preferenceMetadata.putBoolean(METADATA_APPEND, entry.mAppended);
+        }
+        if (hasFlag(flags, MetadataFlag.FLAG_UNAVAILABLE_SLICE_SUBTITLE)) {
+            preferenceMetadata.putString(METADATA_UNAVAILABLE_SLICE_SUBTITLE,
+                    entry.mUnavailableSliceSubtitle);
+        }
+        if (hasFlag(flags, MetadataFlag.FLAG_FOR_WORK)) {
+            preferenceMetadata.putBoolean(METADATA_FOR_WORK, entry.mForWork);
+        }
+        return preferenceMetadata;
     }
 
     /**
@@ -15,8 +15,21 @@
  */
 package com.android.settings.dashboard;
 
+import android.app.ActivityManager;
 import android.content.ComponentName;
 import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ActivityInfo;
+import android.content.pm.ComponentInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ProviderInfo;
+import android.content.pm.ResolveInfo;
+import android.os.Bundle;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.provider.Settings;
+import android.text.TextUtils;
 import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.Log;
@@ -25,6 +38,7 @@ import android.util.Pair;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settingslib.applications.InterestingConfigChanges;
+import com.android.settingslib.drawer.ActivityTile;
 import com.android.settingslib.drawer.CategoryKey;
 import com.android.settingslib.drawer.DashboardCategory;
 import com.android.settingslib.drawer.ProviderTile;
@@ -43,16 +57,26 @@ public class CategoryManager {
     private static final String TAG = "CategoryManager";
     private static final boolean DEBUG = false;
 
+    // The intent actions of the operator and manufacturer settings, which TileUtils keeps
+    // private. Their tiles may omit the category, so only TileUtils loads them.
+    private static final String[] DEFAULT_CATEGORY_TILE_ACTIONS = {
+            "com.android.settings.OPERATOR_APPLICATION_SETTING",
+            "com.android.settings.MANUFACTURER_APPLICATION_SETTING",
+    };
+
     private static CategoryManager sInstance;
     private final InterestingConfigChanges mInterestingConfigChanges;
 
     // Tile cache (key: <packageName, activityName>, value: tile)
     private final Map<Pair<String, String>, Tile> mTileByComponentCache;
+    // Keys of mTileByComponentCache by the package of their tile
+    private final Map<String, Set<Pair<String, String>>> mTileKeysByPackage;
+    // Copies of the cached tiles moved to a new category key (key: key of the cached tile)
+    private final Map<Pair<String, String>, Tile> mCompatTileCache;
 
-    // Tile cache (key: category key, value: category)
-    private final Map<String, DashboardCategory> mCategoryByKeyMap;
-
-    private List<DashboardCategory> mCategories;
+    // The categories are rebuilt under the lock, then published at once. Published categories
+    // are never changed. Readers only take the lock for the first load.
+    private volatile LoadedCategories mLoadedCategories;
 
     public static CategoryManager get(Context context) {
         if (sInstance == null) {
@@ -63,27 +87,292 @@ public class CategoryManager {
 
     CategoryManager(Context context) {
         mTileByComponentCache = new ArrayMap<>();
-        mCategoryByKeyMap = new ArrayMap<>();
+        mTileKeysByPackage = new ArrayMap<>();
+        mCompatTileCache = new ArrayMap<>();
         mInterestingConfigChanges = new InterestingConfigChanges();
         mInterestingConfigChanges.applyNewConfig(context.getResources());
     }
 
-    public synchronized DashboardCategory getTilesByCategory(Context context, String categoryKey) {
-        tryInitCategories(context);
-
-        return mCategoryByKeyMap.get(categoryKey);
+    public DashboardCategory getTilesByCategory(Context context, String categoryKey) {
+        return tryInitCategories(context).mCategoryByKeyMap.get(categoryKey);
     }
 
-    public synchronized List<DashboardCategory> getCategories(Context context) {
-        tryInitCategories(context);
-        return mCategories;
+    public List<DashboardCategory> getCategories(Context context) {
+        return tryInitCategories(context).mCategories;
     }
 
     public synchronized void reloadAllCategories(Context context) {
         final boolean forceClearCache = mInterestingConfigChanges.applyNewConfig(
                 context.getResources());
-        mCategories = null;
-        tryInitCategories(context, forceClearCache);
+        loadCategories(context, forceClearCache);
+    }
+
+    /**
+     * Updates the categories after {@code packageNames} were installed, updated or removed,
+     * unless none of them had tiles or may declare any. Those packages can't change the
+     * categories. The tiles of the other packages are reloaded and patched into the categories
+     * that contain them, unless one of the packages injects tiles TileUtils must load, which
+     * reloads all the categories.
+     *
+     * @return whether the categories were updated
+     */
+    public boolean reloadCategoriesForPackages(Context context, Set<String> packageNames) {
+        final LoadedCategories loadedCategories = mLoadedCategories;
+        if (loadedCategories == null) {
+            reloadAllCategories(context);
+            return true;
+        }
+        final Set<String> changedPackages = new ArraySet<>();
+        for (String packageName : packageNames) {
+            if (loadedCategories.mTilePackages.contains(packageName)
+                    || mayDeclareTiles(context, packageName)) {
+                changedPackages.add(packageName);
+            }
+        }
+        if (changedPackages.isEmpty()) {
+            if (DEBUG) {
+                Log.d(TAG, "No tiles in " + packageNames + ", skipping reload");
+            }
+            return false;
+        }
+        reloadPackageTiles(context, changedPackages);
+        return true;
+    }
+
+    private synchronized void reloadPackageTiles(Context context, Set<String> packageNames) {
+        final boolean forceClearCache = mInterestingConfigChanges.applyNewConfig(
+                context.getResources());
+        if (forceClearCache || packageNames.contains(context.getPackageName())
+                || !patchCategories(context, packageNames)) {
+            // The copies of the old tiles of the packages are dropped with them.
+            for (String packageName : packageNames) {
+                final Set<Pair<String, String>> keys = mTileKeysByPackage.get(packageName);
+                if (keys != null) {
+                    mCompatTileCache.keySet().removeAll(keys);
+                }
+            }
+            loadCategories(context, forceClearCache);
+        }
+    }
+
+    /**
+     * Returns whether {@code packageName} may declare tiles. TileUtils only loads the tiles of
+     * system packages, and the tiles of the other actions declare their category key.
+     */
+    private static boolean mayDeclareTiles(Context context, String packageName) {
+        final PackageManager pm = context.getPackageManager();
+        final PackageInfo packageInfo;
+        try {
+            packageInfo = pm.getPackageInfo(packageName, PackageManager.GET_ACTIVITIES
+                    | PackageManager.GET_PROVIDERS | PackageManager.GET_META_DATA);
+        } catch (PackageManager.NameNotFoundException e) {
+            return false;
+        }
+        if (packageInfo.applicationInfo == null || !packageInfo.applicationInfo.isSystemApp()
+                || (packageInfo.activities == null && packageInfo.providers == null)) {
+            return false;
+        }
+        if (hasCategoryKey(packageInfo.activities) || hasCategoryKey(packageInfo.providers)) {
+            return true;
+        }
+        for (String action : DEFAULT_CATEGORY_TILE_ACTIONS) {
+            final Intent intent = new Intent(action).setPackage(packageName);
+            if (!pm.queryIntentActivities(intent, 0 /* flags */).isEmpty()
+                    || !pm.queryIntentContentProviders(intent, 0 /* flags */).isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasCategoryKey(ComponentInfo[] componentInfos) {
+        if (componentInfos == null) {
+            return false;
+        }
+        for (ComponentInfo componentInfo : componentInfos) {
+            if (componentInfo.metaData != null
+                    && componentInfo.metaData.containsKey(TileUtils.EXTRA_CATEGORY_KEY)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reloads the tiles of {@code packageNames} and publishes new copies of the categories which
+     * contain their old or new tiles. The other categories are shared with the published ones.
+     *
+     * @return false if the tiles of one of the packages can only be loaded by TileUtils
+     */
+    private boolean patchCategories(Context context, Set<String> packageNames) {
+        final LoadedCategories loadedCategories = mLoadedCategories;
+        if (loadedCategories == null) {
+            return false;
+        }
+        final Map<Pair<String, String>, Tile> newTiles = new ArrayMap<>();
+        for (String packageName : packageNames) {
+            final Set<Pair<String, String>> keys = mTileKeysByPackage.get(packageName);
+            if (keys != null) {
+                for (Pair<String, String> key : keys) {
+                    if (mTileByComponentCache.get(key) instanceof ProviderTile) {
+                        return false;
+                    }
+                }
+            }
+            if (!loadPackageTiles(context, packageName, newTiles)) {
+                return false;
+            }
+        }
+
+        for (String packageName : packageNames) {
+            final Set<Pair<String, String>> keys = mTileKeysByPackage.remove(packageName);
+            if (keys != null) {
+                for (Pair<String, String> key : keys) {
+                    mTileByComponentCache.remove(key);
+                    mCompatTileCache.remove(key);
+                }
+            }
+        }
+        mTileByComponentCache.putAll(newTiles);
+        indexTilesByPackage();
+
+        // Copies of the categories with the tiles of the packages, without those tiles.
+        final Map<String, DashboardCategory> patchedCategories = new ArrayMap<>();
+        for (DashboardCategory category : loadedCategories.mCategoryByKeyMap.values()) {
+            boolean hasPackageTile = false;
+            for (int i = 0; i < category.getTilesCount(); i++) {
+                if (packageNames.contains(category.getTile(i).getPackageName())) {
+                    hasPackageTile = true;
+                    break;
+                }
+            }
+            if (hasPackageTile) {
+                final DashboardCategory patchedCategory = new DashboardCategory(category.key);
+                for (int i = 0; i < category.getTilesCount(); i++) {
+                    final Tile tile = category.getTile(i);
+                    if (!packageNames.contains(tile.getPackageName())) {
+                        patchedCategory.addTile(tile);
+                    }
+                }
+                patchedCategories.put(category.key, patchedCategory);
+            }
+        }
+        // The new tiles and their compat copies are added to copies of their categories.
+        for (Tile tile : newTiles.values()) {
+            getPatchedCategory(tile.getCategory(), loadedCategories, patchedCategories)
+                    .addTile(tile);
+            final String newCategoryKey = CategoryKey.KEY_COMPAT_MAP.get(tile.getCategory());
+            if (newCategoryKey != null) {
+                getPatchedCategory(newCategoryKey, loadedCategories, patchedCategories);
+            }
+        }
+        backwardCompatCleanupForCategory(context, newTiles, patchedCategories);
+        sortCategories(context, patchedCategories);
+        filterDuplicateTiles(patchedCategories);
+
+        final List<DashboardCategory> categories =
+                new ArrayList<>(loadedCategories.mCategories.size());
+        final Map<String, DashboardCategory> categoryByKeyMap =
+                new ArrayMap<>(loadedCategories.mCategoryByKeyMap);
+        categoryByKeyMap.putAll(patchedCategories);
+        for (DashboardCategory category : loadedCategories.mCategories) {
+            categories.add(categoryByKeyMap.get(category.key));
+        }
+        // Like TileUtils, the list has the categories declared by the tiles, not the compat ones.
+        for (Tile tile : newTiles.values()) {
+            final DashboardCategory category = categoryByKeyMap.get(tile.getCategory());
+            if (!categories.contains(category)) {
+                categories.add(category);
+            }
+        }
+        mLoadedCategories = new LoadedCategories(categories, categoryByKeyMap,
+                getTilePackages(categoryByKeyMap));
+        if (DEBUG) {
+            Log.d(TAG, "Patched the tiles of " + packageNames);
+        }
+        return true;
+    }
+
+    // Returns the copy of the category in patchedCategories, created if needed.
+    private static DashboardCategory getPatchedCategory(String categoryKey,
+            LoadedCategories loadedCategories, Map<String, DashboardCategory> patchedCategories) {
+        DashboardCategory patchedCategory = patchedCategories.get(categoryKey);
+        if (patchedCategory != null) {
+            return patchedCategory;
+        }
+        patchedCategory = new DashboardCategory(categoryKey);
+        final DashboardCategory category = loadedCategories.mCategoryByKeyMap.get(categoryKey);
+        if (category != null) {
+            for (int i = 0; i < category.getTilesCount(); i++) {
+                patchedCategory.addTile(category.getTile(i));
+            }
+        }
+        patchedCategories.put(categoryKey, patchedCategory);
+        return patchedCategory;
+    }
+
+    /**
+     * Loads the activity tiles of {@code packageName} for the actions TileUtils loads with the
+     * category from their meta-data, like TileUtils does for all the packages.
+     *
+     * @return false if the package also injects tiles which only TileUtils loads
+     */
+    private static boolean loadPackageTiles(Context context, String packageName,
+            Map<Pair<String, String>, Tile> outTiles) {
+        final PackageManager pm = context.getPackageManager();
+        final boolean provisioned = Settings.Global.getInt(context.getContentResolver(),
+                Settings.Global.DEVICE_PROVISIONED, 0) != 0;
+        final int currentUserId = ActivityManager.getCurrentUser();
+        for (UserHandle user : context.getSystemService(UserManager.class).getUserProfiles()) {
+            if (user.getIdentifier() == currentUserId) {
+                for (String action : DEFAULT_CATEGORY_TILE_ACTIONS) {
+                    final Intent intent = new Intent(action).setPackage(packageName);
+                    if (!pm.queryIntentActivitiesAsUser(intent, 0 /* flags */,
+                            user.getIdentifier()).isEmpty()
+                            || !pm.queryIntentContentProvidersAsUser(intent, 0 /* flags */,
+                            user.getIdentifier()).isEmpty()) {
+                        return false;
+                    }
+                }
+            }
+            if (!provisioned) {
+                continue;
+            }
+            for (String action : new String[] {
+                    TileUtils.EXTRA_SETTINGS_ACTION, TileUtils.IA_SETTINGS_ACTION}) {
+                final Intent intent = new Intent(action).setPackage(packageName);
+                if (!pm.queryIntentContentProvidersAsUser(intent, 0 /* flags */,
+                        user.getIdentifier()).isEmpty()) {
+                    return false;
+                }
+                final List<ResolveInfo> results = pm.queryIntentActivitiesAsUser(intent,
+                        PackageManager.GET_META_DATA, user.getIdentifier());
+                for (ResolveInfo resolved : results) {
+                    final ActivityInfo activityInfo = resolved.activityInfo;
+                    final Bundle metaData = activityInfo.metaData;
+                    if (!resolved.system || metaData == null
+                            || !metaData.containsKey(TileUtils.EXTRA_CATEGORY_KEY)) {
+                        continue;
+                    }
+                    final Pair<String, String> key =
+                            new Pair<>(activityInfo.packageName, activityInfo.name);
+                    Tile tile = outTiles.get(key);
+                    if (tile == null) {
+                        tile = new ActivityTile(activityInfo,
+                                metaData.getString(TileUtils.EXTRA_CATEGORY_KEY));
+                        if (user.getIdentifier() != currentUserId
+                                && tile.isPrimaryProfileOnly()) {
+                            continue;
+                        }
+                        outTiles.put(key, tile);
+                    }
+                    if (!tile.userHandle.contains(user)) {
+                        tile.userHandle.add(user);
+                    }
+                }
+            }
+        }
+        return true;
     }
 
     /**
@@ -91,29 +380,41 @@ public class CategoryManager {
      * @param tileDenylist
      */
     public synchronized void updateCategoryFromDenylist(Set<ComponentName> tileDenylist) {
-        if (mCategories == null) {
+        final LoadedCategories loadedCategories = mLoadedCategories;
+        if (loadedCategories == null) {
             Log.w(TAG, "Category is null, skipping denylist update");
             return;
         }
-        for (int i = 0; i < mCategories.size(); i++) {
-            DashboardCategory category = mCategories.get(i);
-            for (int j = 0; j < category.getTilesCount(); j++) {
-                Tile tile = category.getTile(j);
-                if (tileDenylist.contains(tile.getIntent().getComponent())) {
-                    category.removeTile(j--);
+        // The published categories may be read meanwhile, the filtered ones are new copies.
+        final Map<String, DashboardCategory> categoryByKeyMap = new ArrayMap<>();
+        for (DashboardCategory category : loadedCategories.mCategoryByKeyMap.values()) {
+            final DashboardCategory filteredCategory = new DashboardCategory(category.key);
+            for (int i = 0; i < category.getTilesCount(); i++) {
+                final Tile tile = category.getTile(i);
+                if (!tileDenylist.contains(tile.getIntent().getComponent())) {
+                    filteredCategory.addTile(tile);
                 }
             }
+            categoryByKeyMap.put(category.key, filteredCategory);
         }
+        final List<DashboardCategory> categories =
+                new ArrayList<>(loadedCategories.mCategories.size());
+        for (DashboardCategory category : loadedCategories.mCategories) {
+            categories.add(categoryByKeyMap.get(category.key));
+        }
+        mLoadedCategories = new LoadedCategories(categories, categoryByKeyMap,
+                loadedCategories.mTilePackages);
     }
 
     /** Return the current tile map */
     public synchronized Map<ComponentName, Tile> getTileByComponentMap() {
         final Map<ComponentName, Tile> result = new ArrayMap<>();
-        if (mCategories == null) {
+        final LoadedCategories loadedCategories = mLoadedCategories;
+        if (loadedCategories == null) {
             Log.w(TAG, "Category is null, no tiles");
             return result;
         }
-        mCategories.forEach(category -> {
+        loadedCategories.mCategories.forEach(category -> {
             for (int i = 0; i < category.getTilesCount(); i++) {
                 final Tile tile = category.getTile(i);
                 result.put(tile.getIntent().getComponent(), tile);
@@ -131,59 +432,99 @@ public class CategoryManager {
         }
     }
 
-    private synchronized void tryInitCategories(Context context) {
-        // Keep cached tiles by default. The cache is only invalidated when InterestingConfigChange
-        // happens.
-        tryInitCategories(context, false /* forceClearCache */);
+    private LoadedCategories tryInitCategories(Context context) {
+        final LoadedCategories loadedCategories = mLoadedCategories;
+        if (loadedCategories != null) {
+            return loadedCategories;
+        }
+        synchronized (this) {
+            if (mLoadedCategories == null) {
+                // Keep cached tiles by default. The cache is only invalidated when
+                // InterestingConfigChange happens.
+                loadCategories(context, false /* forceClearCache */);
+            }
+            return mLoadedCategories;
+        }
     }
 
-    private synchronized void tryInitCategories(Context context, boolean forceClearCache) {
-        if (mCategories == null) {
-            final boolean firstLoading = mCategoryByKeyMap.isEmpty();
-            if (forceClearCache) {
-                mTileByComponentCache.clear();
-            }
-            mCategoryByKeyMap.clear();
-            mCategories = TileUtils.getCategories(context, mTileByComponentCache);
-            for (DashboardCategory category : mCategories) {
-                mCategoryByKeyMap.put(category.key, category);
+    private synchronized void loadCategories(Context context, boolean forceClearCache) {
+        final boolean firstLoading = mLoadedCategories == null;
+        if (forceClearCache) {
+            mTileByComponentCache.clear();
+            mCompatTileCache.clear();
+        }
+        // TileUtils returns new categories, they are sorted and filtered before being published.
+        final List<DashboardCategory> categories =
+                TileUtils.getCategories(context, mTileByComponentCache);
+        final Map<String, DashboardCategory> categoryByKeyMap = new ArrayMap<>();
+        for (DashboardCategory category : categories) {
+            categoryByKeyMap.put(category.key, category);
+        }
+        indexTilesByPackage();
+        backwardCompatCleanupForCategory(context, mTileByComponentCache, categoryByKeyMap);
+        sortCategories(context, categoryByKeyMap);
+        filterDuplicateTiles(categoryByKeyMap);
+
+        mLoadedCategories = new LoadedCategories(categories, categoryByKeyMap,
+                getTilePackages(categoryByKeyMap));
+        if (firstLoading) {
+            logTiles(context);
+        }
+    }
+
+    private void indexTilesByPackage() {
+        mTileKeysByPackage.clear();
+        for (Entry<Pair<String, String>, Tile> tileEntry : mTileByComponentCache.entrySet()) {
+            final String packageName = tileEntry.getValue().getPackageName();
+            Set<Pair<String, String>> keys = mTileKeysByPackage.get(packageName);
+            if (keys == null) {
+                keys = new ArraySet<>();
+                mTileKeysByPackage.put(packageName, keys);
             }
-            backwardCompatCleanupForCategory(mTileByComponentCache, mCategoryByKeyMap);
-            sortCategories(context, mCategoryByKeyMap);
-            filterDuplicateTiles(mCategoryByKeyMap);
-            if (firstLoading) {
-                logTiles(context);
+            keys.add(tileEntry.getKey());
+        }
+        // The copies of the tiles which are no longer cached are dropped.
+        mCompatTileCache.keySet().retainAll(mTileByComponentCache.keySet());
+    }
+
+    private static Set<String> getTilePackages(Map<String, DashboardCategory> categoryByKeyMap) {
+        final Set<String> tilePackages = new ArraySet<>();
+        for (DashboardCategory category : categoryByKeyMap.values()) {
+            for (int i = 0; i < category.getTilesCount(); i++) {
+                tilePackages.add(category.getTile(i).getPackageName());
             }
         }
+        return tilePackages;
     }
 
     @VisibleForTesting
-    synchronized void backwardCompatCleanupForCategory(
+    synchronized void backwardCompatCleanupForCategory(Context context,
             Map<Pair<String, String>, Tile> tileByComponentCache,
             Map<String, DashboardCategory> categoryByKeyMap) {
         // A package can use a) CategoryKey, b) old category keys, c) both.
         // Check if a package uses old category key only.
         // If yes, map them to new category key.
 
-        // Build a package name -> tile map first.
-        final Map<String, List<Tile>> packageToTileMap = new HashMap<>();
+        // Build a package name -> tile key map first.
+        final Map<String, List<Pair<String, String>>> packageToTileKeyMap = new HashMap<>();
         for (Entry<Pair<String, String>, Tile> tileEntry : tileByComponentCache.entrySet()) {
-            final String packageName = tileEntry.getKey().first;
-            List<Tile> tiles = packageToTileMap.get(packageName);
-            if (tiles == null) {
-                tiles = new ArrayList<>();
-                packageToTileMap.put(packageName, tiles);
+            final String packageName = tileEntry.getValue().getPackageName();
+            List<Pair<String, String>> keys = packageToTileKeyMap.get(packageName);
+            if (keys == null) {
+                keys = new ArrayList<>();
+                packageToTileKeyMap.put(packageName, keys);
             }
-            tiles.add(tileEntry.getValue());
+            keys.add(tileEntry.getKey());
         }
 
-        for (Entry<String, List<Tile>> entry : packageToTileMap.entrySet()) {
-            final List<Tile> tiles = entry.getValue();
+        for (Entry<String, List<Pair<String, String>>> entry : packageToTileKeyMap.entrySet()) {
+            final List<Pair<String, String>> keys = entry.getValue();
             // Loop map, find if all tiles from same package uses old key only.
             boolean useNewKey = false;
             boolean useOldKey = false;
-            for (Tile tile : tiles) {
-                if (CategoryKey.KEY_COMPAT_MAP.containsKey(tile.getCategory())) {
+            for (Pair<String, String> key : keys) {
+                if (CategoryKey.KEY_COMPAT_MAP.containsKey(
+                        tileByComponentCache.get(key).getCategory())) {
                     useOldKey = true;
                 } else {
                     useNewKey = true;
@@ -192,17 +533,22 @@ public class CategoryManager {
             }
             // Uses only old key, map them to new keys one by one.
             if (useOldKey && !useNewKey) {
-                for (Tile tile : tiles) {
+                for (Pair<String, String> key : keys) {
+                    final Tile tile = tileByComponentCache.get(key);
                     final String newCategoryKey =
                             CategoryKey.KEY_COMPAT_MAP.get(tile.getCategory());
-                    tile.setCategory(newCategoryKey);
+                    // The cached tile may be published already, a copy is moved instead.
+                    final Tile newTile = getCompatTile(context, key, tile, newCategoryKey);
+                    if (newTile == null) {
+                        continue;
+                    }
                     // move tile to new category.
                     DashboardCategory newCategory = categoryByKeyMap.get(newCategoryKey);
                     if (newCategory == null) {
                         newCategory = new DashboardCategory(newCategoryKey);
                         categoryByKeyMap.put(newCategoryKey, newCategory);
                     }
-                    newCategory.addTile(tile);
+                    newCategory.addTile(newTile);
                 }
             }
         }
@@ -254,4 +600,57 @@ public class CategoryManager {
             }
         }
     }
+
+    /**
+     * Returns a copy of the cached {@code tile} in {@code categoryKey}, or null if its component
+     * is gone. The copy is built from the component info, so it doesn't need to resolve it again
+     * to get its title or icon, and is kept until the tile is reloaded.
+     */
+    private Tile getCompatTile(Context context, Pair<String, String> key, Tile tile,
+            String categoryKey) {
+        final Tile cachedTile = mCompatTileCache.get(key);
+        if (cachedTile != null && TextUtils.equals(cachedTile.getCategory(), categoryKey)
+                && cachedTile.userHandle.equals(tile.userHandle)) {
+            return cachedTile;
+        }
+        final PackageManager pm = context.getPackageManager();
+        final Tile newTile;
+        if (tile instanceof ProviderTile) {
+            // Key: <authority, key hint>
+            final ProviderInfo providerInfo =
+                    pm.resolveContentProvider(key.first, PackageManager.GET_META_DATA);
+            if (providerInfo == null) {
+                Log.w(TAG, "Provider not found for tile " + tile.getDescription());
+                return null;
+            }
+            newTile = new ProviderTile(providerInfo, categoryKey, tile.getMetaData());
+        } else {
+            try {
+                newTile = new ActivityTile(pm.getActivityInfo(tile.getIntent().getComponent(),
+                        PackageManager.GET_META_DATA), categoryKey);
+            } catch (PackageManager.NameNotFoundException e) {
+                Log.w(TAG, "Activity not found for tile " + tile.getDescription());
+                return null;
+            }
+        }
+        newTile.userHandle.addAll(tile.userHandle);
+        mCompatTileCache.put(key, newTile);
+        return newTile;
+    }
+
+    /** Categories loaded at once, never changed once published. */
+    private static class LoadedCategories {
+        private final List<DashboardCategory> mCategories;
+        // Tile cache (key: category key, value: category)
+        private final Map<String, DashboardCategory> mCategoryByKeyMap;
+        // Packages of the loaded tiles.
+        private final Set<String> mTilePackages;
+
+        LoadedCategories(List<DashboardCategory> categories,
+                Map<String, DashboardCategory> categoryByKeyMap, Set<String> tilePackages) {
+            mCategories = categories;
+            mCategoryByKeyMap = categoryByKeyMap;
+            mTilePackages = tilePackages;
+        }
+    }
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import android.text.TextUtils;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Updates the state of a page's controllers in two phases.
+ *
+ * <p>The background phase ({@link ControllerTask#computeState()}) of every controller runs in
+ * parallel, a controller only starts once the controllers it depends on have finished. Once all
+ * of them are done, the main thread phase ({@link ControllerTask#applyState()}) of every
+ * controller runs in a single main thread pass in dependency order, so the page is updated
+ * within one frame and the main thread never waits on the background work.
+ */
+public class ControllerStateEngine {
+
+    private static final String TAG = "ControllerStateEngine";
+
+    private final Executor mExecutor;
+    // Only accessed on the main thread.
+    private int mGeneration;
+
+    public ControllerStateEngine() {
+        this(ThreadUtils::postOnBackgroundThread);
+    }
+
+    @VisibleForTesting
+    ControllerStateEngine(Executor executor) {
+        mExecutor = executor;
+    }
+
+    /**
+     * Computes the state of every task in the background, then applies all of them at once on
+     * the main thread. A pending update is dropped if a newer one is started or
+     * {@link #cancel()} is called before it's applied.
+     */
+    @MainThread
+    public void updateStates(List<ControllerTask> tasks) {
+        final int generation = ++mGeneration;
+        final List<ControllerTask> orderedTasks = sortByDependencies(tasks);
+        final boolean hasDependencies = hasDependencies(orderedTasks);
+        final Map<String, CompletableFuture<Boolean>> futuresByKey = new ArrayMap<>();
+        final List<CompletableFuture<Boolean>> futures = new ArrayList<>(orderedTasks.size());
+
+        for (ControllerTask task : orderedTasks) {
+            final List<CompletableFuture<Boolean>> dependencies = new ArrayList<>();
+            for (String dependencyKey : task.getDependencyKeys()) {
+                final CompletableFuture<Boolean> dependency = futuresByKey.get(dependencyKey);
+                if (dependency != null) {
+                    dependencies.add(dependency);
+                }
+            }
+            final CompletableFuture<Boolean> future = CompletableFuture
+                    .allOf(dependencies.toArray(new CompletableFuture[0]))
+                    .thenApplyAsync(ignored -> task.computeState(), mExecutor)
+                    .exceptionally(e -> {
+                        Log.w(TAG, "Failed to compute state of "
+                                + task.getController().getClass().getSimpleName(), e);
+                        return false;
+                    });
+            futures.add(future);
+            if (hasDependencies) {
+                final String key = task.getController().getPreferenceKey();
+                if (!TextUtils.isEmpty(key)) {
+                    futuresByKey.put(key, future);
+                }
+            }
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenRun(() -> ThreadUtils.postOnMainThread(() -> {
+                    if (generation != mGeneration) {
+                        Log.d(TAG, "Dropping stale controller states");
+                        return;
+                    }
+                    for (int i = 0; i < orderedTasks.size(); i++) {
+                        if (futures.get(i).join()) {
+                            orderedTasks.get(i).applyState();
+                        }
+                    }
+                }));
+    }
+
+    /**
+     * Drops the update in flight, if any.
+     */
+    @MainThread
+    public void cancel() {
+        mGeneration++;
+    }
+
+    /**
+     * Orders the tasks so that each one comes after the tasks it depends on. Dependencies on
+     * unknown keys are ignored, and so are dependencies that would form a cycle.
+     */
+    @VisibleForTesting
+    static List<ControllerTask> sortByDependencies(List<ControllerTask> tasks) {
+        if (!hasDependencies(tasks)) {
+            return tasks;
+        }
+        final Map<String, ControllerTask> tasksByKey = new ArrayMap<>();
+        for (ControllerTask task : tasks) {
+            final String key = task.getController().getPreferenceKey();
+            if (!TextUtils.isEmpty(key)) {
+                tasksByKey.put(key, task);
+            }
+        }
+        final List<ControllerTask> orderedTasks = new ArrayList<>(tasks.size());
+        final Set<ControllerTask> visited = new ArraySet<>();
+        final Set<ControllerTask> visiting = new ArraySet<>();
+        for (ControllerTask task : tasks) {
+            visit(task, tasksByKey, visited, visiting, orderedTasks);
+        }
+        return orderedTasks;
+    }
+
+    private static boolean hasDependencies(List<ControllerTask> tasks) {
+        for (ControllerTask task : tasks) {
+            if (!task.getDependencyKeys().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void visit(ControllerTask task, Map<String, ControllerTask> tasksByKey,
+            Set<ControllerTask> visited, Set<ControllerTask> visiting,
+            List<ControllerTask> orderedTasks) {
+        if (visited.contains(task)) {
+            return;
+        }
+        visiting.add(task);
+        for (String dependencyKey : task.getDependencyKeys()) {
+            final ControllerTask dependency = tasksByKey.get(dependencyKey);
+            if (dependency == null) {
+                continue;
+            }
+            if (visiting.contains(dependency)) {
+                Log.w(TAG, "Ignoring cyclic dependency on " + dependencyKey + " in "
+                        + task.getController().getClass().getSimpleName());
+                continue;
+            }
+            visit(dependency, tasksByKey, visited, visiting, orderedTasks);
+        }
+        visiting.remove(task);
+        visited.add(task);
+        orderedTasks.add(task);
+    }
+}
@@ -21,13 +21,19 @@ import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.Log;
 
+import androidx.annotation.MainThread;
+import androidx.annotation.WorkerThread;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceScreen;
 
+import com.android.settings.core.BackgroundStateController;
 import com.android.settingslib.core.AbstractPreferenceController;
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 import com.android.settingslib.utils.ThreadUtils;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * A {@link Runnable} controller task. This task handle the visibility of the controller in the
  * background. Also handle the state updating in the main thread.
@@ -41,6 +47,9 @@ public class ControllerTask implements Runnable {
     private final int mMetricsCategory;
     private final MetricsFeatureProvider mMetricsFeature;
 
+    private Preference mPreference;
+    private Object mState;
+
     public ControllerTask(AbstractPreferenceController controller, PreferenceScreen screen,
             MetricsFeatureProvider metricsFeature, int metricsCategory) {
         mController = controller;
@@ -51,37 +60,93 @@ public class ControllerTask implements Runnable {
 
     @Override
     public void run() {
-        if (!mController.isAvailable()) {
+        if (!computeState()) {
             return;
         }
+        ThreadUtils.postOnMainThread(this::applyState);
+    }
+
+    /**
+     * Runs the background phase of the update: resolves the preference and, for a
+     * {@link BackgroundStateController}, computes its state.
+     *
+     * @return {@code true} if {@link #applyState()} needs to run.
+     */
+    @WorkerThread
+    boolean computeState() {
+        mPreference = null;
+        mState = null;
+        if (!mController.isAvailable()) {
+            return false;
+        }
 
         final String key = mController.getPreferenceKey();
         if (TextUtils.isEmpty(key)) {
             Log.d(TAG, String.format("Preference key is %s in Controller %s",
                     key, mController.getClass().getSimpleName()));
-            return;
+            return false;
         }
 
         final Preference preference = mScreen.findPreference(key);
         if (preference == null) {
             Log.d(TAG, String.format("Cannot find preference with key %s in Controller %s",
                     key, mController.getClass().getSimpleName()));
+            return false;
+        }
+        if (mController instanceof BackgroundStateController) {
+            mState = ((BackgroundStateController<?>) mController).computeState();
+        }
+        mPreference = preference;
+        return true;
+    }
+
+    /**
+     * Runs the main thread phase of the update with the result of {@link #computeState()}.
+     */
+    @MainThread
+    void applyState() {
+        if (mPreference == null) {
             return;
         }
-        ThreadUtils.postOnMainThread(() -> {
-            final long t = SystemClock.elapsedRealtime();
-            mController.updateState(preference);
-            final int elapsedTime = (int) (SystemClock.elapsedRealtime() - t);
-            if (elapsedTime > CONTROLLER_UPDATESTATE_TIME_THRESHOLD) {
-                Log.w(TAG, "The updateState took " + elapsedTime + " ms in Controller "
-                        + mController.getClass().getSimpleName());
-                if (mMetricsFeature != null) {
-                    mMetricsFeature.action(SettingsEnums.PAGE_UNKNOWN,
-                            SettingsEnums.ACTION_CONTROLLER_UPDATE_STATE, mMetricsCategory,
-                            mController.getClass().getSimpleName(), elapsedTime);
-                }
+        final long t = SystemClock.elapsedRealtime();
+        if (mController instanceof BackgroundStateController) {
+            applyState((BackgroundStateController<?>) mController, mPreference, mState);
+        } else {
+            mController.updateState(mPreference);
+        }
+        final int elapsedTime = (int) (SystemClock.elapsedRealtime() - t);
+        if (elapsedTime > CONTROLLER_UPDATESTATE_TIME_THRESHOLD) {
+            Log.w(TAG, "The updateState took " + elapsedTime + " ms in Controller "
+                    + mController.getClass().getSimpleName());
+            if (mMetricsFeature != null) {
+                mMetricsFeature.action(SettingsEnums.PAGE_UNKNOWN,
+                        SettingsEnums.ACTION_CONTROLLER_UPDATE_STATE, mMetricsCategory,
+                        mController.getClass().getSimpleName(), elapsedTime);
             }
-        });
+        }
+    }
+
+    /**
+     * Returns whether the controller computes part of its state in the background.
+     */
+    boolean hasBackgroundState() {
+        return mController instanceof BackgroundStateController;
+    }
+
+    /**
+     * Returns the preference keys this task has to wait for.
+     */
+    List<String> getDependencyKeys() {
+        if (mController instanceof BackgroundStateController) {
+            return ((BackgroundStateController<?>) mController).getDependencyKeys();
+        }
+        return Collections.emptyList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void applyState(BackgroundStateController<T> controller,
+            Preference preference, Object state) {
+        controller.applyState(preference, (T) state);
     }
 
     AbstractPreferenceController getController() {
@@ -89,6 +89,7 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
     private final MetricsFeatureProvider mMetricsFeatureProvider;
     private final CategoryManager mCategoryManager;
     private final PackageManager mPackageManager;
+    private final TileDataFetcher mTileDataFetcher = new TileDataFetcher();
 
     public DashboardFeatureProviderImpl(Context context) {
         mContext = context.getApplicationContext();
@@ -246,14 +247,16 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
     }
 
     private void refreshTitle(Uri uri, Preference preference) {
-        ThreadUtils.postOnBackgroundThread(() -> {
-            final Map<String, IContentProvider> providerMap = new ArrayMap<>();
-            final String titleFromUri = TileUtils.getTextFromUri(
-                    mContext, uri, providerMap, META_DATA_PREFERENCE_TITLE);
-            if (!TextUtils.equals(titleFromUri, preference.getTitle())) {
-                ThreadUtils.postOnMainThread(() -> preference.setTitle(titleFromUri));
-            }
-        });
+        mTileDataFetcher.request(Pair.create(preference, METHOD_GET_DYNAMIC_TITLE),
+                uri.getAuthority(), providerMap -> {
+                    final String titleFromUri = TileUtils.getTextFromUri(
+                            mContext, uri, providerMap, META_DATA_PREFERENCE_TITLE);
+                    return () -> {
+                        if (!TextUtils.equals(titleFromUri, preference.getTitle())) {
+                            preference.setTitle(titleFromUri);
+                        }
+                    };
+                });
     }
 
     private DynamicDataObserver bindSummaryAndGetObserver(Preference preference, Tile tile) {
@@ -275,14 +278,16 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
     }
 
     private void refreshSummary(Uri uri, Preference preference) {
-        ThreadUtils.postOnBackgroundThread(() -> {
-            final Map<String, IContentProvider> providerMap = new ArrayMap<>();
-            final String summaryFromUri = TileUtils.getTextFromUri(
-                    mContext, uri, providerMap, META_DATA_PREFERENCE_SUMMARY);
-            if (!TextUtils.equals(summaryFromUri, preference.getSummary())) {
-                ThreadUtils.postOnMainThread(() -> preference.setSummary(summaryFromUri));
-            }
-        });
+        mTileDataFetcher.request(Pair.create(preference, METHOD_GET_DYNAMIC_SUMMARY),
+                uri.getAuthority(), providerMap -> {
+                    final String summaryFromUri = TileUtils.getTextFromUri(
+                            mContext, uri, providerMap, META_DATA_PREFERENCE_SUMMARY);
+                    return () -> {
+                        if (!TextUtils.equals(summaryFromUri, preference.getSummary())) {
+                            preference.setSummary(summaryFromUri);
+                        }
+                    };
+                });
     }
 
     private DynamicDataObserver bindSwitchAndGetObserver(Preference preference, Tile tile) {
@@ -328,15 +333,15 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
     }
 
     private void refreshSwitch(Uri uri, Preference preference) {
-        ThreadUtils.postOnBackgroundThread(() -> {
-            final Map<String, IContentProvider> providerMap = new ArrayMap<>();
-            final boolean checked = TileUtils.getBooleanFromUri(mContext, uri, providerMap,
-                    EXTRA_SWITCH_CHECKED_STATE);
-            ThreadUtils.postOnMainThread(() -> {
-                setSwitchChecked(preference, checked);
-                setSwitchEnabled(preference, true);
-            });
-        });
+        mTileDataFetcher.request(Pair.create(preference, METHOD_IS_CHECKED),
+                uri.getAuthority(), providerMap -> {
+                    final boolean checked = TileUtils.getBooleanFromUri(mContext, uri,
+                            providerMap, EXTRA_SWITCH_CHECKED_STATE);
+                    return () -> {
+                        setSwitchChecked(preference, checked);
+                        setSwitchEnabled(preference, true);
+                    };
+                });
     }
 
     private void setSwitchChecked(Preference pref, boolean checked) {
@@ -365,28 +370,28 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
             setPreferenceIcon(preference, tile, forceRoundedIcon, mContext.getPackageName(),
                     Icon.createWithResource(mContext, android.R.color.transparent));
 
-            ThreadUtils.postOnBackgroundThread(() -> {
-                final Intent intent = tile.getIntent();
-                String packageName = null;
-                if (!TextUtils.isEmpty(intent.getPackage())) {
-                    packageName = intent.getPackage();
-                } else if (intent.getComponent() != null) {
-                    packageName = intent.getComponent().getPackageName();
-                }
-                final Map<String, IContentProvider> providerMap = new ArrayMap<>();
-                final Uri uri = TileUtils.getCompleteUri(tile, META_DATA_PREFERENCE_ICON_URI,
-                        METHOD_GET_PROVIDER_ICON);
-                final Pair<String, Integer> iconInfo = TileUtils.getIconFromUri(
-                        mContext, packageName, uri, providerMap);
-                if (iconInfo == null) {
-                    Log.w(TAG, "Failed to get icon from uri " + uri);
-                    return;
-                }
-                final Icon icon = Icon.createWithResource(iconInfo.first, iconInfo.second);
-                ThreadUtils.postOnMainThread(() -> {
-                    setPreferenceIcon(preference, tile, forceRoundedIcon, iconInfo.first, icon);
-                });
-            });
+            final Uri uri = TileUtils.getCompleteUri(tile, META_DATA_PREFERENCE_ICON_URI,
+                    METHOD_GET_PROVIDER_ICON);
+            mTileDataFetcher.request(Pair.create(preference, METHOD_GET_PROVIDER_ICON),
+                    uri.getAuthority(), providerMap -> {
+                        final Intent intent = tile.getIntent();
+                        String packageName = null;
+                        if (!TextUtils.isEmpty(intent.getPackage())) {
+                            packageName = intent.getPackage();
+                        } else if (intent.getComponent() != null) {
+                            packageName = intent.getComponent().getPackageName();
+                        }
+                        final Pair<String, Integer> iconInfo = TileUtils.getIconFromUri(
+                                mContext, packageName, uri, providerMap);
+                        if (iconInfo == null) {
+                            Log.w(TAG, "Failed to get icon from uri " + uri);
+                            return null;
+                        }
+                        final Icon icon = Icon.createWithResource(iconInfo.first,
+                                iconInfo.second);
+                        return () -> setPreferenceIcon(preference, tile, forceRoundedIcon,
+                                iconInfo.first, icon);
+                    });
             return;
         }
 
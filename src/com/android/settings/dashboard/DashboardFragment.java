@@ -34,6 +34,7 @@ import androidx.preference.SwitchPreference;
 
 import com.android.settings.R;
 import com.android.settings.SettingsPreferenceFragment;
+import com.android.settings.core.BackgroundStateController;
 import com.android.settings.core.BasePreferenceController;
 import com.android.settings.core.CategoryMixin.CategoryHandler;
 import com.android.settings.core.CategoryMixin.CategoryListener;
@@ -47,7 +48,6 @@ import com.android.settingslib.drawer.DashboardCategory;
 import com.android.settingslib.drawer.ProviderTile;
 import com.android.settingslib.drawer.Tile;
 import com.android.settingslib.search.Indexable;
-import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -56,7 +56,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
 
 /**
  * Base fragment for dashboard style UI containing a list of static and dynamic setting items.
@@ -73,6 +72,7 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
             new ArrayMap<>();
     private final List<DynamicDataObserver> mRegisteredObservers = new ArrayList<>();
     private final List<AbstractPreferenceController> mControllers = new ArrayList<>();
+    private final ControllerStateEngine mControllerStateEngine = new ControllerStateEngine();
     @VisibleForTesting
     UiBlockerController mBlockerController;
     private DashboardFeatureProvider mDashboardFeatureProvider;
@@ -216,7 +216,11 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
     @Override
     public void onResume() {
         super.onResume();
-        updatePreferenceStates();
+        if (isParalleledControllers()) {
+            updatePreferenceStatesInParallel();
+        } else {
+            updatePreferenceStates();
+        }
         writeElapsedTimeMetric(SettingsEnums.ACTION_DASHBOARD_VISIBLE_TIME,
                 "isParalleledControllers:" + isParalleledControllers());
     }
@@ -240,6 +244,7 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
     @Override
     public void onStop() {
         super.onStop();
+        mControllerStateEngine.cancel();
         unregisterDynamicDataObservers(new ArrayList<>(mRegisteredObservers));
         if (mListeningToCategoryChange) {
             final Activity activity = getActivity();
@@ -387,32 +392,31 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
 
     /**
      * Use parallel method to update state of each preference managed by PreferenceController.
+     * Controller states are computed in the background and applied together in one main thread
+     * pass, see {@link ControllerStateEngine}. When no controller is a
+     * {@link BackgroundStateController}, this falls back to {@link #updatePreferenceStates()}.
      */
     @VisibleForTesting
-    // To use this parallel approach will cause the side effect of the UI flicker. Such as
-    // the thumb sliding of the toggle button.
     void updatePreferenceStatesInParallel() {
         final PreferenceScreen screen = getPreferenceScreen();
         final Collection<List<AbstractPreferenceController>> controllerLists =
                 mPreferenceControllers.values();
-        final List<ControllerFutureTask> taskList = new ArrayList<>();
+        final List<ControllerTask> taskList = new ArrayList<>();
+        boolean hasBackgroundState = false;
         for (List<AbstractPreferenceController> controllerList : controllerLists) {
             for (AbstractPreferenceController controller : controllerList) {
-                final ControllerFutureTask task = new ControllerFutureTask(
-                        new ControllerTask(controller, screen, mMetricsFeatureProvider,
-                                getMetricsCategory()), null /* result */);
+                final ControllerTask task = new ControllerTask(controller, screen,
+                        mMetricsFeatureProvider, getMetricsCategory());
+                hasBackgroundState |= task.hasBackgroundState();
                 taskList.add(task);
-                ThreadUtils.postOnBackgroundThread(task);
             }
         }
-
-        for (ControllerFutureTask task : taskList) {
-            try {
-                task.get();
-            } catch (InterruptedException | ExecutionException e) {
-                Log.w(TAG, task.getController().getPreferenceKey() + " " + e.getMessage());
-            }
+        if (!hasBackgroundState) {
+            // Nothing to compute off the main thread, apply the states before the first frame.
+            updatePreferenceStates();
+            return;
         }
+        mControllerStateEngine.updateStates(taskList);
     }
 
     /**
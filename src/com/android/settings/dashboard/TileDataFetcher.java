@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import android.content.IContentProvider;
+import android.util.ArrayMap;
+import android.util.Log;
+import android.util.Pair;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fetches the dynamic data of injected tiles in batches.
+ *
+ * <p>The requests made while the main thread handles a message, like binding all the tiles of a
+ * page, are batched. The requests of a batch to the same provider authority are fetched together
+ * by one background task, which acquires the content provider once, and the authorities are
+ * fetched in parallel so that a slow provider only delays its own tiles. The data of each request
+ * is applied as soon as it is fetched, and a request which fails doesn't hold back the others. A request made again before
+ * it is fetched, like by an observer notified many times, replaces the pending one, so it is only
+ * fetched once.
+ */
+class TileDataFetcher {
+    private static final String TAG = "TileDataFetcher";
+
+    /** A request for the dynamic data of a tile. */
+    interface Request {
+        /**
+         * Fetches the data with the providers of {@code providerMap}, and returns how to apply
+         * it on the main thread, or null if there is nothing to apply.
+         */
+        @WorkerThread
+        Runnable fetch(Map<String, IContentProvider> providerMap);
+    }
+
+    // Key: the preference and the method of the request
+    private final Map<Object, Pair<String, Request>> mPendingRequests = new ArrayMap<>();
+    private boolean mFlushScheduled;
+
+    /**
+     * Fetches {@code request} to the provider of {@code authority} with the next batch. A pending
+     * request with the same {@code key} is dropped.
+     */
+    void request(Object key, String authority, Request request) {
+        synchronized (mPendingRequests) {
+            mPendingRequests.put(key, Pair.create(authority, request));
+            if (mFlushScheduled) {
+                return;
+            }
+            mFlushScheduled = true;
+        }
+        scheduleFlush();
+    }
+
+    @VisibleForTesting
+    void scheduleFlush() {
+        ThreadUtils.postOnMainThread(this::flush);
+    }
+
+    @VisibleForTesting
+    void flush() {
+        final Map<String, List<Request>> requestsByAuthority = new LinkedHashMap<>();
+        synchronized (mPendingRequests) {
+            for (Pair<String, Request> request : mPendingRequests.values()) {
+                List<Request> requests = requestsByAuthority.get(request.first);
+                if (requests == null) {
+                    requests = new ArrayList<>();
+                    requestsByAuthority.put(request.first, requests);
+                }
+                requests.add(request.second);
+            }
+            mPendingRequests.clear();
+            mFlushScheduled = false;
+        }
+        for (List<Request> requests : requestsByAuthority.values()) {
+            postFetch(() -> fetch(requests));
+        }
+    }
+
+    @VisibleForTesting
+    void postFetch(Runnable fetch) {
+        ThreadUtils.postOnBackgroundThread(fetch);
+    }
+
+    @WorkerThread
+    private static void fetch(List<Request> requests) {
+        // Shared by the requests to the same authority, the provider is acquired once.
+        final Map<String, IContentProvider> providerMap = new ArrayMap<>();
+        for (Request request : requests) {
+            final Runnable update;
+            try {
+                update = request.fetch(providerMap);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Failed to fetch tile data", e);
+                continue;
+            }
+            if (update != null) {
+                ThreadUtils.postOnMainThread(update);
+            }
+        }
+    }
+}
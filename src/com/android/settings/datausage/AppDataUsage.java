@@ -51,6 +51,7 @@ import com.android.settingslib.net.NetworkCycleDataForUid;
 import com.android.settingslib.net.NetworkCycleDataForUidLoader;
 import com.android.settingslib.net.UidDetail;
 import com.android.settingslib.net.UidDetailProvider;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -104,6 +105,9 @@ public class AppDataUsage extends DataUsageBaseFragment implements OnPreferenceC
     private Context mContext;
     private ArrayList<Long> mCycles;
     private long mSelectedCycle;
+    // The usage of the oldest cycles of mCycles, found in CycleUsageCache when the loader was
+    // created. The loader only queries the cycles before them.
+    private List<NetworkCycleDataForUid> mCachedUsageData;
 
     @Override
     public void onCreate(Bundle icicle) {
@@ -140,6 +144,10 @@ public class AppDataUsage extends DataUsageBaseFragment implements OnPreferenceC
             }
         }
 
+        final Context appContext = mContext.getApplicationContext();
+        final NetworkTemplate template = mTemplate;
+        ThreadUtils.postOnBackgroundThread(() -> CycleUsageCache.load(appContext, template));
+
         mTotalUsage = findPreference(KEY_TOTAL_USAGE);
         mForegroundUsage = findPreference(KEY_FOREGROUND_USAGE);
         mBackgroundUsage = findPreference(KEY_BACKGROUND_USAGE);
@@ -401,15 +409,26 @@ public class AppDataUsage extends DataUsageBaseFragment implements OnPreferenceC
                 } else {
                     builder.addUid(mAppItem.key);
                 }
+                mCachedUsageData = getCachedUsageData();
                 if (mCycles != null) {
-                    builder.setCycles(mCycles);
+                    // The cached cycles are the oldest ones, only query the boundaries before.
+                    builder.setCycles(new ArrayList<>(
+                            mCycles.subList(0, mCycles.size() - mCachedUsageData.size())));
                 }
                 return builder.build();
             }
 
             @Override
             public void onLoadFinished(Loader<List<NetworkCycleDataForUid>> loader,
-                    List<NetworkCycleDataForUid> data) {
+                    List<NetworkCycleDataForUid> loadedData) {
+                cacheUsageData(loadedData);
+                final List<NetworkCycleDataForUid> data;
+                if (mCachedUsageData == null || mCachedUsageData.isEmpty()) {
+                    data = loadedData;
+                } else {
+                    data = new ArrayList<>(loadedData);
+                    data.addAll(mCachedUsageData);
+                }
                 mUsageData = data;
                 mCycleAdapter.updateCycleList(data);
                 if (mSelectedCycle > 0L) {
@@ -436,6 +455,55 @@ public class AppDataUsage extends DataUsageBaseFragment implements OnPreferenceC
             }
         };
 
+    private int[] getUids() {
+        if (mAppItem.category == AppItem.CATEGORY_USER) {
+            final int[] uids = new int[mAppItem.uids.size()];
+            for (int i = 0; i < uids.length; i++) {
+                uids[i] = mAppItem.uids.keyAt(i);
+            }
+            return uids;
+        }
+        return new int[] {mAppItem.key};
+    }
+
+    /**
+     * Returns the cached usage of the oldest cycles of {@link #mCycles}, up to the first cycle
+     * which is not cached. The newest cycle, usually the open one, is always left to the loader.
+     */
+    private List<NetworkCycleDataForUid> getCachedUsageData() {
+        final List<NetworkCycleDataForUid> cachedData = new ArrayList<>();
+        if (mCycles == null) {
+            return cachedData;
+        }
+        final int[] uids = getUids();
+        // The boundaries are from the newest to the oldest, so is the usage data.
+        for (int i = mCycles.size() - 1; i > 1; i--) {
+            final NetworkCycleDataForUid data = CycleUsageCache.getForUids(mTemplate, uids,
+                    mCycles.get(i) /* start */, mCycles.get(i - 1) /* end */);
+            if (data == null) {
+                break;
+            }
+            cachedData.add(0, data);
+        }
+        return cachedData;
+    }
+
+    private void cacheUsageData(List<NetworkCycleDataForUid> data) {
+        if (mCycles == null || data == null || data.isEmpty()) {
+            return;
+        }
+        final Context appContext = mContext.getApplicationContext();
+        final NetworkTemplate template = mTemplate;
+        final int[] uids = getUids();
+        final List<NetworkCycleDataForUid> dataToCache = new ArrayList<>(data);
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final long now = System.currentTimeMillis();
+            for (NetworkCycleDataForUid cycleData : dataToCache) {
+                CycleUsageCache.putForUids(appContext, template, uids, cycleData, now);
+            }
+        });
+    }
+
     private final LoaderManager.LoaderCallbacks<ArraySet<Preference>> mAppPrefCallbacks =
         new LoaderManager.LoaderCallbacks<ArraySet<Preference>>() {
             @Override
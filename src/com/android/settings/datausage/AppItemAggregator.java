@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import static android.net.TrafficStats.UID_REMOVED;
+import static android.net.TrafficStats.UID_TETHERING;
+
+import android.app.usage.NetworkStats;
+import android.app.usage.NetworkStats.Bucket;
+import android.os.Process;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.util.SparseLongArray;
+
+import androidx.annotation.WorkerThread;
+
+import com.android.settingslib.AppItem;
+import com.android.settingslib.net.UidDetailProvider;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collapses the network stats buckets of a cycle into the {@link AppItem AppItems} listed by
+ * {@link DataUsageList}.
+ *
+ * <p>The bytes are first summed per uid in a primitive map, so the collapsing rules only run once
+ * per uid instead of once per bucket. The sums of closed cycles are kept in
+ * {@link CycleUsageCache}.
+ */
+final class AppItemAggregator {
+
+    /** The app items sorted for display, with the largest total of them. */
+    static final class Result {
+        final List<AppItem> mItems;
+        final long mLargest;
+
+        Result(List<AppItem> items, long largest) {
+            mItems = items;
+            mLargest = largest;
+        }
+    }
+
+    private AppItemAggregator() {
+    }
+
+    /**
+     * Sums the received and transmitted bytes of each uid, and closes {@code stats}.
+     */
+    @WorkerThread
+    static SparseLongArray sumBytesPerUid(NetworkStats stats) {
+        final SparseLongArray uidBytes = new SparseLongArray();
+        final Bucket bucket = new Bucket();
+        while (stats.hasNextBucket() && stats.getNextBucket(bucket)) {
+            final int uid = bucket.getUid();
+            final long bytes = bucket.getRxBytes() + bucket.getTxBytes();
+            final int index = uidBytes.indexOfKey(uid);
+            if (index >= 0) {
+                uidBytes.setValueAt(index, uidBytes.valueAt(index) + bytes);
+            } else {
+                uidBytes.put(uid, bytes);
+            }
+        }
+        stats.close();
+        return uidBytes;
+    }
+
+    /**
+     * Collapses the bytes of each uid, as returned by {@link #sumBytesPerUid}, into app items.
+     */
+    @WorkerThread
+    static Result aggregate(SparseLongArray uidBytes, int[] restrictedUids, int currentUserId,
+            UserManager userManager) {
+        final BitSet profiles = new BitSet();
+        for (UserHandle profile : userManager.getUserProfiles()) {
+            profiles.set(profile.getIdentifier());
+        }
+        // Whether the other users seen in the stats still exist.
+        final SparseBooleanArray existingUsers = new SparseBooleanArray();
+
+        final ArrayList<AppItem> items = new ArrayList<>();
+        final SparseArray<AppItem> knownItems = new SparseArray<AppItem>();
+        long largest = 0;
+        for (int i = 0; i < uidBytes.size(); i++) {
+            // Decide how to collapse items together
+            final int uid = uidBytes.keyAt(i);
+            final long bytes = uidBytes.valueAt(i);
+            final int collapseKey;
+            final int category;
+            final int userId = UserHandle.getUserId(uid);
+            if (UserHandle.isApp(uid)) {
+                if (profiles.get(userId)) {
+                    if (userId != currentUserId) {
+                        // Add to a managed user item.
+                        final int managedKey = UidDetailProvider.buildKeyForUser(userId);
+                        largest = accumulate(managedKey, knownItems, uid, bytes,
+                                AppItem.CATEGORY_USER, items, largest);
+                    }
+                    // Add to app item.
+                    collapseKey = uid;
+                    category = AppItem.CATEGORY_APP;
+                } else {
+                    // If it is a removed user add it to the removed users' key
+                    final int userIndex = existingUsers.indexOfKey(userId);
+                    final boolean userExists;
+                    if (userIndex >= 0) {
+                        userExists = existingUsers.valueAt(userIndex);
+                    } else {
+                        userExists = userManager.getUserInfo(userId) != null;
+                        existingUsers.put(userId, userExists);
+                    }
+                    if (!userExists) {
+                        collapseKey = UID_REMOVED;
+                        category = AppItem.CATEGORY_APP;
+                    } else {
+                        // Add to other user item.
+                        collapseKey = UidDetailProvider.buildKeyForUser(userId);
+                        category = AppItem.CATEGORY_USER;
+                    }
+                }
+            } else if (uid == UID_REMOVED || uid == UID_TETHERING
+                    || uid == Process.OTA_UPDATE_UID) {
+                collapseKey = uid;
+                category = AppItem.CATEGORY_APP;
+            } else {
+                collapseKey = Process.SYSTEM_UID;
+                category = AppItem.CATEGORY_APP;
+            }
+            largest = accumulate(collapseKey, knownItems, uid, bytes, category, items, largest);
+        }
+
+        final int restrictedUidsMax = restrictedUids.length;
+        for (int i = 0; i < restrictedUidsMax; ++i) {
+            final int uid = restrictedUids[i];
+            // Only splice in restricted state for current user or managed users
+            if (!profiles.get(UserHandle.getUserId(uid))) {
+                continue;
+            }
+
+            AppItem item = knownItems.get(uid);
+            if (item == null) {
+                item = new AppItem(uid);
+                item.total = -1;
+                items.add(item);
+                knownItems.put(item.key, item);
+            }
+            item.restricted = true;
+        }
+
+        Collections.sort(items);
+        return new Result(items, largest);
+    }
+
+    /**
+     * Accumulate data usage of a uid for the item mapped by the collapse key.
+     * Creates the item if needed.
+     *
+     * @param collapseKey  the collapse key used to map the item.
+     * @param knownItems   collection of known (already existing) items.
+     * @param uid          the uid the data usage belongs to.
+     * @param bytes        the data usage of the uid.
+     * @param itemCategory the item is categorized on the list view by this category. Must be
+     */
+    private static long accumulate(int collapseKey, final SparseArray<AppItem> knownItems,
+            int uid, long bytes, int itemCategory, ArrayList<AppItem> items, long largest) {
+        AppItem item = knownItems.get(collapseKey);
+        if (item == null) {
+            item = new AppItem(collapseKey);
+            item.category = itemCategory;
+            items.add(item);
+            knownItems.put(item.key, item);
+        }
+        item.addUid(uid);
+        item.total += bytes;
+        return Math.max(largest, item.total);
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import android.content.Context;
+import android.net.NetworkTemplate;
+import android.text.format.DateUtils;
+import android.util.AtomicFile;
+import android.util.Log;
+import android.util.LruCache;
+import android.util.SparseLongArray;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.settingslib.net.NetworkCycleDataForUid;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Cache of the usage of the closed cycles of a {@link NetworkTemplate}: the bytes used by each uid,
+ * as summed by {@link AppItemAggregator#sumBytesPerUid} for {@link DataUsageList}, and the
+ * foreground and background bytes of an app, as loaded for {@link AppDataUsage}.
+ *
+ * <p>Only closed cycles are kept: the usage of a cycle that ended no longer changes once the stats
+ * service recorded it, so it doesn't need to be queried again. A cycle is only cached
+ * {@link #SETTLE_DELAY_MS} after its end, once the buckets covering its end are complete. The open
+ * cycle is always queried.
+ *
+ * <p>Each cycle is saved in a small file of the cache dir, named after the template, the uids and
+ * the cycle, so the cache survives the process. The files of a template are read back by
+ * {@link #load} in the background; {@link #get} and {@link #getForUids} only read the memory, so
+ * they can be called on the main thread.
+ */
+final class CycleUsageCache {
+    private static final String TAG = "CycleUsageCache";
+
+    @VisibleForTesting
+    static final int MAX_CYCLE_ENTRIES = 64;
+    // The duration of the uid buckets of the stats service, which is longer than its poll
+    // interval.
+    @VisibleForTesting
+    static final long SETTLE_DELAY_MS = 2 * DateUtils.HOUR_IN_MILLIS;
+    @VisibleForTesting
+    static final String DIR_NAME = "cycle_usage";
+
+    private static final int VERSION = 1;
+    private static final String SCOPE_ALL_UIDS = "all";
+    private static final String SCOPE_UIDS_PREFIX = "uids";
+    private static final int KEY_BACKGROUND = 0;
+    private static final int KEY_FOREGROUND = 1;
+
+    // Key: the name of the file of the cycle
+    private static final LruCache<String, SparseLongArray> sUsage =
+            new LruCache<>(MAX_CYCLE_ENTRIES);
+
+    private CycleUsageCache() {
+    }
+
+    /**
+     * Returns the bytes used by each uid over the cycle, or null if the cycle is not cached. The
+     * returned array must not be changed.
+     */
+    static SparseLongArray get(NetworkTemplate template, long start, long end) {
+        if (template == null) {
+            return null;
+        }
+        return sUsage.get(getFileName(template, SCOPE_ALL_UIDS, start, end));
+    }
+
+    /**
+     * Caches the bytes used by each uid over the cycle, if the cycle ended at least
+     * {@link #SETTLE_DELAY_MS} before {@code now}. {@code uidBytes} must not be changed after this
+     * call.
+     */
+    @WorkerThread
+    static void put(Context context, NetworkTemplate template, long start, long end,
+            SparseLongArray uidBytes, long now) {
+        if (template == null || now - end < SETTLE_DELAY_MS) {
+            return;
+        }
+        put(context, getFileName(template, SCOPE_ALL_UIDS, start, end), uidBytes);
+    }
+
+    /**
+     * Returns the usage of {@code uids} over the cycle, or null if the cycle is not cached.
+     */
+    static NetworkCycleDataForUid getForUids(NetworkTemplate template, int[] uids, long start,
+            long end) {
+        if (template == null) {
+            return null;
+        }
+        final SparseLongArray usage = sUsage.get(
+                getFileName(template, getUidsScope(uids), start, end));
+        if (usage == null) {
+            return null;
+        }
+        final long backgroundBytes = usage.get(KEY_BACKGROUND);
+        final long foregroundBytes = usage.get(KEY_FOREGROUND);
+        final NetworkCycleDataForUid.Builder builder = new NetworkCycleDataForUid.Builder();
+        builder.setBackgroundUsage(backgroundBytes).setForegroundUsage(foregroundBytes);
+        builder.setStartTime(start).setEndTime(end)
+                .setTotalUsage(backgroundBytes + foregroundBytes);
+        return builder.build();
+    }
+
+    /**
+     * Caches the usage of {@code uids} over the cycle of {@code data}, if the cycle ended at least
+     * {@link #SETTLE_DELAY_MS} before {@code now}.
+     */
+    @WorkerThread
+    static void putForUids(Context context, NetworkTemplate template, int[] uids,
+            NetworkCycleDataForUid data, long now) {
+        if (template == null || now - data.getEndTime() < SETTLE_DELAY_MS) {
+            return;
+        }
+        final SparseLongArray usage = new SparseLongArray(2);
+        usage.put(KEY_BACKGROUND, data.getBackgroudUsage());
+        usage.put(KEY_FOREGROUND, data.getForegroudUsage());
+        put(context, getFileName(template, getUidsScope(uids), data.getStartTime(),
+                data.getEndTime()), usage);
+    }
+
+    /**
+     * Reads the cycles of {@code template} saved by an earlier process back into the memory.
+     */
+    @WorkerThread
+    static void load(Context context, NetworkTemplate template) {
+        if (template == null) {
+            return;
+        }
+        final String prefix = getTemplateKey(template) + "_";
+        final File[] files = getDir(context).listFiles(
+                (dir, name) -> name.startsWith(prefix));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (sUsage.get(file.getName()) != null) {
+                continue;
+            }
+            final SparseLongArray usage = read(new AtomicFile(file));
+            if (usage != null) {
+                sUsage.put(file.getName(), usage);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    static void clear() {
+        sUsage.evictAll();
+    }
+
+    private static void put(Context context, String fileName, SparseLongArray usage) {
+        sUsage.put(fileName, usage);
+        final File dir = getDir(context);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.w(TAG, "Failed to create " + dir);
+            return;
+        }
+        write(new AtomicFile(new File(dir, fileName)), usage);
+        trim(dir);
+    }
+
+    private static SparseLongArray read(AtomicFile file) {
+        try (DataInputStream in = new DataInputStream(file.openRead())) {
+            if (in.readInt() != VERSION) {
+                file.delete();
+                return null;
+            }
+            final int size = in.readInt();
+            final SparseLongArray usage = new SparseLongArray(size);
+            for (int i = 0; i < size; i++) {
+                final int key = in.readInt();
+                usage.put(key, in.readLong());
+            }
+            return usage;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read " + file.getBaseFile(), e);
+            file.delete();
+            return null;
+        }
+    }
+
+    private static void write(AtomicFile file, SparseLongArray usage) {
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            final DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(VERSION);
+            data.writeInt(usage.size());
+            for (int i = 0; i < usage.size(); i++) {
+                data.writeInt(usage.keyAt(i));
+                data.writeLong(usage.valueAt(i));
+            }
+            data.flush();
+            file.finishWrite(out);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write " + file.getBaseFile(), e);
+            file.failWrite(out);
+        }
+    }
+
+    // Keeps the files of the last MAX_CYCLE_ENTRIES cycles.
+    private static void trim(File dir) {
+        final File[] files = dir.listFiles();
+        if (files == null || files.length <= MAX_CYCLE_ENTRIES) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+        for (int i = MAX_CYCLE_ENTRIES; i < files.length; i++) {
+            files[i].delete();
+        }
+    }
+
+    private static File getDir(Context context) {
+        return new File(context.getCacheDir(), DIR_NAME);
+    }
+
+    private static String getFileName(NetworkTemplate template, String scope, long start,
+            long end) {
+        return getTemplateKey(template) + "_" + scope + "_" + start + "_" + end;
+    }
+
+    private static String getUidsScope(int[] uids) {
+        final int[] sortedUids = uids.clone();
+        Arrays.sort(sortedUids);
+        final StringBuilder scope = new StringBuilder(SCOPE_UIDS_PREFIX);
+        for (int uid : sortedUids) {
+            scope.append('-').append(uid);
+        }
+        return scope.toString();
+    }
+
+    // The subscriber ids are scrubbed by NetworkTemplate#toString, while #hashCode covers all the
+    // fields of the template. The digest keeps them out of the file names.
+    private static String getTemplateKey(NetworkTemplate template) {
+        final String key = template.toString() + "|" + template.hashCode();
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(key.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+}
@@ -17,31 +17,25 @@ package com.android.settings.datausage;
 import static android.net.NetworkPolicyManager.POLICY_REJECT_METERED_BACKGROUND;
 import static android.net.NetworkStatsHistory.FIELD_RX_BYTES;
 import static android.net.NetworkStatsHistory.FIELD_TX_BYTES;
-import static android.net.TrafficStats.UID_REMOVED;
-import static android.net.TrafficStats.UID_TETHERING;
 
 import android.app.Activity;
 import android.app.ActivityManager;
 import android.app.settings.SettingsEnums;
 import android.app.usage.NetworkStats;
-import android.app.usage.NetworkStats.Bucket;
 import android.content.Context;
 import android.content.Intent;
-import android.content.pm.UserInfo;
 import android.graphics.Color;
 import android.net.ConnectivityManager;
 import android.net.NetworkPolicy;
 import android.net.NetworkTemplate;
 import android.os.Bundle;
-import android.os.Process;
-import android.os.UserHandle;
 import android.os.UserManager;
 import android.provider.Settings;
 import android.telephony.SubscriptionInfo;
 import android.telephony.SubscriptionManager;
 import android.util.FeatureFlagUtils;
 import android.util.Log;
-import android.util.SparseArray;
+import android.util.SparseLongArray;
 import android.view.View;
 import android.view.View.AccessibilityDelegate;
 import android.view.accessibility.AccessibilityEvent;
@@ -67,10 +61,11 @@ import com.android.settingslib.net.NetworkCycleChartData;
 import com.android.settingslib.net.NetworkCycleChartDataLoader;
 import com.android.settingslib.net.NetworkStatsSummaryLoader;
 import com.android.settingslib.net.UidDetailProvider;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Panel showing data usage history across various networks, including options
@@ -93,6 +88,9 @@ public class DataUsageList extends DataUsageBaseFragment
     private static final String KEY_APP = "app";
     private static final String KEY_FIELDS = "fields";
 
+    // Number of app preferences added per main thread message.
+    private static final int APP_PREFERENCE_BATCH_SIZE = 20;
+
     @VisibleForTesting
     static final int LOADER_CHART_DATA = 2;
     @VisibleForTesting
@@ -120,6 +118,12 @@ public class DataUsageList extends DataUsageBaseFragment
     private Preference mUsageAmount;
     private PreferenceGroup mApps;
     private View mHeader;
+    // Bumped when the app list is bound, drops the pending preferences of older stats.
+    @VisibleForTesting
+    int mBindGeneration;
+    // The cycle of the summary loader.
+    private long mSummaryStart;
+    private long mSummaryEnd;
 
     @Override
     public int getMetricsCategory() {
@@ -154,6 +158,10 @@ public class DataUsageList extends DataUsageBaseFragment
 
         processArgument();
         mDataStateListener = new MobileDataEnabledListener(activity, this);
+
+        final Context appContext = activity.getApplicationContext();
+        final NetworkTemplate template = mTemplate;
+        ThreadUtils.postOnBackgroundThread(() -> CycleUsageCache.load(appContext, template));
     }
 
     @Override
@@ -341,9 +349,19 @@ public class DataUsageList extends DataUsageBaseFragment
     private void updateDetailData() {
         if (LOGD) Log.d(TAG, "updateDetailData()");
 
-        // kick off loader for detailed stats
-        getLoaderManager().restartLoader(LOADER_SUMMARY, null /* args */,
-                mNetworkStatsDetailCallbacks);
+        mSummaryStart = mChart.getInspectStart();
+        mSummaryEnd = mChart.getInspectEnd();
+        final SparseLongArray cachedUidBytes =
+                CycleUsageCache.get(mTemplate, mSummaryStart, mSummaryEnd);
+        if (cachedUidBytes != null) {
+            // The cycle is closed, its usage can't have changed since it was loaded.
+            getLoaderManager().destroyLoader(LOADER_SUMMARY);
+            bindUidBytes(cachedUidBytes);
+        } else {
+            // kick off loader for detailed stats
+            getLoaderManager().restartLoader(LOADER_SUMMARY, null /* args */,
+                    mNetworkStatsDetailCallbacks);
+        }
 
         final long totalBytes = mCycleData != null && !mCycleData.isEmpty()
             ? mCycleData.get(mCycleSpinner.getSelectedItemPosition()).getTotalUsage() : 0;
@@ -352,9 +370,11 @@ public class DataUsageList extends DataUsageBaseFragment
     }
 
     /**
-     * Bind the given {@link NetworkStats}, or {@code null} to clear list.
+     * Bind the given {@link NetworkStats}, or {@code null} to clear list. The stats are aggregated
+     * in the background, then the app list is added a few preferences at a time, top users first.
      */
-    private void bindStats(NetworkStats stats, int[] restrictedUids) {
+    private void bindStats(NetworkStats stats) {
+        final int generation = ++mBindGeneration;
         mApps.removeAll();
         if (stats == null) {
             if (LOGD) {
@@ -363,76 +383,50 @@ public class DataUsageList extends DataUsageBaseFragment
             return;
         }
 
-        final ArrayList<AppItem> items = new ArrayList<>();
-        long largest = 0;
+        final Context appContext = getContext().getApplicationContext();
+        final NetworkTemplate template = mTemplate;
+        final long start = mSummaryStart;
+        final long end = mSummaryEnd;
+        aggregateInBackground(generation, () -> {
+            final SparseLongArray uidBytes = AppItemAggregator.sumBytesPerUid(stats);
+            CycleUsageCache.put(appContext, template, start, end, uidBytes,
+                    System.currentTimeMillis());
+            return uidBytes;
+        });
+    }
+
+    /**
+     * Bind the bytes used by each uid over a cycle, as cached by {@link CycleUsageCache}.
+     */
+    private void bindUidBytes(SparseLongArray uidBytes) {
+        final int generation = ++mBindGeneration;
+        mApps.removeAll();
+        aggregateInBackground(generation, () -> uidBytes);
+    }
 
+    private void aggregateInBackground(int generation, Supplier<SparseLongArray> uidBytes) {
         final int currentUserId = ActivityManager.getCurrentUser();
         final UserManager userManager = UserManager.get(getContext());
-        final List<UserHandle> profiles = userManager.getUserProfiles();
-        final SparseArray<AppItem> knownItems = new SparseArray<AppItem>();
-
-        final Bucket bucket = new Bucket();
-        while (stats.hasNextBucket() && stats.getNextBucket(bucket)) {
-            // Decide how to collapse items together
-            final int uid = bucket.getUid();
-            final int collapseKey;
-            final int category;
-            final int userId = UserHandle.getUserId(uid);
-            if (UserHandle.isApp(uid)) {
-                if (profiles.contains(new UserHandle(userId))) {
-                    if (userId != currentUserId) {
-                        // Add to a managed user item.
-                        final int managedKey = UidDetailProvider.buildKeyForUser(userId);
-                        largest = accumulate(managedKey, knownItems, bucket,
-                            AppItem.CATEGORY_USER, items, largest);
-                    }
-                    // Add to app item.
-                    collapseKey = uid;
-                    category = AppItem.CATEGORY_APP;
-                } else {
-                    // If it is a removed user add it to the removed users' key
-                    final UserInfo info = userManager.getUserInfo(userId);
-                    if (info == null) {
-                        collapseKey = UID_REMOVED;
-                        category = AppItem.CATEGORY_APP;
-                    } else {
-                        // Add to other user item.
-                        collapseKey = UidDetailProvider.buildKeyForUser(userId);
-                        category = AppItem.CATEGORY_USER;
-                    }
-                }
-            } else if (uid == UID_REMOVED || uid == UID_TETHERING
-                    || uid == Process.OTA_UPDATE_UID) {
-                collapseKey = uid;
-                category = AppItem.CATEGORY_APP;
-            } else {
-                collapseKey = android.os.Process.SYSTEM_UID;
-                category = AppItem.CATEGORY_APP;
-            }
-            largest = accumulate(collapseKey, knownItems, bucket, category, items, largest);
-        }
-        stats.close();
-
-        final int restrictedUidsMax = restrictedUids.length;
-        for (int i = 0; i < restrictedUidsMax; ++i) {
-            final int uid = restrictedUids[i];
-            // Only splice in restricted state for current user or managed users
-            if (!profiles.contains(new UserHandle(UserHandle.getUserId(uid)))) {
-                continue;
-            }
+        ThreadUtils.postOnBackgroundThread(() -> {
+            // The restricted state isn't part of the cached usage, always read the live policy.
+            final int[] restrictedUids = services.mPolicyManager.getUidsWithPolicy(
+                    POLICY_REJECT_METERED_BACKGROUND);
+            final AppItemAggregator.Result result = AppItemAggregator.aggregate(
+                    uidBytes.get(), restrictedUids, currentUserId, userManager);
+            ThreadUtils.postOnMainThread(() -> addAppPreferences(generation, result, 0));
+        });
+    }
 
-            AppItem item = knownItems.get(uid);
-            if (item == null) {
-                item = new AppItem(uid);
-                item.total = -1;
-                items.add(item);
-                knownItems.put(item.key, item);
-            }
-            item.restricted = true;
+    @VisibleForTesting
+    void addAppPreferences(int generation, AppItemAggregator.Result result, int start) {
+        if (generation != mBindGeneration || getContext() == null) {
+            // The list was rebound or the page is gone.
+            return;
         }
-
-        Collections.sort(items);
-        for (int i = 0; i < items.size(); i++) {
+        final List<AppItem> items = result.mItems;
+        final long largest = result.mLargest;
+        final int end = Math.min(start + APP_PREFERENCE_BATCH_SIZE, items.size());
+        for (int i = start; i < end; i++) {
             final int percentTotal = largest != 0 ? (int) (items.get(i).total * 100 / largest) : 0;
             final AppDataUsagePreference preference = new AppDataUsagePreference(getContext(),
                     items.get(i), percentTotal, mUidDetailProvider);
@@ -447,6 +441,22 @@ public class DataUsageList extends DataUsageBaseFragment
             });
             mApps.addPreference(preference);
         }
+        updateEmptyVisible();
+        if (end < items.size()) {
+            ThreadUtils.postOnMainThread(() -> addAppPreferences(generation, result, end));
+        }
+    }
+
+    private void updateEmptyVisible() {
+        if ((mApps.getPreferenceCount() != 0) !=
+                (getPreferenceScreen().getPreferenceCount() != 0)) {
+            if (mApps.getPreferenceCount() != 0) {
+                getPreferenceScreen().addPreference(mUsageAmount);
+                getPreferenceScreen().addPreference(mApps);
+            } else {
+                getPreferenceScreen().removeAll();
+            }
+        }
     }
 
     @VisibleForTesting
@@ -475,30 +485,6 @@ public class DataUsageList extends DataUsageBaseFragment
                 .launch();
     }
 
-    /**
-     * Accumulate data usage of a network stats entry for the item mapped by the collapse key.
-     * Creates the item if needed.
-     *
-     * @param collapseKey  the collapse key used to map the item.
-     * @param knownItems   collection of known (already existing) items.
-     * @param bucket       the network stats bucket to extract data usage from.
-     * @param itemCategory the item is categorized on the list view by this category. Must be
-     */
-    private static long accumulate(int collapseKey, final SparseArray<AppItem> knownItems,
-            Bucket bucket, int itemCategory, ArrayList<AppItem> items, long largest) {
-        final int uid = bucket.getUid();
-        AppItem item = knownItems.get(collapseKey);
-        if (item == null) {
-            item = new AppItem(collapseKey);
-            item.category = itemCategory;
-            items.add(item);
-            knownItems.put(item.key, item);
-        }
-        item.addUid(uid);
-        item.total += bucket.getRxBytes() + bucket.getTxBytes();
-        return Math.max(largest, item.total);
-    }
-
     private OnItemSelectedListener mCycleListener = new OnItemSelectedListener() {
         @Override
         public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
@@ -554,36 +540,21 @@ public class DataUsageList extends DataUsageBaseFragment
         @Override
         public Loader<NetworkStats> onCreateLoader(int id, Bundle args) {
             return new NetworkStatsSummaryLoader.Builder(getContext())
-                    .setStartTime(mChart.getInspectStart())
-                    .setEndTime(mChart.getInspectEnd())
+                    .setStartTime(mSummaryStart)
+                    .setEndTime(mSummaryEnd)
                     .setNetworkTemplate(mTemplate)
                     .build();
         }
 
         @Override
         public void onLoadFinished(Loader<NetworkStats> loader, NetworkStats data) {
-            final int[] restrictedUids = services.mPolicyManager.getUidsWithPolicy(
-                    POLICY_REJECT_METERED_BACKGROUND);
-            bindStats(data, restrictedUids);
-            updateEmptyVisible();
+            bindStats(data);
         }
 
         @Override
         public void onLoaderReset(Loader<NetworkStats> loader) {
-            bindStats(null, new int[0]);
+            bindStats(null);
             updateEmptyVisible();
         }
-
-        private void updateEmptyVisible() {
-            if ((mApps.getPreferenceCount() != 0) !=
-                    (getPreferenceScreen().getPreferenceCount() != 0)) {
-                if (mApps.getPreferenceCount() != 0) {
-                    getPreferenceScreen().addPreference(mUsageAmount);
-                    getPreferenceScreen().addPreference(mApps);
-                } else {
-                    getPreferenceScreen().removeAll();
-                }
-            }
-        }
     };
 }
@@ -24,6 +24,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.icu.util.TimeZone;
+import android.net.Uri;
 import android.os.Bundle;
 import android.provider.Settings;
 import android.util.Log;
@@ -45,6 +46,7 @@ import com.android.settingslib.core.AbstractPreferenceController;
 import com.android.settingslib.search.SearchIndexable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -404,5 +406,11 @@ public class TimeZoneSettings extends DashboardFragment {
                             Settings.Global.AUTO_TIME_ZONE, 1);
                     return autoTimeZone == 1 ? false : true;
                 }
+
+                @Override
+                protected List<Uri> getIndexInvalidationUris() {
+                    return Arrays.asList(
+                            Settings.Global.getUriFor(Settings.Global.AUTO_TIME_ZONE));
+                }
             };
 }
@@ -39,6 +39,7 @@ import com.android.settings.dashboard.DashboardFragment;
 import com.android.settings.dashboard.profileselector.ProfileSelectFragment;
 import com.android.settings.deviceinfo.storage.SecondaryUserController;
 import com.android.settings.deviceinfo.storage.StorageAsyncLoader;
+import com.android.settings.deviceinfo.storage.StorageCacheHelper;
 import com.android.settings.deviceinfo.storage.StorageEntry;
 import com.android.settings.deviceinfo.storage.StorageItemPreferenceController;
 import com.android.settings.deviceinfo.storage.UserIconLoader;
@@ -50,6 +51,7 @@ import com.android.settingslib.core.AbstractPreferenceController;
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 import com.android.settingslib.deviceinfo.PrivateStorageInfo;
 import com.android.settingslib.deviceinfo.StorageManagerVolumeProvider;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -85,12 +87,17 @@ public class StorageCategoryFragment extends DashboardFragment
     private StorageEntry mSelectedStorageEntry;
     private PrivateStorageInfo mStorageInfo;
     private SparseArray<StorageAsyncLoader.StorageResult> mAppsResult;
+    // Set while the cached sizes are shown, until they are loaded again.
+    private boolean mStorageInfoRefreshing;
+    private boolean mAppsResultRefreshing;
+    private boolean mFilesRefreshing;
 
     private StorageItemPreferenceController mPreferenceController;
     private List<AbstractPreferenceController> mSecondaryUsers;
     private boolean mIsWorkProfile;
     private int mUserId;
     private Preference mFreeUpSpacePreference;
+    private StorageCacheHelper mStorageCacheHelper;
 
     /**
      * Refresh UI for specified storageEntry.
@@ -113,13 +120,28 @@ public class StorageCategoryFragment extends DashboardFragment
             return;
         }
         if (mSelectedStorageEntry.isPrivate()) {
-            mStorageInfo = null;
-            mAppsResult = null;
-            maybeSetLoading(isQuotaSupported());
-
-            // To prevent flicker, sets null volume to hide category preferences.
-            // onReceivedSizes will setVolume with the volume of selected storage.
-            mPreferenceController.setVolume(null);
+            // Shows the last loaded sizes, marked as refreshing, while they are loaded again.
+            // Each of them is updated as soon as its loader finishes, the file sizes as soon as
+            // they are loaded.
+            mStorageInfo = mStorageCacheHelper.retrieveStorageInfo(
+                    mSelectedStorageEntry.getFsUuid());
+            mAppsResult = mStorageCacheHelper.retrieveStorageResult(
+                    mSelectedStorageEntry.getFsUuid(), mUserId);
+            final boolean hasCachedSizes = mStorageInfo != null && mAppsResult != null;
+            mStorageInfoRefreshing = hasCachedSizes;
+            mAppsResultRefreshing = hasCachedSizes;
+            mFilesRefreshing = hasCachedSizes;
+            if (hasCachedSizes) {
+                onReceivedSizes();
+            } else {
+                mStorageInfo = null;
+                mAppsResult = null;
+                maybeSetLoading(isQuotaSupported());
+
+                // To prevent flicker, sets null volume to hide category preferences.
+                // onReceivedSizes will setVolume with the volume of selected storage.
+                mPreferenceController.setVolume(null);
+            }
 
             // Stats data is only available on private volumes.
             getLoaderManager().restartLoader(STORAGE_JOB_ID, Bundle.EMPTY, this);
@@ -154,6 +176,7 @@ public class StorageCategoryFragment extends DashboardFragment
         // These member variables are initialized befoer super.onAttach for
         // createPreferenceControllers to work correctly.
         mUserManager = context.getSystemService(UserManager.class);
+        mStorageCacheHelper = new StorageCacheHelper(context);
         mIsWorkProfile = getArguments().getInt(ProfileSelectFragment.EXTRA_PROFILE)
                 == ProfileSelectFragment.ProfileType.WORK;
         mUserId = Utils.getCurrentUserId(mUserManager, mIsWorkProfile);
@@ -207,6 +230,9 @@ public class StorageCategoryFragment extends DashboardFragment
         }
 
         mPreferenceController.onLoadFinished(mAppsResult, mUserId);
+        // The system size is derived from both the volume and the apps sizes.
+        mPreferenceController.setRefreshing(mFilesRefreshing, mAppsResultRefreshing,
+                mAppsResultRefreshing || mStorageInfoRefreshing);
         updateSecondaryUserControllers(mSecondaryUsers, mAppsResult);
         setSecondaryUsersVisible(true);
     }
@@ -260,16 +286,41 @@ public class StorageCategoryFragment extends DashboardFragment
     public Loader<SparseArray<StorageAsyncLoader.StorageResult>> onCreateLoader(int id,
             Bundle args) {
         final Context context = getContext();
-        return new StorageAsyncLoader(context, mUserManager,
+        final StorageAsyncLoader loader = new StorageAsyncLoader(context, mUserManager,
                 mSelectedStorageEntry.getFsUuid(),
                 new StorageStatsSource(context),
                 context.getPackageManager());
+        loader.setFilesSizesListener((userId, result) -> ThreadUtils.postOnMainThread(
+                () -> onFilesSizesLoaded(loader, userId, result)));
+        return loader;
+    }
+
+    /** Updates the cached file sizes of {@code userId} with the ones just loaded. */
+    private void onFilesSizesLoaded(Loader<?> loader, int userId,
+            StorageAsyncLoader.StorageResult filesResult) {
+        // Once the apps are loaded, the file sizes are up to date already.
+        if (!mAppsResultRefreshing || getView() == null
+                || getLoaderManager().getLoader(STORAGE_JOB_ID) != loader) {
+            return;
+        }
+        final StorageAsyncLoader.StorageResult result = mAppsResult.get(userId);
+        if (result == null) {
+            return;
+        }
+        result.copyFilesSizesFrom(filesResult);
+        if (userId == mUserId) {
+            mFilesRefreshing = false;
+        }
+        onReceivedSizes();
     }
 
     @Override
     public void onLoadFinished(Loader<SparseArray<StorageAsyncLoader.StorageResult>> loader,
             SparseArray<StorageAsyncLoader.StorageResult> data) {
         mAppsResult = data;
+        mAppsResultRefreshing = false;
+        mFilesRefreshing = false;
+        mStorageCacheHelper.cacheStorageResult(mSelectedStorageEntry.getFsUuid(), data);
         onReceivedSizes();
     }
 
@@ -400,6 +451,9 @@ public class StorageCategoryFragment extends DashboardFragment
             }
 
             mStorageInfo = privateStorageInfo;
+            mStorageInfoRefreshing = false;
+            mStorageCacheHelper.cacheStorageInfo(mSelectedStorageEntry.getFsUuid(),
+                    privateStorageInfo);
             onReceivedSizes();
         }
     }
@@ -35,6 +35,7 @@ public class StorageItemPreference extends Preference {
     private static final int PROGRESS_MAX = 100;
     private int mProgressPercent = UNINITIALIZED;
     private long mStorageSize;
+    private boolean mRefreshing;
 
     public StorageItemPreference(Context context) {
         this(context, null);
@@ -47,7 +48,7 @@ public class StorageItemPreference extends Preference {
 
     public void setStorageSize(long size, long total) {
         mStorageSize = size;
-        setSummary(StorageUtils.getStorageSizeLabel(getContext(), size));
+        updateSummary();
 
         if (total == 0) {
             mProgressPercent = 0;
@@ -61,6 +62,28 @@ public class StorageItemPreference extends Preference {
         return mStorageSize;
     }
 
+    /**
+     * Marks the storage size as refreshing, while a cached size is shown and the new one is
+     * loading.
+     */
+    public void setRefreshing(boolean refreshing) {
+        if (mRefreshing == refreshing) {
+            return;
+        }
+        mRefreshing = refreshing;
+        updateSummary();
+    }
+
+    public boolean isRefreshing() {
+        return mRefreshing;
+    }
+
+    private void updateSummary() {
+        final String size = StorageUtils.getStorageSizeLabel(getContext(), mStorageSize);
+        setSummary(mRefreshing
+                ? getContext().getString(R.string.storage_size_refreshing, size) : size);
+    }
+
     protected void updateProgressBar() {
         if (mProgressBar == null || mProgressPercent == UNINITIALIZED)
             return;
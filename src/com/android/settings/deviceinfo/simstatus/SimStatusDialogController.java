@@ -29,7 +29,6 @@ import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 import android.content.res.Resources;
 import android.os.IBinder;
-import android.os.PersistableBundle;
 import android.os.RemoteException;
 import android.telephony.AccessNetworkConstants;
 import android.telephony.Annotation;
@@ -60,6 +59,7 @@ import androidx.lifecycle.LifecycleObserver;
 import androidx.lifecycle.OnLifecycleEvent;
 
 import com.android.settings.R;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settingslib.DeviceInfoUtils;
 import com.android.settingslib.Utils;
 import com.android.settingslib.core.lifecycle.Lifecycle;
@@ -485,11 +485,11 @@ public class SimStatusDialogController implements LifecycleObserver {
         boolean showSignalStrength = true;
         if (mSubscriptionInfo != null) {
             final int subscriptionId = mSubscriptionInfo.getSubscriptionId();
-            final PersistableBundle carrierConfig =
-                    mCarrierConfigManager.getConfigForSubId(subscriptionId);
-            if (carrierConfig != null) {
-                showSignalStrength = carrierConfig.getBoolean(
-                        CarrierConfigManager.KEY_SHOW_SIGNAL_STRENGTH_IN_SIM_STATUS_BOOL);
+            if (CarrierConfigCache.hasConfig(mContext, mCarrierConfigManager, subscriptionId)) {
+                showSignalStrength = CarrierConfigCache.getBoolean(mContext,
+                        mCarrierConfigManager, subscriptionId,
+                        CarrierConfigManager.KEY_SHOW_SIGNAL_STRENGTH_IN_SIM_STATUS_BOOL,
+                        false /* defaultValue */);
             }
         }
         if (!showSignalStrength) {
@@ -557,12 +557,9 @@ public class SimStatusDialogController implements LifecycleObserver {
             dataNetworkTypeName = "NR NSA";
         }
 
-        boolean show4GForLTE = false;
-        final PersistableBundle carrierConfig = mCarrierConfigManager.getConfigForSubId(subId);
-        if (carrierConfig != null) {
-            show4GForLTE = carrierConfig.getBoolean(
-                    CarrierConfigManager.KEY_SHOW_4G_FOR_LTE_DATA_ICON_BOOL);
-        }
+        final boolean show4GForLTE = CarrierConfigCache.getBoolean(mContext,
+                mCarrierConfigManager, subId,
+                CarrierConfigManager.KEY_SHOW_4G_FOR_LTE_DATA_ICON_BOOL, false /* defaultValue */);
 
         if (show4GForLTE) {
             if ("LTE".equals(dataNetworkTypeName)) {
@@ -593,12 +590,9 @@ public class SimStatusDialogController implements LifecycleObserver {
         boolean showIccId = false;
         if (mSubscriptionInfo != null) {
             final int subscriptionId = mSubscriptionInfo.getSubscriptionId();
-            final PersistableBundle carrierConfig =
-                    mCarrierConfigManager.getConfigForSubId(subscriptionId);
-            if (carrierConfig != null) {
-                showIccId = carrierConfig.getBoolean(
-                        CarrierConfigManager.KEY_SHOW_ICCID_IN_SIM_STATUS_BOOL);
-            }
+            showIccId = CarrierConfigCache.getBoolean(mContext, mCarrierConfigManager,
+                    subscriptionId, CarrierConfigManager.KEY_SHOW_ICCID_IN_SIM_STATUS_BOOL,
+                    false /* defaultValue */);
         }
         if (!showIccId) {
             mDialog.removeSettingFromScreen(ICCID_INFO_LABEL_ID);
@@ -668,12 +662,10 @@ public class SimStatusDialogController implements LifecycleObserver {
         if (mSubscriptionInfo == null) {
             return false;
         }
-        final int subscriptionId = mSubscriptionInfo.getSubscriptionId();
-        final PersistableBundle carrierConfig =
-                mCarrierConfigManager.getConfigForSubId(subscriptionId);
-        return carrierConfig == null ? false :
-                carrierConfig.getBoolean(
-                        CarrierConfigManager.KEY_SHOW_IMS_REGISTRATION_STATUS_BOOL);
+        return CarrierConfigCache.getBoolean(mContext, mCarrierConfigManager,
+                mSubscriptionInfo.getSubscriptionId(),
+                CarrierConfigManager.KEY_SHOW_IMS_REGISTRATION_STATUS_BOOL,
+                false /* defaultValue */);
     }
 
     private void updateImsRegistrationState() {
@@ -38,13 +38,18 @@ import android.provider.MediaStore.MediaColumns;
 import android.util.ArraySet;
 import android.util.Log;
 import android.util.SparseArray;
+import android.util.SparseLongArray;
 
 import com.android.settingslib.applications.StorageStatsSource;
 import com.android.settingslib.utils.AsyncLoaderCompat;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * StorageAsyncLoader is a Loader which loads categorized app information and external stats for all
@@ -58,7 +63,7 @@ public class StorageAsyncLoader
     private String mUuid;
     private StorageStatsSource mStatsManager;
     private PackageManager mPackageManager;
-    private ArraySet<String> mSeenPackages;
+    private FilesSizesListener mFilesSizesListener;
 
     public StorageAsyncLoader(Context context, UserManager userManager,
             String uuid, StorageStatsSource source, PackageManager pm) {
@@ -69,13 +74,19 @@ public class StorageAsyncLoader
         mPackageManager = pm;
     }
 
+    /**
+     * Sets the listener notified of the file sizes of each user, before its apps are loaded.
+     */
+    public void setFilesSizesListener(FilesSizesListener listener) {
+        mFilesSizesListener = listener;
+    }
+
     @Override
     public SparseArray<StorageResult> loadInBackground() {
         return getStorageResultsForUsers();
     }
 
     private SparseArray<StorageResult> getStorageResultsForUsers() {
-        mSeenPackages = new ArraySet<>();
         final SparseArray<StorageResult> results = new SparseArray<>();
         final List<UserInfo> infos = mUserManager.getUsers();
 
@@ -83,37 +94,63 @@ public class StorageAsyncLoader
         Collections.sort(infos,
                 (userInfo, otherUser) -> Integer.compare(userInfo.id, otherUser.id));
 
+        // The users don't depend on each other, so they are loaded concurrently. Only the
+        // duplicate code size depends on the order of the users, it is counted afterwards.
+        final List<Future<UserStorage>> futures = new ArrayList<>(infos.size());
         for (UserInfo info : infos) {
-            final StorageResult result = getAppsAndGamesSize(info.id);
-
-            result.imagesSize = getFilesSize(info.id, MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
-                    null /* queryArgs */);
-            result.videosSize = getFilesSize(info.id, MediaStore.Video.Media.EXTERNAL_CONTENT_URI,
-                    null /* queryArgs */);
-            result.audioSize = getFilesSize(info.id, MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
-                    null /* queryArgs */);
-
-            final Bundle documentsAndOtherQueryArgs = new Bundle();
-            documentsAndOtherQueryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
-                    FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_IMAGE
-                    + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_VIDEO
-                    + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_AUDIO
-                    + " AND " + FileColumns.MIME_TYPE + " IS NOT NULL");
-            result.documentsAndOtherSize = getFilesSize(info.id,
-                    MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL),
-                    documentsAndOtherQueryArgs);
-
-            final Bundle trashQueryArgs = new Bundle();
-            trashQueryArgs.putInt(MediaStore.QUERY_ARG_MATCH_TRASHED, MediaStore.MATCH_ONLY);
-            result.trashSize = getFilesSize(info.id,
-                    MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL), trashQueryArgs);
-
-            results.put(info.id, result);
+            final int userId = info.id;
+            futures.add(ThreadUtils.postOnBackgroundThread(() -> getUserStorage(userId)));
+        }
+
+        final ArraySet<String> seenPackages = new ArraySet<>();
+        for (int i = 0; i < infos.size(); i++) {
+            final int userId = infos.get(i).id;
+            UserStorage userStorage;
+            try {
+                userStorage = futures.get(i).get();
+            } catch (ExecutionException e) {
+                // Don't drop the user from the results, load it again on this thread.
+                Log.w(TAG, "Not able to load storage of user ID " + userId
+                        + " in background, loading it again", e);
+                userStorage = getUserStorage(userId);
+            } catch (InterruptedException e) {
+                // The load was cancelled, the users left are not loaded.
+                Thread.currentThread().interrupt();
+                Log.w(TAG, "Interrupted loading storage of user ID " + userId, e);
+                for (int j = i; j < futures.size(); j++) {
+                    futures.get(j).cancel(true /* mayInterruptIfRunning */);
+                }
+                return results;
+            }
+            final StorageResult result = userStorage.mResult;
+            // Code bytes may share between different profiles. To know all the duplicate code
+            // size and we can get a reasonable system size in StorageItemPreferenceController.
+            for (int j = 0; j < userStorage.mPackageNames.size(); j++) {
+                if (!seenPackages.add(userStorage.mPackageNames.get(j))) {
+                    result.duplicateCodeSize += userStorage.mCodeBytes.get(j);
+                }
+            }
+            results.put(userId, result);
         }
         return results;
     }
 
-    private long getFilesSize(int userId, Uri uri, Bundle queryArgs) {
+    private UserStorage getUserStorage(int userId) {
+        final UserStorage userStorage = new UserStorage();
+        final StorageResult result = new StorageResult();
+        userStorage.mResult = result;
+
+        // The file sizes are loaded first, they are reported while the apps are loading.
+        if (loadFilesSizes(userId, result) && mFilesSizesListener != null) {
+            final StorageResult filesResult = new StorageResult();
+            filesResult.copyFilesSizesFrom(result);
+            mFilesSizesListener.onFilesSizesLoaded(userId, filesResult);
+        }
+        getAppsAndGamesSize(userId, userStorage, result);
+        return userStorage;
+    }
+
+    private boolean loadFilesSizes(int userId, StorageResult result) {
         final Context perUserContext;
         try {
             perUserContext = getContext().createPackageContextAsUser(
@@ -122,10 +159,103 @@ public class StorageAsyncLoader
                 UserHandle.of(userId));
         } catch (NameNotFoundException e) {
             Log.e(TAG, "Not able to get Context for user ID " + userId);
-            return 0L;
+            return false;
+        }
+        final ContentResolver contentResolver = perUserContext.getContentResolver();
+        if (loadGroupedFilesSizes(contentResolver, result)) {
+            return true;
         }
 
-        try (Cursor cursor = perUserContext.getContentResolver().query(
+        result.imagesSize = getFilesSize(contentResolver,
+                MediaStore.Images.Media.EXTERNAL_CONTENT_URI, null /* queryArgs */);
+        result.videosSize = getFilesSize(contentResolver,
+                MediaStore.Video.Media.EXTERNAL_CONTENT_URI, null /* queryArgs */);
+        result.audioSize = getFilesSize(contentResolver,
+                MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, null /* queryArgs */);
+
+        final Bundle documentsAndOtherQueryArgs = new Bundle();
+        documentsAndOtherQueryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
+                FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_IMAGE
+                + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_VIDEO
+                + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_AUDIO
+                + " AND " + FileColumns.MIME_TYPE + " IS NOT NULL");
+        result.documentsAndOtherSize = getFilesSize(contentResolver,
+                MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL),
+                documentsAndOtherQueryArgs);
+
+        final Bundle trashQueryArgs = new Bundle();
+        trashQueryArgs.putInt(MediaStore.QUERY_ARG_MATCH_TRASHED, MediaStore.MATCH_ONLY);
+        result.trashSize = getFilesSize(contentResolver,
+                MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL), trashQueryArgs);
+        return true;
+    }
+
+    /**
+     * Loads the size of all the file categories with a single query grouped by media type and
+     * trashed state. Returns false if the query is not supported, the categories must then be
+     * queried one by one.
+     */
+    private boolean loadGroupedFilesSizes(ContentResolver contentResolver, StorageResult result) {
+        final Bundle queryArgs = new Bundle();
+        queryArgs.putInt(MediaStore.QUERY_ARG_MATCH_TRASHED, MediaStore.MATCH_INCLUDE);
+        // Like the documents and other category, files without mime type aren't counted unless
+        // they are trashed.
+        queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
+                FileColumns.MIME_TYPE + " IS NOT NULL OR " + MediaColumns.IS_TRASHED + "=1");
+        queryArgs.putString(ContentResolver.QUERY_ARG_SQL_GROUP_BY,
+                MediaColumns.IS_TRASHED + "," + FileColumns.MEDIA_TYPE);
+
+        long imagesSize = 0L;
+        long videosSize = 0L;
+        long audioSize = 0L;
+        long documentsAndOtherSize = 0L;
+        long trashSize = 0L;
+        try (Cursor cursor = contentResolver.query(
+                MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL),
+                new String[] {
+                        MediaColumns.IS_TRASHED,
+                        FileColumns.MEDIA_TYPE,
+                        "sum(" + MediaColumns.SIZE + ")"},
+                queryArgs,
+                null /* cancellationSignal */)) {
+            if (cursor == null) {
+                return false;
+            }
+            while (cursor.moveToNext()) {
+                final long size = cursor.getLong(2);
+                if (cursor.getInt(0) != 0) {
+                    trashSize += size;
+                    continue;
+                }
+                switch (cursor.getInt(1)) {
+                    case FileColumns.MEDIA_TYPE_IMAGE:
+                        imagesSize += size;
+                        break;
+                    case FileColumns.MEDIA_TYPE_VIDEO:
+                        videosSize += size;
+                        break;
+                    case FileColumns.MEDIA_TYPE_AUDIO:
+                        audioSize += size;
+                        break;
+                    default:
+                        documentsAndOtherSize += size;
+                        break;
+                }
+            }
+        } catch (IllegalArgumentException | SecurityException e) {
+            Log.w(TAG, "Grouped files query not supported", e);
+            return false;
+        }
+        result.imagesSize = imagesSize;
+        result.videosSize = videosSize;
+        result.audioSize = audioSize;
+        result.documentsAndOtherSize = documentsAndOtherSize;
+        result.trashSize = trashSize;
+        return true;
+    }
+
+    private long getFilesSize(ContentResolver contentResolver, Uri uri, Bundle queryArgs) {
+        try (Cursor cursor = contentResolver.query(
                 uri,
                 new String[] {"sum(" + MediaColumns.SIZE + ")"},
                 queryArgs,
@@ -137,12 +267,14 @@ public class StorageAsyncLoader
         }
     }
 
-    private StorageResult getAppsAndGamesSize(int userId) {
+    private void getAppsAndGamesSize(int userId, UserStorage userStorage,
+            StorageResult result) {
         Log.d(TAG, "Loading apps");
         final List<ApplicationInfo> applicationInfos =
                 mPackageManager.getInstalledApplicationsAsUser(0, userId);
-        final StorageResult result = new StorageResult();
         final UserHandle myUser = UserHandle.of(userId);
+        // Packages sharing a uid share its cache quota.
+        final SparseLongArray cacheQuotas = new SparseLongArray();
         for (int i = 0, size = applicationInfos.size(); i < size; i++) {
             final ApplicationInfo app = applicationInfos.get(i);
 
@@ -156,7 +288,14 @@ public class StorageAsyncLoader
             }
 
             final long dataSize = stats.getDataBytes();
-            final long cacheQuota = mStatsManager.getCacheQuotaBytes(mUuid, app.uid);
+            final int quotaIndex = cacheQuotas.indexOfKey(app.uid);
+            final long cacheQuota;
+            if (quotaIndex >= 0) {
+                cacheQuota = cacheQuotas.valueAt(quotaIndex);
+            } else {
+                cacheQuota = mStatsManager.getCacheQuotaBytes(mUuid, app.uid);
+                cacheQuotas.put(app.uid, cacheQuota);
+            }
             final long cacheBytes = stats.getCacheBytes();
             long blamedSize = dataSize + stats.getCodeBytes();
             // Technically, we could overages as freeable on the storage settings screen.
@@ -167,13 +306,9 @@ public class StorageAsyncLoader
                 blamedSize = blamedSize - cacheBytes + cacheQuota;
             }
 
-            // Code bytes may share between different profiles. To know all the duplicate code size
-            // and we can get a reasonable system size in StorageItemPreferenceController.
-            if (mSeenPackages.contains(app.packageName)) {
-                result.duplicateCodeSize += stats.getCodeBytes();
-            } else {
-                mSeenPackages.add(app.packageName);
-            }
+            // The duplicate code size is counted once all the users are loaded.
+            userStorage.mPackageNames.add(app.packageName);
+            userStorage.mCodeBytes.add(stats.getCodeBytes());
 
             switch (app.category) {
                 case CATEGORY_GAME:
@@ -203,7 +338,6 @@ public class StorageAsyncLoader
             Log.w(TAG, e);
         }
         Log.d(TAG, "Obtaining result completed");
-        return result;
     }
 
     @Override
@@ -226,6 +360,22 @@ public class StorageAsyncLoader
         public long cacheSize;
         public long duplicateCodeSize;
         public StorageStatsSource.ExternalStorageStats externalStats;
+
+        /** Copies the file based sizes of {@code other}. */
+        public void copyFilesSizesFrom(StorageResult other) {
+            audioSize = other.audioSize;
+            imagesSize = other.imagesSize;
+            videosSize = other.videosSize;
+            documentsAndOtherSize = other.documentsAndOtherSize;
+            trashSize = other.trashSize;
+        }
+    }
+
+    /** Storage result of a user, with the code size of each of its packages. */
+    private static class UserStorage {
+        private StorageResult mResult;
+        private final List<String> mPackageNames = new ArrayList<>();
+        private final List<Long> mCodeBytes = new ArrayList<>();
     }
 
     /**
@@ -236,4 +386,10 @@ public class StorageAsyncLoader
         /** Overrides this method to get storage result once it's available. */
         void handleResult(SparseArray<StorageResult> result);
     }
+
+    /** Listener notified of the file sizes of a user, before its app sizes are loaded. */
+    public interface FilesSizesListener {
+        /** Called on the loading thread with the file based sizes of {@code userId}. */
+        void onFilesSizesLoaded(int userId, StorageResult result);
+    }
 }
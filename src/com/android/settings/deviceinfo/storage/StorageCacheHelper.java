@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo.storage;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.android.settingslib.applications.StorageStatsSource;
+import com.android.settingslib.deviceinfo.PrivateStorageInfo;
+
+/**
+ * Keeps the last sizes loaded for each private volume, so the storage page can show them right
+ * away while they are loaded again.
+ *
+ * <p>The sizes are stored as comma separated numbers in a shared preferences file, one
+ * {@link PrivateStorageInfo} and one set of {@link StorageAsyncLoader.StorageResult} per volume.
+ */
+public class StorageCacheHelper {
+    private static final String TAG = "StorageCacheHelper";
+    private static final String SHARED_PREFERENCE_NAME = "StorageCache";
+    private static final String KEY_STORAGE_INFO = "storage_info_";
+    private static final String KEY_STORAGE_RESULT = "storage_result_";
+    private static final String INTERNAL_VOLUME = "internal";
+    private static final String USER_SEPARATOR = ";";
+    private static final String VALUE_SEPARATOR = ",";
+    // User id, 9 result sizes, 5 external stats sizes.
+    private static final int RESULT_VALUE_COUNT = 15;
+    private static final int EXTERNAL_STATS_INDEX = 10;
+
+    private final SharedPreferences mSharedPreferences;
+
+    public StorageCacheHelper(Context context) {
+        mSharedPreferences = context.getSharedPreferences(SHARED_PREFERENCE_NAME,
+                Context.MODE_PRIVATE);
+    }
+
+    /** Stores the total and free bytes of the volume. */
+    public void cacheStorageInfo(String fsUuid, PrivateStorageInfo info) {
+        mSharedPreferences.edit()
+                .putString(KEY_STORAGE_INFO + getVolumeKey(fsUuid),
+                        info.totalBytes + VALUE_SEPARATOR + info.freeBytes)
+                .apply();
+    }
+
+    /** Returns the last stored total and free bytes of the volume, or null if there are none. */
+    public PrivateStorageInfo retrieveStorageInfo(String fsUuid) {
+        final long[] values = parse(
+                mSharedPreferences.getString(KEY_STORAGE_INFO + getVolumeKey(fsUuid), null));
+        if (values == null || values.length != 2) {
+            return null;
+        }
+        return new PrivateStorageInfo(values[1] /* freeBytes */, values[0] /* totalBytes */);
+    }
+
+    /** Stores the result of {@link StorageAsyncLoader} for the volume. */
+    public void cacheStorageResult(String fsUuid,
+            SparseArray<StorageAsyncLoader.StorageResult> results) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < results.size(); i++) {
+            final StorageAsyncLoader.StorageResult result = results.valueAt(i);
+            if (i > 0) {
+                builder.append(USER_SEPARATOR);
+            }
+            builder.append(results.keyAt(i))
+                    .append(VALUE_SEPARATOR).append(result.gamesSize)
+                    .append(VALUE_SEPARATOR).append(result.allAppsExceptGamesSize)
+                    .append(VALUE_SEPARATOR).append(result.audioSize)
+                    .append(VALUE_SEPARATOR).append(result.imagesSize)
+                    .append(VALUE_SEPARATOR).append(result.videosSize)
+                    .append(VALUE_SEPARATOR).append(result.documentsAndOtherSize)
+                    .append(VALUE_SEPARATOR).append(result.trashSize)
+                    .append(VALUE_SEPARATOR).append(result.cacheSize)
+                    .append(VALUE_SEPARATOR).append(result.duplicateCodeSize);
+            final StorageStatsSource.ExternalStorageStats externalStats = result.externalStats;
+            if (externalStats != null) {
+                builder.append(VALUE_SEPARATOR).append(externalStats.totalBytes)
+                        .append(VALUE_SEPARATOR).append(externalStats.audioBytes)
+                        .append(VALUE_SEPARATOR).append(externalStats.videoBytes)
+                        .append(VALUE_SEPARATOR).append(externalStats.imageBytes)
+                        .append(VALUE_SEPARATOR).append(externalStats.appBytes);
+            }
+        }
+        mSharedPreferences.edit()
+                .putString(KEY_STORAGE_RESULT + getVolumeKey(fsUuid), builder.toString())
+                .apply();
+    }
+
+    /**
+     * Returns the last stored result of {@link StorageAsyncLoader} for the volume, or null if it
+     * has no result for {@code userId}.
+     */
+    public SparseArray<StorageAsyncLoader.StorageResult> retrieveStorageResult(String fsUuid,
+            int userId) {
+        final String cache =
+                mSharedPreferences.getString(KEY_STORAGE_RESULT + getVolumeKey(fsUuid), null);
+        if (TextUtils.isEmpty(cache)) {
+            return null;
+        }
+        final SparseArray<StorageAsyncLoader.StorageResult> results = new SparseArray<>();
+        for (String user : cache.split(USER_SEPARATOR)) {
+            final long[] values = parse(user);
+            if (values == null || (values.length != EXTERNAL_STATS_INDEX
+                    && values.length != RESULT_VALUE_COUNT)) {
+                return null;
+            }
+            final StorageAsyncLoader.StorageResult result = new StorageAsyncLoader.StorageResult();
+            result.gamesSize = values[1];
+            result.allAppsExceptGamesSize = values[2];
+            result.audioSize = values[3];
+            result.imagesSize = values[4];
+            result.videosSize = values[5];
+            result.documentsAndOtherSize = values[6];
+            result.trashSize = values[7];
+            result.cacheSize = values[8];
+            result.duplicateCodeSize = values[9];
+            if (values.length == RESULT_VALUE_COUNT) {
+                result.externalStats = new StorageStatsSource.ExternalStorageStats(
+                        values[10], values[11], values[12], values[13], values[14]);
+            }
+            results.put((int) values[0], result);
+        }
+        return results.get(userId) != null ? results : null;
+    }
+
+    private static String getVolumeKey(String fsUuid) {
+        return fsUuid == null ? INTERNAL_VOLUME : fsUuid;
+    }
+
+    private static long[] parse(String cache) {
+        if (TextUtils.isEmpty(cache)) {
+            return null;
+        }
+        final String[] tokens = cache.split(VALUE_SEPARATOR);
+        final long[] values = new long[tokens.length];
+        try {
+            for (int i = 0; i < tokens.length; i++) {
+                values[i] = Long.parseLong(tokens[i]);
+            }
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Invalid storage cache: " + cache);
+            return null;
+        }
+        return values;
+    }
+}
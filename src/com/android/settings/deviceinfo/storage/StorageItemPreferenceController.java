@@ -397,6 +397,25 @@ public class StorageItemPreferenceController extends AbstractPreferenceControlle
         setPrivateStorageCategoryPreferencesVisibility(true);
     }
 
+    /**
+     * Marks the shown sizes as refreshing, while they come from the cache: the file categories
+     * until their sizes are loaded, the app categories until the apps are loaded, and the system
+     * until both the apps and the volume sizes are loaded.
+     */
+    public void setRefreshing(boolean filesRefreshing, boolean appsRefreshing,
+            boolean systemRefreshing) {
+        mImagesPreference.setRefreshing(filesRefreshing);
+        mVideosPreference.setRefreshing(filesRefreshing);
+        mAudioPreference.setRefreshing(filesRefreshing);
+        mDocumentsAndOtherPreference.setRefreshing(filesRefreshing);
+        mTrashPreference.setRefreshing(filesRefreshing);
+        mAppsPreference.setRefreshing(appsRefreshing);
+        mGamesPreference.setRefreshing(appsRefreshing);
+        if (mSystemPreference != null) {
+            mSystemPreference.setRefreshing(systemRefreshing);
+        }
+    }
+
     public void setUsedSize(long usedSizeBytes) {
         mUsedBytes = usedSizeBytes;
     }
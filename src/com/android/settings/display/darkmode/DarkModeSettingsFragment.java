@@ -17,6 +17,7 @@ package com.android.settings.display.darkmode;
 import android.app.Dialog;
 import android.app.settings.SettingsEnums;
 import android.content.Context;
+import android.location.LocationManager;
 import android.os.Bundle;
 import android.os.PowerManager;
 
@@ -29,6 +30,7 @@ import com.android.settingslib.core.AbstractPreferenceController;
 import com.android.settingslib.search.SearchIndexable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -148,6 +150,13 @@ public class DarkModeSettingsFragment extends DashboardFragment {
                 protected boolean isPageSearchEnabled(Context context) {
                     return !context.getSystemService(PowerManager.class).isPowerSaveMode();
                 }
+
+                @Override
+                protected List<String> getIndexInvalidationActions() {
+                    // TwilightLocationPreferenceController depends on the location state.
+                    return Arrays.asList(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED,
+                            LocationManager.MODE_CHANGED_ACTION);
+                }
             };
 
 }
@@ -204,6 +204,7 @@ public class BatteryAppListPreferenceController extends AbstractPreferenceContro
 
         mBatteryUsageStats = USE_FAKE_DATA ? getFakeStats() : batteryUsageStats;
         mAppListGroup.setTitle(R.string.power_usage_list_summary);
+        BatteryEntry.clearCacheIfPackagesChanged(mContext);
 
         boolean addedSome = false;
 
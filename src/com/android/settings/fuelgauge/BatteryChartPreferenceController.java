@@ -105,6 +105,8 @@ public class BatteryChartPreferenceController extends AbstractPreferenceControll
     private final CharSequence[] mNotAllowShowSummaryPackages;
     private final MetricsFeatureProvider mMetricsFeatureProvider;
     private final Handler mHandler = new Handler(Looper.getMainLooper());
+    // Keeps the computed time slots across setBatteryHistoryMap() calls.
+    private final BatteryUsageSlotAggregator mSlotAggregator = new BatteryUsageSlotAggregator();
 
     // Preference cache to avoid create new instance each time.
     @VisibleForTesting
@@ -155,6 +157,7 @@ public class BatteryChartPreferenceController extends AbstractPreferenceControll
             BatteryDiffEntry.clearCache();
             Log.d(TAG, "clear icon and label cache since uiMode is changed");
         }
+        BatteryEntry.clearCacheIfPackagesChanged(mContext);
         mIs24HourFormat = DateFormat.is24HourFormat(mContext);
         mMetricsFeatureProvider.action(mPrefContext, SettingsEnums.OPEN_BATTERY_USAGE);
     }
@@ -666,7 +669,7 @@ public class BatteryChartPreferenceController extends AbstractPreferenceControll
             }
             final long startTime = System.currentTimeMillis();
             final Map<Integer, List<BatteryDiffEntry>> indexedUsageMap =
-                ConvertUtils.getIndexedUsageMap(
+                mSlotAggregator.getIndexedUsageMap(
                     mPrefContext, /*timeSlotSize=*/ CHART_LEVEL_ARRAY_SIZE - 1,
                     mBatteryHistoryKeysCache, mBatteryHistoryMap,
                     /*purgeLowPercentageAndFakeData=*/ true);
@@ -27,20 +27,34 @@ import androidx.annotation.VisibleForTesting;
 
 import com.android.settingslib.utils.StringUtil;
 
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /** A container class to carry battery data in a specific time slot. */
 public class BatteryDiffEntry {
     private static final String TAG = "BatteryDiffEntry";
 
+    // Max number of app labels and icons kept in the cache.
+    private static final int MAX_RESOURCE_CACHE_SIZE = 256;
+
     static Locale sCurrentLocale = null;
-    // Caches app label and icon to improve loading performance.
-    static final Map<String, BatteryEntry.NameAndIcon> sResourceCache = new HashMap<>();
+    // Caches app label and icon to improve loading performance, evicting the least recently
+    // used ones. Entries are loaded from several background threads.
+    static final Map<String, BatteryEntry.NameAndIcon> sResourceCache =
+            Collections.synchronizedMap(new LinkedHashMap<String, BatteryEntry.NameAndIcon>(
+                    /*initialCapacity=*/ 16, /*loadFactor=*/ 0.75f, /*accessOrder=*/ true) {
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<String, BatteryEntry.NameAndIcon> eldest) {
+                    return size() > MAX_RESOURCE_CACHE_SIZE;
+                }
+            });
     // Whether a specific item is valid to launch restriction page?
-    static final Map<String, Boolean> sValidForRestriction = new HashMap<>();
+    static final Map<String, Boolean> sValidForRestriction = new ConcurrentHashMap<>();
 
     /** A comparator for {@link BatteryDiffEntry} based on consumed percentage. */
     public static final Comparator<BatteryDiffEntry> COMPARATOR =
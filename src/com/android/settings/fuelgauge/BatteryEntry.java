@@ -19,6 +19,7 @@ package com.android.settings.fuelgauge;
 import android.app.AppGlobals;
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
+import android.content.pm.ChangedPackages;
 import android.content.pm.IPackageManager;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
@@ -40,11 +41,17 @@ import androidx.annotation.NonNull;
 
 import com.android.settings.R;
 import com.android.settingslib.Utils;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Wraps the power usage data of a BatterySipper with information about package name
@@ -77,76 +84,110 @@ public class BatteryEntry {
     private static final String TAG = "BatteryEntry";
     private static final String PACKAGE_SYSTEM = "android";
 
-    static final HashMap<String, UidToDetail> sUidCache = new HashMap<>();
+    // Max number of background workers loading the app labels and icons.
+    private static final int MAX_LOADER_COUNT = 4;
 
-    static final ArrayList<BatteryEntry> sRequestQueue = new ArrayList<BatteryEntry>();
+    static final Map<String, UidToDetail> sUidCache = new ConcurrentHashMap<>();
+
+    // Entries waiting for their label and icon, grouped by uid so that each uid is only loaded
+    // once. Also guards sLoadingEntries, sLoaderCount and sGeneration.
+    static final LinkedHashMap<Integer, List<BatteryEntry>> sRequestQueue = new LinkedHashMap<>();
+    // Entries of the uids being loaded, entries added later get the result of that load.
+    private static final Map<Integer, List<BatteryEntry>> sLoadingEntries = new HashMap<>();
+    private static int sLoaderCount;
+    // Bumped when the queue is stopped, the loaders of older generations drop their results.
+    private static int sGeneration;
     static Handler sHandler;
 
     static Locale sCurrentLocale = null;
 
-    static private class NameAndIconLoader extends Thread {
-        private boolean mAbort = false;
+    private static int sPackageSequenceNumber;
 
-        public NameAndIconLoader() {
-            super("BatteryUsage Icon Loader");
-        }
+    private static final class NameAndIconLoader implements Runnable {
+        private final int mGeneration;
 
-        public void abort() {
-            mAbort = true;
+        NameAndIconLoader(int generation) {
+            mGeneration = generation;
         }
 
         @Override
         public void run() {
             while (true) {
-                BatteryEntry be;
+                final int uid;
+                final BatteryEntry be;
                 synchronized (sRequestQueue) {
-                    if (sRequestQueue.isEmpty() || mAbort) {
-                        if (sHandler != null) {
+                    if (mGeneration != sGeneration) {
+                        return;
+                    }
+                    if (sRequestQueue.isEmpty()) {
+                        if (--sLoaderCount == 0 && sHandler != null) {
                             sHandler.sendEmptyMessage(MSG_REPORT_FULLY_DRAWN);
                         }
                         return;
                     }
-                    be = sRequestQueue.remove(0);
+                    final Iterator<Map.Entry<Integer, List<BatteryEntry>>> iterator =
+                            sRequestQueue.entrySet().iterator();
+                    final Map.Entry<Integer, List<BatteryEntry>> next = iterator.next();
+                    iterator.remove();
+                    uid = next.getKey();
+                    be = next.getValue().get(0);
+                    sLoadingEntries.put(uid, next.getValue());
                 }
                 final NameAndIcon nameAndIcon =
                     BatteryEntry.loadNameAndIcon(
-                        be.mContext, be.getUid(), sHandler, be,
+                        be.mContext, uid, /*handler=*/ null, /*batteryEntry=*/ null,
                         be.mDefaultPackageName, be.name, be.icon);
-                if (nameAndIcon != null) {
-                    be.icon = nameAndIcon.icon;
-                    be.name = nameAndIcon.name;
-                    be.mDefaultPackageName = nameAndIcon.packageName;
+                final List<BatteryEntry> entries;
+                final Handler handler;
+                synchronized (sRequestQueue) {
+                    if (mGeneration != sGeneration) {
+                        return;
+                    }
+                    entries = sLoadingEntries.remove(uid);
+                    handler = sHandler;
+                }
+                if (nameAndIcon == null) {
+                    continue;
+                }
+                for (BatteryEntry entry : entries) {
+                    entry.icon = nameAndIcon.icon;
+                    entry.name = nameAndIcon.name;
+                    entry.mDefaultPackageName = nameAndIcon.packageName;
+                    if (handler != null) {
+                        handler.sendMessage(handler.obtainMessage(MSG_UPDATE_NAME_ICON, entry));
+                    }
                 }
             }
         }
     }
 
-    private static NameAndIconLoader mRequestThread;
-
     public static void startRequestQueue() {
-        if (sHandler != null) {
-            synchronized (sRequestQueue) {
-                if (!sRequestQueue.isEmpty()) {
-                    if (mRequestThread != null) {
-                        mRequestThread.abort();
-                    }
-                    mRequestThread = new NameAndIconLoader();
-                    mRequestThread.setPriority(Thread.MIN_PRIORITY);
-                    mRequestThread.start();
-                    sRequestQueue.notify();
-                }
+        if (sHandler == null) {
+            return;
+        }
+        final int generation;
+        final int newLoaderCount;
+        synchronized (sRequestQueue) {
+            newLoaderCount =
+                    Math.min(MAX_LOADER_COUNT, sRequestQueue.size()) - sLoaderCount;
+            if (newLoaderCount <= 0) {
+                return;
             }
+            sLoaderCount += newLoaderCount;
+            generation = sGeneration;
+        }
+        for (int i = 0; i < newLoaderCount; i++) {
+            ThreadUtils.postOnBackgroundThread(new NameAndIconLoader(generation));
         }
     }
 
     public static void stopRequestQueue() {
         synchronized (sRequestQueue) {
-            if (mRequestThread != null) {
-                mRequestThread.abort();
-                mRequestThread = null;
-                sRequestQueue.clear();
-                sHandler = null;
-            }
+            sGeneration++;
+            sLoaderCount = 0;
+            sRequestQueue.clear();
+            sLoadingEntries.clear();
+            sHandler = null;
         }
     }
 
@@ -154,6 +195,20 @@ public class BatteryEntry {
         sUidCache.clear();
     }
 
+    /**
+     * Clears the cached app labels and icons if some packages changed since the last call.
+     */
+    public static synchronized void clearCacheIfPackagesChanged(Context context) {
+        final ChangedPackages changedPackages =
+                context.getPackageManager().getChangedPackages(sPackageSequenceNumber);
+        if (changedPackages == null) {
+            return;
+        }
+        sPackageSequenceNumber = changedPackages.getSequenceNumber();
+        clearUidCache();
+        BatteryDiffEntry.clearCache();
+    }
+
     public static final Comparator<BatteryEntry> COMPARATOR =
             (a, b) -> Double.compare(b.getConsumedPower(), a.getConsumedPower());
 
@@ -315,8 +370,8 @@ public class BatteryEntry {
         }
 
         final String uidString = Integer.toString(uid);
-        if (sUidCache.containsKey(uidString)) {
-            UidToDetail utd = sUidCache.get(uidString);
+        final UidToDetail utd = sUidCache.get(uidString);
+        if (utd != null) {
             mDefaultPackageName = utd.packageName;
             name = utd.name;
             icon = utd.icon;
@@ -334,7 +389,11 @@ public class BatteryEntry {
         // Avoids post the loading icon and label in the background request.
         if (sHandler != null && loadDataInBackground) {
             synchronized (sRequestQueue) {
-                sRequestQueue.add(this);
+                List<BatteryEntry> entries = sLoadingEntries.get(uid);
+                if (entries == null) {
+                    entries = sRequestQueue.computeIfAbsent(uid, key -> new ArrayList<>());
+                }
+                entries.add(this);
             }
         }
     }
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Columnar copy of the battery history snapshots used by the usage chart.
+ *
+ * <p>Every {@link BatteryHistEntry#getKey()} is mapped once to an int id, and the cumulative
+ * values of each snapshot are stored in primitive arrays indexed by
+ * {@code timestampIndex * getKeyCount() + keyId}, so the slot computations don't need any map
+ * lookup or boxing per entry.
+ */
+final class BatteryHistoryColumns {
+
+    private final int mTimestampCount;
+    private final int mKeyCount;
+    private final BatteryHistEntry[] mEntries;
+    private final long[] mForegroundUsageTimes;
+    private final long[] mBackgroundUsageTimes;
+    private final double[] mConsumePowers;
+    private final int[] mEntryCounts;
+
+    private BatteryHistoryColumns(int timestampCount, int keyCount) {
+        mTimestampCount = timestampCount;
+        mKeyCount = keyCount;
+        final int size = timestampCount * keyCount;
+        mEntries = new BatteryHistEntry[size];
+        mForegroundUsageTimes = new long[size];
+        mBackgroundUsageTimes = new long[size];
+        mConsumePowers = new double[size];
+        mEntryCounts = new int[timestampCount];
+    }
+
+    /**
+     * Copies the snapshots of {@code timestamps} out of {@code batteryHistoryMap}. Ids are
+     * assigned to the keys in the order they first appear.
+     */
+    static BatteryHistoryColumns create(long[] timestamps, int timestampCount,
+            Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap) {
+        @SuppressWarnings("unchecked")
+        final Map<String, BatteryHistEntry>[] snapshots = new Map[timestampCount];
+        final Map<String, Integer> keyIds = new HashMap<>();
+        for (int i = 0; i < timestampCount; i++) {
+            snapshots[i] = batteryHistoryMap.get(timestamps[i]);
+            if (snapshots[i] == null) {
+                continue;
+            }
+            for (String key : snapshots[i].keySet()) {
+                if (!keyIds.containsKey(key)) {
+                    keyIds.put(key, keyIds.size());
+                }
+            }
+        }
+
+        final BatteryHistoryColumns columns =
+                new BatteryHistoryColumns(timestampCount, keyIds.size());
+        for (int i = 0; i < timestampCount; i++) {
+            if (snapshots[i] == null) {
+                continue;
+            }
+            final int offset = i * columns.mKeyCount;
+            for (Map.Entry<String, BatteryHistEntry> item : snapshots[i].entrySet()) {
+                final BatteryHistEntry entry = item.getValue();
+                final int index = offset + keyIds.get(item.getKey());
+                columns.mEntries[index] = entry;
+                columns.mForegroundUsageTimes[index] = entry.mForegroundUsageTimeInMs;
+                columns.mBackgroundUsageTimes[index] = entry.mBackgroundUsageTimeInMs;
+                columns.mConsumePowers[index] = entry.mConsumePower;
+            }
+            columns.mEntryCounts[i] = snapshots[i].size();
+        }
+        return columns;
+    }
+
+    int getTimestampCount() {
+        return mTimestampCount;
+    }
+
+    int getKeyCount() {
+        return mKeyCount;
+    }
+
+    /** Whether the snapshot of the timestamp at {@code timestampIndex} has no entry. */
+    boolean isEmpty(int timestampIndex) {
+        return mEntryCounts[timestampIndex] == 0;
+    }
+
+    /** Returns the entry of {@code keyId} in a snapshot, or null if it is not in it. */
+    BatteryHistEntry getEntry(int timestampIndex, int keyId) {
+        return mEntries[timestampIndex * mKeyCount + keyId];
+    }
+
+    long getForegroundUsageTime(int timestampIndex, int keyId) {
+        return mForegroundUsageTimes[timestampIndex * mKeyCount + keyId];
+    }
+
+    long getBackgroundUsageTime(int timestampIndex, int keyId) {
+        return mBackgroundUsageTimes[timestampIndex * mKeyCount + keyId];
+    }
+
+    double getConsumePower(int timestampIndex, int keyId) {
+        return mConsumePowers[timestampIndex * mKeyCount + keyId];
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge;
+
+import android.content.Context;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Incremental version of {@link ConvertUtils#getIndexedUsageMap}, which keeps the time slots it
+ * computed between calls.
+ *
+ * <p>A slot only depends on the snapshots of its three timestamps. The latest snapshot is
+ * refreshed in place until the next one is recorded, so the slots which contain it are always
+ * computed again; the other slots are cached by timestamps. The all day usage is kept as a
+ * running sum that slots are added to and removed from as they enter and leave the chart.
+ */
+final class BatteryUsageSlotAggregator {
+
+    // Each slot is made of the snapshots at three consecutive timestamps.
+    private static final int TIMESTAMP_STRIDE = 2;
+
+    private final Map<SlotKey, Slot> mSlots = new HashMap<>();
+    private final Map<String, AllDayUsage> mAllDayUsages = new HashMap<>();
+    private double mAllDayConsumePower;
+
+    @VisibleForTesting
+    int mComputedSlotCount;
+
+    /**
+     * Gets indexed battery usage data for each corresponding time slot, like
+     * {@link ConvertUtils#getIndexedUsageMap}.
+     */
+    synchronized Map<Integer, List<BatteryDiffEntry>> getIndexedUsageMap(
+            final Context context,
+            final int timeSlotSize,
+            final long[] batteryHistoryKeys,
+            final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap,
+            final boolean purgeLowPercentageAndFakeData) {
+        if (batteryHistoryMap == null || batteryHistoryMap.isEmpty()) {
+            clear();
+            return new HashMap<>();
+        }
+        final SlotKey[] slotKeys = new SlotKey[timeSlotSize];
+        final List<SlotKey> newSlotKeys = new ArrayList<>();
+        removeSlotsContaining(batteryHistoryKeys[timeSlotSize * TIMESTAMP_STRIDE]);
+        for (int index = 0; index < timeSlotSize; index++) {
+            final int current = index * TIMESTAMP_STRIDE;
+            slotKeys[index] = new SlotKey(batteryHistoryKeys[current],
+                    batteryHistoryKeys[current + 1], batteryHistoryKeys[current + 2]);
+            if (!mSlots.containsKey(slotKeys[index])) {
+                newSlotKeys.add(slotKeys[index]);
+            }
+        }
+        removeSlotsNotIn(slotKeys);
+        addSlots(context, newSlotKeys, batteryHistoryMap);
+
+        final Map<Integer, List<BatteryDiffEntry>> resultMap = new HashMap<>();
+        for (int index = 0; index < timeSlotSize; index++) {
+            // Copies the entries, purging and loading the labels change them.
+            resultMap.put(Integer.valueOf(index),
+                    mSlots.get(slotKeys[index]).copyEntries(context));
+        }
+        final List<BatteryDiffEntry> allDayEntries = new ArrayList<>(mAllDayUsages.size());
+        for (AllDayUsage usage : mAllDayUsages.values()) {
+            final BatteryDiffEntry entry = new BatteryDiffEntry(context,
+                    usage.mForegroundUsageTimeInMs, usage.mBackgroundUsageTimeInMs,
+                    usage.mConsumePower, usage.mBatteryHistEntry);
+            entry.setTotalConsumePower(mAllDayConsumePower);
+            allDayEntries.add(entry);
+        }
+        resultMap.put(Integer.valueOf(BatteryChartView.SELECTED_INDEX_ALL), allDayEntries);
+        // Slots with a missing snapshot have no usage, compute them again once it is recorded.
+        mSlots.values().removeIf(slot -> !slot.mComplete);
+        if (purgeLowPercentageAndFakeData) {
+            ConvertUtils.purgeLowPercentageAndFakeData(context, resultMap);
+        }
+        return resultMap;
+    }
+
+    /** Drops all the cached slots. */
+    synchronized void clear() {
+        mSlots.clear();
+        mAllDayUsages.clear();
+        mAllDayConsumePower = 0.0;
+    }
+
+    private void removeSlotsNotIn(SlotKey[] slotKeys) {
+        removeSlotsIf(slotKey -> !contains(slotKeys, slotKey));
+    }
+
+    private void removeSlotsContaining(long timestamp) {
+        removeSlotsIf(slotKey -> slotKey.mCurrentTimestamp == timestamp
+                || slotKey.mNextTimestamp == timestamp
+                || slotKey.mNextTwoTimestamp == timestamp);
+    }
+
+    private void removeSlotsIf(Predicate<SlotKey> filter) {
+        final Iterator<Map.Entry<SlotKey, Slot>> iterator = mSlots.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<SlotKey, Slot> item = iterator.next();
+            if (!filter.test(item.getKey())) {
+                continue;
+            }
+            final Slot slot = item.getValue();
+            for (int i = 0; i < slot.mKeys.length; i++) {
+                final AllDayUsage usage = mAllDayUsages.get(slot.mKeys[i]);
+                usage.mForegroundUsageTimeInMs -= slot.mForegroundUsageTimes[i];
+                usage.mBackgroundUsageTimeInMs -= slot.mBackgroundUsageTimes[i];
+                usage.mConsumePower -= slot.mConsumePowers[i];
+                mAllDayConsumePower -= slot.mConsumePowers[i];
+                if (--usage.mSlotCount == 0) {
+                    mAllDayUsages.remove(slot.mKeys[i]);
+                }
+            }
+            iterator.remove();
+        }
+        if (mSlots.isEmpty()) {
+            // Don't carry the rounding errors of the running sum over.
+            mAllDayConsumePower = 0.0;
+        }
+    }
+
+    private void addSlots(Context context, List<SlotKey> newSlotKeys,
+            Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap) {
+        if (newSlotKeys.isEmpty()) {
+            return;
+        }
+        // Only copies the snapshots of the new slots.
+        final int slotTimestampCount = TIMESTAMP_STRIDE + 1;
+        final long[] timestamps = new long[newSlotKeys.size() * slotTimestampCount];
+        for (int i = 0; i < newSlotKeys.size(); i++) {
+            final SlotKey slotKey = newSlotKeys.get(i);
+            timestamps[i * slotTimestampCount] = slotKey.mCurrentTimestamp;
+            timestamps[i * slotTimestampCount + 1] = slotKey.mNextTimestamp;
+            timestamps[i * slotTimestampCount + 2] = slotKey.mNextTwoTimestamp;
+        }
+        final BatteryHistoryColumns columns =
+                BatteryHistoryColumns.create(timestamps, timestamps.length, batteryHistoryMap);
+        for (int i = 0; i < newSlotKeys.size(); i++) {
+            final int current = i * slotTimestampCount;
+            final Slot slot = new Slot(ConvertUtils.getSlotUsageList(
+                    context, columns, current, /* keyIds= */ null),
+                    !columns.isEmpty(current) && !columns.isEmpty(current + 1)
+                            && !columns.isEmpty(current + 2));
+            mSlots.put(newSlotKeys.get(i), slot);
+            mComputedSlotCount++;
+            for (int j = 0; j < slot.mKeys.length; j++) {
+                final BatteryDiffEntry entry = slot.mEntries.get(j);
+                AllDayUsage usage = mAllDayUsages.get(slot.mKeys[j]);
+                if (usage == null) {
+                    usage = new AllDayUsage(entry.mBatteryHistEntry);
+                    mAllDayUsages.put(slot.mKeys[j], usage);
+                }
+                usage.mForegroundUsageTimeInMs += slot.mForegroundUsageTimes[j];
+                usage.mBackgroundUsageTimeInMs += slot.mBackgroundUsageTimes[j];
+                usage.mConsumePower += slot.mConsumePowers[j];
+                usage.mSlotCount++;
+                mAllDayConsumePower += slot.mConsumePowers[j];
+            }
+        }
+    }
+
+    private static boolean contains(SlotKey[] slotKeys, SlotKey slotKey) {
+        for (SlotKey key : slotKeys) {
+            if (key.equals(slotKey)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class SlotKey {
+        private final long mCurrentTimestamp;
+        private final long mNextTimestamp;
+        private final long mNextTwoTimestamp;
+
+        SlotKey(long currentTimestamp, long nextTimestamp, long nextTwoTimestamp) {
+            mCurrentTimestamp = currentTimestamp;
+            mNextTimestamp = nextTimestamp;
+            mNextTwoTimestamp = nextTwoTimestamp;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof SlotKey)) {
+                return false;
+            }
+            final SlotKey other = (SlotKey) o;
+            return mCurrentTimestamp == other.mCurrentTimestamp
+                    && mNextTimestamp == other.mNextTimestamp
+                    && mNextTwoTimestamp == other.mNextTwoTimestamp;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mCurrentTimestamp, mNextTimestamp, mNextTwoTimestamp);
+        }
+    }
+
+    /**
+     * A computed slot. The usage values are copied since purging clears the background usage
+     * time of some entries.
+     */
+    private static final class Slot {
+        private final List<BatteryDiffEntry> mEntries;
+        private final boolean mComplete;
+        private final String[] mKeys;
+        private final long[] mForegroundUsageTimes;
+        private final long[] mBackgroundUsageTimes;
+        private final double[] mConsumePowers;
+        private double mTotalConsumePower;
+
+        Slot(List<BatteryDiffEntry> entries, boolean complete) {
+            final int size = entries.size();
+            mEntries = entries;
+            mComplete = complete;
+            mKeys = new String[size];
+            mForegroundUsageTimes = new long[size];
+            mBackgroundUsageTimes = new long[size];
+            mConsumePowers = new double[size];
+            for (int i = 0; i < size; i++) {
+                final BatteryDiffEntry entry = entries.get(i);
+                mKeys[i] = entry.mBatteryHistEntry.getKey();
+                mForegroundUsageTimes[i] = entry.mForegroundUsageTimeInMs;
+                mBackgroundUsageTimes[i] = entry.mBackgroundUsageTimeInMs;
+                mConsumePowers[i] = entry.mConsumePower;
+                mTotalConsumePower += entry.mConsumePower;
+            }
+        }
+
+        List<BatteryDiffEntry> copyEntries(Context context) {
+            final List<BatteryDiffEntry> entries = new ArrayList<>(mKeys.length);
+            for (int i = 0; i < mKeys.length; i++) {
+                final BatteryDiffEntry entry = new BatteryDiffEntry(context,
+                        mForegroundUsageTimes[i], mBackgroundUsageTimes[i], mConsumePowers[i],
+                        mEntries.get(i).mBatteryHistEntry);
+                entry.setTotalConsumePower(mTotalConsumePower);
+                entries.add(entry);
+            }
+            return entries;
+        }
+    }
+
+    private static final class AllDayUsage {
+        private final BatteryHistEntry mBatteryHistEntry;
+        private long mForegroundUsageTimeInMs;
+        private long mBackgroundUsageTimeInMs;
+        private double mConsumePower;
+        private int mSlotCount;
+
+        AllDayUsage(BatteryHistEntry batteryHistEntry) {
+            mBatteryHistEntry = batteryHistEntry;
+        }
+    }
+}
@@ -32,21 +32,16 @@ import java.lang.annotation.RetentionPolicy;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
 import java.util.TimeZone;
 
 /** A utility class to convert data into another types. */
 public final class ConvertUtils {
     private static final boolean DEBUG = false;
     private static final String TAG = "ConvertUtils";
-    private static final Map<String, BatteryHistEntry> EMPTY_BATTERY_MAP = new HashMap<>();
-    private static final BatteryHistEntry EMPTY_BATTERY_HIST_ENTRY =
-        new BatteryHistEntry(new ContentValues());
     // Maximum total time value for each slot cumulative data at most 2 hours.
     private static final float TOTAL_TIME_THRESHOLD = DateUtils.HOUR_IN_MILLIS * 2;
 
@@ -157,149 +152,161 @@ public final class ConvertUtils {
         //     Math.abs(timestamp[i+1] data - timestamp[i] data);
         // since we want to aggregate every two hours data into a single time slot.
         final int timestampStride = 2;
+        final BatteryHistoryColumns columns = BatteryHistoryColumns.create(
+                batteryHistoryKeys, timeSlotSize * timestampStride + 1, batteryHistoryMap);
+        final int keyCount = columns.getKeyCount();
+        // The first entry of each key and its usage over all slots, for the 24 hours data.
+        final BatteryDiffEntry[] firstDiffEntries = new BatteryDiffEntry[keyCount];
+        final long[] allForegroundUsageTimes = new long[keyCount];
+        final long[] allBackgroundUsageTimes = new long[keyCount];
+        final double[] allConsumePowers = new double[keyCount];
+        double allTotalConsumePower = 0.0;
+        final int[] keyIds = new int[keyCount];
         for (int index = 0; index < timeSlotSize; index++) {
-            final Long currentTimestamp =
-                Long.valueOf(batteryHistoryKeys[index * timestampStride]);
-            final Long nextTimestamp =
-                Long.valueOf(batteryHistoryKeys[index * timestampStride + 1]);
-            final Long nextTwoTimestamp =
-                Long.valueOf(batteryHistoryKeys[index * timestampStride + 2]);
-            // Fetches BatteryHistEntry data from corresponding time slot.
-            final Map<String, BatteryHistEntry> currentBatteryHistMap =
-                batteryHistoryMap.getOrDefault(currentTimestamp, EMPTY_BATTERY_MAP);
-            final Map<String, BatteryHistEntry> nextBatteryHistMap =
-                batteryHistoryMap.getOrDefault(nextTimestamp, EMPTY_BATTERY_MAP);
-            final Map<String, BatteryHistEntry> nextTwoBatteryHistMap =
-                batteryHistoryMap.getOrDefault(nextTwoTimestamp, EMPTY_BATTERY_MAP);
-            // We should not get the empty list since we have at least one fake data to record
-            // the battery level and status in each time slot, the empty list is used to
-            // represent there is no enough data to apply interpolation arithmetic.
-            if (currentBatteryHistMap.isEmpty()
-                    || nextBatteryHistMap.isEmpty()
-                    || nextTwoBatteryHistMap.isEmpty()) {
-                resultMap.put(Integer.valueOf(index), new ArrayList<BatteryDiffEntry>());
-                continue;
-            }
-
-            // Collects all keys in these three time slot records as all populations.
-            final Set<String> allBatteryHistEntryKeys = new HashSet<>();
-            allBatteryHistEntryKeys.addAll(currentBatteryHistMap.keySet());
-            allBatteryHistEntryKeys.addAll(nextBatteryHistMap.keySet());
-            allBatteryHistEntryKeys.addAll(nextTwoBatteryHistMap.keySet());
-
-            double totalConsumePower = 0.0;
-            final List<BatteryDiffEntry> batteryDiffEntryList = new ArrayList<>();
+            final List<BatteryDiffEntry> batteryDiffEntryList = getSlotUsageList(
+                    context, columns, index * timestampStride, keyIds);
             // Adds a specific time slot BatteryDiffEntry list into result map.
             resultMap.put(Integer.valueOf(index), batteryDiffEntryList);
-
-            // Calculates all packages diff usage data in a specific time slot.
-            for (String key : allBatteryHistEntryKeys) {
-                final BatteryHistEntry currentEntry =
-                    currentBatteryHistMap.getOrDefault(key, EMPTY_BATTERY_HIST_ENTRY);
-                final BatteryHistEntry nextEntry =
-                    nextBatteryHistMap.getOrDefault(key, EMPTY_BATTERY_HIST_ENTRY);
-                final BatteryHistEntry nextTwoEntry =
-                    nextTwoBatteryHistMap.getOrDefault(key, EMPTY_BATTERY_HIST_ENTRY);
-                // Cumulative values is a specific time slot for a specific app.
-                long foregroundUsageTimeInMs =
-                    getDiffValue(
-                        currentEntry.mForegroundUsageTimeInMs,
-                        nextEntry.mForegroundUsageTimeInMs,
-                        nextTwoEntry.mForegroundUsageTimeInMs);
-                long backgroundUsageTimeInMs =
-                    getDiffValue(
-                        currentEntry.mBackgroundUsageTimeInMs,
-                        nextEntry.mBackgroundUsageTimeInMs,
-                        nextTwoEntry.mBackgroundUsageTimeInMs);
-                double consumePower =
-                    getDiffValue(
-                        currentEntry.mConsumePower,
-                        nextEntry.mConsumePower,
-                        nextTwoEntry.mConsumePower);
-                // Excludes entry since we don't have enough data to calculate.
-                if (foregroundUsageTimeInMs == 0
-                        && backgroundUsageTimeInMs == 0
-                        && consumePower == 0) {
-                    continue;
-                }
-                final BatteryHistEntry selectedBatteryEntry =
-                    selectBatteryHistEntry(currentEntry, nextEntry, nextTwoEntry);
-                if (selectedBatteryEntry == null) {
-                    continue;
-                }
-                // Forces refine the cumulative value since it may introduce deviation
-                // error since we will apply the interpolation arithmetic.
-                final float totalUsageTimeInMs =
-                    foregroundUsageTimeInMs + backgroundUsageTimeInMs;
-                if (totalUsageTimeInMs > TOTAL_TIME_THRESHOLD) {
-                    final float ratio = TOTAL_TIME_THRESHOLD / totalUsageTimeInMs;
-                    if (DEBUG) {
-                        Log.w(TAG, String.format("abnormal usage time %d|%d for:\n%s",
-                                Duration.ofMillis(foregroundUsageTimeInMs).getSeconds(),
-                                Duration.ofMillis(backgroundUsageTimeInMs).getSeconds(),
-                                currentEntry));
-                    }
-                    foregroundUsageTimeInMs =
-                        Math.round(foregroundUsageTimeInMs * ratio);
-                    backgroundUsageTimeInMs =
-                        Math.round(backgroundUsageTimeInMs * ratio);
-                    consumePower = consumePower * ratio;
+            // Sums up the 24 hours data of each key.
+            for (int i = 0; i < batteryDiffEntryList.size(); i++) {
+                final BatteryDiffEntry diffEntry = batteryDiffEntryList.get(i);
+                final int keyId = keyIds[i];
+                if (firstDiffEntries[keyId] == null) {
+                    firstDiffEntries[keyId] = diffEntry;
                 }
-                totalConsumePower += consumePower;
-                batteryDiffEntryList.add(
-                    new BatteryDiffEntry(
-                        context,
-                        foregroundUsageTimeInMs,
-                        backgroundUsageTimeInMs,
-                        consumePower,
-                        selectedBatteryEntry));
-            }
-            // Sets total consume power data into all BatteryDiffEntry in the same slot.
-            for (BatteryDiffEntry diffEntry : batteryDiffEntryList) {
-                diffEntry.setTotalConsumePower(totalConsumePower);
+                allForegroundUsageTimes[keyId] += diffEntry.mForegroundUsageTimeInMs;
+                allBackgroundUsageTimes[keyId] += diffEntry.mBackgroundUsageTimeInMs;
+                allConsumePowers[keyId] += diffEntry.mConsumePower;
+                allTotalConsumePower += diffEntry.mConsumePower;
             }
         }
-        insert24HoursData(BatteryChartView.SELECTED_INDEX_ALL, resultMap);
+        insert24HoursData(BatteryChartView.SELECTED_INDEX_ALL, resultMap, firstDiffEntries,
+                allForegroundUsageTimes, allBackgroundUsageTimes, allConsumePowers,
+                allTotalConsumePower);
         if (purgeLowPercentageAndFakeData) {
             purgeLowPercentageAndFakeData(context, resultMap);
         }
         return resultMap;
     }
 
-    private static void insert24HoursData(
-            final int desiredIndex,
-            final Map<Integer, List<BatteryDiffEntry>> indexedUsageMap) {
-        final Map<String, BatteryDiffEntry> resultMap = new HashMap<>();
+    /**
+     * Gets the battery usage of the time slot made of the snapshots at {@code current} and the
+     * two next timestamps of {@code columns}. The list is empty if any of the snapshots is.
+     *
+     * @param keyIds if not null, receives the key id of each returned entry at the same index
+     */
+    static List<BatteryDiffEntry> getSlotUsageList(
+            final Context context,
+            final BatteryHistoryColumns columns,
+            final int current,
+            final int[] keyIds) {
+        final int next = current + 1;
+        final int nextTwo = current + 2;
+        final List<BatteryDiffEntry> batteryDiffEntryList = new ArrayList<>();
+        // We should not get the empty list since we have at least one fake data to record
+        // the battery level and status in each time slot, the empty list is used to
+        // represent there is no enough data to apply interpolation arithmetic.
+        if (columns.isEmpty(current) || columns.isEmpty(next) || columns.isEmpty(nextTwo)) {
+            return batteryDiffEntryList;
+        }
+
         double totalConsumePower = 0.0;
-        // Loops for all BatteryDiffEntry and aggregate them together.
-        for (List<BatteryDiffEntry> entryList : indexedUsageMap.values()) {
-            for (BatteryDiffEntry entry : entryList) {
-                final String key = entry.mBatteryHistEntry.getKey();
-                final BatteryDiffEntry oldBatteryDiffEntry = resultMap.get(key);
-                // Creates new BatteryDiffEntry if we don't have it.
-                if (oldBatteryDiffEntry == null) {
-                    resultMap.put(key, entry.clone());
-                } else {
-                    // Sums up some fields data into the existing one.
-                    oldBatteryDiffEntry.mForegroundUsageTimeInMs +=
-                        entry.mForegroundUsageTimeInMs;
-                    oldBatteryDiffEntry.mBackgroundUsageTimeInMs +=
-                        entry.mBackgroundUsageTimeInMs;
-                    oldBatteryDiffEntry.mConsumePower += entry.mConsumePower;
+        // Calculates all packages diff usage data in a specific time slot. Keys missing
+        // from a snapshot have zero values.
+        for (int keyId = 0; keyId < columns.getKeyCount(); keyId++) {
+            // Cumulative values is a specific time slot for a specific app.
+            long foregroundUsageTimeInMs =
+                getDiffValue(
+                    columns.getForegroundUsageTime(current, keyId),
+                    columns.getForegroundUsageTime(next, keyId),
+                    columns.getForegroundUsageTime(nextTwo, keyId));
+            long backgroundUsageTimeInMs =
+                getDiffValue(
+                    columns.getBackgroundUsageTime(current, keyId),
+                    columns.getBackgroundUsageTime(next, keyId),
+                    columns.getBackgroundUsageTime(nextTwo, keyId));
+            double consumePower =
+                getDiffValue(
+                    columns.getConsumePower(current, keyId),
+                    columns.getConsumePower(next, keyId),
+                    columns.getConsumePower(nextTwo, keyId));
+            // Excludes entry since we don't have enough data to calculate.
+            if (foregroundUsageTimeInMs == 0
+                    && backgroundUsageTimeInMs == 0
+                    && consumePower == 0) {
+                continue;
+            }
+            final BatteryHistEntry selectedBatteryEntry =
+                selectBatteryHistEntry(
+                    columns.getEntry(current, keyId),
+                    columns.getEntry(next, keyId),
+                    columns.getEntry(nextTwo, keyId));
+            if (selectedBatteryEntry == null) {
+                continue;
+            }
+            // Forces refine the cumulative value since it may introduce deviation
+            // error since we will apply the interpolation arithmetic.
+            final float totalUsageTimeInMs =
+                foregroundUsageTimeInMs + backgroundUsageTimeInMs;
+            if (totalUsageTimeInMs > TOTAL_TIME_THRESHOLD) {
+                final float ratio = TOTAL_TIME_THRESHOLD / totalUsageTimeInMs;
+                if (DEBUG) {
+                    Log.w(TAG, String.format("abnormal usage time %d|%d for:\n%s",
+                            Duration.ofMillis(foregroundUsageTimeInMs).getSeconds(),
+                            Duration.ofMillis(backgroundUsageTimeInMs).getSeconds(),
+                            selectedBatteryEntry));
                 }
-                totalConsumePower += entry.mConsumePower;
+                foregroundUsageTimeInMs =
+                    Math.round(foregroundUsageTimeInMs * ratio);
+                backgroundUsageTimeInMs =
+                    Math.round(backgroundUsageTimeInMs * ratio);
+                consumePower = consumePower * ratio;
+            }
+            totalConsumePower += consumePower;
+            if (keyIds != null) {
+                keyIds[batteryDiffEntryList.size()] = keyId;
             }
+            batteryDiffEntryList.add(
+                new BatteryDiffEntry(
+                    context,
+                    foregroundUsageTimeInMs,
+                    backgroundUsageTimeInMs,
+                    consumePower,
+                    selectedBatteryEntry));
+        }
+        // Sets total consume power data into all BatteryDiffEntry in the same slot.
+        for (BatteryDiffEntry diffEntry : batteryDiffEntryList) {
+            diffEntry.setTotalConsumePower(totalConsumePower);
         }
-        final List<BatteryDiffEntry> resultList = new ArrayList<>(resultMap.values());
-        // Sets total 24 hours consume power data into all BatteryDiffEntry.
-        for (BatteryDiffEntry entry : resultList) {
+        return batteryDiffEntryList;
+    }
+
+    private static void insert24HoursData(
+            final int desiredIndex,
+            final Map<Integer, List<BatteryDiffEntry>> indexedUsageMap,
+            final BatteryDiffEntry[] firstDiffEntries,
+            final long[] foregroundUsageTimes,
+            final long[] backgroundUsageTimes,
+            final double[] consumePowers,
+            final double totalConsumePower) {
+        final List<BatteryDiffEntry> resultList = new ArrayList<>();
+        for (int keyId = 0; keyId < firstDiffEntries.length; keyId++) {
+            if (firstDiffEntries[keyId] == null) {
+                continue;
+            }
+            final BatteryDiffEntry entry = firstDiffEntries[keyId].clone();
+            entry.mForegroundUsageTimeInMs = foregroundUsageTimes[keyId];
+            entry.mBackgroundUsageTimeInMs = backgroundUsageTimes[keyId];
+            entry.mConsumePower = consumePowers[keyId];
+            // Sets total 24 hours consume power data into all BatteryDiffEntry.
             entry.setTotalConsumePower(totalConsumePower);
+            resultList.add(entry);
         }
         indexedUsageMap.put(Integer.valueOf(desiredIndex), resultList);
     }
 
     // Removes low percentage data and fake usage data, which will be zero value.
-    private static void purgeLowPercentageAndFakeData(
+    static void purgeLowPercentageAndFakeData(
             final Context context,
             final Map<Integer, List<BatteryDiffEntry>> indexedUsageMap) {
         final List<CharSequence> backgroundUsageTimeHideList =
@@ -336,13 +343,12 @@ public final class ConvertUtils {
             BatteryHistEntry entry1,
             BatteryHistEntry entry2,
             BatteryHistEntry entry3) {
-        if (entry1 != null && entry1 != EMPTY_BATTERY_HIST_ENTRY) {
+        if (entry1 != null) {
             return entry1;
-        } else if (entry2 != null && entry2 != EMPTY_BATTERY_HIST_ENTRY) {
+        } else if (entry2 != null) {
             return entry2;
         } else {
-            return entry3 != null && entry3 != EMPTY_BATTERY_HIST_ENTRY
-                ? entry3 : null;
+            return entry3;
         }
     }
 
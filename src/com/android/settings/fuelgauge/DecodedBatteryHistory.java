@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge;
+
+import android.os.BatteryStats.HistoryItem;
+import android.os.BatteryUsageStats;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.internal.os.BatteryStatsHistoryIterator;
+import com.android.settings.fuelgauge.BatteryInfo.BatteryDataParser;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * Battery history of a {@link BatteryUsageStats}, decoded once into primitive arrays.
+ *
+ * <p>Only the {@link HistoryItem} fields read by the {@link BatteryDataParser BatteryDataParsers}
+ * are kept: the command, the times, the battery level and the state flags. The history of the
+ * last stats is cached, so binding the chart again or running several parsers over the same
+ * stats doesn't decode the history again.
+ */
+final class DecodedBatteryHistory {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private static WeakReference<BatteryUsageStats> sCachedStats;
+    private static DecodedBatteryHistory sCachedHistory;
+
+    private int mSize;
+    private byte[] mCmds = new byte[INITIAL_CAPACITY];
+    private long[] mTimes = new long[INITIAL_CAPACITY];
+    private long[] mCurrentTimes = new long[INITIAL_CAPACITY];
+    private byte[] mBatteryLevels = new byte[INITIAL_CAPACITY];
+    private int[] mStates = new int[INITIAL_CAPACITY];
+    private int[] mStates2 = new int[INITIAL_CAPACITY];
+
+    /**
+     * Returns the decoded history of {@code batteryUsageStats}, decoding it if it is not the
+     * stats of the last call.
+     */
+    static synchronized DecodedBatteryHistory get(BatteryUsageStats batteryUsageStats) {
+        if (sCachedStats == null || sCachedStats.get() != batteryUsageStats) {
+            sCachedHistory = decode(batteryUsageStats.iterateBatteryStatsHistory());
+            sCachedStats = new WeakReference<>(batteryUsageStats);
+        }
+        return sCachedHistory;
+    }
+
+    @VisibleForTesting
+    static synchronized void clearCache() {
+        sCachedStats = null;
+        sCachedHistory = null;
+    }
+
+    @VisibleForTesting
+    static DecodedBatteryHistory decode(BatteryStatsHistoryIterator iterator) {
+        final DecodedBatteryHistory history = new DecodedBatteryHistory();
+        final HistoryItem rec = new HistoryItem();
+        while (iterator.next(rec)) {
+            history.add(rec);
+        }
+        return history;
+    }
+
+    @VisibleForTesting
+    int size() {
+        return mSize;
+    }
+
+    private void add(HistoryItem rec) {
+        if (mSize == mCmds.length) {
+            final int capacity = mSize * 2;
+            mCmds = Arrays.copyOf(mCmds, capacity);
+            mTimes = Arrays.copyOf(mTimes, capacity);
+            mCurrentTimes = Arrays.copyOf(mCurrentTimes, capacity);
+            mBatteryLevels = Arrays.copyOf(mBatteryLevels, capacity);
+            mStates = Arrays.copyOf(mStates, capacity);
+            mStates2 = Arrays.copyOf(mStates2, capacity);
+        }
+        mCmds[mSize] = rec.cmd;
+        mTimes[mSize] = rec.time;
+        mCurrentTimes[mSize] = rec.currentTime;
+        mBatteryLevels[mSize] = rec.batteryLevel;
+        mStates[mSize] = rec.states;
+        mStates2[mSize] = rec.states2;
+        mSize++;
+    }
+
+    private void fill(int index, HistoryItem rec) {
+        rec.cmd = mCmds[index];
+        rec.time = mTimes[index];
+        rec.currentTime = mCurrentTimes[index];
+        rec.batteryLevel = mBatteryLevels[index];
+        rec.states = mStates[index];
+        rec.states2 = mStates2[index];
+    }
+
+    private static boolean isTimeChange(byte cmd) {
+        return cmd == HistoryItem.CMD_CURRENT_TIME || cmd == HistoryItem.CMD_RESET;
+    }
+
+    /**
+     * Feeds the history to all {@code parsers} in a single pass.
+     */
+    void replay(BatteryDataParser... parsers) {
+        long startWalltime = 0;
+        long endWalltime = 0;
+        long historyStart = 0;
+        long historyEnd = 0;
+        long curWalltime = startWalltime;
+        long lastWallTime = 0;
+        long lastRealtime = 0;
+        int lastInteresting = 0;
+        for (int index = 0; index < mSize; index++) {
+            if (index == 0) {
+                historyStart = mTimes[index];
+            }
+            if (isTimeChange(mCmds[index])) {
+                // If there is a ridiculously large jump in time, then we won't be
+                // able to create a good chart with that data, so just ignore the
+                // times we got before and pretend like our data extends back from
+                // the time we have now.
+                // Also, if we are getting a time change and we are less than 5 minutes
+                // since the start of the history real time, then also use this new
+                // time to compute the base time, since whatever time we had before is
+                // pretty much just noise.
+                if (mCurrentTimes[index] > (lastWallTime + (180 * 24 * 60 * 60 * 1000L))
+                        || mTimes[index] < (historyStart + (5 * 60 * 1000L))) {
+                    startWalltime = 0;
+                }
+                lastWallTime = mCurrentTimes[index];
+                lastRealtime = mTimes[index];
+                if (startWalltime == 0) {
+                    startWalltime = lastWallTime - (lastRealtime - historyStart);
+                }
+            }
+            if (mCmds[index] == HistoryItem.CMD_UPDATE) {
+                lastInteresting = index + 1;
+                historyEnd = mTimes[index];
+            }
+        }
+
+        endWalltime = lastWallTime + historyEnd - lastRealtime;
+
+        for (int j = 0; j < parsers.length; j++) {
+            parsers[j].onParsingStarted(startWalltime, endWalltime);
+        }
+
+        if (endWalltime > startWalltime) {
+            final HistoryItem rec = new HistoryItem();
+            for (int index = 0; index < lastInteresting; index++) {
+                fill(index, rec);
+                if (rec.isDeltaData()) {
+                    curWalltime += rec.time - lastRealtime;
+                    lastRealtime = rec.time;
+                    long x = (curWalltime - startWalltime);
+                    if (x < 0) {
+                        x = 0;
+                    }
+                    for (int j = 0; j < parsers.length; j++) {
+                        parsers[j].onDataPoint(x, rec);
+                    }
+                } else {
+                    long lastWalltime = curWalltime;
+                    if (isTimeChange(rec.cmd)) {
+                        if (rec.currentTime >= startWalltime) {
+                            curWalltime = rec.currentTime;
+                        } else {
+                            curWalltime = startWalltime + (rec.time - historyStart);
+                        }
+                        lastRealtime = rec.time;
+                    }
+
+                    if (rec.cmd != HistoryItem.CMD_OVERFLOW
+                            && (rec.cmd != HistoryItem.CMD_CURRENT_TIME
+                            || Math.abs(lastWalltime - curWalltime) > (60 * 60 * 1000))) {
+                        for (int j = 0; j < parsers.length; j++) {
+                            parsers[j].onDataGap();
+                        }
+                    }
+                }
+            }
+        }
+
+        for (int j = 0; j < parsers.length; j++) {
+            parsers[j].onParsingDone();
+        }
+    }
+}
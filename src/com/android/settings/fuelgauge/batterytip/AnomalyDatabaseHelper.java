@@ -145,6 +145,8 @@ public class AnomalyDatabaseHelper extends SQLiteOpenHelper {
 
     private AnomalyDatabaseHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        // Lets the tip queries read while anomalies are written.
+        setWriteAheadLoggingEnabled(true);
     }
 
     @Override
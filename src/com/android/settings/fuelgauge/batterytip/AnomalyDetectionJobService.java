@@ -35,7 +35,11 @@ import android.os.Bundle;
 import android.os.StatsDimensionsValue;
 import android.os.UserManager;
 import android.provider.Settings;
+import android.util.ArrayMap;
 import android.util.Log;
+import android.util.Pair;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
 
 import androidx.annotation.GuardedBy;
 import androidx.annotation.VisibleForTesting;
@@ -50,6 +54,7 @@ import com.android.settingslib.fuelgauge.PowerAllowlistBackend;
 import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -103,12 +108,23 @@ public class AnomalyDetectionJobService extends JobService {
             final MetricsFeatureProvider metricsFeatureProvider = FeatureFactory
                     .getFactory(this).getMetricsFeatureProvider();
 
+            // Drains all the pending work, anomalies tend to come in bursts.
+            final List<JobWorkItem> items = new ArrayList<>();
             for (JobWorkItem item = dequeueWork(params); item != null; item = dequeueWork(params)) {
-                saveAnomalyToDatabase(context, userManager,
-                        batteryDatabaseManager, batteryUtils, policy, powerAllowlistBackend,
-                        contentResolver, powerUsageFeatureProvider, metricsFeatureProvider,
-                        item.getIntent().getExtras());
+                items.add(item);
+            }
+            if (items.isEmpty()) {
+                return;
+            }
+            final List<Bundle> bundles = new ArrayList<>(items.size());
+            for (JobWorkItem item : items) {
+                bundles.add(item.getIntent().getExtras());
+            }
+            saveAnomaliesToDatabase(context, userManager,
+                    batteryDatabaseManager, batteryUtils, policy, powerAllowlistBackend,
+                    contentResolver, powerUsageFeatureProvider, metricsFeatureProvider, bundles);
 
+            for (JobWorkItem item : items) {
                 completeWork(params, item);
             }
         });
@@ -130,55 +146,99 @@ public class AnomalyDetectionJobService extends JobService {
             BatteryTipPolicy policy, PowerAllowlistBackend powerAllowlistBackend,
             ContentResolver contentResolver, PowerUsageFeatureProvider powerUsageFeatureProvider,
             MetricsFeatureProvider metricsFeatureProvider, Bundle bundle) {
-        // The Example of intentDimsValue is: 35:{1:{1:{1:10013|}|}|}
-        final StatsDimensionsValue intentDimsValue =
-                bundle.getParcelable(StatsManager.EXTRA_STATS_DIMENSIONS_VALUE);
-        final long timeMs = bundle.getLong(AnomalyDetectionReceiver.KEY_ANOMALY_TIMESTAMP,
-                System.currentTimeMillis());
-        final ArrayList<String> cookies = bundle.getStringArrayList(
-                StatsManager.EXTRA_STATS_BROADCAST_SUBSCRIBER_COOKIES);
-        final AnomalyInfo anomalyInfo = new AnomalyInfo(
-                !ArrayUtils.isEmpty(cookies) ? cookies.get(0) : "");
-        Log.i(TAG, "Extra stats value: " + intentDimsValue.toString());
-
-        try {
-            final int uid = extractUidFromStatsDimensionsValue(intentDimsValue);
-            final boolean autoFeatureOn = powerUsageFeatureProvider.isSmartBatterySupported()
-                    ? Settings.Global.getInt(contentResolver,
-                    Settings.Global.ADAPTIVE_BATTERY_MANAGEMENT_ENABLED, ON) == ON
-                    : Settings.Global.getInt(contentResolver,
-                            Settings.Global.APP_AUTO_RESTRICTION_ENABLED, ON) == ON;
-            final String packageName = batteryUtils.getPackageName(uid);
-            final long versionCode = batteryUtils.getAppLongVersionCode(packageName);
-            final String versionedPackage = packageName + "/" + versionCode;
-            if (batteryUtils.shouldHideAnomaly(powerAllowlistBackend, uid, anomalyInfo)) {
-                metricsFeatureProvider.action(SettingsEnums.PAGE_UNKNOWN,
-                        SettingsEnums.ACTION_ANOMALY_IGNORED,
-                        SettingsEnums.PAGE_UNKNOWN,
-                        versionedPackage,
-                        anomalyInfo.anomalyType);
-            } else {
-                if (autoFeatureOn && anomalyInfo.autoRestriction) {
-                    // Auto restrict this app
-                    batteryUtils.setForceAppStandby(uid, packageName,
-                            AppOpsManager.MODE_IGNORED);
-                    databaseManager.insertAnomaly(uid, packageName, anomalyInfo.anomalyType,
-                            AnomalyDatabaseHelper.State.AUTO_HANDLED,
-                            timeMs);
+        saveAnomaliesToDatabase(context, userManager, databaseManager, batteryUtils, policy,
+                powerAllowlistBackend, contentResolver, powerUsageFeatureProvider,
+                metricsFeatureProvider, Collections.singletonList(bundle));
+    }
+
+    /**
+     * Saves a batch of anomalies. The settings and the package of each uid are only looked up
+     * once per batch, and all the anomalies are written in a single transaction.
+     */
+    @VisibleForTesting
+    void saveAnomaliesToDatabase(Context context, UserManager userManager,
+            BatteryDatabaseManager databaseManager, BatteryUtils batteryUtils,
+            BatteryTipPolicy policy, PowerAllowlistBackend powerAllowlistBackend,
+            ContentResolver contentResolver, PowerUsageFeatureProvider powerUsageFeatureProvider,
+            MetricsFeatureProvider metricsFeatureProvider, List<Bundle> bundles) {
+        final boolean autoFeatureOn = powerUsageFeatureProvider.isSmartBatterySupported()
+                ? Settings.Global.getInt(contentResolver,
+                Settings.Global.ADAPTIVE_BATTERY_MANAGEMENT_ENABLED, ON) == ON
+                : Settings.Global.getInt(contentResolver,
+                        Settings.Global.APP_AUTO_RESTRICTION_ENABLED, ON) == ON;
+        final SparseArray<String> packageNames = new SparseArray<>();
+        final ArrayMap<String, String> versionedPackages = new ArrayMap<>();
+        final SparseBooleanArray restrictedUids = new SparseBooleanArray();
+        final List<BatteryDatabaseManager.Anomaly> anomalies = new ArrayList<>(bundles.size());
+        final List<Pair<String, Integer>> triggeredAnomalies = new ArrayList<>(bundles.size());
+
+        for (Bundle bundle : bundles) {
+            // The Example of intentDimsValue is: 35:{1:{1:{1:10013|}|}|}
+            final StatsDimensionsValue intentDimsValue =
+                    bundle.getParcelable(StatsManager.EXTRA_STATS_DIMENSIONS_VALUE);
+            final long timeMs = bundle.getLong(AnomalyDetectionReceiver.KEY_ANOMALY_TIMESTAMP,
+                    System.currentTimeMillis());
+            final ArrayList<String> cookies = bundle.getStringArrayList(
+                    StatsManager.EXTRA_STATS_BROADCAST_SUBSCRIBER_COOKIES);
+            final AnomalyInfo anomalyInfo = new AnomalyInfo(
+                    !ArrayUtils.isEmpty(cookies) ? cookies.get(0) : "");
+            Log.i(TAG, "Extra stats value: " + intentDimsValue.toString());
+
+            try {
+                final int uid = extractUidFromStatsDimensionsValue(intentDimsValue);
+                final int packageIndex = packageNames.indexOfKey(uid);
+                final String packageName;
+                if (packageIndex >= 0) {
+                    packageName = packageNames.valueAt(packageIndex);
+                } else {
+                    packageName = batteryUtils.getPackageName(uid);
+                    packageNames.put(uid, packageName);
+                }
+                String versionedPackage = versionedPackages.get(packageName);
+                if (versionedPackage == null) {
+                    final long versionCode = batteryUtils.getAppLongVersionCode(packageName);
+                    versionedPackage = packageName + "/" + versionCode;
+                    versionedPackages.put(packageName, versionedPackage);
+                }
+                if (batteryUtils.shouldHideAnomaly(powerAllowlistBackend, uid, anomalyInfo)) {
+                    metricsFeatureProvider.action(SettingsEnums.PAGE_UNKNOWN,
+                            SettingsEnums.ACTION_ANOMALY_IGNORED,
+                            SettingsEnums.PAGE_UNKNOWN,
+                            versionedPackage,
+                            anomalyInfo.anomalyType);
                 } else {
-                    databaseManager.insertAnomaly(uid, packageName, anomalyInfo.anomalyType,
-                            AnomalyDatabaseHelper.State.NEW,
-                            timeMs);
+                    if (autoFeatureOn && anomalyInfo.autoRestriction) {
+                        // Auto restrict this app
+                        if (!restrictedUids.get(uid)) {
+                            batteryUtils.setForceAppStandby(uid, packageName,
+                                    AppOpsManager.MODE_IGNORED);
+                            restrictedUids.put(uid, true);
+                        }
+                        anomalies.add(new BatteryDatabaseManager.Anomaly(uid, packageName,
+                                anomalyInfo.anomalyType, AnomalyDatabaseHelper.State.AUTO_HANDLED,
+                                timeMs));
+                    } else {
+                        anomalies.add(new BatteryDatabaseManager.Anomaly(uid, packageName,
+                                anomalyInfo.anomalyType, AnomalyDatabaseHelper.State.NEW,
+                                timeMs));
+                    }
+                    triggeredAnomalies.add(Pair.create(versionedPackage, anomalyInfo.anomalyType));
                 }
-                metricsFeatureProvider.action(SettingsEnums.PAGE_UNKNOWN,
-                        SettingsEnums.ACTION_ANOMALY_TRIGGERED,
-                        SettingsEnums.PAGE_UNKNOWN,
-                        versionedPackage,
-                        anomalyInfo.anomalyType);
+
+            } catch (NullPointerException | IndexOutOfBoundsException e) {
+                Log.e(TAG, "Parse stats dimensions value error.", e);
             }
+        }
 
-        } catch (NullPointerException | IndexOutOfBoundsException e) {
-            Log.e(TAG, "Parse stats dimensions value error.", e);
+        if (!anomalies.isEmpty()) {
+            databaseManager.insertAnomalies(anomalies);
+        }
+        for (Pair<String, Integer> anomaly : triggeredAnomalies) {
+            metricsFeatureProvider.action(SettingsEnums.PAGE_UNKNOWN,
+                    SettingsEnums.ACTION_ANOMALY_TRIGGERED,
+                    SettingsEnums.PAGE_UNKNOWN,
+                    anomaly.first,
+                    anomaly.second);
         }
     }
 
@@ -31,6 +31,7 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.text.TextUtils;
 import android.util.ArrayMap;
 import android.util.SparseLongArray;
@@ -47,10 +48,15 @@ import java.util.Map;
 /**
  * Database manager for battery data. Now it only contains anomaly data stored in {@link AppInfo}.
  *
- * This manager may be accessed by multi-threads. All the database related methods are synchronized
- * so each operation won't be interfered by other threads.
+ * This manager may be accessed by multi-threads. All the methods writing to the database are
+ * synchronized so each write won't be interfered by other threads. The database is in write-ahead
+ * logging mode, so the queries don't wait for the writes.
  */
 public class BatteryDatabaseManager {
+    private static final String INSERT_ANOMALY_SQL = "INSERT OR IGNORE INTO " + TABLE_ANOMALY
+            + " (" + UID + ", " + PACKAGE_NAME + ", " + ANOMALY_TYPE + ", " + ANOMALY_STATE + ", "
+            + TIME_STAMP_MS + ") VALUES (?, ?, ?, ?, ?)";
+
     private static BatteryDatabaseManager sSingleton;
 
     private AnomalyDatabaseHelper mDatabaseHelper;
@@ -95,10 +101,45 @@ public class BatteryDatabaseManager {
         return db.insertWithOnConflict(TABLE_ANOMALY, null, values, CONFLICT_IGNORE) != -1;
     }
 
+    /**
+     * Insert anomaly logs to database in a single transaction.
+     *
+     * @return the number of inserted anomalies
+     */
+    public synchronized int insertAnomalies(List<Anomaly> anomalies) {
+        if (anomalies.isEmpty()) {
+            return 0;
+        }
+        int insertedCount = 0;
+        final SQLiteDatabase db = mDatabaseHelper.getWritableDatabase();
+        db.beginTransaction();
+        try (SQLiteStatement statement = db.compileStatement(INSERT_ANOMALY_SQL)) {
+            for (Anomaly anomaly : anomalies) {
+                statement.bindLong(1, anomaly.uid);
+                if (anomaly.packageName == null) {
+                    statement.bindNull(2);
+                } else {
+                    statement.bindString(2, anomaly.packageName);
+                }
+                statement.bindLong(3, anomaly.type);
+                statement.bindLong(4, anomaly.state);
+                statement.bindLong(5, anomaly.timestampMs);
+                if (statement.executeInsert() != -1) {
+                    insertedCount++;
+                }
+                statement.clearBindings();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return insertedCount;
+    }
+
     /**
      * Query all the anomalies that happened after {@code timestampMsAfter} and with {@code state}.
      */
-    public synchronized List<AppInfo> queryAllAnomalies(long timestampMsAfter, int state) {
+    public List<AppInfo> queryAllAnomalies(long timestampMsAfter, int state) {
         final List<AppInfo> appInfos = new ArrayList<>();
         final SQLiteDatabase db = mDatabaseHelper.getReadableDatabase();
         final String[] projection = {PACKAGE_NAME, ANOMALY_TYPE, UID};
@@ -165,7 +206,7 @@ public class BatteryDatabaseManager {
      * @param type of action been performed
      * @return {@link SparseLongArray} where key is uid and value is timestamp
      */
-    public synchronized SparseLongArray queryActionTime(
+    public SparseLongArray queryActionTime(
             @AnomalyDatabaseHelper.ActionType int type) {
         final SparseLongArray timeStamps = new SparseLongArray();
         final SQLiteDatabase db = mDatabaseHelper.getReadableDatabase();
@@ -217,4 +258,23 @@ public class BatteryDatabaseManager {
 
         return db.delete(TABLE_ACTION, where, whereArgs) != 0;
     }
+
+    /**
+     * An anomaly log to insert with {@link #insertAnomalies(List)}.
+     */
+    public static final class Anomaly {
+        public final int uid;
+        public final String packageName;
+        public final int type;
+        public final int state;
+        public final long timestampMs;
+
+        public Anomaly(int uid, String packageName, int type, int state, long timestampMs) {
+            this.uid = uid;
+            this.packageName = packageName;
+            this.type = type;
+            this.state = state;
+            this.timestampMs = timestampMs;
+        }
+    }
 }
@@ -16,14 +16,19 @@
 
 package com.android.settings.fuelgauge.batterytip;
 
+import android.app.settings.SettingsEnums;
 import android.content.Context;
 import android.os.BatteryUsageStats;
+import android.os.Parcel;
+import android.os.SystemClock;
+import android.util.Log;
 
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.fuelgauge.BatteryInfo;
 import com.android.settings.fuelgauge.BatteryUtils;
 import com.android.settings.fuelgauge.batterytip.detectors.BatteryDefenderDetector;
+import com.android.settings.fuelgauge.batterytip.detectors.BatteryTipDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.EarlyWarningDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.HighUsageDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.LowBatteryDetector;
@@ -31,12 +36,18 @@ import com.android.settings.fuelgauge.batterytip.detectors.SmartBatteryDetector;
 import com.android.settings.fuelgauge.batterytip.tips.BatteryTip;
 import com.android.settings.fuelgauge.batterytip.tips.LowBatteryTip;
 import com.android.settings.fuelgauge.batterytip.tips.SummaryTip;
+import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.fuelgauge.EstimateKt;
 import com.android.settingslib.utils.AsyncLoaderCompat;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Loader to compute and return a battery tip list. It will always return a full length list even
@@ -46,6 +57,16 @@ public class BatteryTipLoader extends AsyncLoaderCompat<List<BatteryTip>> {
     private static final String TAG = "BatteryTipLoader";
 
     private static final boolean USE_FAKE_DATA = false;
+    // Time to wait for all the detectors, a detector still running after it uses its last tip.
+    @VisibleForTesting
+    static final long DETECTOR_DEADLINE_MS = 500;
+
+    private static final int DETECTOR_COUNT = 5;
+
+    // Last tip of each detector, in the order they are run. The tips are private copies, each load
+    // gets its own copy of them.
+    @VisibleForTesting
+    static final BatteryTip[] sLastTips = new BatteryTip[DETECTOR_COUNT];
 
     private BatteryUsageStats mBatteryUsageStats;
     @VisibleForTesting
@@ -62,25 +83,96 @@ public class BatteryTipLoader extends AsyncLoaderCompat<List<BatteryTip>> {
         if (USE_FAKE_DATA) {
             return getFakeData();
         }
-        final List<BatteryTip> tips = new ArrayList<>();
         final BatteryTipPolicy policy = new BatteryTipPolicy(getContext());
         final BatteryInfo batteryInfo = mBatteryUtils.getBatteryInfo(TAG);
         final Context context = getContext();
 
-        tips.add(new LowBatteryDetector(context, policy, batteryInfo).detect());
-        tips.add(new HighUsageDetector(context, policy, mBatteryUsageStats, batteryInfo).detect());
-        tips.add(new SmartBatteryDetector(
-                context, policy, batteryInfo, context.getContentResolver()).detect());
-        tips.add(new EarlyWarningDetector(policy, context).detect());
-        tips.add(new BatteryDefenderDetector(batteryInfo).detect());
+        final BatteryTipDetector[] detectors = new BatteryTipDetector[] {
+                new LowBatteryDetector(context, policy, batteryInfo),
+                new HighUsageDetector(context, policy, mBatteryUsageStats, batteryInfo),
+                new SmartBatteryDetector(
+                        context, policy, batteryInfo, context.getContentResolver()),
+                new EarlyWarningDetector(policy, context),
+                new BatteryDefenderDetector(batteryInfo)};
         // Disable this feature now since it introduces false positive cases. We will try to improve
         // it in the future.
-        // tips.add(new RestrictAppDetector(context, policy).detect());
+        // new RestrictAppDetector(context, policy)
+
+        final long startTime = SystemClock.elapsedRealtime();
+        final List<Future<BatteryTip>> futures = new ArrayList<>(DETECTOR_COUNT);
+        for (int i = 0; i < DETECTOR_COUNT; i++) {
+            final int index = i;
+            final BatteryTipDetector detector = detectors[i];
+            futures.add(ThreadUtils.postOnBackgroundThread(() -> detect(index, detector)));
+        }
+        final long deadline = startTime + DETECTOR_DEADLINE_MS;
+        final List<BatteryTip> tips = new ArrayList<>(DETECTOR_COUNT);
+        for (int i = 0; i < DETECTOR_COUNT; i++) {
+            tips.add(getTip(context, i, detectors[i], futures.get(i), deadline));
+        }
 
         Collections.sort(tips);
         return tips;
     }
 
+    private static BatteryTip detect(int index, BatteryTipDetector detector) {
+        final long startTime = SystemClock.elapsedRealtime();
+        final BatteryTip tip = detector.detect();
+        Log.d(TAG, String.format("%s took %d ms", detector.getClass().getSimpleName(),
+                SystemClock.elapsedRealtime() - startTime));
+        final BatteryTip lastTip = copyTip(tip);
+        synchronized (sLastTips) {
+            sLastTips[index] = lastTip;
+        }
+        return tip;
+    }
+
+    private static BatteryTip getTip(Context context, int index, BatteryTipDetector detector,
+            Future<BatteryTip> future, long deadline) {
+        final BatteryTip lastTip;
+        synchronized (sLastTips) {
+            lastTip = copyTip(sLastTips[index]);
+        }
+        try {
+            if (lastTip == null) {
+                // Nothing to show instead, waits for the detector.
+                return future.get();
+            }
+            return future.get(Math.max(0, deadline - SystemClock.elapsedRealtime()),
+                    TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            Log.w(TAG, detector.getClass().getSimpleName() + " missed the deadline");
+            FeatureFactory.getFactory(context).getMetricsFeatureProvider().action(
+                    SettingsEnums.PAGE_UNKNOWN,
+                    SettingsEnums.ACTION_CONTEXTUAL_CARD_LOAD_TIMEOUT,
+                    SettingsEnums.FUELGAUGE_POWER_USAGE_SUMMARY_V2,
+                    detector.getClass().getSimpleName(),
+                    (int) DETECTOR_DEADLINE_MS);
+        } catch (InterruptedException | ExecutionException e) {
+            Log.e(TAG, "Failed to run " + detector.getClass().getSimpleName(), e);
+            if (lastTip == null) {
+                // Detection errors were thrown from loadInBackground before.
+                throw new IllegalStateException(e);
+            }
+        }
+        return lastTip;
+    }
+
+    // The tips are changed by the pages showing them, a copy is handed to each of them.
+    private static BatteryTip copyTip(BatteryTip tip) {
+        if (tip == null) {
+            return null;
+        }
+        final Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeParcelable(tip, 0 /* flags */);
+            parcel.setDataPosition(0);
+            return parcel.readParcelable(BatteryTip.class.getClassLoader());
+        } finally {
+            parcel.recycle();
+        }
+    }
+
     @Override
     protected void onDiscardResult(List<BatteryTip> result) {
     }
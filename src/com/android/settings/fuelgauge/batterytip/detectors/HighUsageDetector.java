@@ -34,6 +34,7 @@ import com.android.settings.fuelgauge.batterytip.tips.HighUsageTip;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -75,11 +76,15 @@ public class HighUsageDetector implements BatteryTipDetector {
                 final int dischargeAmount = mBatteryUsageStats.getDischargePercentage();
                 final List<UidBatteryConsumer> uidBatteryConsumers =
                         mBatteryUsageStats.getUidBatteryConsumers();
-                // Sort by descending power
-                uidBatteryConsumers.sort(
+                // Polls by descending power, only the top consumers are needed so they are not
+                // all sorted. This also leaves the list of the shared stats untouched.
+                final PriorityQueue<UidBatteryConsumer> consumerQueue = new PriorityQueue<>(
+                        Math.max(1, uidBatteryConsumers.size()),
                         (consumer1, consumer2) -> Double.compare(consumer2.getConsumedPower(),
                                 consumer1.getConsumedPower()));
-                for (UidBatteryConsumer consumer : uidBatteryConsumers) {
+                consumerQueue.addAll(uidBatteryConsumers);
+                while (!consumerQueue.isEmpty()) {
+                    final UidBatteryConsumer consumer = consumerQueue.poll();
                     final double percent = mBatteryUtils.calculateBatteryPercent(
                             consumer.getConsumedPower(), totalPower, dischargeAmount);
                     if ((percent + 0.5f < 1f)
@@ -50,6 +50,7 @@ import com.android.settingslib.core.lifecycle.LifecycleObserver;
 import com.android.settingslib.core.lifecycle.events.OnSaveInstanceState;
 import com.android.settingslib.core.lifecycle.events.OnStart;
 import com.android.settingslib.core.lifecycle.events.OnStop;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -97,6 +98,12 @@ public class ContextualCardManager implements ContextualCardLoader.CardContentLo
     boolean mIsFirstLaunch;
     @VisibleForTesting
     List<String> mSavedCards;
+    @VisibleForTesting
+    boolean mIsSnapshotShown;
+    @VisibleForTesting
+    ContextualCardSnapshot mCardSnapshot;
+    // Bumped by every finished load, so a late snapshot read never replaces loaded cards.
+    private int mLoadCount;
 
     public ContextualCardManager(Context context, Lifecycle lifecycle, Bundle savedInstanceState) {
         mContext = context;
@@ -104,6 +111,7 @@ public class ContextualCardManager implements ContextualCardLoader.CardContentLo
         mContextualCards = new ArrayList<>();
         mLifecycleObservers = new ArrayList<>();
         mControllerRendererPool = new ControllerRendererPool();
+        mCardSnapshot = new ContextualCardSnapshot(context);
         mLifecycle.addObserver(this);
         if (savedInstanceState == null) {
             mIsFirstLaunch = true;
@@ -137,6 +145,52 @@ public class ContextualCardManager implements ContextualCardLoader.CardContentLo
             loaderManager.restartLoader(CARD_CONTENT_LOADER_ID, null /* bundle */,
                     cardContentLoaderCallbacks);
         }
+        if (mIsFirstLaunch) {
+            showCardSnapshot();
+        }
+    }
+
+    /**
+     * Shows the cards of the last load while the loader refreshes them, if enabled.
+     */
+    @VisibleForTesting
+    void showCardSnapshot() {
+        if (!isCardSnapshotEnabled() || mContextualCards.stream()
+                .anyMatch(card -> card.getCardType() == ContextualCard.CardType.SLICE)) {
+            return;
+        }
+        final int loadCount = mLoadCount;
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final List<ContextualCard> cards = mCardSnapshot.read();
+            if (cards == null || cards.isEmpty()) {
+                return;
+            }
+            ThreadUtils.postOnMainThread(() -> {
+                if (loadCount != mLoadCount || !mIsFirstLaunch) {
+                    return;
+                }
+                Log.d(TAG, "Showing " + cards.size() + " cards from snapshot");
+                mIsSnapshotShown = true;
+                onContextualCardUpdated(cards.stream()
+                        .collect(groupingBy(ContextualCard::getCardType)));
+            });
+        });
+    }
+
+    /**
+     * Saves the loaded cards which are displayed, for the next launch to show them right away.
+     */
+    private void writeCardSnapshot(List<ContextualCard> displayedCards) {
+        if (!isCardSnapshotEnabled()) {
+            return;
+        }
+        final List<ContextualCard> snapshotCards = new ArrayList<>(displayedCards);
+        ThreadUtils.postOnBackgroundThread(() -> mCardSnapshot.write(snapshotCards));
+    }
+
+    @VisibleForTesting
+    boolean isCardSnapshotEnabled() {
+        return FeatureFlagUtils.isEnabled(mContext, FeatureFlags.CONTEXTUAL_CARD_SNAPSHOT);
     }
 
     private void loadCardControllers() {
@@ -234,6 +288,8 @@ public class ContextualCardManager implements ContextualCardLoader.CardContentLo
         final long loadTime = System.currentTimeMillis() - mStartTime;
         Log.d(TAG, "Total loading time = " + loadTime);
 
+        mLoadCount++;
+
         final List<ContextualCard> cardsToKeep = getCardsToKeep(cards);
 
         final MetricsFeatureProvider metricsFeatureProvider =
@@ -243,6 +299,7 @@ public class ContextualCardManager implements ContextualCardLoader.CardContentLo
         if (!mIsFirstLaunch) {
             onContextualCardUpdated(cardsToKeep.stream()
                     .collect(groupingBy(ContextualCard::getCardType)));
+            writeCardSnapshot(cardsToKeep);
             metricsFeatureProvider.action(mContext,
                     SettingsEnums.ACTION_CONTEXTUAL_CARD_SHOW,
                     ContextualCardLogUtils.buildCardListLog(cardsToKeep));
@@ -250,9 +307,11 @@ public class ContextualCardManager implements ContextualCardLoader.CardContentLo
         }
 
         final long timeoutLimit = getCardLoaderTimeout();
-        if (loadTime <= timeoutLimit) {
+        // A shown snapshot is always revalidated, even by a slow load.
+        if (loadTime <= timeoutLimit || mIsSnapshotShown) {
             onContextualCardUpdated(cards.stream()
                     .collect(groupingBy(ContextualCard::getCardType)));
+            writeCardSnapshot(cards);
             metricsFeatureProvider.action(mContext,
                     SettingsEnums.ACTION_CONTEXTUAL_CARD_SHOW,
                     ContextualCardLogUtils.buildCardListLog(cards));
@@ -269,6 +328,7 @@ public class ContextualCardManager implements ContextualCardLoader.CardContentLo
                 SettingsEnums.ACTION_CONTEXTUAL_HOME_SHOW, (int) totalTime);
 
         mIsFirstLaunch = false;
+        mIsSnapshotShown = false;
     }
 
     @Override
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage.contextualcards;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persists the last list of cards returned by {@link ContextualCardLoader}, next to the
+ * {@link CardDatabaseHelper} database, so the homepage can show it before the loader returns.
+ *
+ * <p>Only the data the loader reads from the card provider is stored. Slices are not, the
+ * renderers bind them when the cards are shown.
+ */
+class ContextualCardSnapshot {
+
+    private static final String TAG = "ContextualCardSnapshot";
+
+    @VisibleForTesting
+    static final String SNAPSHOT_NAME = "homepage_cards.snapshot";
+    private static final int VERSION = 1;
+
+    private final File mFile;
+
+    ContextualCardSnapshot(Context context) {
+        mFile = context.getDatabasePath(SNAPSHOT_NAME);
+    }
+
+    /**
+     * Returns the cards of the last snapshot, or null if there is none.
+     */
+    @WorkerThread
+    synchronized List<ContextualCard> read() {
+        if (!mFile.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(mFile)))) {
+            if (in.readInt() != VERSION) {
+                return null;
+            }
+            final int count = in.readInt();
+            final List<ContextualCard> cards = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                cards.add(new ContextualCard.Builder()
+                        .setName(in.readUTF())
+                        .setCardType(in.readInt())
+                        .setRankingScore(in.readDouble())
+                        .setSliceUri(Uri.parse(in.readUTF()))
+                        .setCategory(in.readInt())
+                        .setPackageName(readNullableString(in))
+                        .setAppVersion(in.readLong())
+                        .setIsLargeCard(in.readBoolean())
+                        .setViewType(in.readInt())
+                        .setHasInlineAction(in.readBoolean())
+                        .build());
+            }
+            return cards;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read card snapshot", e);
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the snapshot with {@code cards}.
+     */
+    @WorkerThread
+    synchronized void write(List<ContextualCard> cards) {
+        final File dir = mFile.getParentFile();
+        if (dir == null || (!dir.exists() && !dir.mkdirs())) {
+            return;
+        }
+        final File tmpFile = new File(dir, mFile.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(VERSION);
+            out.writeInt(cards.size());
+            for (ContextualCard card : cards) {
+                out.writeUTF(card.getName());
+                out.writeInt(card.getCardType());
+                out.writeDouble(card.getRankingScore());
+                out.writeUTF(card.getTextSliceUri());
+                out.writeInt(card.getCategory());
+                writeNullableString(out, card.getPackageName());
+                out.writeLong(card.getAppVersion());
+                out.writeBoolean(card.isLargeCard());
+                out.writeInt(card.getViewType());
+                out.writeBoolean(card.hasInlineAction());
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write card snapshot", e);
+            tmpFile.delete();
+            return;
+        }
+        if (!tmpFile.renameTo(mFile)) {
+            tmpFile.delete();
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value)
+            throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+}
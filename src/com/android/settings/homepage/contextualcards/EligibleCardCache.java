@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage.contextualcards;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.LruCache;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.slice.Slice;
+
+/**
+ * Cache of the slices bound by {@link EligibleCardChecker}, keyed by slice uri.
+ *
+ * <p>An entry is dropped as soon as its slice notifies a change on its uri or below it. A slice
+ * that is not pinned may not notify every change, so entries also expire after
+ * {@link #MAX_AGE_MS}. A cached slice is only shown until the card renderer binds the live slice.
+ */
+class EligibleCardCache {
+
+    @VisibleForTesting
+    static final int MAX_ENTRIES = 32;
+    @VisibleForTesting
+    static final long MAX_AGE_MS = 30 * 1000L;
+
+    private static EligibleCardCache sInstance;
+
+    private final ContentResolver mContentResolver;
+    private final LruCache<Uri, Entry> mEntries = new LruCache<Uri, Entry>(MAX_ENTRIES) {
+        @Override
+        protected void entryRemoved(boolean evicted, Uri uri, Entry oldValue, Entry newValue) {
+            mContentResolver.unregisterContentObserver(oldValue.mObserver);
+        }
+    };
+
+    static synchronized EligibleCardCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new EligibleCardCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    EligibleCardCache(Context context) {
+        mContentResolver = context.getContentResolver();
+    }
+
+    /**
+     * Returns the slice last bound for {@code uri}, or null if it has to be bound again.
+     */
+    synchronized Slice get(Uri uri) {
+        final Entry entry = mEntries.get(uri);
+        if (entry == null) {
+            return null;
+        }
+        if (SystemClock.elapsedRealtime() - entry.mBindTime > MAX_AGE_MS) {
+            mEntries.remove(uri);
+            return null;
+        }
+        return entry.mSlice;
+    }
+
+    synchronized void put(Uri uri, Slice slice) {
+        final Entry entry = new Entry(uri, slice, SystemClock.elapsedRealtime());
+        mContentResolver.registerContentObserver(uri, true /* notifyForDescendants */,
+                entry.mObserver);
+        mEntries.put(uri, entry);
+    }
+
+    synchronized void invalidate(Uri uri) {
+        mEntries.remove(uri);
+    }
+
+    private class Entry {
+        private final Slice mSlice;
+        private final long mBindTime;
+        private final ContentObserver mObserver;
+
+        Entry(Uri uri, Slice slice, long bindTime) {
+            mSlice = slice;
+            mBindTime = bindTime;
+            mObserver = new ContentObserver(null /* handler */) {
+                @Override
+                public void onChange(boolean selfChange) {
+                    synchronized (EligibleCardCache.this) {
+                        // Ignore late notifications for a replaced entry.
+                        if (mEntries.get(uri) == Entry.this) {
+                            mEntries.remove(uri);
+                        }
+                    }
+                }
+            };
+        }
+    }
+}
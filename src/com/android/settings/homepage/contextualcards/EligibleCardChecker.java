@@ -18,6 +18,8 @@ package com.android.settings.homepage.contextualcards;
 
 import static android.app.slice.Slice.HINT_ERROR;
 
+import static com.android.settings.intelligence.ContextualCardProto.ContextualCard.Category.STICKY_VALUE;
+
 import android.app.settings.SettingsEnums;
 import android.content.ContentResolver;
 import android.content.Context;
@@ -38,18 +40,25 @@ import com.android.settingslib.utils.ThreadUtils;
 import java.util.List;
 import java.util.concurrent.Callable;
 
-public class EligibleCardChecker implements Callable<ContextualCard> {
+public class EligibleCardChecker implements Callable<ContextualCard>,
+        Comparable<EligibleCardChecker> {
 
     private static final String TAG = "EligibleCardChecker";
 
     private final Context mContext;
+    private final EligibleCardCache mCache;
 
     @VisibleForTesting
     ContextualCard mCard;
 
     EligibleCardChecker(Context context, ContextualCard card) {
+        this(context, card, null /* cache */);
+    }
+
+    EligibleCardChecker(Context context, ContextualCard card, EligibleCardCache cache) {
         mContext = context;
         mCard = card;
+        mCache = cache;
     }
 
     @Override
@@ -93,7 +102,13 @@ public class EligibleCardChecker implements Callable<ContextualCard> {
             return false;
         }
 
-        final Slice slice = bindSlice(uri);
+        Slice slice = mCache != null ? mCache.get(uri) : null;
+        if (slice == null) {
+            slice = bindSlice(uri);
+            if (slice != null && mCache != null) {
+                mCache.put(uri, slice);
+            }
+        }
 
         if (slice == null || slice.hasHint(HINT_ERROR)) {
             Log.w(TAG, "Failed to bind slice, not eligible for display " + uri);
@@ -109,6 +124,19 @@ public class EligibleCardChecker implements Callable<ContextualCard> {
         return true;
     }
 
+    /**
+     * Orders checkers so sticky cards come first, then cards by descending ranking score.
+     */
+    @Override
+    public int compareTo(EligibleCardChecker other) {
+        final boolean sticky = mCard.getCategory() == STICKY_VALUE;
+        final boolean otherSticky = other.mCard.getCategory() == STICKY_VALUE;
+        if (sticky != otherSticky) {
+            return sticky ? -1 : 1;
+        }
+        return Double.compare(other.mCard.getRankingScore(), mCard.getRankingScore());
+    }
+
     @VisibleForTesting
     Slice bindSlice(Uri uri) {
         final SliceViewManager manager = SliceViewManager.getInstance(mContext);
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage.contextualcards;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded executor shared by every {@link ContextualCardLoader} to run the
+ * {@link EligibleCardChecker EligibleCardCheckers}.
+ *
+ * <p>The pool has enough threads to check the cards displayed by default at once. Queued
+ * checkers run in order of {@link EligibleCardChecker#compareTo}, so the cards most likely to be
+ * displayed are checked first when there are more cards than threads. Checkers served from
+ * {@link EligibleCardCache} return right away, so the queue drains quickly when re-entering the
+ * homepage. Idle threads are released after a while.
+ */
+class EligibleCardExecutor extends ThreadPoolExecutor {
+
+    @VisibleForTesting
+    static final int POOL_SIZE = Math.max(ContextualCardLoader.DEFAULT_CARD_COUNT + 1,
+            Math.min(8, Runtime.getRuntime().availableProcessors()));
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+
+    private static EligibleCardExecutor sInstance;
+
+    private final AtomicLong mSequence = new AtomicLong();
+
+    static synchronized EligibleCardExecutor getInstance() {
+        if (sInstance == null) {
+            sInstance = new EligibleCardExecutor();
+        }
+        return sInstance;
+    }
+
+    private EligibleCardExecutor() {
+        super(POOL_SIZE, POOL_SIZE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>());
+        allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        // The priority queue can only hold tasks created by newTaskFor().
+        super.execute(command instanceof PriorityTask
+                ? command : newTaskFor(command, null /* value */));
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new PriorityTask<>(callable, mSequence.getAndIncrement());
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return newTaskFor(Executors.callable(runnable, value));
+    }
+
+    private static class PriorityTask<T> extends FutureTask<T>
+            implements Comparable<PriorityTask<?>> {
+        private final Callable<T> mCallable;
+        private final long mSequence;
+
+        PriorityTask(Callable<T> callable, long sequence) {
+            super(callable);
+            mCallable = callable;
+            mSequence = sequence;
+        }
+
+        @Override
+        public int compareTo(PriorityTask<?> other) {
+            if (mCallable instanceof EligibleCardChecker
+                    && other.mCallable instanceof EligibleCardChecker) {
+                final int result = ((EligibleCardChecker) mCallable)
+                        .compareTo((EligibleCardChecker) other.mCallable);
+                if (result != 0) {
+                    return result;
+                }
+            }
+            // Otherwise first in, first out.
+            return Long.compare(mSequence, other.mSequence);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.network;
+
+import android.content.Context;
+import android.os.PersistableBundle;
+import android.telephony.CarrierConfigManager;
+import android.telephony.SubscriptionManager;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the carrier configs of an application, keyed by subscription id.
+ *
+ * <p>{@link CarrierConfigManager#getConfigForSubId} copies the whole config over binder, and the
+ * mobile network pages read it from many controllers. The config of a subscription is fetched
+ * once, then dropped when {@link CarrierConfigChangedReceiver} receives
+ * {@link CarrierConfigManager#ACTION_CARRIER_CONFIG_CHANGED} for it. A cached config is only
+ * returned for the {@link CarrierConfigManager} it was fetched with.
+ *
+ * <p>There is one cache per application context, which is dropped with it, so the cached
+ * configs never outlive the application they were fetched for.
+ *
+ * <p>{@link #getBoolean}, {@link #getInt}, {@link #getString} and {@link #getStringArray} read
+ * the cached config in place. {@link #getConfigForSubId} returns a copy of it, which the caller
+ * may change, so it is only meant for the callers that need the whole config.
+ */
+public class CarrierConfigCache {
+    private static final String TAG = "CarrierConfigCache";
+
+    // Key: application context. The caches don't reference their context.
+    private static final Map<Context, CarrierConfigCache> sInstances = new WeakHashMap<>();
+
+    private final Map<Integer, Entry> mConfigs = new ConcurrentHashMap<>();
+    // Bumped on each invalidation, drops the configs fetched before it.
+    private final AtomicInteger mGeneration = new AtomicInteger();
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+    private CarrierConfigChangedReceiver mReceiver;
+
+    private CarrierConfigCache() {
+    }
+
+    /**
+     * Returns a copy of the carrier config of {@code subId}, like
+     * {@link CarrierConfigManager#getConfigForSubId}, or null when it is not available.
+     */
+    public static PersistableBundle getConfigForSubId(Context context,
+            CarrierConfigManager carrierConfigManager, int subId) {
+        final PersistableBundle config = getSharedConfig(context, carrierConfigManager, subId);
+        return config != null ? new PersistableBundle(config) : null;
+    }
+
+    /** Returns the boolean carrier config of {@code key}, without copying the config. */
+    public static boolean getBoolean(Context context, CarrierConfigManager carrierConfigManager,
+            int subId, String key, boolean defaultValue) {
+        final PersistableBundle config = getSharedConfig(context, carrierConfigManager, subId);
+        return config != null ? config.getBoolean(key, defaultValue) : defaultValue;
+    }
+
+    /** Returns the int carrier config of {@code key}, without copying the config. */
+    public static int getInt(Context context, CarrierConfigManager carrierConfigManager,
+            int subId, String key, int defaultValue) {
+        final PersistableBundle config = getSharedConfig(context, carrierConfigManager, subId);
+        return config != null ? config.getInt(key, defaultValue) : defaultValue;
+    }
+
+    /** Returns the string carrier config of {@code key}, without copying the config. */
+    public static String getString(Context context, CarrierConfigManager carrierConfigManager,
+            int subId, String key, String defaultValue) {
+        final PersistableBundle config = getSharedConfig(context, carrierConfigManager, subId);
+        return config != null ? config.getString(key, defaultValue) : defaultValue;
+    }
+
+    /**
+     * Returns a copy of the string array carrier config of {@code key}, without copying the
+     * config.
+     */
+    public static String[] getStringArray(Context context,
+            CarrierConfigManager carrierConfigManager, int subId, String key) {
+        final PersistableBundle config = getSharedConfig(context, carrierConfigManager, subId);
+        final String[] value = config != null ? config.getStringArray(key) : null;
+        return value != null ? value.clone() : null;
+    }
+
+    /** Returns whether the carrier config of {@code subId} is available. */
+    public static boolean hasConfig(Context context, CarrierConfigManager carrierConfigManager,
+            int subId) {
+        return getSharedConfig(context, carrierConfigManager, subId) != null;
+    }
+
+    /**
+     * Drops the cached config of {@code subId}, or all the cached configs when {@code subId} is
+     * not valid. Called by {@link CarrierConfigChangedReceiver}.
+     */
+    static void invalidate(Context context, int subId) {
+        getInstance(context).invalidate(subId);
+    }
+
+    @VisibleForTesting
+    static CarrierConfigCache getInstance(Context context) {
+        final Context appContext = context.getApplicationContext();
+        final Context key = appContext != null ? appContext : context;
+        synchronized (sInstances) {
+            CarrierConfigCache instance = sInstances.get(key);
+            if (instance == null) {
+                instance = new CarrierConfigCache();
+                sInstances.put(key, instance);
+            }
+            return instance;
+        }
+    }
+
+    // The returned config is shared, it must not be changed or returned to the callers.
+    private static PersistableBundle getSharedConfig(Context context,
+            CarrierConfigManager carrierConfigManager, int subId) {
+        if (carrierConfigManager == null) {
+            return null;
+        }
+        if (!SubscriptionManager.isValidSubscriptionId(subId)) {
+            return carrierConfigManager.getConfigForSubId(subId);
+        }
+        return getInstance(context).getConfig(context, carrierConfigManager, subId);
+    }
+
+    private PersistableBundle getConfig(Context context,
+            CarrierConfigManager carrierConfigManager, int subId) {
+        final Entry entry = mConfigs.get(subId);
+        if (entry != null && entry.mCarrierConfigManager.get() == carrierConfigManager) {
+            mHitCount.incrementAndGet();
+            return entry.mConfig;
+        }
+        mMissCount.incrementAndGet();
+        registerReceiverIfNeeded(context);
+        final int generation = mGeneration.get();
+        final PersistableBundle config = carrierConfigManager.getConfigForSubId(subId);
+        if (config != null && generation == mGeneration.get()) {
+            mConfigs.put(subId, new Entry(carrierConfigManager, config));
+        }
+        return config;
+    }
+
+    @VisibleForTesting
+    long getHitCount() {
+        return mHitCount.get();
+    }
+
+    @VisibleForTesting
+    long getMissCount() {
+        return mMissCount.get();
+    }
+
+    @VisibleForTesting
+    void invalidate(int subId) {
+        Log.d(TAG, "Carrier config changed, subId: " + subId + ", hits: " + mHitCount.get()
+                + ", misses: " + mMissCount.get());
+        mGeneration.incrementAndGet();
+        if (SubscriptionManager.isValidSubscriptionId(subId)) {
+            mConfigs.remove(subId);
+        } else {
+            mConfigs.clear();
+        }
+    }
+
+    private synchronized void registerReceiverIfNeeded(Context context) {
+        if (mReceiver != null) {
+            return;
+        }
+        mReceiver = new CarrierConfigChangedReceiver();
+        final Context appContext = context.getApplicationContext();
+        mReceiver.registerOn(appContext != null ? appContext : context);
+    }
+
+    private static class Entry {
+        private final WeakReference<CarrierConfigManager> mCarrierConfigManager;
+        private final PersistableBundle mConfig;
+
+        Entry(CarrierConfigManager carrierConfigManager, PersistableBundle config) {
+            mCarrierConfigManager = new WeakReference<>(carrierConfigManager);
+            mConfig = config;
+        }
+    }
+}
@@ -21,19 +21,31 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.telephony.CarrierConfigManager;
+import android.telephony.SubscriptionManager;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
+
 import java.util.concurrent.CountDownLatch;
 
-/** A receiver listens to the carrier config changes. */
+/**
+ * A receiver listens to the carrier config changes. It drops the changed config from
+ * {@link CarrierConfigCache}, and counts down the latch it was created with, if any.
+ */
 public class CarrierConfigChangedReceiver extends BroadcastReceiver {
     private static final String TAG = "CarrierConfigChangedReceiver";
     private static final String ACTION_CARRIER_CONFIG_CHANGED =
             CarrierConfigManager.ACTION_CARRIER_CONFIG_CHANGED;
 
+    @Nullable
     private final CountDownLatch mLatch;
 
-    public CarrierConfigChangedReceiver(CountDownLatch latch) {
+    /** Creates a receiver that only keeps {@link CarrierConfigCache} up to date. */
+    public CarrierConfigChangedReceiver() {
+        this(null /* latch */);
+    }
+
+    public CarrierConfigChangedReceiver(@Nullable CountDownLatch latch) {
         mLatch = latch;
     }
 
@@ -48,6 +60,9 @@ public class CarrierConfigChangedReceiver extends BroadcastReceiver {
         }
 
         if (ACTION_CARRIER_CONFIG_CHANGED.equals(intent.getAction())) {
+            CarrierConfigCache.invalidate(context, intent.getIntExtra(
+                    CarrierConfigManager.EXTRA_SUBSCRIPTION_INDEX,
+                    SubscriptionManager.INVALID_SUBSCRIPTION_ID));
             checkSubscriptionIndex(intent);
         }
     }
@@ -56,7 +71,9 @@ public class CarrierConfigChangedReceiver extends BroadcastReceiver {
         if (intent.hasExtra(CarrierConfigManager.EXTRA_SUBSCRIPTION_INDEX)) {
             int subId = intent.getIntExtra(CarrierConfigManager.EXTRA_SUBSCRIPTION_INDEX, -1);
             Log.i(TAG, "subId from config changed: " + subId);
-            mLatch.countDown();
+            if (mLatch != null) {
+                mLatch.countDown();
+            }
         }
     }
 }
@@ -36,6 +36,7 @@ import com.android.internal.annotations.VisibleForTesting;
 import com.android.settings.R;
 import com.android.settings.network.telephony.MobileNetworkActivity;
 import com.android.settings.network.telephony.MobileNetworkUtils;
+import com.android.settings.network.telephony.TelephonyAvailabilityEngine;
 import com.android.settingslib.core.AbstractPreferenceController;
 
 import java.util.List;
@@ -127,6 +128,10 @@ public class MobileNetworkListController extends AbstractPreferenceController im
                 }
             }
 
+            if (info.isEmbedded() || mSubscriptionManager.isActiveSubscriptionId(subId)
+                    || SubscriptionUtil.showToggleForPhysicalSim(mSubscriptionManager)) {
+                TelephonyAvailabilityEngine.getInstance(mContext).prewarm(subId);
+            }
             pref.setOnPreferenceClickListener(clickedPref -> {
                 if (!info.isEmbedded() && !mSubscriptionManager.isActiveSubscriptionId(subId)
                         && !SubscriptionUtil.showToggleForPhysicalSim(mSubscriptionManager)) {
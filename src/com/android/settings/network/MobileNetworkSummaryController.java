@@ -38,6 +38,7 @@ import com.android.settings.dashboard.DashboardFragment;
 import com.android.settings.network.helper.SelectableSubscriptions;
 import com.android.settings.network.helper.SubscriptionAnnotation;
 import com.android.settings.network.telephony.MobileNetworkActivity;
+import com.android.settings.network.telephony.TelephonyAvailabilityEngine;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settings.widget.AddPreference;
 import com.android.settingslib.Utils;
@@ -194,6 +195,12 @@ public class MobileNetworkSummaryController extends AbstractPreferenceController
         }
 
         if (subs.size() == 1) {
+            final SubscriptionAnnotation subInfo = subs.get(0);
+            if (subInfo.getSubInfo().isEmbedded() || subInfo.isActive()
+                    || mStatusCache.isPhysicalSimDisableSupport()) {
+                TelephonyAvailabilityEngine.getInstance(mContext)
+                        .prewarm(subInfo.getSubscriptionId());
+            }
             mPreference.setOnPreferenceClickListener((Preference pref) -> {
                 logPreferenceClick(pref);
 
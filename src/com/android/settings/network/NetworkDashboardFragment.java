@@ -67,6 +67,11 @@ public class NetworkDashboardFragment extends DashboardFragment implements
         }
     }
 
+    @Override
+    protected boolean isParalleledControllers() {
+        return true;
+    }
+
     @Override
     public void onAttach(Context context) {
         super.onAttach(context);
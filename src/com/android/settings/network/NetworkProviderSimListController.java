@@ -37,6 +37,7 @@ import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
 import com.android.settings.network.telephony.MobileNetworkActivity;
+import com.android.settings.network.telephony.TelephonyAvailabilityEngine;
 import com.android.settingslib.core.AbstractPreferenceController;
 import com.android.settingslib.core.lifecycle.Lifecycle;
 import com.android.settingslib.core.lifecycle.LifecycleObserver;
@@ -120,6 +121,10 @@ public class NetworkProviderSimListController extends AbstractPreferenceControll
             pref.setTitle(displayName);
             pref.setSummary(getSummary(subId, displayName));
 
+            if (mSubscriptionManager.isActiveSubscriptionId(subId)
+                    || SubscriptionUtil.showToggleForPhysicalSim(mSubscriptionManager)) {
+                TelephonyAvailabilityEngine.getInstance(mContext).prewarm(subId);
+            }
             pref.setOnPreferenceClickListener(clickedPref -> {
                 if (!mSubscriptionManager.isActiveSubscriptionId(subId)
                         && !SubscriptionUtil.showToggleForPhysicalSim(mSubscriptionManager)) {
@@ -44,6 +44,7 @@ import androidx.preference.PreferenceScreen;
 
 import com.android.internal.util.ArrayUtils;
 import com.android.settings.R;
+import com.android.settings.core.BackgroundStateController;
 import com.android.settings.core.BasePreferenceController;
 import com.android.settings.core.PreferenceControllerMixin;
 import com.android.settingslib.RestrictedLockUtils.EnforcedAdmin;
@@ -56,7 +57,8 @@ import java.net.InetAddress;
 import java.util.List;
 
 public class PrivateDnsPreferenceController extends BasePreferenceController
-        implements PreferenceControllerMixin, LifecycleObserver, OnStart, OnStop {
+        implements PreferenceControllerMixin, LifecycleObserver, OnStart, OnStop,
+        BackgroundStateController<PrivateDnsPreferenceController.PrivateDnsState> {
     private static final String KEY_PRIVATE_DNS_SETTINGS = "private_dns_settings";
 
     private static final Uri[] SETTINGS_URIS = new Uri[]{
@@ -68,7 +70,8 @@ public class PrivateDnsPreferenceController extends BasePreferenceController
     private final Handler mHandler;
     private final ContentObserver mSettingsObserver;
     private final ConnectivityManager mConnectivityManager;
-    private LinkProperties mLatestLinkProperties;
+    // Read by computeState() on a background thread.
+    private volatile LinkProperties mLatestLinkProperties;
     private Preference mPreference;
 
     public PrivateDnsPreferenceController(Context context) {
@@ -143,12 +146,36 @@ public class PrivateDnsPreferenceController extends BasePreferenceController
         preference.setEnabled(!isManagedByAdmin());
     }
 
+    @Override
+    public PrivateDnsState computeState() {
+        return new PrivateDnsState(getSummary(), !isManagedByAdmin());
+    }
+
+    @Override
+    public void applyState(Preference preference, PrivateDnsState state) {
+        preference.setSummary(state.mSummary);
+        preference.setEnabled(state.mEnabled);
+    }
+
     private boolean isManagedByAdmin() {
         EnforcedAdmin enforcedAdmin = RestrictedLockUtilsInternal.checkIfRestrictionEnforced(
                 mContext, UserManager.DISALLOW_CONFIG_PRIVATE_DNS, UserHandle.myUserId());
         return enforcedAdmin != null;
     }
 
+    /**
+     * The summary and enabled state of the preference, computed in the background.
+     */
+    static class PrivateDnsState {
+        private final CharSequence mSummary;
+        private final boolean mEnabled;
+
+        PrivateDnsState(CharSequence summary, boolean enabled) {
+            mSummary = summary;
+            mEnabled = enabled;
+        }
+    }
+
     private class PrivateDnsSettingsObserver extends ContentObserver {
         public PrivateDnsSettingsObserver(Handler h) {
             super(h);
@@ -40,6 +40,7 @@ import androidx.preference.Preference;
 import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
+import com.android.settings.core.BackgroundStateController;
 import com.android.settings.core.FeatureFlags;
 import com.android.settings.core.PreferenceControllerMixin;
 import com.android.settingslib.TetherUtil;
@@ -54,7 +55,8 @@ import com.android.settingslib.core.lifecycle.events.OnResume;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class TetherPreferenceController extends AbstractPreferenceController implements
-        PreferenceControllerMixin, LifecycleObserver, OnCreate, OnResume, OnPause, OnDestroy {
+        PreferenceControllerMixin, LifecycleObserver, OnCreate, OnResume, OnPause, OnDestroy,
+        BackgroundStateController<Integer> {
 
     private static final String KEY_TETHER_SETTINGS = "tether_settings";
 
@@ -120,6 +122,16 @@ public class TetherPreferenceController extends AbstractPreferenceController imp
         updateSummary();
     }
 
+    @Override
+    public Integer computeState() {
+        return getSummaryResId();
+    }
+
+    @Override
+    public void applyState(Preference preference, Integer summaryResId) {
+        preference.setSummary(summaryResId);
+    }
+
     @Override
     public String getPreferenceKey() {
         return KEY_TETHER_SETTINGS;
@@ -177,6 +189,10 @@ public class TetherPreferenceController extends AbstractPreferenceController imp
             // Preference is not ready yet.
             return;
         }
+        mPreference.setSummary(getSummaryResId());
+    }
+
+    private int getSummaryResId() {
         String[] allTethered = mTetheringManager.getTetheredIfaces();
         String[] wifiTetherRegex = mTetheringManager.getTetherableWifiRegexs();
         String[] bluetoothRegex = mTetheringManager.getTetherableBluetoothRegexs();
@@ -216,14 +232,14 @@ public class TetherPreferenceController extends AbstractPreferenceController imp
         }
         if (!hotSpotOn && !tetherOn) {
             // Both off
-            mPreference.setSummary(R.string.switch_off_text);
+            return R.string.switch_off_text;
         } else if (hotSpotOn && tetherOn) {
             // Both on
-            mPreference.setSummary(R.string.tether_settings_summary_hotspot_on_tether_on);
+            return R.string.tether_settings_summary_hotspot_on_tether_on;
         } else if (hotSpotOn) {
-            mPreference.setSummary(R.string.tether_settings_summary_hotspot_on_tether_off);
+            return R.string.tether_settings_summary_hotspot_on_tether_off;
         } else {
-            mPreference.setSummary(R.string.tether_settings_summary_hotspot_off_tether_on);
+            return R.string.tether_settings_summary_hotspot_off_tether_on;
         }
     }
 
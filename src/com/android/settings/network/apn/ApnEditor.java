@@ -24,7 +24,6 @@ import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
-import android.os.PersistableBundle;
 import android.provider.Telephony;
 import android.telephony.CarrierConfigManager;
 import android.telephony.SubscriptionInfo;
@@ -53,6 +52,7 @@ import com.android.internal.util.ArrayUtils;
 import com.android.settings.R;
 import com.android.settings.SettingsPreferenceFragment;
 import com.android.settings.core.instrumentation.InstrumentedDialogFragment;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.ProxySubscriptionManager;
 import com.android.settingslib.utils.ThreadUtils;
 
@@ -1299,39 +1299,39 @@ public class ApnEditor extends SettingsPreferenceFragment
         mReadOnlyApnTypes = null;
         mReadOnlyApnFields = null;
 
+        final Context context = getContext();
         final CarrierConfigManager configManager = (CarrierConfigManager)
                 getSystemService(Context.CARRIER_CONFIG_SERVICE);
-        if (configManager != null) {
-            final PersistableBundle b = configManager.getConfigForSubId(mSubId);
-            if (b != null) {
-                mReadOnlyApnTypes = b.getStringArray(
-                        CarrierConfigManager.KEY_READ_ONLY_APN_TYPES_STRING_ARRAY);
-                if (!ArrayUtils.isEmpty(mReadOnlyApnTypes)) {
-                    Log.d(TAG,
-                            "onCreate: read only APN type: " + Arrays.toString(mReadOnlyApnTypes));
-                }
-                mReadOnlyApnFields = b.getStringArray(
-                        CarrierConfigManager.KEY_READ_ONLY_APN_FIELDS_STRING_ARRAY);
+        if (CarrierConfigCache.hasConfig(context, configManager, mSubId)) {
+            mReadOnlyApnTypes = CarrierConfigCache.getStringArray(context, configManager, mSubId,
+                    CarrierConfigManager.KEY_READ_ONLY_APN_TYPES_STRING_ARRAY);
+            if (!ArrayUtils.isEmpty(mReadOnlyApnTypes)) {
+                Log.d(TAG,
+                        "onCreate: read only APN type: " + Arrays.toString(mReadOnlyApnTypes));
+            }
+            mReadOnlyApnFields = CarrierConfigCache.getStringArray(context, configManager, mSubId,
+                    CarrierConfigManager.KEY_READ_ONLY_APN_FIELDS_STRING_ARRAY);
 
-                mDefaultApnTypes = b.getStringArray(
-                        CarrierConfigManager.KEY_APN_SETTINGS_DEFAULT_APN_TYPES_STRING_ARRAY);
+            mDefaultApnTypes = CarrierConfigCache.getStringArray(context, configManager, mSubId,
+                    CarrierConfigManager.KEY_APN_SETTINGS_DEFAULT_APN_TYPES_STRING_ARRAY);
 
-                if (!ArrayUtils.isEmpty(mDefaultApnTypes)) {
-                    Log.d(TAG, "onCreate: default apn types: " + Arrays.toString(mDefaultApnTypes));
-                }
+            if (!ArrayUtils.isEmpty(mDefaultApnTypes)) {
+                Log.d(TAG, "onCreate: default apn types: " + Arrays.toString(mDefaultApnTypes));
+            }
 
-                mDefaultApnProtocol = b.getString(
-                        CarrierConfigManager.Apn.KEY_SETTINGS_DEFAULT_PROTOCOL_STRING);
-                if (!TextUtils.isEmpty(mDefaultApnProtocol)) {
-                    Log.d(TAG, "onCreate: default apn protocol: " + mDefaultApnProtocol);
-                }
+            mDefaultApnProtocol = CarrierConfigCache.getString(context, configManager, mSubId,
+                    CarrierConfigManager.Apn.KEY_SETTINGS_DEFAULT_PROTOCOL_STRING,
+                    null /* defaultValue */);
+            if (!TextUtils.isEmpty(mDefaultApnProtocol)) {
+                Log.d(TAG, "onCreate: default apn protocol: " + mDefaultApnProtocol);
+            }
 
-                mDefaultApnRoamingProtocol = b.getString(
-                        CarrierConfigManager.Apn.KEY_SETTINGS_DEFAULT_ROAMING_PROTOCOL_STRING);
-                if (!TextUtils.isEmpty(mDefaultApnRoamingProtocol)) {
-                    Log.d(TAG, "onCreate: default apn roaming protocol: "
-                            + mDefaultApnRoamingProtocol);
-                }
+            mDefaultApnRoamingProtocol = CarrierConfigCache.getString(context, configManager,
+                    mSubId, CarrierConfigManager.Apn.KEY_SETTINGS_DEFAULT_ROAMING_PROTOCOL_STRING,
+                    null /* defaultValue */);
+            if (!TextUtils.isEmpty(mDefaultApnRoamingProtocol)) {
+                Log.d(TAG, "onCreate: default apn roaming protocol: "
+                        + mDefaultApnRoamingProtocol);
             }
         }
     }
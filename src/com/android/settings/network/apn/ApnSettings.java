@@ -33,7 +33,6 @@ import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
-import android.os.PersistableBundle;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.provider.Telephony;
@@ -57,6 +56,7 @@ import androidx.preference.PreferenceGroup;
 
 import com.android.settings.R;
 import com.android.settings.RestrictedSettingsFragment;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.SubscriptionUtil;
 import com.android.settingslib.RestrictedLockUtils.EnforcedAdmin;
 
@@ -228,11 +228,13 @@ public class ApnSettings extends RestrictedSettingsFragment
 
         final CarrierConfigManager configManager = (CarrierConfigManager)
                 getSystemService(Context.CARRIER_CONFIG_SERVICE);
-        final PersistableBundle b = configManager.getConfigForSubId(mSubId);
-        mHideImsApn = b.getBoolean(CarrierConfigManager.KEY_HIDE_IMS_APN_BOOL);
-        mAllowAddingApns = b.getBoolean(CarrierConfigManager.KEY_ALLOW_ADDING_APNS_BOOL);
+        mHideImsApn = CarrierConfigCache.getBoolean(activity, configManager, mSubId,
+                CarrierConfigManager.KEY_HIDE_IMS_APN_BOOL, false /* defaultValue */);
+        mAllowAddingApns = CarrierConfigCache.getBoolean(activity, configManager, mSubId,
+                CarrierConfigManager.KEY_ALLOW_ADDING_APNS_BOOL, false /* defaultValue */);
         if (mAllowAddingApns) {
-            final String[] readOnlyApnTypes = b.getStringArray(
+            final String[] readOnlyApnTypes = CarrierConfigCache.getStringArray(activity,
+                    configManager, mSubId,
                     CarrierConfigManager.KEY_READ_ONLY_APN_TYPES_STRING_ARRAY);
             // if no apn type can be edited, do not allow adding APNs
             if (ApnEditor.hasAllApns(readOnlyApnTypes)) {
@@ -240,7 +242,8 @@ public class ApnSettings extends RestrictedSettingsFragment
                 mAllowAddingApns = false;
             }
         }
-        mHidePresetApnDetails = b.getBoolean(CarrierConfigManager.KEY_HIDE_PRESET_APN_DETAILS_BOOL);
+        mHidePresetApnDetails = CarrierConfigCache.getBoolean(activity, configManager, mSubId,
+                CarrierConfigManager.KEY_HIDE_PRESET_APN_DETAILS_BOOL, false /* defaultValue */);
         mUserManager = UserManager.get(activity);
     }
 
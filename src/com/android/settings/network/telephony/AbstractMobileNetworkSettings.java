@@ -17,6 +17,7 @@
 package com.android.settings.network.telephony;
 
 import android.os.SystemClock;
+import android.telephony.SubscriptionManager;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -66,7 +67,7 @@ abstract class AbstractMobileNetworkSettings extends RestrictedDashboardFragment
 
     TelephonyStatusControlSession setTelephonyAvailabilityStatus(
             Collection<AbstractPreferenceController> listOfPrefControllers) {
-        return (new TelephonyStatusControlSession.Builder(listOfPrefControllers))
+        return (new TelephonyStatusControlSession.Builder(getContext(), listOfPrefControllers))
                 .build();
     }
 
@@ -127,6 +128,9 @@ abstract class AbstractMobileNetworkSettings extends RestrictedDashboardFragment
 
         final long startTime = SystemClock.elapsedRealtime();
 
+        // Redrawn for a change of subscriptions, which the cached availability may not know yet.
+        TelephonyAvailabilityEngine.getInstance(getContext())
+                .invalidate(SubscriptionManager.INVALID_SUBSCRIPTION_ID);
         final List<AbstractPreferenceController> controllers =
                 getPreferenceControllersAsList();
         final TelephonyStatusControlSession session =
@@ -23,7 +23,6 @@ import android.content.Intent;
 import android.database.ContentObserver;
 import android.os.Handler;
 import android.os.Looper;
-import android.os.PersistableBundle;
 import android.provider.Settings;
 import android.telephony.CarrierConfigManager;
 
@@ -32,6 +31,7 @@ import androidx.preference.Preference;
 import androidx.preference.PreferenceScreen;
 
 import com.android.settings.SettingsActivity;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.apn.ApnSettings;
 import com.android.settingslib.RestrictedLockUtilsInternal;
 import com.android.settingslib.RestrictedPreference;
@@ -58,16 +58,17 @@ public class ApnPreferenceController extends TelephonyBasePreferenceController i
 
     @Override
     public int getAvailabilityStatus(int subId) {
-        final PersistableBundle carrierConfig = mCarrierConfigManager.getConfigForSubId(subId);
         final boolean isCdmaApn = MobileNetworkUtils.isCdmaOptions(mContext, subId)
-                && carrierConfig != null
-                && carrierConfig.getBoolean(CarrierConfigManager.KEY_SHOW_APN_SETTING_CDMA_BOOL);
+                && CarrierConfigCache.getBoolean(mContext, mCarrierConfigManager, subId,
+                        CarrierConfigManager.KEY_SHOW_APN_SETTING_CDMA_BOOL,
+                        false /* defaultValue */);
         final boolean isGsmApn = MobileNetworkUtils.isGsmOptions(mContext, subId)
-                && carrierConfig != null
-                && carrierConfig.getBoolean(CarrierConfigManager.KEY_APN_EXPAND_BOOL);
-        final boolean hideCarrierNetwork = carrierConfig == null
-                || carrierConfig.getBoolean(
-                CarrierConfigManager.KEY_HIDE_CARRIER_NETWORK_SETTINGS_BOOL);
+                && CarrierConfigCache.getBoolean(mContext, mCarrierConfigManager, subId,
+                        CarrierConfigManager.KEY_APN_EXPAND_BOOL, false /* defaultValue */);
+        final boolean hideCarrierNetwork = CarrierConfigCache.getBoolean(mContext,
+                mCarrierConfigManager, subId,
+                CarrierConfigManager.KEY_HIDE_CARRIER_NETWORK_SETTINGS_BOOL,
+                true /* defaultValue */);
 
         return !hideCarrierNetwork && (isCdmaApn || isGsmApn)
                 ? AVAILABLE
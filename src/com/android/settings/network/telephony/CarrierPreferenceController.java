@@ -21,13 +21,14 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
-import android.os.PersistableBundle;
 import android.telephony.CarrierConfigManager;
 import android.telephony.SubscriptionManager;
 
 import androidx.annotation.VisibleForTesting;
 import androidx.preference.Preference;
 
+import com.android.settings.network.CarrierConfigCache;
+
 /**
  * Preference controller for "Carrier Settings"
  */
@@ -47,11 +48,9 @@ public class CarrierPreferenceController extends TelephonyBasePreferenceControll
 
     @Override
     public int getAvailabilityStatus(int subId) {
-        final PersistableBundle carrierConfig = mCarrierConfigManager.getConfigForSubId(subId);
-
         // Return available if it is in CDMA or GSM mode, and the flag is on
-        return carrierConfig != null
-                && carrierConfig.getBoolean(CarrierConfigManager.KEY_CARRIER_SETTINGS_ENABLE_BOOL)
+        return CarrierConfigCache.getBoolean(mContext, mCarrierConfigManager, subId,
+                CarrierConfigManager.KEY_CARRIER_SETTINGS_ENABLE_BOOL, false /* defaultValue */)
                 && (MobileNetworkUtils.isCdmaOptions(mContext, subId)
                 || MobileNetworkUtils.isGsmOptions(mContext, subId))
                 ? AVAILABLE
@@ -72,9 +71,8 @@ public class CarrierPreferenceController extends TelephonyBasePreferenceControll
     }
 
     private Intent getCarrierSettingsActivityIntent(int subId) {
-        final PersistableBundle config = mCarrierConfigManager.getConfigForSubId(subId);
         final ComponentName cn = ComponentName.unflattenFromString(
-                config == null ? "" : config.getString(
+                CarrierConfigCache.getString(mContext, mCarrierConfigManager, subId,
                         CarrierConfigManager.KEY_CARRIER_SETTINGS_ACTIVITY_COMPONENT_NAME_STRING,
                         "" /* default value */));
 
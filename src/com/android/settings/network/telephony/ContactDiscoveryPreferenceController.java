@@ -19,7 +19,6 @@ package com.android.settings.network.telephony;
 import android.content.Context;
 import android.database.ContentObserver;
 import android.net.Uri;
-import android.os.PersistableBundle;
 import android.provider.Telephony;
 import android.telephony.CarrierConfigManager;
 import android.telephony.SubscriptionInfo;
@@ -35,6 +34,7 @@ import androidx.preference.Preference;
 import androidx.preference.PreferenceScreen;
 import androidx.preference.SwitchPreference;
 
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.SubscriptionUtil;
 
 /**
@@ -96,12 +96,11 @@ public class ContactDiscoveryPreferenceController extends TelephonyTogglePrefere
 
     @Override
     public int getAvailabilityStatus(int subId) {
-        PersistableBundle bundle = mCarrierConfigManager.getConfigForSubId(subId);
-        boolean shouldShowPresence = bundle != null
-                && (bundle.getBoolean(
+        boolean shouldShowPresence = CarrierConfigCache.getBoolean(mContext,
+                mCarrierConfigManager, subId,
                 CarrierConfigManager.KEY_USE_RCS_PRESENCE_BOOL, false /*default*/)
-                || bundle.getBoolean(
-                CarrierConfigManager.Ims.KEY_RCS_BULK_CAPABILITY_EXCHANGE_BOOL, false /*default*/));
+                || CarrierConfigCache.getBoolean(mContext, mCarrierConfigManager, subId,
+                CarrierConfigManager.Ims.KEY_RCS_BULK_CAPABILITY_EXCHANGE_BOOL, false /*default*/);
         return shouldShowPresence ? AVAILABLE : CONDITIONALLY_UNAVAILABLE;
     }
 
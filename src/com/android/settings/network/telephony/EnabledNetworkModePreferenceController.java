@@ -20,7 +20,6 @@ import static androidx.lifecycle.Lifecycle.Event.ON_START;
 import static androidx.lifecycle.Lifecycle.Event.ON_STOP;
 
 import android.content.Context;
-import android.os.PersistableBundle;
 import android.telephony.CarrierConfigManager;
 import android.telephony.SubscriptionManager;
 import android.telephony.TelephonyManager;
@@ -35,6 +34,7 @@ import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
 import com.android.settings.network.AllowedNetworkTypesListener;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.SubscriptionsChangeListener;
 import com.android.settings.network.telephony.TelephonyConstants.TelephonyManagerConstants;
 
@@ -69,17 +69,17 @@ public class EnabledNetworkModePreferenceController extends
     @Override
     public int getAvailabilityStatus(int subId) {
         boolean visible;
-        final PersistableBundle carrierConfig = mCarrierConfigManager.getConfigForSubId(subId);
         if (subId == SubscriptionManager.INVALID_SUBSCRIPTION_ID) {
             visible = false;
-        } else if (carrierConfig == null) {
+        } else if (!CarrierConfigCache.hasConfig(mContext, mCarrierConfigManager, subId)) {
             visible = false;
-        } else if (carrierConfig.getBoolean(
-                CarrierConfigManager.KEY_HIDE_CARRIER_NETWORK_SETTINGS_BOOL)
-                || carrierConfig.getBoolean(
-                CarrierConfigManager.KEY_HIDE_PREFERRED_NETWORK_TYPE_BOOL)) {
+        } else if (CarrierConfigCache.getBoolean(mContext, mCarrierConfigManager, subId,
+                CarrierConfigManager.KEY_HIDE_CARRIER_NETWORK_SETTINGS_BOOL, false)
+                || CarrierConfigCache.getBoolean(mContext, mCarrierConfigManager, subId,
+                CarrierConfigManager.KEY_HIDE_PREFERRED_NETWORK_TYPE_BOOL, false)) {
             visible = false;
-        } else if (carrierConfig.getBoolean(CarrierConfigManager.KEY_WORLD_PHONE_BOOL)) {
+        } else if (CarrierConfigCache.getBoolean(mContext, mCarrierConfigManager, subId,
+                CarrierConfigManager.KEY_WORLD_PHONE_BOOL, false)) {
             visible = false;
         } else {
             visible = true;
@@ -213,7 +213,6 @@ public class EnabledNetworkModePreferenceController extends
 
         public void updateConfig() {
             mTelephonyManager = mTelephonyManager.createForSubscriptionId(mSubId);
-            final PersistableBundle carrierConfig = mCarrierConfigManager.getConfigForSubId(mSubId);
             mAllowed5gNetworkType = checkSupportedRadioBitmask(
                     mTelephonyManager.getAllowedNetworkTypesForReason(
                             TelephonyManager.ALLOWED_NETWORK_TYPES_REASON_CARRIER),
@@ -222,10 +221,10 @@ public class EnabledNetworkModePreferenceController extends
                     mTelephonyManager.getSupportedRadioAccessFamily(),
                     TelephonyManager.NETWORK_TYPE_BITMASK_NR);
             mIsGlobalCdma = mTelephonyManager.isLteCdmaEvdoGsmWcdmaEnabled()
-                    && carrierConfig != null
-                    && carrierConfig.getBoolean(CarrierConfigManager.KEY_SHOW_CDMA_CHOICES_BOOL);
-            mShow4gForLTE = carrierConfig != null && carrierConfig.getBoolean(
-                    CarrierConfigManager.KEY_SHOW_4G_FOR_LTE_DATA_ICON_BOOL);
+                    && getBooleanCarrierConfig(CarrierConfigManager.KEY_SHOW_CDMA_CHOICES_BOOL,
+                            false);
+            mShow4gForLTE = getBooleanCarrierConfig(
+                    CarrierConfigManager.KEY_SHOW_4G_FOR_LTE_DATA_ICON_BOOL, false);
             Log.d(LOG_TAG, "PreferenceEntriesBuilder: subId" + mSubId
                     + ",Supported5gRadioAccessFamily :" + mSupported5gRadioAccessFamily
                     + ",mAllowed5gNetworkType :" + mAllowed5gNetworkType
@@ -233,6 +232,11 @@ public class EnabledNetworkModePreferenceController extends
                     + ",Show4gForLTE :" + mShow4gForLTE);
         }
 
+        private boolean getBooleanCarrierConfig(String key, boolean defaultValue) {
+            return CarrierConfigCache.getBoolean(mContext, mCarrierConfigManager, mSubId, key,
+                    defaultValue);
+        }
+
         void setPreferenceEntries() {
             clearAllEntries();
             String[] entryValues;
@@ -397,7 +401,6 @@ public class EnabledNetworkModePreferenceController extends
         private EnabledNetworks getEnabledNetworkType() {
             EnabledNetworks enabledNetworkType = EnabledNetworks.ENABLED_NETWORKS_UNKNOWN;
             final int phoneType = mTelephonyManager.getPhoneType();
-            final PersistableBundle carrierConfig = mCarrierConfigManager.getConfigForSubId(mSubId);
 
             if (phoneType == TelephonyManager.PHONE_TYPE_CDMA) {
                 final int lteForced = android.provider.Settings.Global.getInt(
@@ -432,17 +435,17 @@ public class EnabledNetworkModePreferenceController extends
             } else if (phoneType == TelephonyManager.PHONE_TYPE_GSM) {
                 if (MobileNetworkUtils.isTdscdmaSupported(mContext, mSubId)) {
                     enabledNetworkType = EnabledNetworks.ENABLED_NETWORKS_TDSCDMA_CHOICES;
-                } else if (carrierConfig != null
-                        && !carrierConfig.getBoolean(CarrierConfigManager.KEY_PREFER_2G_BOOL)
-                        && !carrierConfig.getBoolean(CarrierConfigManager.KEY_LTE_ENABLED_BOOL)) {
+                } else if (!getBooleanCarrierConfig(CarrierConfigManager.KEY_PREFER_2G_BOOL, true)
+                        && !getBooleanCarrierConfig(CarrierConfigManager.KEY_LTE_ENABLED_BOOL,
+                                true)) {
                     enabledNetworkType = EnabledNetworks.ENABLED_NETWORKS_EXCEPT_GSM_LTE_CHOICES;
-                } else if (carrierConfig != null
-                        && !carrierConfig.getBoolean(CarrierConfigManager.KEY_PREFER_2G_BOOL)) {
+                } else if (!getBooleanCarrierConfig(CarrierConfigManager.KEY_PREFER_2G_BOOL,
+                        true)) {
                     enabledNetworkType = mShow4gForLTE
                             ? EnabledNetworks.ENABLED_NETWORKS_EXCEPT_GSM_4G_CHOICES
                             : EnabledNetworks.ENABLED_NETWORKS_EXCEPT_GSM_CHOICES;
-                } else if (carrierConfig != null
-                        && !carrierConfig.getBoolean(CarrierConfigManager.KEY_LTE_ENABLED_BOOL)) {
+                } else if (!getBooleanCarrierConfig(CarrierConfigManager.KEY_LTE_ENABLED_BOOL,
+                        true)) {
                     enabledNetworkType = EnabledNetworks.ENABLED_NETWORKS_EXCEPT_LTE_CHOICES;
                 } else if (mIsGlobalCdma) {
                     enabledNetworkType = EnabledNetworks.ENABLED_NETWORKS_CDMA_CHOICES;
@@ -24,7 +24,6 @@ import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
-import android.os.PersistableBundle;
 import android.telephony.CarrierConfigManager;
 import android.telephony.SubscriptionManager;
 import android.telephony.ims.ImsMmTelManager;
@@ -39,6 +38,7 @@ import androidx.slice.builders.SliceAction;
 
 import com.android.settings.R;
 import com.android.settings.Utils;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.ims.VolteQueryImsState;
 import com.android.settings.slices.CustomSliceRegistry;
 import com.android.settings.slices.SliceBroadcastReceiver;
@@ -236,30 +236,13 @@ public class Enhanced4gLteSliceHelper {
      * Returns {@code true} when the key is enabled for the carrier, and {@code false} otherwise.
      */
     private boolean isCarrierConfigManagerKeyEnabled(String key, int subId, boolean defaultValue) {
-        boolean result = defaultValue;
-        final PersistableBundle carrierConfig = getCarrierConfig(subId);
-        if (carrierConfig != null) {
-            result = carrierConfig.getBoolean(key, defaultValue);
-        }
-        return result;
+        return CarrierConfigCache.getBoolean(mContext, getCarrierConfigManager(), subId, key,
+                defaultValue);
     }
 
     private int getCarrierConfigManagerKeyValue(String key, int subId, int defaultValue) {
-        int result = defaultValue;
-        final PersistableBundle carrierConfig = getCarrierConfig(subId);
-        if (carrierConfig != null) {
-            result = carrierConfig.getInt(key, defaultValue);
-        }
-        return result;
-    }
-
-    private PersistableBundle getCarrierConfig(int subId) {
-        final CarrierConfigManager configManager = getCarrierConfigManager();
-        PersistableBundle bundle = null;
-        if (configManager != null) {
-            bundle = configManager.getConfigForSubId(subId);
-        }
-        return bundle;
+        return CarrierConfigCache.getInt(mContext, getCarrierConfigManager(), subId, key,
+                defaultValue);
     }
 
     protected CarrierConfigManager getCarrierConfigManager() {
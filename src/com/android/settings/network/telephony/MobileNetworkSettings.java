@@ -32,9 +32,12 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 
 import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
 import androidx.preference.Preference;
 
 import com.android.settings.R;
+import com.android.settings.core.BasePreferenceController;
+import com.android.settings.core.PreferenceControllerListHelper;
 import com.android.settings.datausage.BillingCyclePreferenceController;
 import com.android.settings.datausage.DataUsageSummaryPreferenceController;
 import com.android.settings.network.ActiveSubscriptionsListener;
@@ -49,6 +52,7 @@ import com.android.settingslib.core.AbstractPreferenceController;
 import com.android.settingslib.search.SearchIndexable;
 import com.android.settingslib.utils.ThreadUtils;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -194,6 +198,53 @@ public class MobileNetworkSettings extends AbstractMobileNetworkSettings {
         use(ContactDiscoveryPreferenceController.class).init(getParentFragmentManager(), mSubId,
                 getLifecycle());
         use(NrAdvancedCallingPreferenceController.class).init(mSubId);
+
+        // Computes the availability while the page is created, before it is displayed.
+        TelephonyAvailabilityEngine.getInstance(context).prewarm(getPreferenceControllersAsList());
+    }
+
+    /**
+     * Returns the telephony controllers of the page for {@code subId}, initialized like the page
+     * does, which only need the subscription to compute their availability. The entry points of
+     * the page compute their availability before it is opened.
+     */
+    @WorkerThread
+    static List<AbstractPreferenceController> createAvailabilityControllers(Context context,
+            int subId) {
+        final List<AbstractPreferenceController> controllers = new ArrayList<>();
+        for (BasePreferenceController controller : PreferenceControllerListHelper
+                .getPreferenceControllersFromXml(context, R.xml.mobile_network_settings)) {
+            if (controller instanceof MmsMessagePreferenceController) {
+                ((MmsMessagePreferenceController) controller).init(subId);
+            } else if (controller instanceof DisableSimFooterPreferenceController) {
+                ((DisableSimFooterPreferenceController) controller).init(subId);
+            } else if (controller instanceof ApnPreferenceController) {
+                ((ApnPreferenceController) controller).init(subId);
+            } else if (controller instanceof CarrierPreferenceController) {
+                ((CarrierPreferenceController) controller).init(subId);
+            } else if (controller instanceof PreferredNetworkModePreferenceController) {
+                ((PreferredNetworkModePreferenceController) controller).init(subId);
+            } else if (controller instanceof DataServiceSetupPreferenceController) {
+                ((DataServiceSetupPreferenceController) controller).init(subId);
+            } else if (controller instanceof Enable2gPreferenceController) {
+                ((Enable2gPreferenceController) controller).init(subId);
+            } else if (controller instanceof WifiCallingPreferenceController) {
+                ((WifiCallingPreferenceController) controller).init(subId);
+            } else if (controller instanceof VideoCallingPreferenceController) {
+                ((VideoCallingPreferenceController) controller).init(subId);
+            } else if (controller instanceof BackupCallingPreferenceController) {
+                ((BackupCallingPreferenceController) controller).init(subId);
+            } else if (controller instanceof Enhanced4gBasePreferenceController) {
+                ((Enhanced4gBasePreferenceController) controller).init(subId);
+            } else if (controller instanceof NrAdvancedCallingPreferenceController) {
+                ((NrAdvancedCallingPreferenceController) controller).init(subId);
+            } else {
+                // The others need the page to be initialized.
+                continue;
+            }
+            controllers.add(controller);
+        }
+        return controllers;
     }
 
     @Override
@@ -73,6 +73,7 @@ import com.android.internal.util.ArrayUtils;
 import com.android.settings.R;
 import com.android.settings.Utils;
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.SubscriptionUtil;
 import com.android.settings.network.ims.WifiCallingQueryImsState;
 import com.android.settings.network.telephony.TelephonyConstants.TelephonyManagerConstants;
@@ -207,11 +208,10 @@ public class MobileNetworkUtils {
             Log.w(TAG, "isContactDiscoveryVisible: Could not resolve carrier config");
             return false;
         }
-        PersistableBundle bundle = carrierConfigManager.getConfigForSubId(subId);
-        return bundle.getBoolean(
+        return CarrierConfigCache.getBoolean(context, carrierConfigManager, subId,
                 CarrierConfigManager.KEY_USE_RCS_PRESENCE_BOOL, false /*default*/)
-                || bundle.getBoolean(CarrierConfigManager.Ims.KEY_RCS_BULK_CAPABILITY_EXCHANGE_BOOL,
-                false /*default*/);
+                || CarrierConfigCache.getBoolean(context, carrierConfigManager, subId,
+                CarrierConfigManager.Ims.KEY_RCS_BULK_CAPABILITY_EXCHANGE_BOOL, false /*default*/);
     }
 
     public static Intent buildPhoneAccountConfigureIntent(
@@ -357,16 +357,14 @@ public class MobileNetworkUtils {
         }
         final TelephonyManager telephonyManager = context.getSystemService(TelephonyManager.class)
                 .createForSubscriptionId(subId);
-        final PersistableBundle carrierConfig = context.getSystemService(
-                CarrierConfigManager.class).getConfigForSubId(subId);
 
 
         if (telephonyManager.getPhoneType() == TelephonyManager.PHONE_TYPE_CDMA) {
             return true;
-        } else if (carrierConfig != null
-                && !carrierConfig.getBoolean(
-                CarrierConfigManager.KEY_HIDE_CARRIER_NETWORK_SETTINGS_BOOL)
-                && carrierConfig.getBoolean(CarrierConfigManager.KEY_WORLD_PHONE_BOOL)) {
+        } else if (!getBooleanCarrierConfig(context, subId,
+                CarrierConfigManager.KEY_HIDE_CARRIER_NETWORK_SETTINGS_BOOL, true)
+                && getBooleanCarrierConfig(context, subId,
+                CarrierConfigManager.KEY_WORLD_PHONE_BOOL, false)) {
             return true;
         }
 
@@ -422,15 +420,13 @@ public class MobileNetworkUtils {
     private static boolean isGsmBasicOptions(Context context, int subId) {
         final TelephonyManager telephonyManager = context.getSystemService(TelephonyManager.class)
                 .createForSubscriptionId(subId);
-        final PersistableBundle carrierConfig = context.getSystemService(
-                CarrierConfigManager.class).getConfigForSubId(subId);
 
         if (telephonyManager.getPhoneType() == TelephonyManager.PHONE_TYPE_GSM) {
             return true;
-        } else if (carrierConfig != null
-                && !carrierConfig.getBoolean(
-                CarrierConfigManager.KEY_HIDE_CARRIER_NETWORK_SETTINGS_BOOL)
-                && carrierConfig.getBoolean(CarrierConfigManager.KEY_WORLD_PHONE_BOOL)) {
+        } else if (!getBooleanCarrierConfig(context, subId,
+                CarrierConfigManager.KEY_HIDE_CARRIER_NETWORK_SETTINGS_BOOL, true)
+                && getBooleanCarrierConfig(context, subId,
+                CarrierConfigManager.KEY_WORLD_PHONE_BOOL, false)) {
             return true;
         }
 
@@ -442,11 +438,14 @@ public class MobileNetworkUtils {
      * settings
      */
     public static boolean isWorldMode(Context context, int subId) {
-        final PersistableBundle carrierConfig = context.getSystemService(
-                CarrierConfigManager.class).getConfigForSubId(subId);
-        return carrierConfig == null
-                ? false
-                : carrierConfig.getBoolean(CarrierConfigManager.KEY_WORLD_MODE_ENABLED_BOOL);
+        return getBooleanCarrierConfig(context, subId,
+                CarrierConfigManager.KEY_WORLD_MODE_ENABLED_BOOL, false);
+    }
+
+    private static boolean getBooleanCarrierConfig(Context context, int subId, String key,
+            boolean defaultValue) {
+        return CarrierConfigCache.getBoolean(context,
+                context.getSystemService(CarrierConfigManager.class), subId, key, defaultValue);
     }
 
     /**
@@ -455,15 +454,13 @@ public class MobileNetworkUtils {
     public static boolean shouldDisplayNetworkSelectOptions(Context context, int subId) {
         final TelephonyManager telephonyManager = context.getSystemService(TelephonyManager.class)
                 .createForSubscriptionId(subId);
-        final PersistableBundle carrierConfig = context.getSystemService(
-                CarrierConfigManager.class).getConfigForSubId(subId);
         if (subId == SubscriptionManager.INVALID_SUBSCRIPTION_ID
-                || carrierConfig == null
-                || !carrierConfig.getBoolean(
-                CarrierConfigManager.KEY_OPERATOR_SELECTION_EXPAND_BOOL)
-                || carrierConfig.getBoolean(
-                CarrierConfigManager.KEY_HIDE_CARRIER_NETWORK_SETTINGS_BOOL)
-                || (carrierConfig.getBoolean(CarrierConfigManager.KEY_CSP_ENABLED_BOOL)
+                || !getBooleanCarrierConfig(context, subId,
+                CarrierConfigManager.KEY_OPERATOR_SELECTION_EXPAND_BOOL, false)
+                || getBooleanCarrierConfig(context, subId,
+                CarrierConfigManager.KEY_HIDE_CARRIER_NETWORK_SETTINGS_BOOL, true)
+                || (getBooleanCarrierConfig(context, subId,
+                CarrierConfigManager.KEY_CSP_ENABLED_BOOL, false)
                 && !telephonyManager.isManualNetworkSelectionAllowed())) {
             return false;
         }
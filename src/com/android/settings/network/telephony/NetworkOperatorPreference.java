@@ -83,9 +83,12 @@ public class NetworkOperatorPreference extends Preference {
     }
 
     /**
-     * Change cell information
+     * Change cell information, nothing is refreshed if it is the current cell information
      */
     public void updateCell(CellInfo cellinfo) {
+        if (cellinfo != null && cellinfo == mCellInfo) {
+            return;
+        }
         updateCell(cellinfo, CellInfoUtil.getCellIdentity(cellinfo));
     }
 
@@ -22,7 +22,6 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
-import android.os.PersistableBundle;
 import android.provider.Settings;
 import android.telecom.PhoneAccountHandle;
 import android.telecom.TelecomManager;
@@ -41,6 +40,7 @@ import androidx.preference.PreferenceGroup;
 import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.SubscriptionUtil;
 import com.android.settings.network.SubscriptionsChangeListener;
 import com.android.settings.network.ims.WifiCallingQueryImsState;
@@ -271,16 +271,8 @@ public class NetworkProviderWifiCallingGroup extends
     }
 
     private boolean isWifiCallingAvailableForCarrier(int subId) {
-        boolean isWifiCallingAvailableForCarrier = false;
-        if (mCarrierConfigManager != null) {
-            final PersistableBundle carrierConfig =
-                    mCarrierConfigManager.getConfigForSubId(subId);
-            if (carrierConfig != null) {
-                isWifiCallingAvailableForCarrier = carrierConfig.getBoolean(
-                        CarrierConfigManager.KEY_CARRIER_WFC_IMS_AVAILABLE_BOOL);
-            }
-        }
-        return isWifiCallingAvailableForCarrier;
+        return CarrierConfigCache.getBoolean(mContext, mCarrierConfigManager, subId,
+                CarrierConfigManager.KEY_CARRIER_WFC_IMS_AVAILABLE_BOOL, false /* defaultValue */);
     }
 
     @Override
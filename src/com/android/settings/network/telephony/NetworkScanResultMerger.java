@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.network.telephony;
+
+import android.telephony.CellIdentity;
+import android.telephony.CellInfo;
+import android.telephony.CellSignalStrength;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Aggregates the results of a network scan into the list of network operators.
+ *
+ * <p>Each batch of results, like the ones of an incremental scan, is folded into a hashed index
+ * in linear time. The cells of the same network title and radio technology are merged: within a
+ * batch the registered, then the strongest cell is kept, and a later batch replaces it. The
+ * operators keep the order they were first reported in. An operator whose cell identity, signal
+ * level and registration are not changed keeps its {@link CellInfo} instance, as the timestamp
+ * of a cell changes on each scan.
+ */
+class NetworkScanResultMerger {
+
+    private final Map<OperatorKey, CellInfo> mCellInfos = new LinkedHashMap<>();
+
+    /**
+     * Folds {@code cellInfos} into the operators.
+     *
+     * @return the operators merged so far
+     */
+    List<CellInfo> merge(List<CellInfo> cellInfos) {
+        final Map<OperatorKey, CellInfo> batch = new LinkedHashMap<>();
+        for (CellInfo cellInfo : cellInfos) {
+            final OperatorKey key = new OperatorKey(cellInfo);
+            final CellInfo current = batch.get(key);
+            if (current == null || isPreferred(cellInfo, current)) {
+                batch.put(key, cellInfo);
+            }
+        }
+        batch.forEach((key, cellInfo) -> {
+            final CellInfo current = mCellInfos.get(key);
+            if (current == null || !isSameCell(cellInfo, current)) {
+                mCellInfos.put(key, cellInfo);
+            }
+        });
+        return new ArrayList<>(mCellInfos.values());
+    }
+
+    /** Drops the operators, to start a new scan. */
+    void clear() {
+        mCellInfos.clear();
+    }
+
+    private static boolean isPreferred(CellInfo cellInfo, CellInfo current) {
+        if (cellInfo.isRegistered() != current.isRegistered()) {
+            return cellInfo.isRegistered();
+        }
+        return getLevel(cellInfo) > getLevel(current);
+    }
+
+    private static boolean isSameCell(CellInfo cellInfo, CellInfo current) {
+        return cellInfo.isRegistered() == current.isRegistered()
+                && getLevel(cellInfo) == getLevel(current)
+                && Objects.equals(cellInfo.getCellIdentity(), current.getCellIdentity());
+    }
+
+    private static int getLevel(CellInfo cellInfo) {
+        final CellSignalStrength signalStrength = cellInfo.getCellSignalStrength();
+        return signalStrength != null ? signalStrength.getLevel() : -1;
+    }
+
+    private static class OperatorKey {
+        private final String mTitle;
+        private final Class<?> mCellInfoClass;
+
+        OperatorKey(CellInfo cellInfo) {
+            final CellIdentity cellIdentity = cellInfo.getCellIdentity();
+            mTitle = CellInfoUtil.getNetworkTitle(cellIdentity,
+                    CellInfoUtil.getCellIdentityMccMnc(cellIdentity));
+            mCellInfoClass = cellInfo.getClass();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof OperatorKey)) {
+                return false;
+            }
+            final OperatorKey other = (OperatorKey) o;
+            return Objects.equals(mTitle, other.mTitle) && mCellInfoClass == other.mCellInfoClass;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mTitle, mCellInfoClass);
+        }
+    }
+}
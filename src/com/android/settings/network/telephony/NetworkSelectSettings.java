@@ -22,7 +22,6 @@ import android.content.Context;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
-import android.os.PersistableBundle;
 import android.provider.Settings;
 import android.telephony.AccessNetworkConstants;
 import android.telephony.CarrierConfigManager;
@@ -43,6 +42,7 @@ import androidx.preference.PreferenceCategory;
 import com.android.internal.telephony.OperatorInfo;
 import com.android.settings.R;
 import com.android.settings.dashboard.DashboardFragment;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 import com.android.settingslib.utils.ThreadUtils;
@@ -90,6 +90,7 @@ public class NetworkSelectSettings extends DashboardFragment {
     private long mWaitingForNumberOfScanResults;
     @VisibleForTesting
     boolean mIsAggregationEnabled = false;
+    private final NetworkScanResultMerger mScanResultMerger = new NetworkScanResultMerger();
 
     @Override
     public void onCreate(Bundle icicle) {
@@ -107,11 +108,12 @@ public class NetworkSelectSettings extends DashboardFragment {
                 .createForSubscriptionId(mSubId);
         mNetworkScanHelper = new NetworkScanHelper(
                 mTelephonyManager, mCallback, mNetworkScanExecutor);
-        PersistableBundle bundle = ((CarrierConfigManager) getContext().getSystemService(
-                Context.CARRIER_CONFIG_SERVICE)).getConfigForSubId(mSubId);
-        if (bundle != null) {
-            mShow4GForLTE = bundle.getBoolean(
-                    CarrierConfigManager.KEY_SHOW_4G_FOR_LTE_DATA_ICON_BOOL);
+        final CarrierConfigManager carrierConfigManager = (CarrierConfigManager)
+                getContext().getSystemService(Context.CARRIER_CONFIG_SERVICE);
+        if (CarrierConfigCache.hasConfig(getContext(), carrierConfigManager, mSubId)) {
+            mShow4GForLTE = CarrierConfigCache.getBoolean(getContext(), carrierConfigManager,
+                    mSubId, CarrierConfigManager.KEY_SHOW_4G_FOR_LTE_DATA_ICON_BOOL,
+                    false /* defaultValue */);
         }
 
         mMetricsFeatureProvider = FeatureFactory
@@ -317,26 +319,9 @@ public class NetworkSelectSettings extends DashboardFragment {
     @VisibleForTesting
     List<CellInfo> doAggregation(List<CellInfo> cellInfoListInput) {
         if (!mIsAggregationEnabled) {
-            Log.d(TAG, "no aggregation");
             return new ArrayList<>(cellInfoListInput);
         }
-        ArrayList<CellInfo> aggregatedList = new ArrayList<>();
-        for (CellInfo cellInfo : cellInfoListInput) {
-            String plmn = CellInfoUtil.getNetworkTitle(cellInfo.getCellIdentity(),
-                    CellInfoUtil.getCellIdentityMccMnc(cellInfo.getCellIdentity()));
-            Class className = cellInfo.getClass();
-
-            if (aggregatedList.stream().anyMatch(
-                    item -> {
-                        String itemPlmn = CellInfoUtil.getNetworkTitle(item.getCellIdentity(),
-                                CellInfoUtil.getCellIdentityMccMnc(item.getCellIdentity()));
-                        return itemPlmn.equals(plmn) && item.getClass().equals(className);
-                    })) {
-                continue;
-            }
-            aggregatedList.add(cellInfo);
-        }
-        return aggregatedList;
+        return mScanResultMerger.merge(cellInfoListInput);
     }
 
     private final NetworkScanHelper.NetworkScanCallback mCallback =
@@ -516,6 +501,7 @@ public class NetworkSelectSettings extends DashboardFragment {
         if (mNetworkScanHelper != null) {
             mRequestIdManualNetworkScan = getNewRequestId();
             mWaitingForNumberOfScanResults = MIN_NUMBER_OF_SCAN_REQUIRED;
+            mScanResultMerger.clear();
             mNetworkScanHelper.startNetworkScan(
                     mUseNewApi
                             ? NetworkScanHelper.NETWORK_SCAN_TYPE_INCREMENTAL_RESULTS
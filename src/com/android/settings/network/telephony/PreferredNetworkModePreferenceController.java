@@ -26,6 +26,7 @@ import androidx.preference.ListPreference;
 import androidx.preference.Preference;
 
 import com.android.settings.R;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.telephony.TelephonyConstants.TelephonyManagerConstants;
 
 /**
@@ -46,18 +47,17 @@ public class PreferredNetworkModePreferenceController extends TelephonyBasePrefe
 
     @Override
     public int getAvailabilityStatus(int subId) {
-        final PersistableBundle carrierConfig = mCarrierConfigManager.getConfigForSubId(subId);
         boolean visible;
         if (subId == SubscriptionManager.INVALID_SUBSCRIPTION_ID) {
             visible = false;
-        } else if (carrierConfig == null) {
+        } else if (!CarrierConfigCache.hasConfig(mContext, mCarrierConfigManager, subId)) {
             visible = false;
-        } else if (carrierConfig.getBoolean(
+        } else if (getBooleanCarrierConfig(subId,
                 CarrierConfigManager.KEY_HIDE_CARRIER_NETWORK_SETTINGS_BOOL)
-                || carrierConfig.getBoolean(
+                || getBooleanCarrierConfig(subId,
                 CarrierConfigManager.KEY_HIDE_PREFERRED_NETWORK_TYPE_BOOL)) {
             visible = false;
-        } else if (carrierConfig.getBoolean(CarrierConfigManager.KEY_WORLD_PHONE_BOOL)) {
+        } else if (getBooleanCarrierConfig(subId, CarrierConfigManager.KEY_WORLD_PHONE_BOOL)) {
             visible = true;
         } else {
             visible = false;
@@ -90,12 +90,16 @@ public class PreferredNetworkModePreferenceController extends TelephonyBasePrefe
 
     public void init(int subId) {
         mSubId = subId;
-        final PersistableBundle carrierConfig = mCarrierConfigManager.getConfigForSubId(mSubId);
         mTelephonyManager = mContext.getSystemService(TelephonyManager.class)
                 .createForSubscriptionId(mSubId);
 
         mIsGlobalCdma = mTelephonyManager.isLteCdmaEvdoGsmWcdmaEnabled()
-                && carrierConfig.getBoolean(CarrierConfigManager.KEY_SHOW_CDMA_CHOICES_BOOL);
+                && getBooleanCarrierConfig(mSubId, CarrierConfigManager.KEY_SHOW_CDMA_CHOICES_BOOL);
+    }
+
+    private boolean getBooleanCarrierConfig(int subId, String key) {
+        return CarrierConfigCache.getBoolean(mContext, mCarrierConfigManager, subId, key,
+                false /* defaultValue */);
     }
 
     private int getPreferredNetworkMode() {
@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.network.telephony;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.telephony.CarrierConfigManager;
+import android.telephony.SubscriptionManager;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.settings.core.BasePreferenceController;
+import com.android.settings.network.SubscriptionsChangeListener;
+import com.android.settingslib.core.AbstractPreferenceController;
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes and caches the availability of the telephony preference controllers.
+ *
+ * <p>The availability is kept per controller class, preference key and subscription id, so a
+ * page opened again reuses what was computed for the last one. It is dropped when the
+ * subscriptions, the airplane mode, the radio technology or the carrier config change. The same
+ * availability requested by many threads is only computed once.
+ *
+ * <p>Pages pin the availability within a {@link TelephonyStatusControlSession}, and may call
+ * {@link #prewarm(Collection)} to start computing it before the session. The entry points of
+ * {@link MobileNetworkSettings} call {@link #prewarm(int)} for the subscriptions they can open,
+ * so the availability is computed before the page is.
+ */
+public class TelephonyAvailabilityEngine implements
+        SubscriptionsChangeListener.SubscriptionsChangeListenerClient {
+    private static final String TAG = "TelephonyAvailability";
+
+    private static TelephonyAvailabilityEngine sInstance;
+
+    private final Context mContext;
+    private final Map<Key, FutureTask<Integer>> mStatuses = new ConcurrentHashMap<>();
+    // Bumped on each invalidation, drops the availability computed before it.
+    private final AtomicInteger mGeneration = new AtomicInteger();
+    // The generation each subscription was last prewarmed in (key: subscription id)
+    private final Map<Integer, Integer> mPrewarmedGenerations = new ConcurrentHashMap<>();
+    private boolean mListening;
+
+    /** Returns the engine shared by all the pages. */
+    public static synchronized TelephonyAvailabilityEngine getInstance(Context context) {
+        if (sInstance == null) {
+            final Context appContext = context.getApplicationContext();
+            sInstance = new TelephonyAvailabilityEngine(appContext != null ? appContext : context);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    TelephonyAvailabilityEngine(Context context) {
+        mContext = context;
+    }
+
+    /** Starts computing the availability of {@code controllers} in the background. */
+    public void prewarm(Collection<AbstractPreferenceController> controllers) {
+        controllers.stream()
+                .filter(controller -> controller instanceof TelephonyAvailabilityHandler)
+                .filter(controller -> getCachedAvailabilityStatus(controller) == null)
+                .forEach(controller -> ThreadUtils.postOnBackgroundThread(() -> {
+                    try {
+                        getAvailabilityStatus(controller);
+                    } catch (ExecutionException | InterruptedException exception) {
+                        Log.e(TAG, "Prewarm availability status failed!", exception);
+                    }
+                }));
+    }
+
+    /**
+     * Starts computing the availability of the controllers of {@link MobileNetworkSettings} for
+     * {@code subId} in the background, unless it was started since the last invalidation.
+     */
+    public void prewarm(int subId) {
+        if (!SubscriptionManager.isValidSubscriptionId(subId)) {
+            return;
+        }
+        final int generation = mGeneration.get();
+        final Integer prewarmedGeneration = mPrewarmedGenerations.put(subId, generation);
+        if (prewarmedGeneration != null && prewarmedGeneration == generation) {
+            return;
+        }
+        ThreadUtils.postOnBackgroundThread(() -> {
+            for (AbstractPreferenceController controller
+                    : MobileNetworkSettings.createAvailabilityControllers(mContext, subId)) {
+                if (getCachedAvailabilityStatus(controller) != null) {
+                    continue;
+                }
+                try {
+                    getAvailabilityStatus(controller);
+                } catch (ExecutionException | InterruptedException exception) {
+                    Log.e(TAG, "Prewarm availability status failed!", exception);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the availability of {@code controller} if it has been computed, or null otherwise.
+     */
+    Integer getCachedAvailabilityStatus(AbstractPreferenceController controller) {
+        final FutureTask<Integer> task = mStatuses.get(new Key(controller));
+        if (task == null || !task.isDone()) {
+            return null;
+        }
+        try {
+            return task.get();
+        } catch (ExecutionException | InterruptedException exception) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the availability of {@code controller}, computing it if it is not cached. Waits
+     * for the computation already started by another thread, if any.
+     */
+    @WorkerThread
+    int getAvailabilityStatus(AbstractPreferenceController controller)
+            throws ExecutionException, InterruptedException {
+        startListeningIfNeeded();
+        final Key key = new Key(controller);
+        FutureTask<Integer> task = mStatuses.get(key);
+        if (task == null) {
+            final int generation = mGeneration.get();
+            final FutureTask<Integer> newTask = new FutureTask<>(
+                    ((BasePreferenceController) controller)::getAvailabilityStatus);
+            task = mStatuses.putIfAbsent(key, newTask);
+            if (task == null) {
+                task = newTask;
+                task.run();
+                if (generation != mGeneration.get()) {
+                    mStatuses.remove(key, task);
+                }
+            }
+        }
+        try {
+            return task.get();
+        } catch (ExecutionException exception) {
+            mStatuses.remove(key, task);
+            throw exception;
+        }
+    }
+
+    /**
+     * Drops the availability computed for {@code subId}, and the one of the controllers without
+     * subscription. Drops all of it if {@code subId} is invalid.
+     */
+    public void invalidate(int subId) {
+        mGeneration.incrementAndGet();
+        if (!SubscriptionManager.isValidSubscriptionId(subId)) {
+            mStatuses.clear();
+            return;
+        }
+        mStatuses.keySet().removeIf(key -> key.mSubId == subId
+                || !SubscriptionManager.isValidSubscriptionId(key.mSubId));
+    }
+
+    @Override
+    public void onAirplaneModeChanged(boolean airplaneModeEnabled) {
+        invalidate(SubscriptionManager.INVALID_SUBSCRIPTION_ID);
+    }
+
+    @Override
+    public void onSubscriptionsChanged() {
+        invalidate(SubscriptionManager.INVALID_SUBSCRIPTION_ID);
+    }
+
+    private synchronized void startListeningIfNeeded() {
+        if (mListening || mContext.getSystemService(SubscriptionManager.class) == null) {
+            return;
+        }
+        mListening = true;
+        new SubscriptionsChangeListener(mContext, this).start();
+        mContext.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                invalidate(intent.getIntExtra(CarrierConfigManager.EXTRA_SUBSCRIPTION_INDEX,
+                        SubscriptionManager.INVALID_SUBSCRIPTION_ID));
+            }
+        }, new IntentFilter(CarrierConfigManager.ACTION_CARRIER_CONFIG_CHANGED));
+    }
+
+    private static class Key {
+        private final Class<?> mControllerClass;
+        private final String mPreferenceKey;
+        private final int mSubId;
+
+        Key(AbstractPreferenceController controller) {
+            mControllerClass = controller.getClass();
+            mPreferenceKey = controller.getPreferenceKey();
+            mSubId = ((TelephonyAvailabilityHandler) controller).getSubId();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return mControllerClass == other.mControllerClass
+                    && Objects.equals(mPreferenceKey, other.mPreferenceKey)
+                    && mSubId == other.mSubId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mControllerClass, mPreferenceKey, mSubId);
+        }
+    }
+}
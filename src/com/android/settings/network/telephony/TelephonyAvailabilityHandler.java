@@ -35,4 +35,9 @@ public interface TelephonyAvailabilityHandler {
      * to get the availability.
      */
     void unsetAvailabilityStatus();
+
+    /**
+     * Get the subscription id which the availability status is computed for.
+     */
+    int getSubId();
 }
@@ -23,6 +23,7 @@ import android.telephony.CarrierConfigManager;
 import android.telephony.SubscriptionManager;
 
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.network.CarrierConfigCache;
 
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -60,6 +61,11 @@ public abstract class TelephonyBasePreferenceController extends BasePreferenceCo
         mSetSessionCount.getAndDecrement();
     }
 
+    @Override
+    public int getSubId() {
+        return mSubId;
+    }
+
     /**
      * Get carrier config based on specific subscription id.
      *
@@ -73,7 +79,7 @@ public abstract class TelephonyBasePreferenceController extends BasePreferenceCo
         }
         final CarrierConfigManager carrierConfigMgr =
                 mContext.getSystemService(CarrierConfigManager.class);
-        return carrierConfigMgr.getConfigForSubId(subId);
+        return CarrierConfigCache.getConfigForSubId(mContext, carrierConfigMgr, subId);
     }
 
     /**
@@ -16,6 +16,7 @@
 
 package com.android.settings.network.telephony;
 
+import android.content.Context;
 import android.util.Log;
 
 import com.android.settings.core.BasePreferenceController;
@@ -24,36 +25,47 @@ import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Session for controlling the status of TelephonyPreferenceController(s).
  *
  * Within this session, result of {@link BasePreferenceController#availabilityStatus()}
  * would be under control.
+ *
+ * The availability cached by {@link TelephonyAvailabilityEngine} is applied right away, the
+ * rest is computed in parallel. The session waits for it until {@link #DEADLINE_MS}, then the
+ * controllers not computed yet get the status by themselves until it is.
  */
 public class TelephonyStatusControlSession implements AutoCloseable {
 
     private static final String LOG_TAG = "TelephonyStatusControlSS";
+    private static final long DEADLINE_MS = 500L;
 
-    private Collection<AbstractPreferenceController> mControllers;
-    private Collection<Future<Boolean>> mResult = new ArrayList<>();
+    private final List<TelephonyAvailabilityHandler> mControlledHandlers = new ArrayList<>();
+    private boolean mClosed;
 
     /**
      * Buider of session
      */
     public static class Builder {
+        private Context mContext;
         private Collection<AbstractPreferenceController> mControllers;
 
         /**
          * Constructor
          *
+         * @param context is the context used to get the {@link TelephonyAvailabilityEngine}.
          * @param controllers is a collection of {@link AbstractPreferenceController}
          *        which would have {@link BasePreferenceController#availabilityStatus()}
          *        under control within this session.
          */
-        public Builder(Collection<AbstractPreferenceController> controllers) {
+        public Builder(Context context, Collection<AbstractPreferenceController> controllers) {
+            mContext = context;
             mControllers = controllers;
         }
 
@@ -62,15 +74,37 @@ public class TelephonyStatusControlSession implements AutoCloseable {
          * @return {@link TelephonyStatusControlSession} session been setup.
          */
         public TelephonyStatusControlSession build() {
-            return new TelephonyStatusControlSession(mControllers);
+            return new TelephonyStatusControlSession(
+                    TelephonyAvailabilityEngine.getInstance(mContext), mControllers);
         }
     }
 
-    private TelephonyStatusControlSession(Collection<AbstractPreferenceController> controllers) {
-        mControllers = controllers;
-        controllers.forEach(prefCtrl -> mResult
-                .add(ThreadUtils.postOnBackgroundThread(() -> setupAvailabilityStatus(prefCtrl))));
+    private TelephonyStatusControlSession(TelephonyAvailabilityEngine engine,
+            Collection<AbstractPreferenceController> controllers) {
+        final List<Future<?>> results = new ArrayList<>();
+        controllers.stream()
+                .filter(controller -> controller instanceof TelephonyAvailabilityHandler)
+                .forEach(controller -> {
+                    final Integer status = engine.getCachedAvailabilityStatus(controller);
+                    if (status != null) {
+                        setAvailabilityStatus(controller, status);
+                        return;
+                    }
+                    results.add(ThreadUtils.postOnBackgroundThread(
+                            () -> setupAvailabilityStatus(engine, controller)));
+                });
 
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DEADLINE_MS);
+        for (Future<?> result : results) {
+            try {
+                result.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException exception) {
+                Log.w(LOG_TAG, "Setup availability status exceeds " + DEADLINE_MS + "ms");
+                break;
+            } catch (ExecutionException | InterruptedException exception) {
+                Log.e(LOG_TAG, "setup availability status failed!", exception);
+            }
+        }
     }
 
     /**
@@ -79,39 +113,31 @@ public class TelephonyStatusControlSession implements AutoCloseable {
      * No longer control the status.
      */
     public void close() {
-        //check the background thread is finished then unset the status of availability.
-
-        for (Future<Boolean> result : mResult) {
-            try {
-                result.get();
-            } catch (ExecutionException | InterruptedException exception) {
-                Log.e(LOG_TAG, "setup availability status failed!", exception);
-            }
+        synchronized (mControlledHandlers) {
+            mClosed = true;
+            mControlledHandlers.forEach(TelephonyAvailabilityHandler::unsetAvailabilityStatus);
+            mControlledHandlers.clear();
         }
-        unsetAvailabilityStatus(mControllers);
     }
 
-    private Boolean setupAvailabilityStatus(AbstractPreferenceController controller) {
+    private void setupAvailabilityStatus(TelephonyAvailabilityEngine engine,
+            AbstractPreferenceController controller) {
         try {
-            if (controller instanceof TelephonyAvailabilityHandler) {
-                int status = ((BasePreferenceController) controller)
-                        .getAvailabilityStatus();
-                ((TelephonyAvailabilityHandler) controller).setAvailabilityStatus(status);
-            }
-            return true;
+            setAvailabilityStatus(controller, engine.getAvailabilityStatus(controller));
         } catch (Exception exception) {
             Log.e(LOG_TAG, "Setup availability status failed!", exception);
-            return false;
         }
     }
 
-    private void unsetAvailabilityStatus(
-            Collection<AbstractPreferenceController> controllerLists) {
-        controllerLists.stream()
-                .filter(controller -> controller instanceof TelephonyAvailabilityHandler)
-                .map(TelephonyAvailabilityHandler.class::cast)
-                .forEach(controller -> {
-                    controller.unsetAvailabilityStatus();
-                });
+    private void setAvailabilityStatus(AbstractPreferenceController controller, int status) {
+        synchronized (mControlledHandlers) {
+            // Computed after the session is closed, leave the controller unset.
+            if (mClosed) {
+                return;
+            }
+            final TelephonyAvailabilityHandler handler = (TelephonyAvailabilityHandler) controller;
+            handler.setAvailabilityStatus(status);
+            mControlledHandlers.add(handler);
+        }
     }
 }
@@ -23,6 +23,7 @@ import android.telephony.CarrierConfigManager;
 import android.telephony.SubscriptionManager;
 
 import com.android.settings.core.TogglePreferenceController;
+import com.android.settings.network.CarrierConfigCache;
 
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -60,6 +61,11 @@ public abstract class TelephonyTogglePreferenceController extends TogglePreferen
         mSetSessionCount.getAndDecrement();
     }
 
+    @Override
+    public int getSubId() {
+        return mSubId;
+    }
+
     @Override
     public boolean isSliceable() {
         return false;
@@ -78,7 +84,7 @@ public abstract class TelephonyTogglePreferenceController extends TogglePreferen
         }
         final CarrierConfigManager carrierConfigMgr =
                 mContext.getSystemService(CarrierConfigManager.class);
-        return carrierConfigMgr.getConfigForSubId(subId);
+        return CarrierConfigCache.getConfigForSubId(mContext, carrierConfigMgr, subId);
     }
 
     /**
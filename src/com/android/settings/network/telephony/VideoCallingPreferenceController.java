@@ -17,7 +17,6 @@
 package com.android.settings.network.telephony;
 
 import android.content.Context;
-import android.os.PersistableBundle;
 import android.telephony.CarrierConfigManager;
 import android.telephony.SubscriptionManager;
 import android.telephony.TelephonyCallback;
@@ -30,6 +29,7 @@ import androidx.preference.Preference;
 import androidx.preference.PreferenceScreen;
 import androidx.preference.SwitchPreference;
 
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.MobileDataEnabledListener;
 import com.android.settings.network.ims.VolteQueryImsState;
 import com.android.settings.network.ims.VtQueryImsState;
@@ -152,13 +152,13 @@ public class VideoCallingPreferenceController extends TelephonyTogglePreferenceC
             }
         }
 
-        final PersistableBundle carrierConfig = mCarrierConfigManager.getConfigForSubId(subId);
-        if (carrierConfig == null) {
+        if (!CarrierConfigCache.hasConfig(mContext, mCarrierConfigManager, subId)) {
             return false;
         }
 
-        if (!carrierConfig.getBoolean(
-                CarrierConfigManager.KEY_IGNORE_DATA_ENABLED_CHANGED_FOR_VIDEO_CALLS)
+        if (!CarrierConfigCache.getBoolean(mContext, mCarrierConfigManager, subId,
+                CarrierConfigManager.KEY_IGNORE_DATA_ENABLED_CHANGED_FOR_VIDEO_CALLS,
+                false /* defaultValue */)
                 && (!mContext.getSystemService(TelephonyManager.class)
                     .createForSubscriptionId(subId).isDataEnabled())) {
             return false;
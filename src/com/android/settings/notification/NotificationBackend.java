@@ -47,6 +47,7 @@ import android.os.UserHandle;
 import android.service.notification.ConversationChannelWrapper;
 import android.service.notification.NotificationListenerFilter;
 import android.text.format.DateUtils;
+import android.util.ArraySet;
 import android.util.IconDrawableFactory;
 import android.util.Log;
 
@@ -66,6 +67,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 public class NotificationBackend {
     private static final String TAG = "NotificationBackend";
@@ -184,6 +186,59 @@ public class NotificationBackend {
         return false;
     }
 
+    /**
+     * Returns the packages of the current user that {@link #isSystemApp} would report as system
+     * apps, using a single query to the package and role managers instead of one per app.
+     */
+    public Set<String> getSystemApps(Context context) {
+        final PackageManager pm = context.getPackageManager();
+        final RoleManager rm = context.getSystemService(RoleManager.class);
+        final Set<String> roleHolders = new ArraySet<>();
+        roleHolders.addAll(rm.getRoleHolders(RoleManager.ROLE_DIALER));
+        roleHolders.addAll(rm.getRoleHolders(RoleManager.ROLE_EMERGENCY));
+        final String[] nonBlockablePkgs = context.getResources().getStringArray(
+                com.android.internal.R.array.config_nonBlockableNotificationPackages);
+
+        final Set<String> systemApps = new ArraySet<>();
+        final List<PackageInfo> packages = pm.getInstalledPackages(PackageManager.GET_SIGNATURES);
+        for (PackageInfo info : packages) {
+            final AppRow row = new AppRow();
+            row.systemApp = Utils.isSystemPackage(context.getResources(), pm, info)
+                    || roleHolders.contains(info.packageName);
+            markAppRowWithBlockables(nonBlockablePkgs, row, info.packageName);
+            if (row.systemApp) {
+                systemApps.add(info.packageName);
+            }
+        }
+        return systemApps;
+    }
+
+    /**
+     * Returns the packages of {@code apps}, all of user {@code userId}, whose notifications are
+     * banned. The blocked app count of the user is read first: when no app is blocked, this is
+     * a single query, otherwise the apps stop being checked once every blocked app was found.
+     */
+    public Set<String> getNotificationsBannedPackages(int userId, List<ApplicationInfo> apps) {
+        final Set<String> bannedPackages = new ArraySet<>();
+        int blockedAppCount;
+        try {
+            blockedAppCount = sINM.getBlockedAppCount(userId);
+        } catch (Exception e) {
+            Log.w(TAG, "Error calling NoMan", e);
+            // Unknown, check every app.
+            blockedAppCount = -1;
+        }
+        for (ApplicationInfo info : apps) {
+            if (bannedPackages.size() == blockedAppCount) {
+                break;
+            }
+            if (getNotificationsBanned(info.packageName, info.uid)) {
+                bannedPackages.add(info.packageName);
+            }
+        }
+        return bannedPackages;
+    }
+
     public boolean getNotificationsBanned(String pkg, int uid) {
         try {
             final boolean enabled = sINM.areNotificationsEnabledForPackage(pkg, uid);
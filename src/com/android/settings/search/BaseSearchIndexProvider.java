@@ -16,16 +16,29 @@
 
 package com.android.settings.search;
 
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_CONTROLLER;
 import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_KEY;
 import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_SEARCHABLE;
 import static com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag.FLAG_INCLUDE_PREF_SCREEN;
 import static com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag.FLAG_NEED_KEY;
+import static com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag.FLAG_NEED_PREF_CONTROLLER;
 import static com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag.FLAG_NEED_SEARCHABLE;
 
 import android.annotation.XmlRes;
+import android.content.BroadcastReceiver;
+import android.content.ContentResolver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.content.res.Configuration;
+import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.Process;
 import android.provider.SearchIndexableResource;
+import android.provider.Settings;
+import android.text.TextUtils;
 import android.util.Log;
 
 import androidx.annotation.CallSuper;
@@ -42,9 +55,14 @@ import com.android.settingslib.search.SearchIndexableRaw;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A basic SearchIndexProvider that returns no data to index.
@@ -52,7 +70,16 @@ import java.util.List;
 public class BaseSearchIndexProvider implements Indexable.SearchIndexProvider {
 
     private static final String TAG = "BaseSearchIndex";
+    // Methods whose result may change at runtime, see getIndexFingerprint().
+    private static final List<String> DYNAMIC_METHODS = Arrays.asList(
+            "getXmlResourcesToIndex", "getNonIndexableKeys", "getDynamicRawDataToIndex",
+            "getPreferenceControllers", "createPreferenceControllers", "isPageSearchEnabled");
+    private static final Map<Class<?>, Boolean> sOverridesDynamicMethods =
+            new ConcurrentHashMap<>();
+    private final AtomicInteger mBroadcastGeneration = new AtomicInteger();
     private int mXmlRes = 0;
+    private volatile Boolean mHasStaticNonIndexableKeys;
+    private BroadcastReceiver mInvalidationReceiver;
 
     public BaseSearchIndexProvider() {
     }
@@ -167,6 +194,153 @@ public class BaseSearchIndexProvider implements Indexable.SearchIndexProvider {
         return null;
     }
 
+    /**
+     * Returns the settings that {@link #getNonIndexableKeys(Context)} and
+     * {@link #getDynamicRawDataToIndex(Context, boolean)} depend on, besides the xml of the page.
+     * Their current values are part of {@link #getIndexFingerprint(Context)}.
+     */
+    protected List<Uri> getIndexInvalidationUris() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns the broadcast actions after which {@link #getNonIndexableKeys(Context)} and
+     * {@link #getDynamicRawDataToIndex(Context, boolean)} may return a different result. Once one
+     * of them is received, {@link #getIndexFingerprint(Context)} changes.
+     */
+    protected List<String> getIndexInvalidationActions() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns a fingerprint of every input {@link #getNonIndexableKeys(Context)} and
+     * {@link #getDynamicRawDataToIndex(Context, boolean)} depend on, or null if it can't be
+     * computed cheaply. While the fingerprint is unchanged, the results of this provider are
+     * served from {@link SearchIndexCache} instead of instantiating its controllers.
+     *
+     * <p>The fingerprint covers the build, the Settings apk and the resource configuration. A
+     * provider which declares its other inputs through {@link #getIndexInvalidationUris()} and
+     * {@link #getIndexInvalidationActions()} also covers them. A provider which declares nothing
+     * is only fingerprinted if it overrides none of the dynamic methods and its xml declares no
+     * controller. Other providers return null and are always evaluated.
+     */
+    public String getIndexFingerprint(Context context) {
+        final List<Uri> uris = getIndexInvalidationUris();
+        final List<String> actions = getIndexInvalidationActions();
+        if (uris.isEmpty() && actions.isEmpty() && !hasStaticNonIndexableKeys(context)) {
+            return null;
+        }
+        long lastUpdateTime = 0L;
+        try {
+            lastUpdateTime = context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0 /* flags */).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+        final Configuration config = context.getResources().getConfiguration();
+        final StringBuilder fingerprint = new StringBuilder()
+                .append(Build.FINGERPRINT).append('|')
+                .append(lastUpdateTime).append('|')
+                .append(config.getLocales().toLanguageTags()).append('|')
+                .append(config.assetsSeq);
+        for (Uri uri : uris) {
+            fingerprint.append('|').append(uri).append('=')
+                    .append(getSettingValue(context, uri));
+        }
+        if (!actions.isEmpty()) {
+            fingerprint.append('|').append(getBroadcastGeneration(context, actions));
+        }
+        return fingerprint.toString();
+    }
+
+    private static String getSettingValue(Context context, Uri uri) {
+        final List<String> segments = uri.getPathSegments();
+        if (segments.size() != 2) {
+            throw new IllegalArgumentException("Not a setting uri: " + uri);
+        }
+        final ContentResolver resolver = context.getContentResolver();
+        switch (segments.get(0)) {
+            case "global":
+                return Settings.Global.getString(resolver, segments.get(1));
+            case "secure":
+                return Settings.Secure.getString(resolver, segments.get(1));
+            case "system":
+                return Settings.System.getString(resolver, segments.get(1));
+            default:
+                throw new IllegalArgumentException("Not a setting uri: " + uri);
+        }
+    }
+
+    /**
+     * Returns a value which changes every time one of {@code actions} is received. Broadcasts
+     * sent while the process wasn't running are missed, so the value also changes with the
+     * process.
+     */
+    private synchronized String getBroadcastGeneration(Context context, List<String> actions) {
+        if (mInvalidationReceiver == null) {
+            mInvalidationReceiver = new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    mBroadcastGeneration.incrementAndGet();
+                }
+            };
+            final IntentFilter filter = new IntentFilter();
+            for (String action : actions) {
+                filter.addAction(action);
+            }
+            context.getApplicationContext().registerReceiver(mInvalidationReceiver, filter);
+        }
+        return Process.getStartUptimeMillis() + ":" + mBroadcastGeneration.get();
+    }
+
+    private boolean hasStaticNonIndexableKeys(Context context) {
+        final Boolean overridden = sOverridesDynamicMethods.computeIfAbsent(getClass(),
+                BaseSearchIndexProvider::overridesDynamicMethods);
+        if (overridden) {
+            return false;
+        }
+        // The xml resources can't change without a dynamic method, parse them only once.
+        Boolean hasStaticNonIndexableKeys = mHasStaticNonIndexableKeys;
+        if (hasStaticNonIndexableKeys == null) {
+            hasStaticNonIndexableKeys = !declaresControllers(context);
+            mHasStaticNonIndexableKeys = hasStaticNonIndexableKeys;
+        }
+        return hasStaticNonIndexableKeys;
+    }
+
+    private boolean declaresControllers(Context context) {
+        final List<SearchIndexableResource> resources = getXmlResourcesToIndex(context, true);
+        if (resources == null) {
+            return false;
+        }
+        for (SearchIndexableResource res : resources) {
+            try {
+                final List<Bundle> metadata = PreferenceXmlParserUtils.extractMetadata(context,
+                        res.xmlResId, FLAG_NEED_PREF_CONTROLLER);
+                for (Bundle bundle : metadata) {
+                    if (!TextUtils.isEmpty(bundle.getString(METADATA_CONTROLLER))) {
+                        return true;
+                    }
+                }
+            } catch (IOException | XmlPullParserException e) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean overridesDynamicMethods(Class<?> providerClass) {
+        for (Class<?> c = providerClass; c != BaseSearchIndexProvider.class;
+                c = c.getSuperclass()) {
+            for (Method method : c.getDeclaredMethods()) {
+                if (DYNAMIC_METHODS.contains(method.getName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Returns true if the page should be considered in search query. If return false, entire page
      * will be suppressed during search query.
@@ -179,7 +353,11 @@ public class BaseSearchIndexProvider implements Indexable.SearchIndexProvider {
      * Get all non-indexable keys from xml. If {@param suppressAllPage} is set, all keys are
      * considered non-indexable. Otherwise, only keys with searchable="false" are included.
      */
-    private List<String> getNonIndexableKeysFromXml(Context context, boolean suppressAllPage) {
+    /**
+     * Returns the keys of the xml resources of this page that are non-indexable, without asking
+     * the controllers.
+     */
+    List<String> getNonIndexableKeysFromXml(Context context, boolean suppressAllPage) {
         final List<SearchIndexableResource> resources = getXmlResourcesToIndex(
                 context, true /* not used*/);
         if (resources == null || resources.isEmpty()) {
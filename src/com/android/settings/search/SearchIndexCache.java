@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.text.TextUtils;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Persisted cache of the non-indexable keys reported by each search index provider.
+ *
+ * <p>Each provider's keys are stored together with the fingerprint the provider reported when
+ * they were computed, see {@link BaseSearchIndexProvider#getIndexFingerprint(Context)}. While the
+ * fingerprint is unchanged, the keys are served from the cache instead of instantiating the
+ * provider's controllers. Every time the keys of a provider change, a global generation number
+ * is bumped and recorded for that provider, so callers can ask for the providers that changed
+ * since a generation they already know. The whole cache is dropped after an OTA.
+ */
+public class SearchIndexCache {
+
+    @VisibleForTesting
+    static final String SHARED_PREFS_TAG = "search_index_cache";
+    private static final String KEY_BUILD = "build";
+    private static final String KEY_GENERATION = "generation";
+    private static final String PREFIX_FINGERPRINT = "fingerprint:";
+    private static final String PREFIX_GENERATION = "generation:";
+    private static final String PREFIX_KEYS = "keys:";
+
+    private final SharedPreferences mSharedPreferences;
+
+    public SearchIndexCache(Context context) {
+        mSharedPreferences = context.getSharedPreferences(SHARED_PREFS_TAG, Context.MODE_PRIVATE);
+        if (!TextUtils.equals(mSharedPreferences.getString(KEY_BUILD, null), getBuildId())) {
+            final long generation = getGeneration();
+            mSharedPreferences.edit()
+                    .clear()
+                    .putString(KEY_BUILD, getBuildId())
+                    .putLong(KEY_GENERATION, generation + 1)
+                    .apply();
+        }
+    }
+
+    /**
+     * Returns the current generation of the cache.
+     */
+    public synchronized long getGeneration() {
+        return mSharedPreferences.getLong(KEY_GENERATION, 0L);
+    }
+
+    /**
+     * Returns the cached non-indexable keys of the provider, or null if they have to be
+     * recomputed because the provider has no fingerprint or it has changed.
+     */
+    @Nullable
+    public synchronized List<String> getNonIndexableKeys(String providerName,
+            @Nullable String fingerprint) {
+        if (fingerprint == null || !TextUtils.equals(fingerprint,
+                mSharedPreferences.getString(PREFIX_FINGERPRINT + providerName, null))) {
+            return null;
+        }
+        final Set<String> keys = mSharedPreferences.getStringSet(PREFIX_KEYS + providerName, null);
+        return keys == null ? null : new ArrayList<>(keys);
+    }
+
+    /**
+     * Stores freshly computed non-indexable keys of the provider. The generation is only bumped
+     * if the keys differ from the cached ones.
+     */
+    public synchronized void putNonIndexableKeys(String providerName,
+            @Nullable String fingerprint, List<String> keys) {
+        final Set<String> newKeys = new ArraySet<>(keys);
+        final Set<String> oldKeys =
+                mSharedPreferences.getStringSet(PREFIX_KEYS + providerName, null);
+        final boolean keysChanged = oldKeys == null || !oldKeys.equals(newKeys);
+        final boolean fingerprintChanged = !TextUtils.equals(fingerprint,
+                mSharedPreferences.getString(PREFIX_FINGERPRINT + providerName, null));
+        if (!keysChanged && !fingerprintChanged) {
+            return;
+        }
+        final SharedPreferences.Editor editor = mSharedPreferences.edit()
+                .putString(PREFIX_FINGERPRINT + providerName, fingerprint);
+        if (keysChanged) {
+            final long generation = getGeneration() + 1;
+            editor.putLong(KEY_GENERATION, generation)
+                    .putLong(PREFIX_GENERATION + providerName, generation)
+                    .putStringSet(PREFIX_KEYS + providerName, newKeys);
+        }
+        editor.apply();
+    }
+
+    /**
+     * Returns the non-indexable keys of every provider that changed after {@code generation},
+     * keyed by provider name.
+     */
+    public synchronized Map<String, List<String>> getNonIndexableKeysChangedSince(
+            long generation) {
+        final Map<String, List<String>> changed = new ArrayMap<>();
+        for (Map.Entry<String, ?> entry : mSharedPreferences.getAll().entrySet()) {
+            final String prefKey = entry.getKey();
+            if (!prefKey.startsWith(PREFIX_GENERATION)
+                    || (Long) entry.getValue() <= generation) {
+                continue;
+            }
+            final String providerName = prefKey.substring(PREFIX_GENERATION.length());
+            final Set<String> keys =
+                    mSharedPreferences.getStringSet(PREFIX_KEYS + providerName, null);
+            changed.put(providerName, keys == null ? new ArrayList<>() : new ArrayList<>(keys));
+        }
+        return changed;
+    }
+
+    private static String getBuildId() {
+        return Build.FINGERPRINT;
+    }
+}
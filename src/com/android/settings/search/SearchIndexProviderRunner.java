@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import android.util.ArrayMap;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.search.SearchIndexableData;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs a call on every search index provider across a bounded worker pool.
+ *
+ * <p>Each provider gets {@link #PROVIDER_TIME_BUDGET_MS} from the moment its call starts. A
+ * provider that overruns its budget is cancelled. A provider that overruns its budget or throws
+ * is reported and served from the last result it returned successfully, or from the fallback of
+ * the run if it never returned one, so a single slow or broken page can't stall or break
+ * indexing. The latency of every call is recorded per provider and printed by
+ * {@link #dump(PrintWriter)}.
+ *
+ * <p>Different providers are called concurrently, so a provider must not share unsynchronized
+ * mutable state with other providers. Calls on the same provider are serialized, also across
+ * concurrent runs, so a provider never runs two calls at the same time.
+ */
+public class SearchIndexProviderRunner {
+
+    private static final String TAG = "SearchIndexRunner";
+
+    @VisibleForTesting
+    static final long PROVIDER_TIME_BUDGET_MS = 2000L;
+    private static final int POOL_SIZE =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final ExecutorService sExecutor = Executors.newFixedThreadPool(POOL_SIZE);
+
+    // Upper bounds (inclusive) of the latency buckets, the last bucket is unbounded.
+    private static final long[] BUCKET_BOUNDS_MS = {5, 10, 25, 50, 100, 250, 500, 1000, 2000};
+
+    /**
+     * A call to make on a single provider.
+     */
+    public interface ProviderCall<T> {
+        T call(SearchIndexableData bundle) throws Exception;
+    }
+
+    private final ExecutorService mExecutor;
+    private final long mTimeBudgetMs;
+    // Key: section name + provider class name
+    private final Map<String, Object> mLastGoodResults = new ArrayMap<>();
+    // Key: provider class name
+    private final Map<String, Lock> mProviderLocks = new ArrayMap<>();
+    // Key: section name, value: stats per provider class name
+    private final Map<String, Map<String, LatencyStats>> mStats = new ArrayMap<>();
+
+    public SearchIndexProviderRunner() {
+        this(sExecutor, PROVIDER_TIME_BUDGET_MS);
+    }
+
+    @VisibleForTesting
+    SearchIndexProviderRunner(ExecutorService executor, long timeBudgetMs) {
+        mExecutor = executor;
+        mTimeBudgetMs = timeBudgetMs;
+    }
+
+    /**
+     * Makes {@code call} on every provider in parallel and returns the results in the order of
+     * {@code bundles}. A provider that failed and has no previous good result gets a null entry.
+     *
+     * @param section the name the results and the latencies are recorded under
+     */
+    public <T> List<T> run(String section, List<SearchIndexableData> bundles,
+            ProviderCall<T> call) {
+        return run(section, bundles, call, null /* fallback */);
+    }
+
+    /**
+     * Makes {@code call} on every provider in parallel and returns the results in the order of
+     * {@code bundles}. A provider that failed and has no previous good result gets the result of
+     * {@code fallback}, which is made on the calling thread and should be cheap, or a null entry
+     * if the fallback is null or throws too.
+     *
+     * @param section the name the results and the latencies are recorded under
+     */
+    public <T> List<T> run(String section, List<SearchIndexableData> bundles,
+            ProviderCall<T> call, @Nullable ProviderCall<T> fallback) {
+        final List<ProviderTask<T>> tasks = new ArrayList<>(bundles.size());
+        for (SearchIndexableData bundle : bundles) {
+            final ProviderTask<T> task = new ProviderTask<>(section, bundle, call);
+            task.mFuture = mExecutor.submit(task);
+            tasks.add(task);
+        }
+
+        final List<T> results = new ArrayList<>(tasks.size());
+        for (ProviderTask<T> task : tasks) {
+            T result = awaitResult(task);
+            if (result == null && fallback != null) {
+                result = callFallback(task, fallback);
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    private <T> T callFallback(ProviderTask<T> task, ProviderCall<T> fallback) {
+        try {
+            return fallback.call(task.mBundle);
+        } catch (Exception e) {
+            Log.e(TAG, "Error trying to get the fallback " + task.mSection + " from: "
+                    + task.getProviderName(), e);
+            return null;
+        }
+    }
+
+    private <T> T awaitResult(ProviderTask<T> task) {
+        final String providerName = task.getProviderName();
+        while (true) {
+            final boolean started = task.mStarted;
+            final long timeout = started
+                    ? mTimeBudgetMs - (now() - task.mStartTime)
+                    : mTimeBudgetMs;
+            try {
+                return task.mFuture.get(Math.max(timeout, 0L), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (!task.mStarted) {
+                    // Still queued behind other providers, its budget hasn't started yet.
+                    continue;
+                }
+                if (now() - task.mStartTime < mTimeBudgetMs) {
+                    continue;
+                }
+                Log.w(TAG, providerName + " exceeded its " + mTimeBudgetMs + " ms budget for "
+                        + task.mSection + ", using last good result");
+                // Frees the worker for the remaining providers if the provider is interruptible.
+                task.mFuture.cancel(true /* mayInterruptIfRunning */);
+                synchronized (mStats) {
+                    getStats(task.mSection, providerName).mTimeouts++;
+                }
+            } catch (ExecutionException e) {
+                if (System.getProperty(
+                        SettingsSearchIndexablesProvider.SYSPROP_CRASH_ON_ERROR) != null) {
+                    throw new RuntimeException(e.getCause());
+                }
+                Log.e(TAG, "Error trying to get " + task.mSection + " from: " + providerName,
+                        e.getCause());
+                synchronized (mStats) {
+                    getStats(task.mSection, providerName).mFailures++;
+                }
+            } catch (InterruptedException e) {
+                Log.w(TAG, "Interrupted while waiting for " + providerName);
+                task.mFuture.cancel(true /* mayInterruptIfRunning */);
+                Thread.currentThread().interrupt();
+            }
+            return getLastGoodResult(task.mSection, providerName);
+        }
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T getLastGoodResult(String section, String providerName) {
+        synchronized (mLastGoodResults) {
+            return (T) mLastGoodResults.get(section + "/" + providerName);
+        }
+    }
+
+    private Lock getProviderLock(String providerName) {
+        synchronized (mProviderLocks) {
+            return mProviderLocks.computeIfAbsent(providerName, key -> new ReentrantLock());
+        }
+    }
+
+    // Must be called while holding the lock on mStats.
+    private LatencyStats getStats(String section, String providerName) {
+        return mStats.computeIfAbsent(section, key -> new ArrayMap<>())
+                .computeIfAbsent(providerName, key -> new LatencyStats());
+    }
+
+    /**
+     * Prints the latency histogram of every provider, slowest providers first.
+     */
+    public void dump(PrintWriter writer) {
+        synchronized (mStats) {
+            writer.println("Search index provider latencies (budget " + mTimeBudgetMs + " ms):");
+            for (Map.Entry<String, Map<String, LatencyStats>> section : mStats.entrySet()) {
+                writer.println("  " + section.getKey() + ":");
+                final List<Map.Entry<String, LatencyStats>> entries =
+                        new ArrayList<>(section.getValue().entrySet());
+                entries.sort((a, b) -> Long.compare(b.getValue().mTotalMs,
+                        a.getValue().mTotalMs));
+                for (Map.Entry<String, LatencyStats> entry : entries) {
+                    writer.println("    " + entry.getKey() + ": " + entry.getValue());
+                }
+            }
+        }
+    }
+
+    private class ProviderTask<T> implements Callable<T> {
+        private final String mSection;
+        private final SearchIndexableData mBundle;
+        private final ProviderCall<T> mCall;
+        private volatile long mStartTime;
+        private volatile boolean mStarted;
+        private Future<T> mFuture;
+
+        ProviderTask(String section, SearchIndexableData bundle, ProviderCall<T> call) {
+            mSection = section;
+            mBundle = bundle;
+            mCall = call;
+        }
+
+        String getProviderName() {
+            return mBundle.getTargetClass().getName();
+        }
+
+        @Override
+        public T call() throws Exception {
+            mStartTime = now();
+            mStarted = true;
+            // Waiting for a previous call on the same provider counts towards the budget, and
+            // can be interrupted when this call is cancelled.
+            final Lock providerLock = getProviderLock(getProviderName());
+            providerLock.lockInterruptibly();
+            final T result;
+            try {
+                result = mCall.call(mBundle);
+            } finally {
+                providerLock.unlock();
+            }
+            final long elapsedMs = now() - mStartTime;
+            synchronized (mStats) {
+                getStats(mSection, getProviderName()).record(elapsedMs);
+            }
+            synchronized (mLastGoodResults) {
+                mLastGoodResults.put(mSection + "/" + getProviderName(), result);
+            }
+            return result;
+        }
+    }
+
+    @VisibleForTesting
+    static class LatencyStats {
+        final long[] mBuckets = new long[BUCKET_BOUNDS_MS.length + 1];
+        long mCount;
+        long mTotalMs;
+        long mMaxMs;
+        long mTimeouts;
+        long mFailures;
+
+        void record(long elapsedMs) {
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_MS.length && elapsedMs > BUCKET_BOUNDS_MS[bucket]) {
+                bucket++;
+            }
+            mBuckets[bucket]++;
+            mCount++;
+            mTotalMs += elapsedMs;
+            mMaxMs = Math.max(mMaxMs, elapsedMs);
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder builder = new StringBuilder()
+                    .append("count=").append(mCount)
+                    .append(" avg=").append(mCount == 0 ? 0 : mTotalMs / mCount)
+                    .append("ms max=").append(mMaxMs)
+                    .append("ms timeouts=").append(mTimeouts)
+                    .append(" failures=").append(mFailures)
+                    .append(" histogram=[");
+            for (int i = 0; i < mBuckets.length; i++) {
+                if (i > 0) {
+                    builder.append(", ");
+                }
+                builder.append(i < BUCKET_BOUNDS_MS.length
+                        ? "<=" + BUCKET_BOUNDS_MS[i] : ">" + BUCKET_BOUNDS_MS[i - 1])
+                        .append(':').append(mBuckets[i]);
+            }
+            return builder.append(']').toString();
+        }
+    }
+}
@@ -50,6 +50,7 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.MatrixCursor;
 import android.net.Uri;
+import android.os.Bundle;
 import android.provider.SearchIndexableResource;
 import android.provider.SearchIndexablesContract;
 import android.provider.SearchIndexablesProvider;
@@ -77,6 +78,8 @@ import com.android.settingslib.search.Indexable;
 import com.android.settingslib.search.SearchIndexableData;
 import com.android.settingslib.search.SearchIndexableRaw;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -95,10 +98,33 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
 
     private static final String TAG = "SettingsSearchProvider";
 
+    /**
+     * Path returning the non-indexable keys of every provider that changed after the generation
+     * given in the {@link #QUERY_PARAMETER_GENERATION} query parameter. Each row holds a provider
+     * class name and one of its keys, or a null key if the provider has none anymore. The current
+     * generation is returned in the cursor extras under {@link #EXTRA_GENERATION}.
+     */
+    public static final String NON_INDEXABLES_KEYS_DELTA_PATH = "settings/non_indexables_key_delta";
+    public static final String QUERY_PARAMETER_GENERATION = "generation";
+    public static final String EXTRA_GENERATION = "generation";
+    public static final String[] NON_INDEXABLES_KEYS_DELTA_COLUMNS = {
+            "class_name",
+            "key",
+    };
+    private static final int COLUMN_INDEX_DELTA_CLASS_NAME = 0;
+    private static final int COLUMN_INDEX_DELTA_KEY = 1;
+
+    private static final String SECTION_NON_INDEXABLE_KEYS = "non_indexable_keys";
+    private static final String SECTION_DYNAMIC_RAW_DATA = "dynamic_raw_data";
+
     private static final Collection<String> INVALID_KEYS;
 
     // Search enabled states for injection (key: category key, value: search enabled)
     private Map<String, Boolean> mSearchEnabledByCategoryKeyMap;
+    // Dynamic raw data of the providers reporting a fingerprint (key: provider class name)
+    private final Map<String, DynamicRawDataEntry> mDynamicRawDataCache = new ArrayMap<>();
+    private SearchIndexCache mSearchIndexCache;
+    private final SearchIndexProviderRunner mProviderRunner = new SearchIndexProviderRunner();
 
     static {
         INVALID_KEYS = new ArraySet<>();
@@ -112,6 +138,27 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         return true;
     }
 
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+            String sortOrder) {
+        if (TextUtils.equals(uri.getPath(), "/" + NON_INDEXABLES_KEYS_DELTA_PATH)) {
+            long generation = 0L;
+            try {
+                final String param = uri.getQueryParameter(QUERY_PARAMETER_GENERATION);
+                generation = param == null ? 0L : Long.parseLong(param);
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "Invalid generation in " + uri + ", returning all keys");
+            }
+            return queryNonIndexableKeysDelta(generation);
+        }
+        return super.query(uri, projection, selection, selectionArgs, sortOrder);
+    }
+
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        mProviderRunner.dump(writer);
+    }
+
     @Override
     public Cursor queryXmlResources(String[] projection) {
         final MatrixCursor cursor = new MatrixCursor(INDEXABLES_XML_RES_COLUMNS);
@@ -164,6 +211,37 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         return cursor;
     }
 
+    /**
+     * Gets the non-indexable keys of the providers that changed after {@code generation}.
+     * Unchanged providers are served from {@link SearchIndexCache}.
+     */
+    @VisibleForTesting
+    Cursor queryNonIndexableKeysDelta(long generation) {
+        final Context context = getContext();
+        // Refresh the cache, only providers whose fingerprint changed are evaluated.
+        getNonIndexableKeysFromProvider(context);
+
+        final SearchIndexCache cache = getSearchIndexCache(context);
+        final MatrixCursor cursor = new MatrixCursor(NON_INDEXABLES_KEYS_DELTA_COLUMNS);
+        for (Map.Entry<String, List<String>> entry
+                : cache.getNonIndexableKeysChangedSince(generation).entrySet()) {
+            final List<String> keys = entry.getValue();
+            if (keys.isEmpty()) {
+                keys.add(null);
+            }
+            for (String key : keys) {
+                final Object[] ref = new Object[NON_INDEXABLES_KEYS_DELTA_COLUMNS.length];
+                ref[COLUMN_INDEX_DELTA_CLASS_NAME] = entry.getKey();
+                ref[COLUMN_INDEX_DELTA_KEY] = key;
+                cursor.addRow(ref);
+            }
+        }
+        final Bundle extras = new Bundle();
+        extras.putLong(EXTRA_GENERATION, cache.getGeneration());
+        cursor.setExtras(extras);
+        return cursor;
+    }
+
     /**
      * Gets a Cursor of dynamic Raw data similar to queryRawData. We use those data in search query
      * time
@@ -176,9 +254,16 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(context)
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
 
-        for (SearchIndexableData bundle : bundles) {
-            rawList.addAll(getDynamicSearchIndexableRawData(context, bundle));
+        final List<List<SearchIndexableRaw>> results = mProviderRunner.run(
+                SECTION_DYNAMIC_RAW_DATA, new ArrayList<>(bundles),
+                bundle -> getDynamicSearchIndexableRawData(context, bundle));
+        for (List<SearchIndexableRaw> providerRaws : results) {
+            if (providerRaws != null) {
+                rawList.addAll(providerRaws);
+            }
+        }
 
+        for (SearchIndexableData bundle : bundles) {
             // Refresh the search enabled state for indexing injection raw data
             final Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
             if (provider instanceof BaseSearchIndexProvider) {
@@ -274,51 +359,78 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(context)
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
 
-        final List<String> nonIndexableKeys = new ArrayList<>();
+        final SearchIndexCache cache = getSearchIndexCache(context);
+        final List<List<String>> results = mProviderRunner.run(SECTION_NON_INDEXABLE_KEYS,
+                new ArrayList<>(bundles), bundle -> getNonIndexableKeys(context, bundle, cache),
+                bundle -> getNonIndexableKeysFromXml(context, bundle));
 
-        for (SearchIndexableData bundle : bundles) {
-            final long startTime = System.currentTimeMillis();
-            Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
-            List<String> providerNonIndexableKeys;
-            try {
-                providerNonIndexableKeys = provider.getNonIndexableKeys(context);
-            } catch (Exception e) {
-                // Catch a generic crash. In the absence of the catch, the background thread will
-                // silently fail anyway, so we aren't losing information by catching the exception.
-                // We crash when the system property exists so that we can test if crashes need to
-                // be fixed.
-                // The gain is that if there is a crash in a specific controller, we don't lose all
-                // non-indexable keys, but we can still find specific crashes in development.
-                if (System.getProperty(SYSPROP_CRASH_ON_ERROR) != null) {
-                    throw new RuntimeException(e);
-                }
-                Log.e(TAG, "Error trying to get non-indexable keys from: "
-                        + bundle.getTargetClass().getName(), e);
-                continue;
+        final List<String> nonIndexableKeys = new ArrayList<>();
+        for (List<String> providerNonIndexableKeys : results) {
+            if (providerNonIndexableKeys != null) {
+                nonIndexableKeys.addAll(providerNonIndexableKeys);
             }
+        }
+        return nonIndexableKeys;
+    }
 
-            if (providerNonIndexableKeys == null || providerNonIndexableKeys.isEmpty()) {
-                if (DEBUG) {
-                    final long totalTime = System.currentTimeMillis() - startTime;
-                    Log.d(TAG, "No indexable, total time " + totalTime);
-                }
-                continue;
-            }
+    /**
+     * Gets the non-indexable keys declared in the xml of a provider, without asking its
+     * controllers. Used when the provider timed out or failed before it ever returned its keys,
+     * so that the keys marked unsearchable in its xml aren't indexed.
+     */
+    @Nullable
+    private List<String> getNonIndexableKeysFromXml(Context context, SearchIndexableData bundle) {
+        final Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
+        if (!(provider instanceof BaseSearchIndexProvider)) {
+            return null;
+        }
+        return ((BaseSearchIndexProvider) provider).getNonIndexableKeysFromXml(context,
+                false /* suppressAllPage */);
+    }
 
-            if (providerNonIndexableKeys.removeAll(INVALID_KEYS)) {
-                Log.v(TAG, provider + " tried to add an empty non-indexable key");
+    /**
+     * Gets the non-indexable keys of a single provider, from {@link SearchIndexCache} if its
+     * fingerprint is unchanged. Runs on a {@link SearchIndexProviderRunner} worker thread.
+     */
+    private List<String> getNonIndexableKeys(Context context, SearchIndexableData bundle,
+            SearchIndexCache cache) {
+        final long startTime = System.currentTimeMillis();
+        final Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
+        final String providerName = bundle.getTargetClass().getName();
+        final String fingerprint = getIndexFingerprint(context, provider);
+        List<String> providerNonIndexableKeys =
+                cache.getNonIndexableKeys(providerName, fingerprint);
+        if (providerNonIndexableKeys != null) {
+            if (DEBUG) {
+                Log.d(TAG, "Non-indexables of " + providerName + " served from cache");
             }
+            return providerNonIndexableKeys;
+        }
+        // Exceptions are isolated per provider by SearchIndexProviderRunner, which also crashes
+        // when SYSPROP_CRASH_ON_ERROR is set so that crashes can be found in development.
+        providerNonIndexableKeys = provider.getNonIndexableKeys(context);
 
+        if (providerNonIndexableKeys == null || providerNonIndexableKeys.isEmpty()) {
             if (DEBUG) {
                 final long totalTime = System.currentTimeMillis() - startTime;
-                Log.d(TAG, "Non-indexables " + providerNonIndexableKeys.size() + ", total time "
-                        + totalTime);
+                Log.d(TAG, "No indexable, total time " + totalTime);
             }
+            cache.putNonIndexableKeys(providerName, fingerprint, new ArrayList<>());
+            return new ArrayList<>();
+        }
 
-            nonIndexableKeys.addAll(providerNonIndexableKeys);
+        if (providerNonIndexableKeys.removeAll(INVALID_KEYS)) {
+            Log.v(TAG, provider + " tried to add an empty non-indexable key");
         }
 
-        return nonIndexableKeys;
+        if (DEBUG) {
+            final long totalTime = System.currentTimeMillis() - startTime;
+            Log.d(TAG, "Non-indexables " + providerNonIndexableKeys.size() + ", total time "
+                    + totalTime);
+        }
+
+        cache.putNonIndexableKeys(providerName, fingerprint, providerNonIndexableKeys);
+        return providerNonIndexableKeys;
     }
 
     private List<SearchIndexableResource> getSearchIndexableResourcesFromProvider(Context context) {
@@ -376,6 +488,16 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
     private List<SearchIndexableRaw> getDynamicSearchIndexableRawData(Context context,
             SearchIndexableData bundle) {
         final Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
+        final String providerName = bundle.getTargetClass().getName();
+        // The fingerprint covers the locale, so the cached titles are still valid.
+        final String fingerprint = getIndexFingerprint(context, provider);
+        synchronized (mDynamicRawDataCache) {
+            final DynamicRawDataEntry entry = mDynamicRawDataCache.get(providerName);
+            if (fingerprint != null && entry != null
+                    && TextUtils.equals(fingerprint, entry.mFingerprint)) {
+                return new ArrayList<>(entry.mRawList);
+            }
+        }
         final List<SearchIndexableRaw> providerRaws =
                 provider.getDynamicRawDataToIndex(context, true /* enabled */);
         if (providerRaws == null) {
@@ -385,11 +507,38 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         for (SearchIndexableRaw raw : providerRaws) {
             // The classname and intent information comes from the PreIndexData
             // This will be more clear when provider conversion is done at PreIndex time.
-            raw.className = bundle.getTargetClass().getName();
+            raw.className = providerName;
+        }
+        if (fingerprint != null) {
+            synchronized (mDynamicRawDataCache) {
+                mDynamicRawDataCache.put(providerName,
+                        new DynamicRawDataEntry(fingerprint, new ArrayList<>(providerRaws)));
+            }
         }
         return providerRaws;
     }
 
+    private synchronized SearchIndexCache getSearchIndexCache(Context context) {
+        if (mSearchIndexCache == null) {
+            mSearchIndexCache = new SearchIndexCache(context);
+        }
+        return mSearchIndexCache;
+    }
+
+    @Nullable
+    private static String getIndexFingerprint(Context context,
+            Indexable.SearchIndexProvider provider) {
+        if (!(provider instanceof BaseSearchIndexProvider)) {
+            return null;
+        }
+        try {
+            return ((BaseSearchIndexProvider) provider).getIndexFingerprint(context);
+        } catch (Exception e) {
+            Log.w(TAG, "Error trying to get index fingerprint from: " + provider, e);
+            return null;
+        }
+    }
+
     @VisibleForTesting
     List<SearchIndexableRaw> getInjectionIndexableRawData(Context context) {
         final DashboardFeatureProvider dashboardFeatureProvider =
@@ -475,4 +624,14 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         ref[COLUMN_INDEX_RAW_USER_ID] = raw.userId;
         return ref;
     }
+
+    private static class DynamicRawDataEntry {
+        private final String mFingerprint;
+        private final List<SearchIndexableRaw> mRawList;
+
+        DynamicRawDataEntry(String fingerprint, List<SearchIndexableRaw> rawList) {
+            mFingerprint = fingerprint;
+            mRawList = rawList;
+        }
+    }
 }
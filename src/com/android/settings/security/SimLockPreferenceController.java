@@ -17,7 +17,6 @@
 package com.android.settings.security;
 
 import android.content.Context;
-import android.os.PersistableBundle;
 import android.os.UserManager;
 import android.telephony.CarrierConfigManager;
 import android.telephony.SubscriptionInfo;
@@ -28,6 +27,7 @@ import androidx.preference.Preference;
 import androidx.preference.PreferenceScreen;
 
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.network.CarrierConfigCache;
 
 import java.util.List;
 
@@ -110,10 +110,13 @@ public class SimLockPreferenceController extends BasePreferenceController {
         for (SubscriptionInfo subInfo : subInfoList) {
             final TelephonyManager telephonyManager = mTelephonyManager
                     .createForSubscriptionId(subInfo.getSubscriptionId());
-            final PersistableBundle bundle = mCarrierConfigManager.getConfigForSubId(
-                    subInfo.getSubscriptionId());
-            if (telephonyManager.hasIccCard() && bundle != null
-                    && !bundle.getBoolean(CarrierConfigManager.KEY_HIDE_SIM_LOCK_SETTINGS_BOOL)) {
+            if (telephonyManager.hasIccCard()
+                    && CarrierConfigCache.hasConfig(mContext, mCarrierConfigManager,
+                            subInfo.getSubscriptionId())
+                    && !CarrierConfigCache.getBoolean(mContext, mCarrierConfigManager,
+                            subInfo.getSubscriptionId(),
+                            CarrierConfigManager.KEY_HIDE_SIM_LOCK_SETTINGS_BOOL,
+                            false /* defaultValue */)) {
                 // one or more sims show sim lock setting UI.
                 return false;
             }
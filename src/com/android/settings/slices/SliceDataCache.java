@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.slices;
+
+import android.net.Uri;
+import android.util.ArrayMap;
+import android.util.LruCache;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded in-memory cache of the rows read from the slices index.
+ *
+ * <p>Entries are tagged with the generation of the index they were read from, see
+ * {@link SlicesDatabaseHelper#getIndexGeneration()}. Any lookup with a newer generation drops the
+ * whole cache, so data from a previous index is never served.
+ */
+class SliceDataCache {
+
+    @VisibleForTesting
+    static final int MAX_SLICE_DATA_ENTRIES = 64;
+
+    private final LruCache<String, SliceData> mSliceData =
+            new LruCache<>(MAX_SLICE_DATA_ENTRIES);
+    // Key: authority + visibility of the slices
+    private final Map<String, List<Uri>> mSliceUris = new ArrayMap<>();
+    private long mGeneration;
+
+    /**
+     * Returns the indexed {@link SliceData} of {@code key}, with no uri and the slice type stored
+     * in the index, or null if it is not cached for {@code generation}.
+     */
+    synchronized SliceData getSliceData(String key, long generation) {
+        syncGeneration(generation);
+        return mSliceData.get(key);
+    }
+
+    synchronized void putSliceData(String key, SliceData sliceData, long generation) {
+        syncGeneration(generation);
+        mSliceData.put(key, sliceData);
+    }
+
+    /**
+     * Returns a copy of the cached slice uris, or null if they are not cached for
+     * {@code generation}.
+     */
+    synchronized List<Uri> getSliceUris(String authority, boolean isPublicSlice,
+            long generation) {
+        syncGeneration(generation);
+        final List<Uri> uris = mSliceUris.get(getUrisKey(authority, isPublicSlice));
+        return uris == null ? null : new ArrayList<>(uris);
+    }
+
+    synchronized void putSliceUris(String authority, boolean isPublicSlice, List<Uri> uris,
+            long generation) {
+        syncGeneration(generation);
+        mSliceUris.put(getUrisKey(authority, isPublicSlice), new ArrayList<>(uris));
+    }
+
+    synchronized void invalidate() {
+        mSliceData.evictAll();
+        mSliceUris.clear();
+    }
+
+    private void syncGeneration(long generation) {
+        if (generation != mGeneration) {
+            invalidate();
+            mGeneration = generation;
+        }
+    }
+
+    private static String getUrisKey(String authority, boolean isPublicSlice) {
+        return authority + "/" + isPublicSlice;
+    }
+}
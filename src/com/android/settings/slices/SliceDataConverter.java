@@ -67,6 +67,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Converts all Slice sources into {@link SliceData}.
@@ -99,8 +100,16 @@ class SliceDataConverter {
      * {@link com.android.settings.core.BasePreferenceController}.
      */
     public List<SliceData> getSliceData() {
-        List<SliceData> sliceData = new ArrayList<>();
+        final List<SliceData> sliceData = new ArrayList<>();
+        forEachSliceDataPage(sliceData::addAll);
+        return sliceData;
+    }
 
+    /**
+     * Same as {@link #getSliceData()}, but hands the {@link SliceData} over one page at a time
+     * (one fragment, then the accessibility services) instead of collecting all of it first.
+     */
+    public void forEachSliceDataPage(Consumer<List<SliceData>> pageConsumer) {
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(mContext)
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
 
@@ -117,12 +126,15 @@ class SliceDataConverter {
 
             final List<SliceData> providerSliceData = getSliceDataFromProvider(provider,
                     fragmentName);
-            sliceData.addAll(providerSliceData);
+            if (!providerSliceData.isEmpty()) {
+                pageConsumer.accept(providerSliceData);
+            }
         }
 
         final List<SliceData> a11ySliceData = getAccessibilitySliceData();
-        sliceData.addAll(a11ySliceData);
-        return sliceData;
+        if (!a11ySliceData.isEmpty()) {
+            pageConsumer.accept(a11ySliceData);
+        }
     }
 
     private List<SliceData> getSliceDataFromProvider(SearchIndexProvider provider,
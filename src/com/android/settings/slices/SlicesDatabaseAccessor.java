@@ -52,6 +52,27 @@ public class SlicesDatabaseAccessor {
             IndexColumns.UNAVAILABLE_SLICE_SUBTITLE,
     };
 
+    // Indices of SELECT_COLUMNS_ALL, so rows are read without a column lookup.
+    private static final int COLUMN_INDEX_KEY = 0;
+    private static final int COLUMN_INDEX_TITLE = 1;
+    private static final int COLUMN_INDEX_SUMMARY = 2;
+    private static final int COLUMN_INDEX_SCREENTITLE = 3;
+    private static final int COLUMN_INDEX_KEYWORDS = 4;
+    private static final int COLUMN_INDEX_ICON_RESOURCE = 5;
+    private static final int COLUMN_INDEX_FRAGMENT = 6;
+    private static final int COLUMN_INDEX_CONTROLLER = 7;
+    private static final int COLUMN_INDEX_SLICE_TYPE = 8;
+    private static final int COLUMN_INDEX_UNAVAILABLE_SLICE_SUBTITLE = 9;
+
+    // The SQL is built once so SQLite reuses the statements compiled on its connection.
+    private static final String QUERY_SLICE_DATA_BY_KEY = "SELECT "
+            + TextUtils.join(", ", SELECT_COLUMNS_ALL)
+            + " FROM " + TABLE_SLICES_INDEX
+            + " WHERE " + IndexColumns.KEY + " = ?";
+    private static final String QUERY_SLICE_URIS = "SELECT " + IndexColumns.SLICE_URI
+            + " FROM " + TABLE_SLICES_INDEX
+            + " WHERE " + IndexColumns.PUBLIC_SLICE + " = ?";
+
     private final Context mContext;
     private final SlicesDatabaseHelper mHelper;
 
@@ -71,9 +92,8 @@ public class SlicesDatabaseAccessor {
         if (pathData == null) {
             throw new IllegalStateException("Invalid Slices uri: " + uri);
         }
-        try (Cursor cursor = getIndexedSliceData(pathData.second /* key */)) {
-            return buildSliceData(cursor, uri, pathData.first /* isIntentOnly */);
-        }
+        return buildSliceData(getIndexedSliceData(pathData.second /* key */), uri,
+                pathData.first /* isIntentOnly */);
     }
 
     /**
@@ -82,9 +102,7 @@ public class SlicesDatabaseAccessor {
      * Used when handling the action of the {@link Slice}.
      */
     public SliceData getSliceDataFromKey(String key) {
-        try (Cursor cursor = getIndexedSliceData(key)) {
-            return buildSliceData(cursor, null /* uri */, false /* isIntentOnly */);
-        }
+        return buildSliceData(getIndexedSliceData(key), null /* uri */, false /* isIntentOnly */);
     }
 
     /**
@@ -93,97 +111,103 @@ public class SlicesDatabaseAccessor {
      */
     public List<Uri> getSliceUris(String authority, boolean isPublicSlice) {
         verifyIndexing();
+        final SliceDataCache cache = mHelper.getSliceDataCache();
+        final long generation = mHelper.getIndexGeneration();
+        final List<Uri> cachedUris = cache.getSliceUris(authority, isPublicSlice, generation);
+        if (cachedUris != null) {
+            return cachedUris;
+        }
+
         final List<Uri> uris = new ArrayList<>();
-        final String whereClause = IndexColumns.PUBLIC_SLICE + (isPublicSlice ? "=1" : "=0");
         final SQLiteDatabase database = mHelper.getReadableDatabase();
-        final String[] columns = new String[]{IndexColumns.SLICE_URI};
-        try (Cursor resultCursor = database.query(TABLE_SLICES_INDEX, columns,
-                whereClause /* where */, null /* selection */, null /* groupBy */,
-                null /* having */, null /* orderBy */)) {
-            if (!resultCursor.moveToFirst()) {
-                return uris;
-            }
-
-            do {
+        final String[] selection = new String[]{isPublicSlice ? "1" : "0"};
+        try (Cursor resultCursor = database.rawQuery(QUERY_SLICE_URIS, selection)) {
+            while (resultCursor.moveToNext()) {
                 final Uri uri = Uri.parse(resultCursor.getString(0 /* SLICE_URI */));
                 if (TextUtils.isEmpty(authority)
                         || TextUtils.equals(authority, uri.getAuthority())) {
                     uris.add(uri);
                 }
-            } while (resultCursor.moveToNext());
+            }
         }
+        cache.putSliceUris(authority, isPublicSlice, uris, generation);
         return uris;
     }
 
-    private Cursor getIndexedSliceData(String path) {
+    /**
+     * Returns the indexed data of {@code key}, as stored in the index and without a uri. Served
+     * from {@link SliceDataCache} when possible.
+     */
+    private SliceData getIndexedSliceData(String key) {
         verifyIndexing();
 
-        final String whereClause = buildKeyMatchWhereClause();
+        final SliceDataCache cache = mHelper.getSliceDataCache();
+        final long generation = mHelper.getIndexGeneration();
+        final SliceData cachedSliceData = cache.getSliceData(key, generation);
+        if (cachedSliceData != null) {
+            return cachedSliceData;
+        }
+
         final SQLiteDatabase database = mHelper.getReadableDatabase();
-        final String[] selection = new String[]{path};
-        final Cursor resultCursor = database.query(TABLE_SLICES_INDEX, SELECT_COLUMNS_ALL,
-                whereClause, selection, null /* groupBy */, null /* having */, null /* orderBy */);
+        final String[] selection = new String[]{key};
+        final SliceData sliceData;
+        try (Cursor resultCursor = database.rawQuery(QUERY_SLICE_DATA_BY_KEY, selection)) {
+            int numResults = resultCursor.getCount();
 
-        int numResults = resultCursor.getCount();
+            if (numResults == 0) {
+                throw new IllegalStateException("Invalid Slices key from path: " + key);
+            }
 
-        if (numResults == 0) {
-            resultCursor.close();
-            throw new IllegalStateException("Invalid Slices key from path: " + path);
-        }
+            if (numResults > 1) {
+                throw new IllegalStateException(
+                        "Should not match more than 1 slice with path: " + key);
+            }
 
-        if (numResults > 1) {
-            resultCursor.close();
-            throw new IllegalStateException(
-                    "Should not match more than 1 slice with path: " + path);
+            resultCursor.moveToFirst();
+            sliceData = readSliceData(resultCursor);
         }
-
-        resultCursor.moveToFirst();
-        return resultCursor;
+        cache.putSliceData(key, sliceData, generation);
+        return sliceData;
     }
 
-    private String buildKeyMatchWhereClause() {
-        return new StringBuilder(IndexColumns.KEY)
-                .append(" = ?")
-                .toString();
+    private static SliceData readSliceData(Cursor cursor) {
+        return new SliceData.Builder()
+                .setKey(cursor.getString(COLUMN_INDEX_KEY))
+                .setTitle(cursor.getString(COLUMN_INDEX_TITLE))
+                .setSummary(cursor.getString(COLUMN_INDEX_SUMMARY))
+                .setScreenTitle(cursor.getString(COLUMN_INDEX_SCREENTITLE))
+                .setKeywords(cursor.getString(COLUMN_INDEX_KEYWORDS))
+                .setIcon(cursor.getInt(COLUMN_INDEX_ICON_RESOURCE))
+                .setFragmentName(cursor.getString(COLUMN_INDEX_FRAGMENT))
+                .setPreferenceControllerClassName(cursor.getString(COLUMN_INDEX_CONTROLLER))
+                .setSliceType(cursor.getInt(COLUMN_INDEX_SLICE_TYPE))
+                .setUnavailableSliceSubtitle(
+                        cursor.getString(COLUMN_INDEX_UNAVAILABLE_SLICE_SUBTITLE))
+                .build();
     }
 
-    private static SliceData buildSliceData(Cursor cursor, Uri uri, boolean isIntentOnly) {
-        final String key = cursor.getString(cursor.getColumnIndex(IndexColumns.KEY));
-        final String title = cursor.getString(cursor.getColumnIndex(IndexColumns.TITLE));
-        final String summary = cursor.getString(cursor.getColumnIndex(IndexColumns.SUMMARY));
-        final String screenTitle = cursor.getString(
-                cursor.getColumnIndex(IndexColumns.SCREENTITLE));
-        final String keywords = cursor.getString(cursor.getColumnIndex(IndexColumns.KEYWORDS));
-        final int iconResource = cursor.getInt(cursor.getColumnIndex(IndexColumns.ICON_RESOURCE));
-        final String fragmentClassName = cursor.getString(
-                cursor.getColumnIndex(IndexColumns.FRAGMENT));
-        final String controllerClassName = cursor.getString(
-                cursor.getColumnIndex(IndexColumns.CONTROLLER));
-        int sliceType = cursor.getInt(
-                cursor.getColumnIndex(IndexColumns.SLICE_TYPE));
-        final String unavailableSliceSubtitle = cursor.getString(
-                cursor.getColumnIndex(IndexColumns.UNAVAILABLE_SLICE_SUBTITLE));
-
-        if (isIntentOnly) {
-            sliceType = SliceData.SliceType.INTENT;
-        }
-
+    private static SliceData buildSliceData(SliceData indexedData, Uri uri,
+            boolean isIntentOnly) {
         return new SliceData.Builder()
-                .setKey(key)
-                .setTitle(title)
-                .setSummary(summary)
-                .setScreenTitle(screenTitle)
-                .setKeywords(keywords)
-                .setIcon(iconResource)
-                .setFragmentName(fragmentClassName)
-                .setPreferenceControllerClassName(controllerClassName)
+                .setKey(indexedData.getKey())
+                .setTitle(indexedData.getTitle())
+                .setSummary(indexedData.getSummary())
+                .setScreenTitle(indexedData.getScreenTitle())
+                .setKeywords(indexedData.getKeywords())
+                .setIcon(indexedData.getIconResource())
+                .setFragmentName(indexedData.getFragmentClassName())
+                .setPreferenceControllerClassName(indexedData.getPreferenceController())
                 .setUri(uri)
-                .setSliceType(sliceType)
-                .setUnavailableSliceSubtitle(unavailableSliceSubtitle)
+                .setSliceType(isIntentOnly
+                        ? SliceData.SliceType.INTENT : indexedData.getSliceType())
+                .setUnavailableSliceSubtitle(indexedData.getUnavailableSliceSubtitle())
                 .build();
     }
 
     private void verifyIndexing() {
+        if (mHelper.isIndexVerified()) {
+            return;
+        }
         final long uidToken = Binder.clearCallingIdentity();
         try {
             FeatureFactory.getFactory(
@@ -191,5 +215,8 @@ public class SlicesDatabaseAccessor {
         } finally {
             Binder.restoreCallingIdentity(uidToken);
         }
+        if (mHelper.isSliceDataIndexed()) {
+            mHelper.setIndexVerified();
+        }
     }
-}
\ No newline at end of file
+}
@@ -20,6 +20,7 @@ import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.os.Build;
+import android.text.TextUtils;
 import android.util.Log;
 
 import androidx.annotation.VisibleForTesting;
@@ -138,6 +139,10 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
                     ");";
 
     private final Context mContext;
+    private final SliceDataCache mSliceDataCache = new SliceDataCache();
+    private volatile long mIndexGeneration;
+    // Locale the index has been verified for in this process, null if it has to be checked.
+    private volatile String mVerifiedLocale;
 
     private static SlicesDatabaseHelper sSingleton;
 
@@ -176,10 +181,42 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
                 .edit()
                 .clear()
                 .apply();
+        mVerifiedLocale = null;
+        mIndexGeneration++;
+        mSliceDataCache.invalidate();
         dropTables(db);
         createDatabases(db);
     }
 
+    /**
+     * Returns a number that changes every time the slices index is rebuilt.
+     */
+    long getIndexGeneration() {
+        return mIndexGeneration;
+    }
+
+    /**
+     * Returns the cache of the data read from the slices index.
+     */
+    SliceDataCache getSliceDataCache() {
+        return mSliceDataCache;
+    }
+
+    /**
+     * Returns {@code true} if the index has already been verified for the current locale in
+     * this process, so it doesn't need to be checked again.
+     */
+    boolean isIndexVerified() {
+        return TextUtils.equals(mVerifiedLocale, Locale.getDefault().toString());
+    }
+
+    /**
+     * Records that the index is up to date for the current locale.
+     */
+    void setIndexVerified() {
+        mVerifiedLocale = Locale.getDefault().toString();
+    }
+
     /**
      * Marks the current state of the device for the validity of the data. Should be called after
      * a full index of the TABLE_SLICES_INDEX.
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.slices;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Snapshot of the rows of the slices index for a single build and locale.
+ *
+ * <p>A snapshot is written while the index is built and lets the indexer seed the database
+ * without instantiating any preference controller, as long as the build fingerprint and the
+ * locale still match the ones {@link SlicesDatabaseHelper#isSliceDataIndexed()} checks.
+ * Snapshots of other builds are deleted when a new one is written.
+ */
+class SlicesIndexSnapshot {
+
+    private static final String TAG = "SlicesIndexSnapshot";
+
+    @VisibleForTesting
+    static final int VERSION = 1;
+    @VisibleForTesting
+    static final String SNAPSHOT_DIR = "slices_index_snapshot";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    /**
+     * Receives the rows read from a snapshot.
+     */
+    interface RowConsumer {
+        void accept(SliceData row);
+    }
+
+    private final File mSnapshotDir;
+
+    SlicesIndexSnapshot(Context context) {
+        final File filesDir = context.getNoBackupFilesDir();
+        mSnapshotDir = filesDir != null ? new File(filesDir, SNAPSHOT_DIR) : null;
+    }
+
+    /**
+     * Streams every row of the snapshot matching the current build and locale into
+     * {@code consumer}.
+     *
+     * @return {@code false} if there is no valid snapshot, in which case rows may already have
+     * been passed to {@code consumer} and the caller has to discard them.
+     */
+    boolean restore(RowConsumer consumer) {
+        final File file = getSnapshotFile();
+        if (file == null || !file.exists()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (!getVersionStamp().equals(in.readUTF())) {
+                Log.d(TAG, "Discarding stale snapshot " + file.getName());
+                return false;
+            }
+            while (in.readBoolean()) {
+                consumer.accept(readRow(in));
+            }
+            return true;
+        } catch (IOException | SliceData.InvalidSliceDataException e) {
+            Log.w(TAG, "Failed to read snapshot " + file.getName(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Starts writing a new snapshot for the current build and locale. The snapshot only
+     * replaces the previous one once {@link Writer#commit()} is called.
+     *
+     * @return the writer, or null if the snapshot can't be written.
+     */
+    Writer newWriter() {
+        final File file = getSnapshotFile();
+        if (file == null || (!mSnapshotDir.exists() && !mSnapshotDir.mkdirs())) {
+            return null;
+        }
+        final File tmpFile = new File(mSnapshotDir, file.getName() + TMP_SUFFIX);
+        try {
+            final DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeUTF(getVersionStamp());
+            return new Writer(out, tmpFile, file);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to create snapshot " + file.getName(), e);
+            tmpFile.delete();
+            return null;
+        }
+    }
+
+    private File getSnapshotFile() {
+        if (mSnapshotDir == null) {
+            return null;
+        }
+        return new File(mSnapshotDir, Locale.getDefault().toString());
+    }
+
+    private void deleteStaleSnapshots(File current) {
+        final File[] files = mSnapshotDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.equals(current) || file.getName().endsWith(TMP_SUFFIX)) {
+                continue;
+            }
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)))) {
+                if (getVersionStamp().equals(in.readUTF())) {
+                    continue;
+                }
+            } catch (IOException e) {
+                // Unreadable, delete it below.
+            }
+            file.delete();
+        }
+    }
+
+    private static String getVersionStamp() {
+        return VERSION + "|" + Build.FINGERPRINT + "|" + Locale.getDefault().toString();
+    }
+
+    private static SliceData readRow(DataInputStream in) throws IOException {
+        return new SliceData.Builder()
+                .setKey(in.readUTF())
+                .setUri(Uri.parse(in.readUTF()))
+                .setTitle(in.readUTF())
+                .setSummary(readNullableString(in))
+                .setScreenTitle(readNullableString(in))
+                .setKeywords(readNullableString(in))
+                .setIcon(in.readInt())
+                .setFragmentName(in.readUTF())
+                .setPreferenceControllerClassName(in.readUTF())
+                .setSliceType(in.readInt())
+                .setUnavailableSliceSubtitle(readNullableString(in))
+                .setIsPublicSlice(in.readBoolean())
+                .build();
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullableString(DataOutputStream out, CharSequence value)
+            throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value.toString());
+        }
+    }
+
+    /**
+     * Appends rows to a snapshot being built.
+     */
+    class Writer implements Closeable {
+        private final DataOutputStream mOut;
+        private final File mTmpFile;
+        private final File mFile;
+        private boolean mFailed;
+        private boolean mCommitted;
+
+        private Writer(DataOutputStream out, File tmpFile, File file) {
+            mOut = out;
+            mTmpFile = tmpFile;
+            mFile = file;
+        }
+
+        void append(List<SliceData> rows) {
+            if (mFailed) {
+                return;
+            }
+            try {
+                for (SliceData row : rows) {
+                    mOut.writeBoolean(true);
+                    mOut.writeUTF(row.getKey());
+                    mOut.writeUTF(row.getUri().toString());
+                    mOut.writeUTF(row.getTitle());
+                    writeNullableString(mOut, row.getSummary());
+                    writeNullableString(mOut, row.getScreenTitle());
+                    writeNullableString(mOut, row.getKeywords());
+                    mOut.writeInt(row.getIconResource());
+                    mOut.writeUTF(row.getFragmentClassName());
+                    mOut.writeUTF(row.getPreferenceController());
+                    mOut.writeInt(row.getSliceType());
+                    writeNullableString(mOut, row.getUnavailableSliceSubtitle());
+                    mOut.writeBoolean(row.isPublicSlice());
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to write snapshot " + mFile.getName(), e);
+                mFailed = true;
+            }
+        }
+
+        /**
+         * Completes the snapshot and makes it the one {@link #restore} reads.
+         */
+        void commit() {
+            if (mFailed) {
+                return;
+            }
+            try {
+                mOut.writeBoolean(false);
+                mOut.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to write snapshot " + mFile.getName(), e);
+                return;
+            }
+            mCommitted = mTmpFile.renameTo(mFile);
+            if (mCommitted) {
+                deleteStaleSnapshots(mFile);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                mOut.close();
+            } catch (IOException e) {
+                // Nothing to do, the temporary file is deleted anyway.
+            }
+            if (!mCommitted) {
+                mTmpFile.delete();
+            }
+        }
+    }
+}
@@ -16,9 +16,9 @@
 
 package com.android.settings.slices;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
 import androidx.annotation.VisibleForTesting;
@@ -28,8 +28,11 @@ import com.android.settings.dashboard.DashboardFragment;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settings.slices.SlicesDatabaseHelper.IndexColumns;
 import com.android.settings.slices.SlicesDatabaseHelper.Tables;
+import com.android.settingslib.utils.ThreadUtils;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Manages the conversion of {@link DashboardFragment} and {@link BasePreferenceController} to
@@ -39,13 +42,37 @@ class SlicesIndexer implements Runnable {
 
     private static final String TAG = "SlicesIndexer";
 
+    private static final String INSERT_SLICE_DATA = "INSERT OR REPLACE INTO "
+            + Tables.TABLE_SLICES_INDEX + " ("
+            + IndexColumns.KEY + ", "
+            + IndexColumns.SLICE_URI + ", "
+            + IndexColumns.TITLE + ", "
+            + IndexColumns.SUMMARY + ", "
+            + IndexColumns.SCREENTITLE + ", "
+            + IndexColumns.KEYWORDS + ", "
+            + IndexColumns.ICON_RESOURCE + ", "
+            + IndexColumns.FRAGMENT + ", "
+            + IndexColumns.CONTROLLER + ", "
+            + IndexColumns.SLICE_TYPE + ", "
+            + IndexColumns.UNAVAILABLE_SLICE_SUBTITLE + ", "
+            + IndexColumns.PUBLIC_SLICE
+            + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
     private Context mContext;
 
     private SlicesDatabaseHelper mHelper;
 
+    @VisibleForTesting
+    SlicesIndexSnapshot mSnapshot;
+
+    private final Object mRebuildLock = new Object();
+
+    private volatile boolean mRebuildScheduled;
+
     public SlicesIndexer(Context context) {
         mContext = context;
         mHelper = SlicesDatabaseHelper.getInstance(mContext);
+        mSnapshot = new SlicesIndexSnapshot(mContext);
     }
 
     /**
@@ -58,67 +85,156 @@ class SlicesIndexer implements Runnable {
 
     /**
      * Synchronously takes data obtained from {@link SliceDataConverter} and indexes it into a
-     * SQLite database
+     * SQLite database. When a snapshot of the current build and locale exists, the database is
+     * seeded from {@link SlicesIndexSnapshot} and the index is rebuilt in the background instead.
      */
-    protected void indexSliceData() {
+    protected synchronized void indexSliceData() {
         if (mHelper.isSliceDataIndexed()) {
             Log.d(TAG, "Slices already indexed - returning.");
             return;
         }
+        if (mRebuildScheduled) {
+            Log.d(TAG, "Slices seeded from snapshot, rebuild pending - returning.");
+            return;
+        }
+
+        if (seedFromSnapshot(mHelper.getWritableDatabase())) {
+            mRebuildScheduled = true;
+            scheduleRebuild();
+            return;
+        }
+        rebuildIndex();
+    }
 
-        final SQLiteDatabase database = mHelper.getWritableDatabase();
+    @VisibleForTesting
+    void scheduleRebuild() {
+        ThreadUtils.postOnBackgroundThread(() -> {
+            try {
+                rebuildIndex();
+            } finally {
+                mRebuildScheduled = false;
+            }
+        });
+    }
 
-        long startTime = System.currentTimeMillis();
+    /**
+     * Builds the index from {@link SliceDataConverter}. The converter runs before the transaction
+     * is opened, so slices seeded from the snapshot can still be read while the controllers are
+     * evaluated, and the snapshot is only written once the transaction has been committed.
+     */
+    @VisibleForTesting
+    void rebuildIndex() {
+        synchronized (mRebuildLock) {
+            if (mHelper.isSliceDataIndexed()) {
+                return;
+            }
+            final long startTime = System.currentTimeMillis();
+            final List<SliceData> indexData = new ArrayList<>();
+            forEachSliceDataPage(indexData::addAll);
+
+            final SQLiteDatabase database = mHelper.getWritableDatabase();
+            database.beginTransaction();
+            try {
+                mHelper.reconstruct(database);
+                try (SQLiteStatement insertStatement =
+                        database.compileStatement(INSERT_SLICE_DATA)) {
+                    for (SliceData dataRow : indexData) {
+                        insertSliceData(insertStatement, dataRow);
+                    }
+                }
+
+                mHelper.setIndexedState();
+
+                // TODO (b/71503044) Log indexing time.
+                Log.d(TAG, "Indexing slices database took: "
+                        + (System.currentTimeMillis() - startTime));
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+            writeSnapshot(indexData);
+        }
+    }
+
+    /**
+     * Fills the database with the rows of the snapshot, so slices can be bound while the index is
+     * built. The rows were filtered by the availability of the controllers and the installed
+     * services at the time the snapshot was written, so the index is always rebuilt afterwards
+     * and is not marked as indexed here.
+     *
+     * @return whether the database was seeded.
+     */
+    private boolean seedFromSnapshot(SQLiteDatabase database) {
         database.beginTransaction();
         try {
             mHelper.reconstruct(database);
-            List<SliceData> indexData = getSliceData();
-            insertSliceData(database, indexData);
-
-            mHelper.setIndexedState();
-
-            // TODO (b/71503044) Log indexing time.
-            Log.d(TAG,
-                    "Indexing slices database took: " + (System.currentTimeMillis() - startTime));
+            try (SQLiteStatement insertStatement = database.compileStatement(INSERT_SLICE_DATA)) {
+                if (!mSnapshot.restore(row -> insertSliceData(insertStatement, row))) {
+                    return false;
+                }
+            }
+            Log.d(TAG, "Slices database seeded from snapshot");
             database.setTransactionSuccessful();
+            return true;
         } finally {
             database.endTransaction();
         }
     }
 
+    private void writeSnapshot(List<SliceData> indexData) {
+        final SlicesIndexSnapshot.Writer snapshotWriter = mSnapshot.newWriter();
+        if (snapshotWriter == null) {
+            return;
+        }
+        try {
+            snapshotWriter.append(indexData);
+            snapshotWriter.commit();
+        } finally {
+            snapshotWriter.close();
+        }
+    }
+
     @VisibleForTesting
-    List<SliceData> getSliceData() {
-        return FeatureFactory.getFactory(mContext)
+    void forEachSliceDataPage(Consumer<List<SliceData>> pageConsumer) {
+        FeatureFactory.getFactory(mContext)
                 .getSlicesFeatureProvider()
                 .getSliceDataConverter(mContext)
-                .getSliceData();
+                .forEachSliceDataPage(pageConsumer);
     }
 
     @VisibleForTesting
     void insertSliceData(SQLiteDatabase database, List<SliceData> indexData) {
-        ContentValues values;
-
-        for (SliceData dataRow : indexData) {
-            values = new ContentValues();
-            values.put(IndexColumns.KEY, dataRow.getKey());
-            values.put(IndexColumns.SLICE_URI, dataRow.getUri().toSafeString());
-            values.put(IndexColumns.TITLE, dataRow.getTitle());
-            values.put(IndexColumns.SUMMARY, dataRow.getSummary());
-            final CharSequence screenTitle = dataRow.getScreenTitle();
-            if (screenTitle != null) {
-                values.put(IndexColumns.SCREENTITLE, screenTitle.toString());
+        try (SQLiteStatement insertStatement = database.compileStatement(INSERT_SLICE_DATA)) {
+            for (SliceData dataRow : indexData) {
+                insertSliceData(insertStatement, dataRow);
             }
-            values.put(IndexColumns.KEYWORDS, dataRow.getKeywords());
-            values.put(IndexColumns.ICON_RESOURCE, dataRow.getIconResource());
-            values.put(IndexColumns.FRAGMENT, dataRow.getFragmentClassName());
-            values.put(IndexColumns.CONTROLLER, dataRow.getPreferenceController());
-            values.put(IndexColumns.SLICE_TYPE, dataRow.getSliceType());
-            values.put(IndexColumns.UNAVAILABLE_SLICE_SUBTITLE,
-                    dataRow.getUnavailableSliceSubtitle());
-            values.put(IndexColumns.PUBLIC_SLICE, dataRow.isPublicSlice());
-
-            database.replaceOrThrow(Tables.TABLE_SLICES_INDEX, null /* nullColumnHack */,
-                    values);
         }
     }
-}
\ No newline at end of file
+
+    private static void insertSliceData(SQLiteStatement insertStatement, SliceData dataRow) {
+        insertStatement.clearBindings();
+        insertStatement.bindString(1, dataRow.getKey());
+        insertStatement.bindString(2, dataRow.getUri().toSafeString());
+        bindNullableString(insertStatement, 3, dataRow.getTitle());
+        bindNullableString(insertStatement, 4, dataRow.getSummary());
+        final CharSequence screenTitle = dataRow.getScreenTitle();
+        bindNullableString(insertStatement, 5,
+                screenTitle != null ? screenTitle.toString() : null);
+        bindNullableString(insertStatement, 6, dataRow.getKeywords());
+        insertStatement.bindLong(7, dataRow.getIconResource());
+        bindNullableString(insertStatement, 8, dataRow.getFragmentClassName());
+        bindNullableString(insertStatement, 9, dataRow.getPreferenceController());
+        insertStatement.bindLong(10, dataRow.getSliceType());
+        bindNullableString(insertStatement, 11, dataRow.getUnavailableSliceSubtitle());
+        insertStatement.bindLong(12, dataRow.isPublicSlice() ? 1 : 0);
+        insertStatement.executeInsert();
+    }
+
+    private static void bindNullableString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+}
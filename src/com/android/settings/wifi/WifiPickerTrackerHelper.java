@@ -21,7 +21,6 @@ import android.net.wifi.WifiManager;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
-import android.os.PersistableBundle;
 import android.os.Process;
 import android.os.SimpleClock;
 import android.os.SystemClock;
@@ -35,6 +34,7 @@ import androidx.lifecycle.LifecycleObserver;
 import androidx.lifecycle.OnLifecycleEvent;
 
 import com.android.internal.annotations.VisibleForTesting;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.wifitrackerlib.MergedCarrierEntry;
 import com.android.wifitrackerlib.WifiEntry;
@@ -65,6 +65,7 @@ public class WifiPickerTrackerHelper implements LifecycleObserver {
 
     protected final WifiManager mWifiManager;
     protected final CarrierConfigManager mCarrierConfigManager;
+    private final Context mContext;
 
     public WifiPickerTrackerHelper(@NonNull Lifecycle lifecycle, @NonNull Context context,
             @Nullable WifiPickerTracker.WifiPickerTrackerCallback listener) {
@@ -87,6 +88,7 @@ public class WifiPickerTrackerHelper implements LifecycleObserver {
                 SCAN_INTERVAL_MILLIS,
                 listener);
 
+        mContext = context;
         mWifiManager = context.getSystemService(WifiManager.class);
         mCarrierConfigManager = context.getSystemService(CarrierConfigManager.class);
     }
@@ -104,13 +106,13 @@ public class WifiPickerTrackerHelper implements LifecycleObserver {
 
     /** Return the enabled/disabled state of the carrier network provision */
     public boolean isCarrierNetworkProvisionEnabled(int subId) {
-        final PersistableBundle config = mCarrierConfigManager.getConfigForSubId(subId);
-        if (config == null) {
+        if (!CarrierConfigCache.hasConfig(mContext, mCarrierConfigManager, subId)) {
             Log.e(TAG, "Could not get carrier config, subId:" + subId);
             return false;
         }
-        final boolean enabled = config.getBoolean(
-                CarrierConfigManager.KEY_CARRIER_PROVISIONS_WIFI_MERGED_NETWORKS_BOOL);
+        final boolean enabled = CarrierConfigCache.getBoolean(mContext, mCarrierConfigManager,
+                subId, CarrierConfigManager.KEY_CARRIER_PROVISIONS_WIFI_MERGED_NETWORKS_BOOL,
+                false /* defaultValue */);
         Log.i(TAG, "isCarrierNetworkProvisionEnabled:" + enabled);
         return enabled;
     }
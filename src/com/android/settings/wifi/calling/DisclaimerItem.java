@@ -18,11 +18,11 @@ package com.android.settings.wifi.calling;
 
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.os.PersistableBundle;
 import android.telephony.CarrierConfigManager;
 import android.util.Log;
 
 import com.android.internal.annotations.VisibleForTesting;
+import com.android.settings.network.CarrierConfigCache;
 
 /**
  * Interface to control disclaimer item from {@link WifiCallingDisclaimerFragment}.
@@ -64,18 +64,31 @@ public abstract class DisclaimerItem {
     }
 
     /**
-     * Gets the configuration values for a particular sub id.
+     * Gets a boolean configuration value for a particular sub id.
      *
-     * @return The {@link PersistableBundle} instance containing the config value for a
-     * particular phone id, or default values.
+     * @return The config value for a particular phone id, or the default value.
      */
-    protected PersistableBundle getCarrierConfig() {
-        PersistableBundle config = mCarrierConfigManager.getConfigForSubId(mSubId);
-        if (config != null) {
-            return config;
+    protected boolean getBooleanCarrierConfig(String key) {
+        if (!CarrierConfigCache.hasConfig(mContext, mCarrierConfigManager, mSubId)) {
+            // Return static default defined in CarrierConfigManager.
+            return CarrierConfigManager.getDefaultConfig().getBoolean(key);
         }
-        // Return static default defined in CarrierConfigManager.
-        return CarrierConfigManager.getDefaultConfig();
+        return CarrierConfigCache.getBoolean(mContext, mCarrierConfigManager, mSubId, key,
+                false /* defaultValue */);
+    }
+
+    /**
+     * Gets an int configuration value for a particular sub id.
+     *
+     * @return The config value for a particular phone id, or the default value.
+     */
+    protected int getIntCarrierConfig(String key) {
+        if (!CarrierConfigCache.hasConfig(mContext, mCarrierConfigManager, mSubId)) {
+            // Return static default defined in CarrierConfigManager.
+            return CarrierConfigManager.getDefaultConfig().getInt(key);
+        }
+        return CarrierConfigCache.getInt(mContext, mCarrierConfigManager, mSubId, key,
+                0 /* defaultValue */);
     }
 
     protected void logd(String msg) {
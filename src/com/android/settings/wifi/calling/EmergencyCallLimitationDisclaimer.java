@@ -42,7 +42,7 @@ public class EmergencyCallLimitationDisclaimer extends DisclaimerItem {
      */
     @Override
     boolean shouldShow() {
-        final int notificationDelay = getCarrierConfig().getInt(
+        final int notificationDelay = getIntCarrierConfig(
                 CarrierConfigManager.KEY_EMERGENCY_NOTIFICATION_DELAY_INT);
         if (notificationDelay == UNINITIALIZED_DELAY_VALUE) {
             logd("shouldShow: false due to carrier config is default(-1).");
@@ -17,7 +17,6 @@
 package com.android.settings.wifi.calling;
 
 import android.content.Context;
-import android.os.PersistableBundle;
 import android.telephony.CarrierConfigManager;
 
 import com.android.internal.annotations.VisibleForTesting;
@@ -42,13 +41,14 @@ class LocationPolicyDisclaimer extends DisclaimerItem {
      */
     @Override
     boolean shouldShow() {
-        PersistableBundle config = getCarrierConfig();
-        if (!config.getBoolean(CarrierConfigManager.KEY_SHOW_WFC_LOCATION_PRIVACY_POLICY_BOOL)) {
+        if (!getBooleanCarrierConfig(
+                CarrierConfigManager.KEY_SHOW_WFC_LOCATION_PRIVACY_POLICY_BOOL)) {
             logd("shouldShow: false due to carrier config is false.");
             return false;
         }
 
-        if (config.getBoolean(CarrierConfigManager.KEY_CARRIER_DEFAULT_WFC_IMS_ENABLED_BOOL)) {
+        if (getBooleanCarrierConfig(
+                CarrierConfigManager.KEY_CARRIER_DEFAULT_WFC_IMS_ENABLED_BOOL)) {
             logd("shouldShow: false due to WFC is on as default.");
             return false;
         }
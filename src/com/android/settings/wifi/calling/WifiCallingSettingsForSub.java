@@ -25,7 +25,6 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.res.Resources;
 import android.os.Bundle;
-import android.os.PersistableBundle;
 import android.telephony.CarrierConfigManager;
 import android.telephony.PhoneStateListener;
 import android.telephony.SubscriptionManager;
@@ -55,6 +54,7 @@ import com.android.settings.SettingsActivity;
 import com.android.settings.SettingsPreferenceFragment;
 import com.android.settings.Utils;
 import com.android.settings.core.SubSettingLauncher;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.ims.WifiCallingQueryImsState;
 import com.android.settings.widget.SettingsMainSwitchBar;
 import com.android.settingslib.widget.OnMainSwitchChangeListener;
@@ -130,15 +130,13 @@ public class WifiCallingSettingsForSub extends SettingsPreferenceFragment
             boolean isWfcRoamingModeEditable = false;
             final CarrierConfigManager configManager = (CarrierConfigManager)
                     activity.getSystemService(Context.CARRIER_CONFIG_SERVICE);
-            if (configManager != null) {
-                PersistableBundle b =
-                        configManager.getConfigForSubId(WifiCallingSettingsForSub.this.mSubId);
-                if (b != null) {
-                    isWfcModeEditable = b.getBoolean(
-                            CarrierConfigManager.KEY_EDITABLE_WFC_MODE_BOOL);
-                    isWfcRoamingModeEditable = b.getBoolean(
-                            CarrierConfigManager.KEY_EDITABLE_WFC_ROAMING_MODE_BOOL);
-                }
+            final int subId = WifiCallingSettingsForSub.this.mSubId;
+            if (CarrierConfigCache.hasConfig(activity, configManager, subId)) {
+                isWfcModeEditable = CarrierConfigCache.getBoolean(activity, configManager, subId,
+                        CarrierConfigManager.KEY_EDITABLE_WFC_MODE_BOOL, false /* defaultValue */);
+                isWfcRoamingModeEditable = CarrierConfigCache.getBoolean(activity, configManager,
+                        subId, CarrierConfigManager.KEY_EDITABLE_WFC_ROAMING_MODE_BOOL,
+                        false /* defaultValue */);
             }
 
             final Preference pref = getPreferenceScreen().findPreference(BUTTON_WFC_MODE);
@@ -347,19 +345,20 @@ public class WifiCallingSettingsForSub extends SettingsPreferenceFragment
                 getSystemService(Context.CARRIER_CONFIG_SERVICE);
         boolean isWifiOnlySupported = true;
 
-        if (configManager != null) {
-            final PersistableBundle b = configManager.getConfigForSubId(mSubId);
-            if (b != null) {
-                mEditableWfcMode = b.getBoolean(
-                        CarrierConfigManager.KEY_EDITABLE_WFC_MODE_BOOL);
-                mEditableWfcRoamingMode = b.getBoolean(
-                        CarrierConfigManager.KEY_EDITABLE_WFC_ROAMING_MODE_BOOL);
-                mUseWfcHomeModeForRoaming = b.getBoolean(
-                        CarrierConfigManager.KEY_USE_WFC_HOME_NETWORK_MODE_IN_ROAMING_NETWORK_BOOL,
-                        false);
-                isWifiOnlySupported = b.getBoolean(
-                        CarrierConfigManager.KEY_CARRIER_WFC_SUPPORTS_WIFI_ONLY_BOOL, true);
-            }
+        final Context context = getActivity();
+        if (CarrierConfigCache.hasConfig(context, configManager, mSubId)) {
+            mEditableWfcMode = CarrierConfigCache.getBoolean(context, configManager, mSubId,
+                    CarrierConfigManager.KEY_EDITABLE_WFC_MODE_BOOL, false /* defaultValue */);
+            mEditableWfcRoamingMode = CarrierConfigCache.getBoolean(context, configManager,
+                    mSubId, CarrierConfigManager.KEY_EDITABLE_WFC_ROAMING_MODE_BOOL,
+                    false /* defaultValue */);
+            mUseWfcHomeModeForRoaming = CarrierConfigCache.getBoolean(context, configManager,
+                    mSubId,
+                    CarrierConfigManager.KEY_USE_WFC_HOME_NETWORK_MODE_IN_ROAMING_NETWORK_BOOL,
+                    false /* defaultValue */);
+            isWifiOnlySupported = CarrierConfigCache.getBoolean(context, configManager, mSubId,
+                    CarrierConfigManager.KEY_CARRIER_WFC_SUPPORTS_WIFI_ONLY_BOOL,
+                    true /* defaultValue */);
         }
 
         final Resources res = getResourcesForSubId();
@@ -496,11 +495,9 @@ public class WifiCallingSettingsForSub extends SettingsPreferenceFragment
                 getActivity().getSystemService(CarrierConfigManager.class);
         if (configManager == null) return null;
 
-        final PersistableBundle bundle = configManager.getConfigForSubId(mSubId);
-        if (bundle == null) return null;
-
-        final String carrierApp = bundle.getString(
-                CarrierConfigManager.KEY_WFC_EMERGENCY_ADDRESS_CARRIER_APP_STRING);
+        final String carrierApp = CarrierConfigCache.getString(getActivity(), configManager,
+                mSubId, CarrierConfigManager.KEY_WFC_EMERGENCY_ADDRESS_CARRIER_APP_STRING,
+                null /* defaultValue */);
         if (TextUtils.isEmpty(carrierApp)) return null;
 
         final ComponentName componentName = ComponentName.unflattenFromString(carrierApp);
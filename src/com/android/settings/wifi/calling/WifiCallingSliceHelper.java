@@ -28,7 +28,6 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.res.Resources;
 import android.net.Uri;
-import android.os.PersistableBundle;
 import android.provider.Settings;
 import android.telephony.CarrierConfigManager;
 import android.telephony.SubscriptionManager;
@@ -45,6 +44,7 @@ import androidx.slice.builders.SliceAction;
 
 import com.android.settings.R;
 import com.android.settings.Utils;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.ims.WifiCallingQueryImsState;
 import com.android.settings.slices.SliceBroadcastReceiver;
 
@@ -480,14 +480,10 @@ public class WifiCallingSliceHelper {
     protected boolean isCarrierConfigManagerKeyEnabled(String key, int subId,
             boolean defaultValue) {
         final CarrierConfigManager configManager = getCarrierConfigManager(mContext);
-        boolean ret = false;
-        if (configManager != null) {
-            final PersistableBundle bundle = configManager.getConfigForSubId(subId);
-            if (bundle != null) {
-                ret = bundle.getBoolean(key, defaultValue);
-            }
+        if (!CarrierConfigCache.hasConfig(mContext, configManager, subId)) {
+            return false;
         }
-        return ret;
+        return CarrierConfigCache.getBoolean(mContext, configManager, subId, key, defaultValue);
     }
 
     protected CarrierConfigManager getCarrierConfigManager(Context mContext) {
@@ -511,13 +507,9 @@ public class WifiCallingSliceHelper {
             return null;
         }
 
-        final PersistableBundle bundle = configManager.getConfigForSubId(subId);
-        if (bundle == null) {
-            return null;
-        }
-
-        final String carrierApp = bundle.getString(
-                CarrierConfigManager.KEY_WFC_EMERGENCY_ADDRESS_CARRIER_APP_STRING);
+        final String carrierApp = CarrierConfigCache.getString(mContext, configManager, subId,
+                CarrierConfigManager.KEY_WFC_EMERGENCY_ADDRESS_CARRIER_APP_STRING,
+                null /* defaultValue */);
         if (TextUtils.isEmpty(carrierApp)) {
             return null;
         }
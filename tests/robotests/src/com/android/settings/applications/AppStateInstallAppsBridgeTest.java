@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.Manifest;
+import android.app.AppOpsManager;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.IPackageManager;
+import android.os.Looper;
+import android.os.RemoteException;
+
+import com.android.settings.applications.AppStateInstallAppsBridge.InstallAppsState;
+import com.android.settingslib.applications.ApplicationsState;
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppStateInstallAppsBridgeTest {
+
+    private static final String PKG_UID_OVERRIDE = "pkg_uid_override";
+    private static final String PKG_UID_MODE = "pkg_uid_mode";
+    private static final String PKG_NOT_REQUESTED = "pkg_not_requested";
+    private static final int UID_OVERRIDE = 10001;
+    private static final int UID_MODE = 10002;
+    private static final int UID_NOT_REQUESTED = 10003;
+
+    @Mock
+    private ApplicationsState mState;
+    @Mock
+    private ApplicationsState.Session mSession;
+    @Mock
+    private IPackageManager mIpm;
+    @Mock
+    private AppOpsManager mAppOpsManager;
+    private AppStateInstallAppsBridge mBridge;
+
+    @Before
+    public void setUp() throws RemoteException {
+        MockitoAnnotations.initMocks(this);
+        when(mState.newSession(any())).thenReturn(mSession);
+        when(mState.getBackgroundLooper()).thenReturn(mock(Looper.class));
+        when(mIpm.getAppOpPermissionPackages(Manifest.permission.REQUEST_INSTALL_PACKAGES))
+                .thenReturn(new String[]{PKG_UID_OVERRIDE, PKG_UID_MODE});
+
+        // The package mode is allowed, but the uid mode overrides it.
+        final AppOpsManager.OpEntry opEntry = mock(AppOpsManager.OpEntry.class);
+        when(opEntry.getMode()).thenReturn(AppOpsManager.MODE_ALLOWED);
+        final AppOpsManager.PackageOps packageOps = mock(AppOpsManager.PackageOps.class);
+        when(packageOps.getPackageName()).thenReturn(PKG_UID_OVERRIDE);
+        when(packageOps.getUid()).thenReturn(UID_OVERRIDE);
+        when(packageOps.getOps()).thenReturn(Collections.singletonList(opEntry));
+        when(mAppOpsManager.getPackagesForOps(any(int[].class)))
+                .thenReturn(Collections.singletonList(packageOps));
+        setEffectiveMode(UID_OVERRIDE, PKG_UID_OVERRIDE, AppOpsManager.MODE_ERRORED);
+        // Only the uid has a mode.
+        setEffectiveMode(UID_MODE, PKG_UID_MODE, AppOpsManager.MODE_ALLOWED);
+        setEffectiveMode(UID_NOT_REQUESTED, PKG_NOT_REQUESTED, AppOpsManager.MODE_DEFAULT);
+
+        mBridge = new AppStateInstallAppsBridge(mState,
+                mock(AppStateBaseBridge.Callback.class), mIpm, mAppOpsManager);
+    }
+
+    @Test
+    public void loadAllExtraInfo_shouldMatchCreateInstallAppsStateFor() {
+        final AppEntry overrideEntry = createAppEntry(PKG_UID_OVERRIDE, UID_OVERRIDE);
+        final AppEntry uidModeEntry = createAppEntry(PKG_UID_MODE, UID_MODE);
+        final AppEntry notRequestedEntry = createAppEntry(PKG_NOT_REQUESTED, UID_NOT_REQUESTED);
+        when(mSession.getAllApps()).thenReturn(
+                new ArrayList<>(Arrays.asList(overrideEntry, uidModeEntry, notRequestedEntry)));
+
+        mBridge.loadAllExtraInfo();
+
+        assertSameState(overrideEntry);
+        assertSameState(uidModeEntry);
+        assertSameState(notRequestedEntry);
+        assertThat(((InstallAppsState) overrideEntry.extraInfo).canInstallApps()).isFalse();
+        assertThat(((InstallAppsState) uidModeEntry.extraInfo).canInstallApps()).isTrue();
+        assertThat(((InstallAppsState) notRequestedEntry.extraInfo).isPotentialAppSource())
+                .isFalse();
+    }
+
+    @Test
+    public void loadAllExtraInfo_reload_shouldOnlyCheckChangedModes() {
+        final AppEntry overrideEntry = createAppEntry(PKG_UID_OVERRIDE, UID_OVERRIDE);
+        final AppEntry uidModeEntry = createAppEntry(PKG_UID_MODE, UID_MODE);
+        when(mSession.getAllApps()).thenReturn(
+                new ArrayList<>(Arrays.asList(overrideEntry, uidModeEntry)));
+
+        mBridge.loadAllExtraInfo();
+        final ArgumentCaptor<AppOpsManager.OnOpChangedListener> listener =
+                ArgumentCaptor.forClass(AppOpsManager.OnOpChangedListener.class);
+        verify(mAppOpsManager).startWatchingMode(
+                eq(AppOpsManager.OPSTR_REQUEST_INSTALL_PACKAGES), isNull(), listener.capture());
+        setEffectiveMode(UID_MODE, PKG_UID_MODE, AppOpsManager.MODE_ERRORED);
+        listener.getValue().onOpChanged(AppOpsManager.OPSTR_REQUEST_INSTALL_PACKAGES,
+                PKG_UID_MODE);
+        mBridge.loadAllExtraInfo();
+
+        verify(mAppOpsManager).checkOpNoThrow(AppOpsManager.OP_REQUEST_INSTALL_PACKAGES,
+                UID_OVERRIDE, PKG_UID_OVERRIDE);
+        verify(mAppOpsManager, times(2)).checkOpNoThrow(
+                AppOpsManager.OP_REQUEST_INSTALL_PACKAGES, UID_MODE, PKG_UID_MODE);
+        assertThat(((InstallAppsState) uidModeEntry.extraInfo).canInstallApps()).isFalse();
+    }
+
+    @Test
+    public void release_shouldStopWatchingModes() {
+        when(mSession.getAllApps()).thenReturn(
+                new ArrayList<>(Arrays.asList(createAppEntry(PKG_UID_MODE, UID_MODE))));
+        mBridge.loadAllExtraInfo();
+
+        mBridge.release();
+
+        verify(mAppOpsManager).stopWatchingMode(any(AppOpsManager.OnOpChangedListener.class));
+    }
+
+    private void assertSameState(AppEntry entry) {
+        final InstallAppsState expected =
+                mBridge.createInstallAppsStateFor(entry.info.packageName, entry.info.uid);
+        final InstallAppsState actual = (InstallAppsState) entry.extraInfo;
+        assertThat(actual.permissionRequested).isEqualTo(expected.permissionRequested);
+        assertThat(actual.appOpMode).isEqualTo(expected.appOpMode);
+    }
+
+    private void setEffectiveMode(int uid, String packageName, int mode) {
+        when(mAppOpsManager.checkOpNoThrow(AppOpsManager.OP_REQUEST_INSTALL_PACKAGES, uid,
+                packageName)).thenReturn(mode);
+    }
+
+    private static AppEntry createAppEntry(String packageName, int uid) {
+        final AppEntry entry = mock(AppEntry.class);
+        entry.info = new ApplicationInfo();
+        entry.info.packageName = packageName;
+        entry.info.uid = uid;
+        return entry;
+    }
+}
@@ -39,6 +39,7 @@ import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -52,6 +53,7 @@ import android.os.Parcel;
 import android.os.RemoteException;
 import android.os.UserHandle;
 import android.os.UserManager;
+import android.util.ArraySet;
 import android.view.ViewGroup;
 import android.widget.CompoundButton;
 import android.widget.Switch;
@@ -71,6 +73,7 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -99,7 +102,10 @@ public class AppStateNotificationBridgeTest {
         when(mState.newSession(any())).thenReturn(mSession);
         when(mState.getBackgroundLooper()).thenReturn(mock(Looper.class));
         when(mBackend.getNotificationsBanned(anyString(), anyInt())).thenReturn(true);
+        when(mBackend.getNotificationsBannedPackages(anyInt(), any()))
+                .thenReturn(new ArraySet<>(Arrays.asList(PKG1, PKG2)));
         when(mBackend.isSystemApp(any(), any())).thenReturn(true);
+        when(mBackend.getSystemApps(any())).thenReturn(new ArraySet<>(Arrays.asList(PKG1, PKG2)));
         // most tests assume no work profile
         when(mUserManager.getProfileIdsWithDisabled(anyInt())).thenReturn(new int[]{});
         mContext = RuntimeEnvironment.application.getApplicationContext();
@@ -214,7 +220,9 @@ public class AppStateNotificationBridgeTest {
         mBridge.loadAllExtraInfo();
         // extra info should exist and blocked status should be populated
         assertThat(apps.get(0).extraInfo).isNotNull();
-        verify(mBackend).getNotificationsBanned(PKG1, 0);
+        verify(mBackend).getNotificationsBannedPackages(eq(0), any());
+        verify(mBackend, never()).getNotificationsBanned(anyString(), anyInt());
+        assertThat(((NotificationsSentState) apps.get(0).extraInfo).blocked).isTrue();
         // but the recent/frequent counts should be 0 so they don't appear on those screens
         assertThat(((NotificationsSentState) apps.get(0).extraInfo).avgSentDaily).isEqualTo(0);
         assertThat(((NotificationsSentState) apps.get(0).extraInfo).lastSent).isEqualTo(0);
@@ -249,6 +257,24 @@ public class AppStateNotificationBridgeTest {
         assertThat(((NotificationsSentState) apps.get(0).extraInfo).blockable).isTrue();
     }
 
+    @Test
+    public void testLoadAllExtraInfo_queriesSystemAppsOnce() throws RemoteException {
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(mock(UsageEvents.class));
+        when(mBackend.getSystemApps(any())).thenReturn(new ArraySet<>(Arrays.asList(PKG1)));
+        ArrayList<AppEntry> apps = new ArrayList<>();
+        apps.add(getMockAppEntry(PKG1));
+        apps.add(getMockAppEntry(PKG2));
+        when(mSession.getAllApps()).thenReturn(apps);
+
+        mBridge.loadAllExtraInfo();
+
+        verify(mBackend).getSystemApps(any());
+        verify(mBackend, never()).isSystemApp(any(), any());
+        assertThat(((NotificationsSentState) apps.get(0).extraInfo).systemApp).isTrue();
+        assertThat(((NotificationsSentState) apps.get(1).extraInfo).systemApp).isFalse();
+    }
+
     @Test
     public void testLoadAllExtraInfo_multiplePkgs() throws RemoteException {
         List<Event> events = new ArrayList<>();
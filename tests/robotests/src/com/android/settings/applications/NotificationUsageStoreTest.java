@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static android.text.format.DateUtils.DAY_IN_MILLIS;
+import static android.text.format.DateUtils.HOUR_IN_MILLIS;
+import static android.text.format.DateUtils.MINUTE_IN_MILLIS;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.app.usage.IUsageStatsManager;
+import android.app.usage.UsageEvents;
+import android.app.usage.UsageEvents.Event;
+import android.content.Context;
+import android.os.Parcel;
+
+import com.android.settings.applications.AppStateNotificationBridge.NotificationsSentState;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class NotificationUsageStoreTest {
+
+    private static final String PKG1 = "pkg1";
+    private static final String PKG2 = "pkg2";
+    private static final String CALLING_PKG = "com.android.settings";
+    private static final int USER_ID = 0;
+    private static final int DAYS_TO_CHECK = 7;
+    private static final long NOW = 100 * DAY_IN_MILLIS;
+
+    @Mock
+    private IUsageStatsManager mUsageStats;
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+    }
+
+    @Test
+    public void update_firstTime_queriesWholeWindow() throws Exception {
+        mockEvents(getEvent(PKG1, NOW - DAY_IN_MILLIS), getEvent(PKG1, NOW - 1));
+        final NotificationUsageStore store = new NotificationUsageStore(mContext, USER_ID);
+
+        store.update(mUsageStats, CALLING_PKG, NOW, DAYS_TO_CHECK);
+
+        verify(mUsageStats).queryEventsForUser(NOW - DAYS_TO_CHECK * DAY_IN_MILLIS, NOW,
+                USER_ID, CALLING_PKG);
+        final NotificationsSentState state = store.get(PKG1);
+        assertThat(state.sentCount).isEqualTo(2);
+        assertThat(state.lastSent).isEqualTo(NOW - 1);
+        assertThat(store.get(PKG2)).isNull();
+    }
+
+    @Test
+    public void update_persisted_onlyQueriesNewEvents() throws Exception {
+        mockEvents(getEvent(PKG1, NOW - DAY_IN_MILLIS));
+        new NotificationUsageStore(mContext, USER_ID)
+                .update(mUsageStats, CALLING_PKG, NOW, DAYS_TO_CHECK);
+
+        final long later = NOW + 1000;
+        mockEvents(getEvent(PKG1, NOW + 10), getEvent(PKG2, NOW + 20));
+        final NotificationUsageStore store = new NotificationUsageStore(mContext, USER_ID);
+        store.update(mUsageStats, CALLING_PKG, later, DAYS_TO_CHECK);
+
+        verify(mUsageStats).queryEventsForUser(NOW, later, USER_ID, CALLING_PKG);
+        assertThat(store.get(PKG1).sentCount).isEqualTo(2);
+        assertThat(store.get(PKG1).lastSent).isEqualTo(NOW + 10);
+        assertThat(store.get(PKG2).sentCount).isEqualTo(1);
+    }
+
+    @Test
+    public void update_daysLeftWindow_dropped() throws Exception {
+        mockEvents(getEvent(PKG1, NOW - 6 * DAY_IN_MILLIS), getEvent(PKG2, NOW - DAY_IN_MILLIS));
+        final NotificationUsageStore store = new NotificationUsageStore(mContext, USER_ID);
+        store.update(mUsageStats, CALLING_PKG, NOW, DAYS_TO_CHECK);
+
+        mockEvents();
+        store.update(mUsageStats, CALLING_PKG, NOW + 3 * DAY_IN_MILLIS, DAYS_TO_CHECK);
+
+        assertThat(store.get(PKG1)).isNull();
+        assertThat(store.get(PKG2).sentCount).isEqualTo(1);
+    }
+
+    @Test
+    public void update_hourStartedBeforeWindow_notCounted() throws Exception {
+        final long now = NOW + 30 * MINUTE_IN_MILLIS;
+        final long windowStart = now - DAYS_TO_CHECK * DAY_IN_MILLIS;
+        mockEvents(getEvent(PKG1, windowStart + 10 * MINUTE_IN_MILLIS),
+                getEvent(PKG1, windowStart + HOUR_IN_MILLIS));
+        final NotificationUsageStore store = new NotificationUsageStore(mContext, USER_ID);
+
+        store.update(mUsageStats, CALLING_PKG, now, DAYS_TO_CHECK);
+
+        assertThat(store.get(PKG1).sentCount).isEqualTo(1);
+    }
+
+    private void mockEvents(Event... events) throws Exception {
+        final List<Event> eventList = new ArrayList<>();
+        for (Event event : events) {
+            eventList.add(event);
+        }
+        final UsageEvents usageEvents = new UsageEvents(eventList, new String[] {PKG1, PKG2});
+        final Parcel parcel = Parcel.obtain();
+        parcel.setDataPosition(0);
+        usageEvents.writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(UsageEvents.CREATOR.createFromParcel(parcel));
+    }
+
+    private static Event getEvent(String pkg, long timestamp) {
+        final Event event = new Event();
+        event.mEventType = Event.NOTIFICATION_INTERRUPTION;
+        event.mPackage = pkg;
+        event.mTimeStamp = timestamp;
+        return event;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.os.Bundle;
+
+import com.android.settings.R;
+import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+@RunWith(RobolectricTestRunner.class)
+public class PreferenceMetadataIndexTest {
+
+    private Context mContext;
+    private Resources mResources;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mResources = mContext.getResources();
+        PreferenceMetadataIndex.clearInstance();
+    }
+
+    @After
+    public void tearDown() {
+        PreferenceXmlParserUtils.sUseMetadataIndex = true;
+        PreferenceMetadataIndex.clearInstance();
+    }
+
+    @Test
+    public void get_notIndexed_shouldReturnNull() {
+        final PreferenceMetadataIndex index = new PreferenceMetadataIndex(mContext);
+
+        assertThat(index.get(mResources, R.xml.display_settings)).isNull();
+    }
+
+    @Test
+    public void extractMetadata_shouldPopulateIndex() throws Exception {
+        PreferenceXmlParserUtils.extractMetadata(mContext, R.xml.display_settings,
+                MetadataFlag.FLAG_NEED_KEY);
+
+        final List<PreferenceMetadataIndex.Entry> entries =
+                PreferenceMetadataIndex.getInstance(mContext).get(mResources,
+                        R.xml.display_settings);
+        assertThat(entries).isNotEmpty();
+    }
+
+    @Test
+    public void extractMetadata_fromIndex_shouldMatchXmlWalk() throws Exception {
+        final int flags = MetadataFlag.FLAG_NEED_KEY | MetadataFlag.FLAG_NEED_PREF_CONTROLLER
+                | MetadataFlag.FLAG_NEED_PREF_TITLE | MetadataFlag.FLAG_NEED_SEARCHABLE
+                | MetadataFlag.FLAG_INCLUDE_PREF_SCREEN;
+        PreferenceXmlParserUtils.sUseMetadataIndex = false;
+        final List<Bundle> parsed = PreferenceXmlParserUtils.extractMetadata(mContext,
+                R.xml.display_settings, flags);
+        assertThat(PreferenceMetadataIndex.getInstance(mContext).get(mResources,
+                R.xml.display_settings)).isNull();
+
+        PreferenceXmlParserUtils.sUseMetadataIndex = true;
+        // The first call indexes the screen, the second one is served from the index.
+        PreferenceXmlParserUtils.extractMetadata(mContext, R.xml.display_settings, flags);
+        assertThat(PreferenceMetadataIndex.getInstance(mContext).get(mResources,
+                R.xml.display_settings)).isNotNull();
+        final List<Bundle> indexed = PreferenceXmlParserUtils.extractMetadata(mContext,
+                R.xml.display_settings, flags);
+
+        assertThat(indexed).hasSize(parsed.size());
+        for (int i = 0; i < parsed.size(); i++) {
+            assertThat(indexed.get(i).keySet()).isEqualTo(parsed.get(i).keySet());
+            for (String key : parsed.get(i).keySet()) {
+                assertThat(indexed.get(i).get(key)).isEqualTo(parsed.get(i).get(key));
+            }
+        }
+    }
+
+    @Test
+    public void extractMetadata_withoutScreenFlag_shouldSkipScreenEntry() throws Exception {
+        final List<Bundle> withScreen = PreferenceXmlParserUtils.extractMetadata(mContext,
+                R.xml.display_settings,
+                MetadataFlag.FLAG_NEED_KEY | MetadataFlag.FLAG_INCLUDE_PREF_SCREEN);
+        final List<Bundle> withoutScreen = PreferenceXmlParserUtils.extractMetadata(mContext,
+                R.xml.display_settings, MetadataFlag.FLAG_NEED_KEY);
+
+        assertThat(withoutScreen).hasSize(withScreen.size() - 1);
+    }
+
+    @Test
+    public void save_thenLoadInNewInstance_shouldRestoreEntries() {
+        final PreferenceMetadataIndex index = new PreferenceMetadataIndex(mContext);
+        final List<PreferenceMetadataIndex.Entry> entries = new ArrayList<>();
+        entries.add(new PreferenceMetadataIndex.Entry("Preference", "key", "controller",
+                "title", null /* summary */, 12, null /* keywords */, true /* searchable */,
+                false /* appended */, null /* unavailableSliceSubtitle */, true /* forWork */));
+        final PreferenceMetadataIndex.ConfigIndex configIndex =
+                new PreferenceMetadataIndex.ConfigIndex(
+                        PreferenceMetadataIndex.getConfigKey(mResources));
+        configIndex.put(R.xml.display_settings, entries);
+        index.save(configIndex);
+
+        final List<PreferenceMetadataIndex.Entry> restored =
+                new PreferenceMetadataIndex(mContext).get(mResources, R.xml.display_settings);
+
+        assertThat(restored).hasSize(1);
+        final PreferenceMetadataIndex.Entry entry = restored.get(0);
+        assertThat(entry.mNodeName).isEqualTo("Preference");
+        assertThat(entry.mKey).isEqualTo("key");
+        assertThat(entry.mController).isEqualTo("controller");
+        assertThat(entry.mTitle).isEqualTo("title");
+        assertThat(entry.mSummary).isNull();
+        assertThat(entry.mIcon).isEqualTo(12);
+        assertThat(entry.mSearchable).isTrue();
+        assertThat(entry.mAppended).isFalse();
+        assertThat(entry.mForWork).isTrue();
+    }
+
+    @Test
+    public void getConfigKey_differentLocale_shouldDiffer() {
+        final Configuration english = new Configuration(mResources.getConfiguration());
+        english.setLocale(Locale.US);
+        final Configuration french = new Configuration(mResources.getConfiguration());
+        french.setLocale(Locale.FRANCE);
+
+        assertThat(PreferenceMetadataIndex.getConfigKey(english))
+                .isNotEqualTo(PreferenceMetadataIndex.getConfigKey(french));
+    }
+
+    @Test
+    public void getConfigKey_differentFontScale_shouldDiffer() {
+        final Configuration normal = new Configuration(mResources.getConfiguration());
+        normal.fontScale = 1.0f;
+        final Configuration large = new Configuration(mResources.getConfiguration());
+        large.fontScale = 1.3f;
+
+        assertThat(PreferenceMetadataIndex.getConfigKey(normal))
+                .isNotEqualTo(PreferenceMetadataIndex.getConfigKey(large));
+    }
+
+    @Test
+    public void getConfigKey_differentAssetsSeq_shouldDiffer() {
+        final Configuration config = new Configuration(mResources.getConfiguration());
+        final Configuration overlaid = new Configuration(config);
+        overlaid.assetsSeq = config.assetsSeq + 1;
+
+        assertThat(PreferenceMetadataIndex.getConfigKey(config))
+                .isNotEqualTo(PreferenceMetadataIndex.getConfigKey(overlaid));
+    }
+
+    @Test
+    public void put_shouldBeServedByGet() {
+        final PreferenceMetadataIndex index = new PreferenceMetadataIndex(mContext);
+
+        index.put(mResources, R.xml.display_settings, Collections.emptyList());
+
+        assertThat(index.get(mResources, R.xml.display_settings)).isEmpty();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import static com.android.settingslib.core.instrumentation.Instrumentable.METRICS_CATEGORY_UNKNOWN;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+
+import androidx.preference.Preference;
+import androidx.preference.PreferenceManager;
+import androidx.preference.PreferenceScreen;
+
+import com.android.settings.core.BackgroundStateController;
+import com.android.settingslib.core.AbstractPreferenceController;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class ControllerStateEngineTest {
+
+    private Context mContext;
+    private PreferenceScreen mScreen;
+    private List<String> mEvents;
+    private List<Runnable> mPendingBackgroundWork;
+    private ControllerStateEngine mEngine;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mScreen = new PreferenceManager(mContext).createPreferenceScreen(mContext);
+        mEvents = new ArrayList<>();
+        mPendingBackgroundWork = new ArrayList<>();
+        mEngine = new ControllerStateEngine(mPendingBackgroundWork::add);
+    }
+
+    @Test
+    public void updateStates_shouldApplyAfterAllComputed() {
+        final List<ControllerTask> tasks = Arrays.asList(
+                createTask("a", Collections.emptyList()),
+                createTask("b", Collections.emptyList()));
+
+        mEngine.updateStates(tasks);
+        runPendingBackgroundWork();
+
+        assertThat(mEvents).containsExactly(
+                "compute:a", "compute:b", "apply:a=state_a", "apply:b=state_b").inOrder();
+    }
+
+    @Test
+    public void updateStates_withDependency_shouldComputeAndApplyDependencyFirst() {
+        final List<ControllerTask> tasks = Arrays.asList(
+                createTask("a", Collections.singletonList("b")),
+                createTask("b", Collections.emptyList()));
+
+        mEngine.updateStates(tasks);
+        runPendingBackgroundWork();
+
+        assertThat(mEvents).containsExactly(
+                "compute:b", "compute:a", "apply:b=state_b", "apply:a=state_a").inOrder();
+    }
+
+    @Test
+    public void updateStates_cancelledBeforeApply_shouldNotApply() {
+        mEngine.updateStates(Collections.singletonList(
+                createTask("a", Collections.emptyList())));
+
+        mEngine.cancel();
+        runPendingBackgroundWork();
+
+        assertThat(mEvents).containsExactly("compute:a");
+    }
+
+    @Test
+    public void sortByDependencies_cycle_shouldKeepAllTasks() {
+        final ControllerTask taskA = createTask("a", Collections.singletonList("b"));
+        final ControllerTask taskB = createTask("b", Collections.singletonList("a"));
+
+        final List<ControllerTask> ordered =
+                ControllerStateEngine.sortByDependencies(Arrays.asList(taskA, taskB));
+
+        assertThat(ordered).containsExactly(taskB, taskA).inOrder();
+    }
+
+    private void runPendingBackgroundWork() {
+        while (!mPendingBackgroundWork.isEmpty()) {
+            mPendingBackgroundWork.remove(0).run();
+        }
+    }
+
+    private ControllerTask createTask(String key, List<String> dependencyKeys) {
+        final Preference preference = new Preference(mContext);
+        preference.setKey(key);
+        mScreen.addPreference(preference);
+        return new ControllerTask(new TestController(mContext, key, dependencyKeys, mEvents),
+                mScreen, null /* metricsFeature */, METRICS_CATEGORY_UNKNOWN);
+    }
+
+    private static class TestController extends AbstractPreferenceController
+            implements BackgroundStateController<String> {
+        private final String mKey;
+        private final List<String> mDependencyKeys;
+        private final List<String> mEvents;
+
+        TestController(Context context, String key, List<String> dependencyKeys,
+                List<String> events) {
+            super(context);
+            mKey = key;
+            mDependencyKeys = dependencyKeys;
+            mEvents = events;
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        public String getPreferenceKey() {
+            return mKey;
+        }
+
+        @Override
+        public String computeState() {
+            mEvents.add("compute:" + mKey);
+            return "state_" + mKey;
+        }
+
+        @Override
+        public void applyState(Preference preference, String state) {
+            mEvents.add("apply:" + preference.getKey() + "=" + state);
+        }
+
+        @Override
+        public List<String> getDependencyKeys() {
+            return mDependencyKeys;
+        }
+    }
+}
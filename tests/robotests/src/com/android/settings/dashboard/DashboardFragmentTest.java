@@ -242,6 +242,15 @@ public class DashboardFragmentTest {
         verify(mockController2, times(2)).getPreferenceKey();
     }
 
+    @Test
+    public void updatePreferenceStatesInParallel_noBackgroundState_shouldUpdateSynchronously() {
+        final TestFragment fragment = spy(mTestFragment);
+
+        fragment.updatePreferenceStatesInParallel();
+
+        verify(fragment).updatePreferenceStates();
+    }
+
     @Test
     public void updateState_doesNotSkipControllersOfSameClass() {
         final AbstractPreferenceController mockController1 =
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import android.content.IContentProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public class TileDataFetcherTest {
+
+    private static final String AUTHORITY = "authority";
+    private static final String OTHER_AUTHORITY = "other_authority";
+
+    private TileDataFetcher mFetcher;
+    private List<String> mEvents;
+
+    @Before
+    public void setUp() {
+        mFetcher = spy(new TileDataFetcher());
+        // Holds the flush, so that the requests are batched until the test flushes them.
+        doNothing().when(mFetcher).scheduleFlush();
+        mEvents = new ArrayList<>();
+    }
+
+    @Test
+    public void request_severalRequests_scheduleOneFlush() {
+        mFetcher.request("key1", AUTHORITY, providerMap -> null);
+        mFetcher.request("key2", AUTHORITY, providerMap -> null);
+        mFetcher.request("key3", AUTHORITY, providerMap -> null);
+
+        verify(mFetcher, times(1)).scheduleFlush();
+    }
+
+    @Test
+    public void request_sameKeyBeforeFlush_fetchOnlyLastRequest() {
+        mFetcher.request("key", AUTHORITY, providerMap -> {
+            mEvents.add("fetch1");
+            return null;
+        });
+        mFetcher.request("key", AUTHORITY, providerMap -> {
+            mEvents.add("fetch2");
+            return null;
+        });
+
+        mFetcher.flush();
+
+        assertThat(mEvents).containsExactly("fetch2");
+    }
+
+    @Test
+    public void flush_requestsToSameAuthority_shareProviderMap() {
+        final IContentProvider provider = mock(IContentProvider.class);
+        final List<Map<String, IContentProvider>> providerMaps = new ArrayList<>();
+        mFetcher.request("key1", AUTHORITY, providerMap -> {
+            providerMaps.add(providerMap);
+            providerMap.put(AUTHORITY, provider);
+            return null;
+        });
+        mFetcher.request("key2", AUTHORITY, providerMap -> {
+            providerMaps.add(providerMap);
+            return null;
+        });
+
+        mFetcher.flush();
+
+        assertThat(providerMaps).hasSize(2);
+        assertThat(providerMaps.get(1)).isSameInstanceAs(providerMaps.get(0));
+        assertThat(providerMaps.get(1).get(AUTHORITY)).isSameInstanceAs(provider);
+    }
+
+    @Test
+    public void flush_requestsToOtherAuthorities_fetchEachAuthorityInOwnTask() {
+        final List<Runnable> tasks = new ArrayList<>();
+        doAnswer(invocation -> tasks.add(invocation.getArgument(0)))
+                .when(mFetcher).postFetch(any(Runnable.class));
+        final List<Map<String, IContentProvider>> providerMaps = new ArrayList<>();
+        mFetcher.request("key1", AUTHORITY, providerMap -> {
+            providerMaps.add(providerMap);
+            mEvents.add("fetch1");
+            return null;
+        });
+        mFetcher.request("key2", OTHER_AUTHORITY, providerMap -> {
+            providerMaps.add(providerMap);
+            mEvents.add("fetch2");
+            return null;
+        });
+        mFetcher.request("key3", AUTHORITY, providerMap -> {
+            providerMaps.add(providerMap);
+            mEvents.add("fetch3");
+            return null;
+        });
+
+        mFetcher.flush();
+
+        assertThat(tasks).hasSize(2);
+        // The other authority is fetched even if the first task hangs, like on a stuck provider.
+        tasks.get(1).run();
+        assertThat(mEvents).containsExactly("fetch2");
+        tasks.get(0).run();
+        assertThat(mEvents).containsExactly("fetch2", "fetch1", "fetch3").inOrder();
+        assertThat(providerMaps.get(2)).isSameInstanceAs(providerMaps.get(1));
+        assertThat(providerMaps.get(0)).isNotSameInstanceAs(providerMaps.get(1));
+    }
+
+    @Test
+    public void flush_requestThrows_applyOtherRequests() {
+        mFetcher.request("key1", AUTHORITY, providerMap -> {
+            throw new IllegalStateException("Provider died");
+        });
+        mFetcher.request("key2", AUTHORITY, providerMap -> () -> mEvents.add("update2"));
+
+        mFetcher.flush();
+
+        assertThat(mEvents).containsExactly("update2");
+    }
+
+    @Test
+    public void flush_severalRequests_applyEachUpdateOnceFetched() {
+        mFetcher.request("key1", AUTHORITY, providerMap -> {
+            mEvents.add("fetch1");
+            return () -> mEvents.add("update1");
+        });
+        mFetcher.request("key2", AUTHORITY, providerMap -> {
+            mEvents.add("fetch2");
+            return () -> mEvents.add("update2");
+        });
+
+        mFetcher.flush();
+
+        assertThat(mEvents).containsExactly("fetch1", "update1", "fetch2", "update2").inOrder();
+    }
+
+    @Test
+    public void flush_requestAfterFlush_scheduleNewFlush() {
+        mFetcher.request("key1", AUTHORITY, providerMap -> null);
+        mFetcher.flush();
+
+        mFetcher.request("key2", AUTHORITY, providerMap -> null);
+
+        verify(mFetcher, times(2)).scheduleFlush();
+    }
+}
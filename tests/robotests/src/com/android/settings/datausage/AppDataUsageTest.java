@@ -101,6 +101,7 @@ public class AppDataUsageTest {
     @After
     public void tearDown() {
         ShadowEntityHeaderController.reset();
+        CycleUsageCache.clear();
     }
 
     @Test
@@ -380,6 +381,55 @@ public class AppDataUsageTest {
         assertThat(cycles.get(1)).isEqualTo(startTime);
     }
 
+    @Test
+    public void onCreateLoader_oldCyclesCached_shouldOnlyQueryNewerCycles() {
+        final long now = System.currentTimeMillis();
+        final long tenDaysAgo = now - (DateUtils.DAY_IN_MILLIS * 10);
+        final long twentyDaysAgo = now - (DateUtils.DAY_IN_MILLIS * 20);
+        final long thirtyDaysAgo = now - (DateUtils.DAY_IN_MILLIS * 30);
+        final ArrayList<Long> testCycles = new ArrayList<>();
+        testCycles.add(now);
+        testCycles.add(tenDaysAgo);
+        testCycles.add(twentyDaysAgo);
+        testCycles.add(thirtyDaysAgo);
+        final int uid = 123;
+        final AppItem appItem = new AppItem(uid);
+        appItem.category = AppItem.CATEGORY_APP;
+        appItem.addUid(uid);
+        final NetworkTemplate template = NetworkTemplate.buildTemplateWifiWildcard();
+        final NetworkCycleDataForUid.Builder builder = new NetworkCycleDataForUid.Builder();
+        builder.setBackgroundUsage(12L).setForegroundUsage(34L);
+        builder.setStartTime(thirtyDaysAgo).setEndTime(twentyDaysAgo);
+        CycleUsageCache.putForUids(RuntimeEnvironment.application, template, new int[] {uid},
+                builder.build(), now);
+
+        mFragment = new AppDataUsage();
+        ReflectionHelpers.setField(mFragment, "mContext", RuntimeEnvironment.application);
+        ReflectionHelpers.setField(mFragment, "mCycles", testCycles);
+        ReflectionHelpers.setField(mFragment, "mAppItem", appItem);
+        ReflectionHelpers.setField(mFragment, "mTemplate", template);
+        ReflectionHelpers.setField(mFragment, "mCycleAdapter", mock(CycleAdapter.class));
+        ReflectionHelpers.setField(mFragment, "mBackgroundUsage", mock(Preference.class));
+        ReflectionHelpers.setField(mFragment, "mForegroundUsage", mock(Preference.class));
+        ReflectionHelpers.setField(mFragment, "mTotalUsage", mock(Preference.class));
+        ReflectionHelpers.setField(mFragment, "mCycle", mock(SpinnerPreference.class));
+
+        final NetworkCycleDataForUidLoader loader = (NetworkCycleDataForUidLoader)
+                mFragment.mUidDataCallbacks.onCreateLoader(0 /* id */, Bundle.EMPTY /* args */);
+        assertThat(loader.getCycles()).containsExactly(now, tenDaysAgo, twentyDaysAgo).inOrder();
+
+        final List<NetworkCycleDataForUid> data = new ArrayList<>();
+        data.add(new NetworkCycleDataForUid.Builder().setBackgroundUsage(1L).build());
+        data.add(new NetworkCycleDataForUid.Builder().setBackgroundUsage(2L).build());
+        mFragment.mUidDataCallbacks.onLoadFinished(null /* loader */, data);
+
+        final List<NetworkCycleDataForUid> usageData =
+                ReflectionHelpers.getField(mFragment, "mUsageData");
+        assertThat(usageData).hasSize(3);
+        assertThat(usageData.get(2).getBackgroudUsage()).isEqualTo(12L);
+        assertThat(usageData.get(2).getForegroudUsage()).isEqualTo(34L);
+    }
+
     @Test
     public void onLoadFinished_hasSelectedCycleSpecified_shouldSelectSpecifiedCycle() {
         final long now = System.currentTimeMillis();
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import static android.net.TrafficStats.UID_REMOVED;
+import static android.net.TrafficStats.UID_TETHERING;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.pm.UserInfo;
+import android.os.Process;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.util.SparseLongArray;
+
+import com.android.settingslib.AppItem;
+import com.android.settingslib.net.UidDetailProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppItemAggregatorTest {
+
+    private static final int CURRENT_USER_ID = 0;
+    private static final int MANAGED_PROFILE_ID = 10;
+    private static final int OTHER_USER_ID = 11;
+    private static final int REMOVED_USER_ID = 12;
+    private static final int APP_ID = 10001;
+    private static final int[] NO_RESTRICTED_UIDS = new int[0];
+
+    @Mock
+    private UserManager mUserManager;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(mUserManager.getUserProfiles()).thenReturn(Arrays.asList(
+                UserHandle.of(CURRENT_USER_ID), UserHandle.of(MANAGED_PROFILE_ID)));
+        when(mUserManager.getUserInfo(OTHER_USER_ID))
+                .thenReturn(new UserInfo(OTHER_USER_ID, "", 0 /* flags */));
+    }
+
+    @Test
+    public void aggregate_currentUserApp_shouldKeepAppItem() {
+        final SparseLongArray uidBytes = new SparseLongArray();
+        uidBytes.put(UserHandle.getUid(CURRENT_USER_ID, APP_ID), 100L);
+
+        final AppItemAggregator.Result result = AppItemAggregator.aggregate(
+                uidBytes, NO_RESTRICTED_UIDS, CURRENT_USER_ID, mUserManager);
+
+        assertThat(result.mItems).hasSize(1);
+        final AppItem item = result.mItems.get(0);
+        assertThat(item.key).isEqualTo(UserHandle.getUid(CURRENT_USER_ID, APP_ID));
+        assertThat(item.category).isEqualTo(AppItem.CATEGORY_APP);
+        assertThat(item.total).isEqualTo(100L);
+        assertThat(result.mLargest).isEqualTo(100L);
+    }
+
+    @Test
+    public void aggregate_managedProfileApp_shouldAddToAppAndProfileItems() {
+        final int uid = UserHandle.getUid(MANAGED_PROFILE_ID, APP_ID);
+        final SparseLongArray uidBytes = new SparseLongArray();
+        uidBytes.put(uid, 50L);
+
+        final AppItemAggregator.Result result = AppItemAggregator.aggregate(
+                uidBytes, NO_RESTRICTED_UIDS, CURRENT_USER_ID, mUserManager);
+
+        assertThat(result.mItems).hasSize(2);
+        final AppItem profileItem =
+                findItem(result, UidDetailProvider.buildKeyForUser(MANAGED_PROFILE_ID));
+        assertThat(profileItem.category).isEqualTo(AppItem.CATEGORY_USER);
+        assertThat(profileItem.total).isEqualTo(50L);
+        assertThat(findItem(result, uid).total).isEqualTo(50L);
+    }
+
+    @Test
+    public void aggregate_otherUserApps_shouldCollapseIntoUserItem() {
+        final SparseLongArray uidBytes = new SparseLongArray();
+        uidBytes.put(UserHandle.getUid(OTHER_USER_ID, APP_ID), 30L);
+        uidBytes.put(UserHandle.getUid(OTHER_USER_ID, APP_ID + 1), 20L);
+
+        final AppItemAggregator.Result result = AppItemAggregator.aggregate(
+                uidBytes, NO_RESTRICTED_UIDS, CURRENT_USER_ID, mUserManager);
+
+        assertThat(result.mItems).hasSize(1);
+        final AppItem item = result.mItems.get(0);
+        assertThat(item.key).isEqualTo(UidDetailProvider.buildKeyForUser(OTHER_USER_ID));
+        assertThat(item.category).isEqualTo(AppItem.CATEGORY_USER);
+        assertThat(item.total).isEqualTo(50L);
+        // The user is only looked up once.
+        verify(mUserManager, times(1)).getUserInfo(OTHER_USER_ID);
+    }
+
+    @Test
+    public void aggregate_removedUserApp_shouldCollapseIntoRemovedItem() {
+        final SparseLongArray uidBytes = new SparseLongArray();
+        uidBytes.put(UserHandle.getUid(REMOVED_USER_ID, APP_ID), 20L);
+        uidBytes.put(UID_REMOVED, 5L);
+
+        final AppItemAggregator.Result result = AppItemAggregator.aggregate(
+                uidBytes, NO_RESTRICTED_UIDS, CURRENT_USER_ID, mUserManager);
+
+        assertThat(result.mItems).hasSize(1);
+        final AppItem item = result.mItems.get(0);
+        assertThat(item.key).isEqualTo(UID_REMOVED);
+        assertThat(item.category).isEqualTo(AppItem.CATEGORY_APP);
+        assertThat(item.total).isEqualTo(25L);
+    }
+
+    @Test
+    public void aggregate_tetheringAndSystemUids_shouldUseOwnBuckets() {
+        final SparseLongArray uidBytes = new SparseLongArray();
+        uidBytes.put(UID_TETHERING, 7L);
+        uidBytes.put(Process.SYSTEM_UID, 3L);
+        uidBytes.put(Process.PHONE_UID, 4L);
+
+        final AppItemAggregator.Result result = AppItemAggregator.aggregate(
+                uidBytes, NO_RESTRICTED_UIDS, CURRENT_USER_ID, mUserManager);
+
+        assertThat(result.mItems).hasSize(2);
+        assertThat(findItem(result, UID_TETHERING).total).isEqualTo(7L);
+        // Other non app uids are collapsed into the system item.
+        assertThat(findItem(result, Process.SYSTEM_UID).total).isEqualTo(7L);
+        verify(mUserManager, never()).getUserInfo(CURRENT_USER_ID);
+    }
+
+    @Test
+    public void aggregate_restrictedUids_shouldOnlyMarkProfileApps() {
+        final int usedUid = UserHandle.getUid(CURRENT_USER_ID, APP_ID);
+        final int unusedUid = UserHandle.getUid(CURRENT_USER_ID, APP_ID + 1);
+        final int otherUserUid = UserHandle.getUid(OTHER_USER_ID, APP_ID);
+        final SparseLongArray uidBytes = new SparseLongArray();
+        uidBytes.put(usedUid, 10L);
+
+        final AppItemAggregator.Result result = AppItemAggregator.aggregate(uidBytes,
+                new int[] {usedUid, unusedUid, otherUserUid}, CURRENT_USER_ID, mUserManager);
+
+        assertThat(result.mItems).hasSize(2);
+        assertThat(findItem(result, usedUid).restricted).isTrue();
+        final AppItem unusedItem = findItem(result, unusedUid);
+        assertThat(unusedItem.restricted).isTrue();
+        assertThat(unusedItem.total).isEqualTo(-1L);
+    }
+
+    @Test
+    public void aggregate_shouldSortLargestFirst() {
+        final SparseLongArray uidBytes = new SparseLongArray();
+        uidBytes.put(UserHandle.getUid(CURRENT_USER_ID, APP_ID), 10L);
+        uidBytes.put(UserHandle.getUid(CURRENT_USER_ID, APP_ID + 1), 30L);
+
+        final AppItemAggregator.Result result = AppItemAggregator.aggregate(
+                uidBytes, NO_RESTRICTED_UIDS, CURRENT_USER_ID, mUserManager);
+
+        assertThat(result.mItems.get(0).total).isEqualTo(30L);
+        assertThat(result.mItems.get(1).total).isEqualTo(10L);
+        assertThat(result.mLargest).isEqualTo(30L);
+    }
+
+    private static AppItem findItem(AppItemAggregator.Result result, int key) {
+        for (AppItem item : result.mItems) {
+            if (item.key == key) {
+                return item;
+            }
+        }
+        throw new AssertionError("No item for key " + key);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.net.NetworkTemplate;
+import android.util.SparseLongArray;
+
+import com.android.settingslib.net.NetworkCycleDataForUid;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class CycleUsageCacheTest {
+
+    private static final long START = 1000L;
+    private static final long END = 2000L;
+
+    private final Context mContext = RuntimeEnvironment.application;
+    private final NetworkTemplate mTemplate = NetworkTemplate.buildTemplateMobileWildcard();
+    private final SparseLongArray mUidBytes = new SparseLongArray();
+
+    @After
+    public void tearDown() {
+        CycleUsageCache.clear();
+    }
+
+    @Test
+    public void put_settledCycle_returnsCachedUsage() {
+        CycleUsageCache.put(mContext, mTemplate, START, END, mUidBytes,
+                END + CycleUsageCache.SETTLE_DELAY_MS /* now */);
+
+        assertThat(CycleUsageCache.get(NetworkTemplate.buildTemplateMobileWildcard(), START, END))
+                .isSameInstanceAs(mUidBytes);
+        assertThat(CycleUsageCache.get(mTemplate, START, END + 1)).isNull();
+    }
+
+    @Test
+    public void put_openCycle_notCached() {
+        CycleUsageCache.put(mContext, mTemplate, START, END, mUidBytes, END - 1 /* now */);
+
+        assertThat(CycleUsageCache.get(mTemplate, START, END)).isNull();
+    }
+
+    @Test
+    public void put_cycleEndedWithinSettleDelay_notCached() {
+        CycleUsageCache.put(mContext, mTemplate, START, END, mUidBytes, END /* now */);
+        CycleUsageCache.put(mContext, mTemplate, START, END, mUidBytes,
+                END + CycleUsageCache.SETTLE_DELAY_MS - 1 /* now */);
+
+        assertThat(CycleUsageCache.get(mTemplate, START, END)).isNull();
+    }
+
+    @Test
+    public void load_settledCycleOfEarlierProcess_returnsSavedUsage() {
+        mUidBytes.put(1000, 1234L);
+        mUidBytes.put(10001, 5678L);
+        CycleUsageCache.put(mContext, mTemplate, START, END, mUidBytes,
+                END + CycleUsageCache.SETTLE_DELAY_MS /* now */);
+        CycleUsageCache.clear();
+        assertThat(CycleUsageCache.get(mTemplate, START, END)).isNull();
+
+        CycleUsageCache.load(mContext, NetworkTemplate.buildTemplateMobileWildcard());
+
+        final SparseLongArray uidBytes = CycleUsageCache.get(mTemplate, START, END);
+        assertThat(uidBytes.size()).isEqualTo(2);
+        assertThat(uidBytes.get(1000)).isEqualTo(1234L);
+        assertThat(uidBytes.get(10001)).isEqualTo(5678L);
+    }
+
+    @Test
+    public void load_otherTemplate_notLoaded() {
+        CycleUsageCache.put(mContext, mTemplate, START, END, mUidBytes,
+                END + CycleUsageCache.SETTLE_DELAY_MS /* now */);
+        CycleUsageCache.clear();
+
+        CycleUsageCache.load(mContext, NetworkTemplate.buildTemplateWifiWildcard());
+
+        assertThat(CycleUsageCache.get(mTemplate, START, END)).isNull();
+    }
+
+    @Test
+    public void putForUids_settledCycle_returnsUsageOfSameUids() {
+        final NetworkCycleDataForUid.Builder builder = new NetworkCycleDataForUid.Builder();
+        builder.setBackgroundUsage(12L).setForegroundUsage(34L);
+        builder.setStartTime(START).setEndTime(END).setTotalUsage(46L);
+        CycleUsageCache.putForUids(mContext, mTemplate, new int[] {1001, 1000}, builder.build(),
+                END + CycleUsageCache.SETTLE_DELAY_MS /* now */);
+        CycleUsageCache.clear();
+        CycleUsageCache.load(mContext, mTemplate);
+
+        final NetworkCycleDataForUid data =
+                CycleUsageCache.getForUids(mTemplate, new int[] {1000, 1001}, START, END);
+        assertThat(data.getBackgroudUsage()).isEqualTo(12L);
+        assertThat(data.getForegroudUsage()).isEqualTo(34L);
+        assertThat(data.getTotalUsage()).isEqualTo(46L);
+        assertThat(data.getStartTime()).isEqualTo(START);
+        assertThat(data.getEndTime()).isEqualTo(END);
+        assertThat(CycleUsageCache.getForUids(mTemplate, new int[] {1000}, START, END)).isNull();
+    }
+
+    @Test
+    public void putForUids_openCycle_notCached() {
+        final NetworkCycleDataForUid.Builder builder = new NetworkCycleDataForUid.Builder();
+        builder.setStartTime(START).setEndTime(END);
+        CycleUsageCache.putForUids(mContext, mTemplate, new int[] {1000}, builder.build(),
+                END /* now */);
+
+        assertThat(CycleUsageCache.getForUids(mTemplate, new int[] {1000}, START, END)).isNull();
+    }
+}
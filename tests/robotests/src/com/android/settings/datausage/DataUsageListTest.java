@@ -18,11 +18,15 @@ package com.android.settings.datausage;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -39,7 +43,9 @@ import android.widget.Spinner;
 
 import androidx.fragment.app.FragmentActivity;
 import androidx.loader.app.LoaderManager;
+import androidx.preference.PreferenceGroup;
 import androidx.preference.PreferenceManager;
+import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
 import com.android.settings.SettingsActivity;
@@ -50,6 +56,8 @@ import com.android.settingslib.AppItem;
 import com.android.settingslib.NetworkPolicyEditor;
 import com.android.settingslib.core.instrumentation.VisibilityLoggerMixin;
 import com.android.settingslib.net.NetworkCycleChartData;
+import com.android.settingslib.net.UidDetail;
+import com.android.settingslib.net.UidDetailProvider;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -242,4 +250,44 @@ public class DataUsageListTest {
         final Spinner spinner = header.findViewById(R.id.filter_spinner);
         return spinner;
     }
+
+    @Test
+    public void addAppPreferences_shouldAddPreferencesInBatches() {
+        final PreferenceGroup apps = mock(PreferenceGroup.class);
+        final AppItemAggregator.Result result = setUpAppPreferences(apps, 45);
+        mDataUsageList.mBindGeneration = 1;
+
+        mDataUsageList.addAppPreferences(1 /* generation */, result, 0 /* start */);
+
+        verify(apps, times(45)).addPreference(any(AppDataUsagePreference.class));
+        verify(mDataUsageList).addAppPreferences(1 /* generation */, result, 20 /* start */);
+        verify(mDataUsageList).addAppPreferences(1 /* generation */, result, 40 /* start */);
+        verify(mDataUsageList, times(3)).addAppPreferences(anyInt(), any(), anyInt());
+    }
+
+    @Test
+    public void addAppPreferences_listRebound_shouldNotAddPreferences() {
+        final PreferenceGroup apps = mock(PreferenceGroup.class);
+        final AppItemAggregator.Result result = setUpAppPreferences(apps, 45);
+        mDataUsageList.mBindGeneration = 2;
+
+        mDataUsageList.addAppPreferences(1 /* generation */, result, 0 /* start */);
+
+        verify(apps, never()).addPreference(any());
+    }
+
+    private AppItemAggregator.Result setUpAppPreferences(PreferenceGroup apps, int count) {
+        final UidDetailProvider uidDetailProvider = mock(UidDetailProvider.class);
+        when(uidDetailProvider.getUidDetail(anyInt(), anyBoolean())).thenReturn(new UidDetail());
+        ReflectionHelpers.setField(mDataUsageList, "mApps", apps);
+        ReflectionHelpers.setField(mDataUsageList, "mUidDetailProvider", uidDetailProvider);
+        doReturn(mock(PreferenceScreen.class)).when(mDataUsageList).getPreferenceScreen();
+        final List<AppItem> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final AppItem item = new AppItem(10000 + i);
+            item.total = count - i;
+            items.add(item);
+        }
+        return new AppItemAggregator.Result(items, count);
+    }
 }
@@ -51,6 +51,27 @@ public class StorageItemPreferenceTest {
         assertThat(mPreference.getSummary()).isEqualTo("10 MB");
     }
 
+    @Test
+    public void setRefreshing_true_markSummaryAsUpdating() {
+        mPreference.setStorageSize(MEGABYTE_IN_BYTES * 10, MEGABYTE_IN_BYTES * 100);
+
+        mPreference.setRefreshing(true);
+
+        assertThat(mPreference.getSummary().toString())
+                .isEqualTo(mContext.getString(R.string.storage_size_refreshing, "10 MB"));
+    }
+
+    @Test
+    public void setStorageSize_refreshed_clearUpdatingMarker() {
+        mPreference.setStorageSize(MEGABYTE_IN_BYTES * 10, MEGABYTE_IN_BYTES * 100);
+        mPreference.setRefreshing(true);
+
+        mPreference.setStorageSize(MEGABYTE_IN_BYTES * 20, MEGABYTE_IN_BYTES * 100);
+        mPreference.setRefreshing(false);
+
+        assertThat(mPreference.getSummary().toString()).isEqualTo("20 MB");
+    }
+
     @Test
     public void testProgressBarPercentageSet() {
         final PreferenceViewHolder holder = PreferenceViewHolder.createInstanceForTests(
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.util.SparseArray;
+
+import com.android.settingslib.applications.StorageStatsSource;
+import com.android.settingslib.deviceinfo.PrivateStorageInfo;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class StorageCacheHelperTest {
+    private static final String FS_UUID = "fs_uuid";
+    private static final int PRIMARY_USER_ID = 0;
+    private static final int SECONDARY_USER_ID = 10;
+
+    private Context mContext;
+    private StorageCacheHelper mHelper;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mHelper = new StorageCacheHelper(mContext);
+    }
+
+    @Test
+    public void retrieveStorageInfo_cached_returnsSizes() {
+        mHelper.cacheStorageInfo(null /* fsUuid */, new PrivateStorageInfo(1L, 10L));
+
+        final PrivateStorageInfo info = mHelper.retrieveStorageInfo(null /* fsUuid */);
+
+        assertThat(info.freeBytes).isEqualTo(1L);
+        assertThat(info.totalBytes).isEqualTo(10L);
+        assertThat(mHelper.retrieveStorageInfo(FS_UUID)).isNull();
+    }
+
+    @Test
+    public void retrieveStorageResult_cached_returnsResultOfEachUser() {
+        final SparseArray<StorageAsyncLoader.StorageResult> results = new SparseArray<>();
+        final StorageAsyncLoader.StorageResult primaryResult =
+                new StorageAsyncLoader.StorageResult();
+        primaryResult.gamesSize = 1L;
+        primaryResult.trashSize = 7L;
+        primaryResult.externalStats = new StorageStatsSource.ExternalStorageStats(9, 2, 3, 4, 0);
+        results.put(PRIMARY_USER_ID, primaryResult);
+        final StorageAsyncLoader.StorageResult secondaryResult =
+                new StorageAsyncLoader.StorageResult();
+        secondaryResult.duplicateCodeSize = 5L;
+        results.put(SECONDARY_USER_ID, secondaryResult);
+        mHelper.cacheStorageResult(FS_UUID, results);
+
+        final SparseArray<StorageAsyncLoader.StorageResult> cachedResults =
+                mHelper.retrieveStorageResult(FS_UUID, PRIMARY_USER_ID);
+
+        assertThat(cachedResults.size()).isEqualTo(2);
+        assertThat(cachedResults.get(PRIMARY_USER_ID).gamesSize).isEqualTo(1L);
+        assertThat(cachedResults.get(PRIMARY_USER_ID).trashSize).isEqualTo(7L);
+        assertThat(cachedResults.get(PRIMARY_USER_ID).externalStats.totalBytes).isEqualTo(9L);
+        assertThat(cachedResults.get(SECONDARY_USER_ID).duplicateCodeSize).isEqualTo(5L);
+        assertThat(cachedResults.get(SECONDARY_USER_ID).externalStats).isNull();
+    }
+
+    @Test
+    public void retrieveStorageResult_userNotCached_returnsNull() {
+        final SparseArray<StorageAsyncLoader.StorageResult> results = new SparseArray<>();
+        results.put(SECONDARY_USER_ID, new StorageAsyncLoader.StorageResult());
+        mHelper.cacheStorageResult(FS_UUID, results);
+
+        assertThat(mHelper.retrieveStorageResult(FS_UUID, PRIMARY_USER_ID)).isNull();
+    }
+}
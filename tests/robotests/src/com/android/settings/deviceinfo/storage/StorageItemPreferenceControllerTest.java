@@ -354,6 +354,23 @@ public class StorageItemPreferenceControllerTest {
         assertThat(mController.mTrashPreference.getSummary().toString()).isEqualTo("100 kB");
     }
 
+    @Test
+    public void setRefreshing_filesLoaded_marksOnlyAppsAndSystemRefreshing() {
+        mController.displayPreference(mPreferenceScreen);
+
+        mController.setRefreshing(false /* filesRefreshing */, true /* appsRefreshing */,
+                true /* systemRefreshing */);
+
+        assertThat(mController.mImagesPreference.isRefreshing()).isFalse();
+        assertThat(mController.mVideosPreference.isRefreshing()).isFalse();
+        assertThat(mController.mAudioPreference.isRefreshing()).isFalse();
+        assertThat(mController.mDocumentsAndOtherPreference.isRefreshing()).isFalse();
+        assertThat(mController.mTrashPreference.isRefreshing()).isFalse();
+        assertThat(mController.mAppsPreference.isRefreshing()).isTrue();
+        assertThat(mController.mGamesPreference.isRefreshing()).isTrue();
+        assertThat(mController.mSystemPreference.isRefreshing()).isTrue();
+    }
+
     @Test
     public void settingUserIdAppliesNewIcons() {
         mController.displayPreference(mPreferenceScreen);
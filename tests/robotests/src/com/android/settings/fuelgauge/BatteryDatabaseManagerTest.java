@@ -151,6 +151,22 @@ public class BatteryDatabaseManagerTest {
         assertThat(newAppInfos).containsExactly(mCombinedAppInfo);
     }
 
+    @Test
+    public void insertAnomalies_insertAllInOneBatch() {
+        final List<BatteryDatabaseManager.Anomaly> anomalies = new ArrayList<>();
+        anomalies.add(new BatteryDatabaseManager.Anomaly(UID_NEW, PACKAGE_NAME_NEW, TYPE_NEW,
+                AnomalyDatabaseHelper.State.NEW, NOW));
+        anomalies.add(new BatteryDatabaseManager.Anomaly(UID_OLD, PACKAGE_NAME_OLD, TYPE_OLD,
+                AnomalyDatabaseHelper.State.NEW, NOW));
+        // Same row again, ignored.
+        anomalies.add(new BatteryDatabaseManager.Anomaly(UID_OLD, PACKAGE_NAME_OLD, TYPE_OLD,
+                AnomalyDatabaseHelper.State.NEW, NOW));
+
+        assertThat(mBatteryDatabaseManager.insertAnomalies(anomalies)).isEqualTo(2);
+        assertThat(mBatteryDatabaseManager.queryAllAnomalies(0 /* timeMsAfter */,
+                AnomalyDatabaseHelper.State.NEW)).containsExactly(mNewAppInfo, mOldAppInfo);
+    }
+
     @Test
     public void allActionFunctions() {
         final long timestamp = System.currentTimeMillis();
@@ -214,7 +214,7 @@ public class BatteryEntryTest {
         BatteryEntry.stopRequestQueue();
 
         Locale.setDefault(new Locale("en_US"));
-        BatteryEntry.sUidCache.put(Integer.toString(APP_UID), null);
+        BatteryEntry.sUidCache.put(Integer.toString(APP_UID), new BatteryEntry.UidToDetail());
         assertThat(BatteryEntry.sUidCache).isNotEmpty();
 
         Locale.setDefault(new Locale("zh_TW"));
@@ -222,6 +222,22 @@ public class BatteryEntryTest {
         assertThat(BatteryEntry.sUidCache).isEmpty(); // check if cache is clear
     }
 
+    @Test
+    public void getQuickNameIconForUid_sameUid_queuesUidOnce() {
+        BatteryEntry.stopRequestQueue();
+        BatteryEntry.clearUidCache();
+
+        final String[] packages = new String[] {APP_DEFAULT_PACKAGE_NAME};
+        final BatteryEntry entry1 =
+                createBatteryEntryForApp(packages, APP_DEFAULT_PACKAGE_NAME, null);
+        final BatteryEntry entry2 =
+                createBatteryEntryForApp(packages, APP_DEFAULT_PACKAGE_NAME, null);
+
+        assertThat(BatteryEntry.sRequestQueue).hasSize(1);
+        assertThat(BatteryEntry.sRequestQueue.get(APP_UID)).containsExactly(entry1, entry2);
+        BatteryEntry.stopRequestQueue();
+    }
+
     @Test
     public void getKey_UidBatteryConsumer() {
         final BatteryEntry entry = createBatteryEntryForApp(null, null, null);
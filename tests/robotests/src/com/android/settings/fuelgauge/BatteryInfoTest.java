@@ -96,6 +96,7 @@ public class BatteryInfoTest {
         mDisChargingBatteryBroadcast = BatteryTestUtils.getDischargingIntent();
 
         mChargingBatteryBroadcast = BatteryTestUtils.getChargingIntent();
+        DecodedBatteryHistory.clearCache();
     }
 
     @Test
@@ -382,4 +383,23 @@ public class BatteryInfoTest {
         info = getBatteryInfo(true /* charging */, true /* enhanced */, true /* estimate */);
         assertHistoryAndLinearProjection(info);
     }
+
+    @Test
+    public void parseBatteryHistory_calledTwice_decodesHistoryOnce() {
+        mockBatteryStatsHistory();
+        final BatteryInfo info =
+                getBatteryInfo(false /* charging */, false /* enhanced */, false /* estimate */);
+        final BatteryInfo.BatteryDataParser parser1 = mock(BatteryInfo.BatteryDataParser.class);
+        final BatteryInfo.BatteryDataParser parser2 = mock(BatteryInfo.BatteryDataParser.class);
+
+        info.parseBatteryHistory(parser1);
+        info.parseBatteryHistory(parser2);
+
+        verify(mBatteryUsageStats, times(1)).iterateBatteryStatsHistory();
+        verify(parser1).onParsingStarted(0L, 2000L);
+        verify(parser1, times(3)).onDataPoint(anyLong(), any(BatteryStats.HistoryItem.class));
+        verify(parser2).onParsingStarted(0L, 2000L);
+        verify(parser2, times(3)).onDataPoint(anyLong(), any(BatteryStats.HistoryItem.class));
+        verify(parser2).onParsingDone();
+    }
 }
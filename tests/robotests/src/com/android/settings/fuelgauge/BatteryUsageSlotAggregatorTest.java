@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ContentValues;
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public final class BatteryUsageSlotAggregatorTest {
+
+    private static final int TIME_SLOT_SIZE = 2;
+
+    private Context mContext;
+    private BatteryUsageSlotAggregator mAggregator;
+    private Map<Long, Map<String, BatteryHistEntry>> mBatteryHistoryMap;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mAggregator = new BatteryUsageSlotAggregator();
+        mBatteryHistoryMap = new HashMap<>();
+        // Package uid 1 uses 10 ms, 5 mAh in foreground between each snapshot.
+        for (int i = 0; i < 7; i++) {
+            addSnapshot(100L + i, 1L, 5.0 * i, 10L * i);
+        }
+    }
+
+    @Test
+    public void getIndexedUsageMap_sameResultAsConvertUtils() {
+        final long[] keys = new long[] {100L, 101L, 102L, 103L, 104L};
+
+        final Map<Integer, List<BatteryDiffEntry>> resultMap = mAggregator.getIndexedUsageMap(
+                mContext, TIME_SLOT_SIZE, keys, mBatteryHistoryMap,
+                /*purgeLowPercentageAndFakeData=*/ false);
+        final Map<Integer, List<BatteryDiffEntry>> expectedMap = ConvertUtils.getIndexedUsageMap(
+                mContext, TIME_SLOT_SIZE, keys, mBatteryHistoryMap,
+                /*purgeLowPercentageAndFakeData=*/ false);
+
+        assertThat(resultMap.keySet()).isEqualTo(expectedMap.keySet());
+        for (Integer index : expectedMap.keySet()) {
+            assertThat(resultMap.get(index)).hasSize(expectedMap.get(index).size());
+            final BatteryDiffEntry entry = resultMap.get(index).get(0);
+            final BatteryDiffEntry expectedEntry = expectedMap.get(index).get(0);
+            assertThat(entry.mForegroundUsageTimeInMs)
+                    .isEqualTo(expectedEntry.mForegroundUsageTimeInMs);
+            assertThat(entry.mConsumePower).isEqualTo(expectedEntry.mConsumePower);
+            assertThat(entry.getPercentOfTotal()).isEqualTo(expectedEntry.getPercentOfTotal());
+        }
+    }
+
+    @Test
+    public void getIndexedUsageMap_newSnapshots_onlyComputesNewSlots() {
+        mAggregator.getIndexedUsageMap(mContext, TIME_SLOT_SIZE,
+                new long[] {100L, 101L, 102L, 103L, 104L}, mBatteryHistoryMap,
+                /*purgeLowPercentageAndFakeData=*/ false);
+        assertThat(mAggregator.mComputedSlotCount).isEqualTo(2);
+
+        final Map<Integer, List<BatteryDiffEntry>> resultMap = mAggregator.getIndexedUsageMap(
+                mContext, TIME_SLOT_SIZE, new long[] {102L, 103L, 104L, 105L, 106L},
+                mBatteryHistoryMap, /*purgeLowPercentageAndFakeData=*/ false);
+
+        assertThat(mAggregator.mComputedSlotCount).isEqualTo(3);
+        // The all day usage only covers the slots still in the chart.
+        final BatteryDiffEntry allDayEntry =
+                resultMap.get(BatteryChartView.SELECTED_INDEX_ALL).get(0);
+        assertThat(allDayEntry.mForegroundUsageTimeInMs).isEqualTo(40L);
+        assertThat(allDayEntry.mConsumePower).isEqualTo(20.0);
+    }
+
+    @Test
+    public void getIndexedUsageMap_latestSnapshotRefreshed_recomputesLatestSlot() {
+        final long[] keys = new long[] {100L, 101L, 102L, 103L, 104L};
+        mAggregator.getIndexedUsageMap(mContext, TIME_SLOT_SIZE, keys, mBatteryHistoryMap,
+                /*purgeLowPercentageAndFakeData=*/ false);
+        // The latest snapshot is updated in place.
+        addSnapshot(104L, 1L, 50.0, 100L);
+
+        final Map<Integer, List<BatteryDiffEntry>> resultMap = mAggregator.getIndexedUsageMap(
+                mContext, TIME_SLOT_SIZE, keys, mBatteryHistoryMap,
+                /*purgeLowPercentageAndFakeData=*/ false);
+
+        assertThat(mAggregator.mComputedSlotCount).isEqualTo(3);
+        final BatteryDiffEntry entry = resultMap.get(1).get(0);
+        final BatteryDiffEntry expectedEntry = ConvertUtils.getIndexedUsageMap(
+                mContext, TIME_SLOT_SIZE, keys, mBatteryHistoryMap,
+                /*purgeLowPercentageAndFakeData=*/ false).get(1).get(0);
+        assertThat(entry.mForegroundUsageTimeInMs)
+                .isEqualTo(expectedEntry.mForegroundUsageTimeInMs);
+        assertThat(entry.mConsumePower).isEqualTo(expectedEntry.mConsumePower);
+    }
+
+    @Test
+    public void getIndexedUsageMap_resultChanged_cachedSlotsNotChanged() {
+        final long[] keys = new long[] {100L, 101L, 102L, 103L, 104L};
+        final BatteryDiffEntry changedEntry = mAggregator.getIndexedUsageMap(mContext,
+                TIME_SLOT_SIZE, keys, mBatteryHistoryMap,
+                /*purgeLowPercentageAndFakeData=*/ false).get(0).get(0);
+        changedEntry.mForegroundUsageTimeInMs = 0L;
+        changedEntry.mConsumePower = 0.0;
+
+        final BatteryDiffEntry entry = mAggregator.getIndexedUsageMap(mContext,
+                TIME_SLOT_SIZE, keys, mBatteryHistoryMap,
+                /*purgeLowPercentageAndFakeData=*/ false).get(0).get(0);
+
+        final BatteryDiffEntry expectedEntry = ConvertUtils.getIndexedUsageMap(
+                mContext, TIME_SLOT_SIZE, keys, mBatteryHistoryMap,
+                /*purgeLowPercentageAndFakeData=*/ false).get(0).get(0);
+        assertThat(entry).isNotSameInstanceAs(changedEntry);
+        assertThat(entry.mForegroundUsageTimeInMs)
+                .isEqualTo(expectedEntry.mForegroundUsageTimeInMs);
+        assertThat(entry.mConsumePower).isEqualTo(expectedEntry.mConsumePower);
+        assertThat(entry.getPercentOfTotal()).isEqualTo(expectedEntry.getPercentOfTotal());
+    }
+
+    private void addSnapshot(long timestamp, long uid, double consumePower,
+            long foregroundUsageTimeInMs) {
+        final ContentValues values = new ContentValues();
+        values.put(BatteryHistEntry.KEY_UID, Long.valueOf(uid));
+        values.put(BatteryHistEntry.KEY_CONSUMER_TYPE,
+                Integer.valueOf(ConvertUtils.CONSUMER_TYPE_UID_BATTERY));
+        values.put(BatteryHistEntry.KEY_CONSUME_POWER, consumePower);
+        values.put(BatteryHistEntry.KEY_FOREGROUND_USAGE_TIME,
+                Long.valueOf(foregroundUsageTimeInMs));
+        final BatteryHistEntry entry = new BatteryHistEntry(values);
+        final Map<String, BatteryHistEntry> entryMap = new HashMap<>();
+        entryMap.put(entry.getKey(), entry);
+        mBatteryHistoryMap.put(timestamp, entryMap);
+    }
+}
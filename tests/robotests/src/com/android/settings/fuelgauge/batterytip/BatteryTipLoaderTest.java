@@ -44,6 +44,7 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.util.ReflectionHelpers;
 
+import java.util.Arrays;
 import java.util.List;
 
 @RunWith(RobolectricTestRunner.class)
@@ -79,6 +80,7 @@ public class BatteryTipLoaderTest {
         doReturn(mBatteryInfo).when(mBatteryUtils).getBatteryInfo(any());
         mBatteryTipLoader = new BatteryTipLoader(mContext, mBatteryUsageStats);
         mBatteryTipLoader.mBatteryUtils = mBatteryUtils;
+        Arrays.fill(BatteryTipLoader.sLastTips, null);
     }
 
     @After
@@ -96,4 +98,19 @@ public class BatteryTipLoaderTest {
             assertThat(batteryTips.get(i).getType()).isEqualTo(TIP_ORDER[i]);
         }
     }
+
+    @Test
+    public void testLoadBackground_keepsCopyOfLastTipOfEachDetector() {
+        final List<BatteryTip> batteryTips = mBatteryTipLoader.loadInBackground();
+
+        assertThat(BatteryTipLoader.sLastTips).hasLength(batteryTips.size());
+        for (BatteryTip lastTip : BatteryTipLoader.sLastTips) {
+            final BatteryTip batteryTip = batteryTips.stream()
+                    .filter(tip -> tip.getType() == lastTip.getType())
+                    .findFirst()
+                    .get();
+            assertThat(lastTip).isNotSameInstanceAs(batteryTip);
+            assertThat(lastTip.getState()).isEqualTo(batteryTip.getState());
+        }
+    }
 }
@@ -403,6 +403,96 @@ public class ContextualCardManagerTest {
         assertThat(actualCards).containsExactlyElementsIn(expectedCards);
     }
 
+    @Test
+    public void showCardSnapshot_snapshotEnabled_shouldShowSnapshotCards() {
+        FeatureFlagUtils.setEnabled(mContext, FeatureFlags.CONTEXTUAL_CARD_SNAPSHOT, true);
+        mManager.setListener(mListener);
+        final List<ContextualCard> cards = new ArrayList<>();
+        cards.add(buildContextualCard(Uri.parse(TEST_SLICE_URI), 0 /* category */, 0.5));
+        cards.add(buildContextualCard(Uri.parse("content://test/test2"), 0 /* category */, 0.4));
+        mManager.mCardSnapshot.write(cards);
+
+        mManager.showCardSnapshot();
+
+        assertThat(mManager.mIsSnapshotShown).isTrue();
+        assertThat(mManager.mContextualCards.stream()
+                .map(ContextualCard::getName)
+                .collect(Collectors.toList()))
+                .containsExactly(TEST_SLICE_URI, "content://test/test2").inOrder();
+    }
+
+    @Test
+    public void showCardSnapshot_snapshotDisabled_shouldNotShowCards() {
+        FeatureFlagUtils.setEnabled(mContext, FeatureFlags.CONTEXTUAL_CARD_SNAPSHOT, false);
+        mManager.mCardSnapshot.write(Arrays.asList(buildContextualCard(TEST_SLICE_URI)));
+
+        mManager.showCardSnapshot();
+
+        assertThat(mManager.mContextualCards).isEmpty();
+    }
+
+    @Test
+    public void onFinishCardLoading_slowLoadAfterSnapshot_shouldCallOnContextualCardUpdated() {
+        mManager.mStartTime = 0;
+        mManager.mIsSnapshotShown = true;
+        final ContextualCardManager manager = spy(mManager);
+        doNothing().when(manager).onContextualCardUpdated(anyMap());
+
+        manager.onFinishCardLoading(new ArrayList<>());
+
+        verify(manager).onContextualCardUpdated(anyMap());
+        assertThat(manager.mIsSnapshotShown).isFalse();
+    }
+
+    @Test
+    public void onFinishCardLoading_snapshotEnabled_shouldWriteSnapshot() {
+        FeatureFlagUtils.setEnabled(mContext, FeatureFlags.CONTEXTUAL_CARD_SNAPSHOT, true);
+        final List<ContextualCard> cards = new ArrayList<>();
+        cards.add(buildContextualCard(TEST_SLICE_URI));
+
+        mManager.onFinishCardLoading(cards);
+
+        final List<ContextualCard> snapshotCards = mManager.mCardSnapshot.read();
+        assertThat(snapshotCards).hasSize(1);
+        assertThat(snapshotCards.get(0).getName()).isEqualTo(TEST_SLICE_NAME);
+        assertThat(snapshotCards.get(0).getSliceUri()).isEqualTo(Uri.parse(TEST_SLICE_URI));
+        assertThat(snapshotCards.get(0).getViewType()).isEqualTo(VIEW_TYPE_FULL_WIDTH);
+    }
+
+    @Test
+    public void onFinishCardLoading_notFirstLaunch_shouldOnlySnapshotKeptCards() {
+        FeatureFlagUtils.setEnabled(mContext, FeatureFlags.CONTEXTUAL_CARD_SNAPSHOT, true);
+        mManager.mIsFirstLaunch = false;
+        final ContextualCard keptCard = buildContextualCard(TEST_SLICE_URI);
+        mManager.mContextualCards.add(keptCard);
+        final List<ContextualCard> cards = new ArrayList<>();
+        cards.add(keptCard);
+        cards.add(new ContextualCard.Builder()
+                .setName("dismissed_card")
+                .setCardType(ContextualCard.CardType.SLICE)
+                .setSliceUri(Uri.parse("content://test/dismissed"))
+                .setViewType(VIEW_TYPE_FULL_WIDTH)
+                .build());
+
+        mManager.onFinishCardLoading(cards);
+
+        final List<ContextualCard> snapshotCards = mManager.mCardSnapshot.read();
+        assertThat(snapshotCards).hasSize(1);
+        assertThat(snapshotCards.get(0).getName()).isEqualTo(TEST_SLICE_NAME);
+    }
+
+    @Test
+    public void onFinishCardLoading_timeout_shouldNotWriteSnapshot() {
+        FeatureFlagUtils.setEnabled(mContext, FeatureFlags.CONTEXTUAL_CARD_SNAPSHOT, true);
+        mManager.mStartTime = 0;
+        final List<ContextualCard> cards = new ArrayList<>();
+        cards.add(buildContextualCard(TEST_SLICE_URI));
+
+        mManager.onFinishCardLoading(cards);
+
+        assertThat(mManager.mCardSnapshot.read()).isNull();
+    }
+
     @Test
     public void onWindowFocusChanged_hasFocusAndNoConditional_startMonitoringConditionCard() {
         final ContextualCardManager manager = spy(mManager);
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage.contextualcards;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.slice.Slice;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class EligibleCardCacheTest {
+
+    private static final Uri TEST_SLICE_URI = Uri.parse("content://test/test");
+
+    private Context mContext;
+    private EligibleCardCache mCache;
+    private Slice mSlice;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mCache = new EligibleCardCache(mContext);
+        mSlice = new Slice.Builder(TEST_SLICE_URI).build();
+    }
+
+    @Test
+    public void get_afterPut_returnSlice() {
+        mCache.put(TEST_SLICE_URI, mSlice);
+
+        assertThat(mCache.get(TEST_SLICE_URI)).isSameInstanceAs(mSlice);
+    }
+
+    @Test
+    public void get_sliceNotifiedChange_returnNull() {
+        mCache.put(TEST_SLICE_URI, mSlice);
+
+        mContext.getContentResolver().notifyChange(TEST_SLICE_URI, null /* observer */);
+
+        assertThat(mCache.get(TEST_SLICE_URI)).isNull();
+    }
+
+    @Test
+    public void get_descendantNotifiedChange_returnNull() {
+        mCache.put(TEST_SLICE_URI, mSlice);
+
+        mContext.getContentResolver().notifyChange(
+                TEST_SLICE_URI.buildUpon().appendPath("child").build(), null /* observer */);
+
+        assertThat(mCache.get(TEST_SLICE_URI)).isNull();
+    }
+
+    @Test
+    public void isCardEligibleToDisplay_cachedSlice_shouldNotBindAgain() {
+        mCache.put(TEST_SLICE_URI, mSlice);
+        final EligibleCardChecker checker =
+                spy(new EligibleCardChecker(mContext, getContextualCard(), mCache));
+
+        assertThat(checker.isCardEligibleToDisplay(getContextualCard())).isTrue();
+        verify(checker, never()).bindSlice(any(Uri.class));
+    }
+
+    @Test
+    public void isCardEligibleToDisplay_notCached_shouldCacheBoundSlice() {
+        final EligibleCardChecker checker =
+                spy(new EligibleCardChecker(mContext, getContextualCard(), mCache));
+        doReturn(mSlice).when(checker).bindSlice(any(Uri.class));
+
+        checker.isCardEligibleToDisplay(getContextualCard());
+
+        assertThat(mCache.get(TEST_SLICE_URI)).isSameInstanceAs(mSlice);
+    }
+
+    private ContextualCard getContextualCard() {
+        return new ContextualCard.Builder()
+                .setName("test_card")
+                .setRankingScore(0.5)
+                .setCardType(ContextualCard.CardType.SLICE)
+                .setSliceUri(TEST_SLICE_URI)
+                .build();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage.contextualcards;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+import android.content.Context;
+import android.net.Uri;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class EligibleCardExecutorTest {
+
+    @Test
+    public void submit_moreCheckersThanThreads_shouldRunHigherRankedCardsFirst() throws Exception {
+        final Context context = RuntimeEnvironment.application;
+        final EligibleCardExecutor executor = EligibleCardExecutor.getInstance();
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(EligibleCardExecutor.POOL_SIZE);
+        for (int i = 0; i < EligibleCardExecutor.POOL_SIZE; i++) {
+            executor.submit(() -> {
+                blocked.countDown();
+                release.await();
+                return null;
+            });
+        }
+        blocked.await(5, TimeUnit.SECONDS);
+
+        final List<String> order = Collections.synchronizedList(new ArrayList<>());
+        final List<Future<ContextualCard>> futures = new ArrayList<>();
+        for (double score : new double[]{0.1, 0.9, 0.5}) {
+            final EligibleCardChecker checker =
+                    spy(new EligibleCardChecker(context, getContextualCard(score)));
+            doAnswer(invocation -> {
+                order.add(String.valueOf(score));
+                return null;
+            }).when(checker).call();
+            futures.add(executor.submit(checker));
+        }
+        release.countDown();
+        for (Future<ContextualCard> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        assertThat(order).containsExactly("0.9", "0.5", "0.1").inOrder();
+    }
+
+    private ContextualCard getContextualCard(double score) {
+        return new ContextualCard.Builder()
+                .setName("test_card_" + score)
+                .setRankingScore(score)
+                .setCardType(ContextualCard.CardType.SLICE)
+                .setSliceUri(Uri.parse("content://test/test" + score))
+                .build();
+    }
+}
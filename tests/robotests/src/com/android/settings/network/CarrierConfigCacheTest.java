@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.network;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.PersistableBundle;
+import android.telephony.CarrierConfigManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class CarrierConfigCacheTest {
+    private static final int SUB_ID = 2;
+
+    @Mock
+    private CarrierConfigManager mCarrierConfigManager;
+
+    private Context mContext;
+    private PersistableBundle mConfig;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        mConfig = new PersistableBundle();
+        mConfig.putBoolean(CarrierConfigManager.KEY_CARRIER_SETTINGS_ENABLE_BOOL, true);
+        doReturn(mConfig).when(mCarrierConfigManager).getConfigForSubId(SUB_ID);
+    }
+
+    @Test
+    public void getConfigForSubId_calledTwice_fetchesOnce() {
+        CarrierConfigCache.getConfigForSubId(mContext, mCarrierConfigManager, SUB_ID);
+        final PersistableBundle config =
+                CarrierConfigCache.getConfigForSubId(mContext, mCarrierConfigManager, SUB_ID);
+
+        assertThat(config.getBoolean(CarrierConfigManager.KEY_CARRIER_SETTINGS_ENABLE_BOOL))
+                .isTrue();
+        verify(mCarrierConfigManager, times(1)).getConfigForSubId(SUB_ID);
+        assertThat(CarrierConfigCache.getInstance(mContext).getHitCount()).isEqualTo(1);
+        assertThat(CarrierConfigCache.getInstance(mContext).getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void getConfigForSubId_returnedConfigChanged_cachedConfigUnchanged() {
+        final PersistableBundle config =
+                CarrierConfigCache.getConfigForSubId(mContext, mCarrierConfigManager, SUB_ID);
+        config.putBoolean(CarrierConfigManager.KEY_CARRIER_SETTINGS_ENABLE_BOOL, false);
+
+        final PersistableBundle cachedConfig =
+                CarrierConfigCache.getConfigForSubId(mContext, mCarrierConfigManager, SUB_ID);
+
+        assertThat(config).isNotSameInstanceAs(mConfig);
+        assertThat(cachedConfig).isNotSameInstanceAs(config);
+        assertThat(cachedConfig.getBoolean(CarrierConfigManager.KEY_CARRIER_SETTINGS_ENABLE_BOOL))
+                .isTrue();
+    }
+
+    @Test
+    public void getBoolean_calledTwice_fetchesOnce() {
+        CarrierConfigCache.getBoolean(mContext, mCarrierConfigManager, SUB_ID,
+                CarrierConfigManager.KEY_CARRIER_SETTINGS_ENABLE_BOOL, false);
+
+        assertThat(CarrierConfigCache.getBoolean(mContext, mCarrierConfigManager, SUB_ID,
+                CarrierConfigManager.KEY_CARRIER_SETTINGS_ENABLE_BOOL, false)).isTrue();
+        verify(mCarrierConfigManager, times(1)).getConfigForSubId(SUB_ID);
+    }
+
+    @Test
+    public void getBoolean_otherCarrierConfigManager_fetchesAgain() {
+        final CarrierConfigManager otherManager = mock(CarrierConfigManager.class);
+        CarrierConfigCache.getBoolean(mContext, mCarrierConfigManager, SUB_ID,
+                CarrierConfigManager.KEY_CARRIER_SETTINGS_ENABLE_BOOL, false);
+
+        assertThat(CarrierConfigCache.getBoolean(mContext, otherManager, SUB_ID,
+                CarrierConfigManager.KEY_CARRIER_SETTINGS_ENABLE_BOOL, false)).isFalse();
+        verify(otherManager).getConfigForSubId(SUB_ID);
+    }
+
+    @Test
+    public void carrierConfigChanged_cachedConfig_fetchesAgain() {
+        CarrierConfigCache.getConfigForSubId(mContext, mCarrierConfigManager, SUB_ID);
+
+        new CarrierConfigChangedReceiver().onReceive(mContext,
+                new Intent(CarrierConfigManager.ACTION_CARRIER_CONFIG_CHANGED)
+                        .putExtra(CarrierConfigManager.EXTRA_SUBSCRIPTION_INDEX, SUB_ID));
+        CarrierConfigCache.getConfigForSubId(mContext, mCarrierConfigManager, SUB_ID);
+
+        verify(mCarrierConfigManager, times(2)).getConfigForSubId(SUB_ID);
+    }
+
+    @Test
+    public void getConfigForSubId_invalidated_fetchesAgain() {
+        CarrierConfigCache.getConfigForSubId(mContext, mCarrierConfigManager, SUB_ID);
+
+        CarrierConfigCache.getInstance(mContext).invalidate(SUB_ID);
+        CarrierConfigCache.getConfigForSubId(mContext, mCarrierConfigManager, SUB_ID);
+
+        verify(mCarrierConfigManager, times(2)).getConfigForSubId(SUB_ID);
+    }
+
+    @Test
+    public void getConfigForSubId_nullConfig_notCached() {
+        doReturn(null).when(mCarrierConfigManager).getConfigForSubId(SUB_ID);
+
+        assertThat(CarrierConfigCache.getConfigForSubId(mContext, mCarrierConfigManager, SUB_ID))
+                .isNull();
+        CarrierConfigCache.getConfigForSubId(mContext, mCarrierConfigManager, SUB_ID);
+
+        verify(mCarrierConfigManager, times(2)).getConfigForSubId(SUB_ID);
+    }
+}
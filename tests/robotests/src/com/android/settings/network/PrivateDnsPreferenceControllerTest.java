@@ -301,6 +301,16 @@ public class PrivateDnsPreferenceControllerTest {
         verify(mPreference).setEnabled(true);
     }
 
+    @Test
+    public void computeState_applyState_shouldUpdateSummaryAndEnabledState() {
+        ConnectivitySettingsManager.setPrivateDnsMode(mContext, PRIVATE_DNS_MODE_OFF);
+
+        mController.applyState(mPreference, mController.computeState());
+
+        verify(mPreference).setSummary(getResourceString(R.string.private_dns_mode_off));
+        verify(mPreference).setEnabled(true);
+    }
+
     private void setPrivateDnsMode(String mode) {
         Settings.Global.putString(mContentResolver, PRIVATE_DNS_MODE, mode);
     }
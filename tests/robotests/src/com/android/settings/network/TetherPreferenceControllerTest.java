@@ -17,7 +17,9 @@
 package com.android.settings.network;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -149,6 +151,18 @@ public class TetherPreferenceControllerTest {
         verify(mPreference).setSummary(R.string.tether_settings_summary_hotspot_on_tether_on);
     }
 
+    @Test
+    public void computeState_wifiTethered_shouldApplyHotspotMessage() {
+        when(mTetheringManager.getTetheredIfaces()).thenReturn(new String[]{"123"});
+        when(mTetheringManager.getTetherableWifiRegexs()).thenReturn(new String[]{"123"});
+
+        final Integer summaryResId = mController.computeState();
+        verify(mPreference, never()).setSummary(anyInt());
+
+        mController.applyState(mPreference, summaryResId);
+        verify(mPreference).setSummary(R.string.tether_settings_summary_hotspot_on_tether_off);
+    }
+
     @Test
     public void airplaneModeOn_shouldUpdateSummaryToOff() {
         final Context context = RuntimeEnvironment.application;
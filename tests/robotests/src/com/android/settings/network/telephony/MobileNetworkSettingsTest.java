@@ -58,6 +58,8 @@ import java.util.List;
 @RunWith(RobolectricTestRunner.class)
 @Config(shadows = ShadowEntityHeaderController.class)
 public class MobileNetworkSettingsTest {
+    private static final int SUB_ID = 1234;
+
     @Mock
     private TelephonyManager mTelephonyManager;
     @Mock
@@ -81,8 +83,7 @@ public class MobileNetworkSettingsTest {
 
         mFragment = spy(new MobileNetworkSettings());
         final Bundle args = new Bundle();
-        final int subscriptionId = 1234;
-        args.putInt(Settings.EXTRA_SUB_ID, subscriptionId);
+        args.putInt(Settings.EXTRA_SUB_ID, SUB_ID);
         mFragment.setArguments(args);
         when(mFragment.getActivity()).thenReturn(mActivity);
         when(mActivity.isFinishing()).thenReturn(false);
@@ -100,6 +101,22 @@ public class MobileNetworkSettingsTest {
                 .isEqualTo(1);
     }
 
+    @Test
+    public void createAvailabilityControllers_shouldInitControllersForSubId() {
+        when(mContext.getSystemService(TelephonyManager.class)).thenReturn(mTelephonyManager);
+
+        final List<AbstractPreferenceController> controllers =
+                MobileNetworkSettings.createAvailabilityControllers(mContext, SUB_ID);
+
+        assertThat(controllers.stream()
+                .filter(c -> c instanceof ApnPreferenceController)
+                .count())
+                .isEqualTo(1);
+        assertThat(controllers.stream()
+                .allMatch(c -> ((TelephonyAvailabilityHandler) c).getSubId() == SUB_ID))
+                .isTrue();
+    }
+
     @Test
     public void onActivityResult_noActivity_noCrash() {
         when(mFragment.getActivity()).thenReturn(null);
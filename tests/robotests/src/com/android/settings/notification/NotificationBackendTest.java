@@ -20,10 +20,14 @@ import static com.google.common.truth.Truth.assertThat;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import android.app.INotificationManager;
 import android.app.role.RoleManager;
 import android.app.usage.UsageEvents;
 import android.bluetooth.BluetoothAdapter;
@@ -41,6 +45,7 @@ import com.android.settingslib.bluetooth.LocalBluetoothManager;
 
 import com.google.common.collect.ImmutableList;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -62,12 +67,51 @@ public class NotificationBackendTest {
     ICompanionDeviceManager mCdm;
     @Mock
     CachedBluetoothDeviceManager mCbm;
+    @Mock
+    INotificationManager mInm;
     ComponentName mCn = new ComponentName("a", "b");
+    private INotificationManager mOriginalInm;
 
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
         when(mBm.getCachedDeviceManager()).thenReturn(mCbm);
+        mOriginalInm = NotificationBackend.sINM;
+        NotificationBackend.sINM = mInm;
+    }
+
+    @After
+    public void tearDown() {
+        NotificationBackend.sINM = mOriginalInm;
+    }
+
+    @Test
+    public void getNotificationsBannedPackages_noBlockedApp_shouldNotQueryEachApp()
+            throws Exception {
+        when(mInm.getBlockedAppCount(0)).thenReturn(0);
+
+        assertThat(new NotificationBackend().getNotificationsBannedPackages(0,
+                ImmutableList.of(createApplicationInfo("a", 1), createApplicationInfo("b", 2))))
+                .isEmpty();
+        verify(mInm, never()).areNotificationsEnabledForPackage(anyString(), anyInt());
+    }
+
+    @Test
+    public void getNotificationsBannedPackages_blockedApp_shouldStopOnceFound() throws Exception {
+        when(mInm.getBlockedAppCount(0)).thenReturn(1);
+        when(mInm.areNotificationsEnabledForPackage("a", 1)).thenReturn(false);
+
+        assertThat(new NotificationBackend().getNotificationsBannedPackages(0,
+                ImmutableList.of(createApplicationInfo("a", 1), createApplicationInfo("b", 2))))
+                .containsExactly("a");
+        verify(mInm, never()).areNotificationsEnabledForPackage("b", 2);
+    }
+
+    private static ApplicationInfo createApplicationInfo(String packageName, int uid) {
+        final ApplicationInfo info = new ApplicationInfo();
+        info.packageName = packageName;
+        info.uid = uid;
+        return info;
     }
 
     @Test
@@ -22,7 +22,11 @@ import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
 
 import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.PowerManager;
 import android.provider.SearchIndexableResource;
+import android.provider.Settings;
 
 import com.android.settings.R;
 import com.android.settings.core.BasePreferenceController;
@@ -37,8 +41,10 @@ import org.mockito.MockitoAnnotations;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -221,4 +227,68 @@ public class BaseSearchIndexProviderTest {
 
         assertThat(mIndexProvider.getDynamicRawDataToIndex(mContext, true)).isNotEmpty();
     }
+
+    @Test
+    public void getIndexFingerprint_xmlWithoutController_shouldReturnFingerprint() {
+        final BaseSearchIndexProvider provider = new BaseSearchIndexProvider(R.xml.apn_settings);
+
+        assertThat(provider.getIndexFingerprint(mContext)).isNotNull();
+    }
+
+    @Test
+    public void getIndexFingerprint_xmlWithController_shouldReturnNull() {
+        final BaseSearchIndexProvider provider =
+                new BaseSearchIndexProvider(R.xml.display_settings);
+
+        assertThat(provider.getIndexFingerprint(mContext)).isNull();
+    }
+
+    @Test
+    public void getIndexFingerprint_overridesDynamicMethod_shouldReturnNull() {
+        final BaseSearchIndexProvider provider = new BaseSearchIndexProvider(R.xml.apn_settings) {
+            @Override
+            protected boolean isPageSearchEnabled(Context context) {
+                return false;
+            }
+        };
+
+        assertThat(provider.getIndexFingerprint(mContext)).isNull();
+    }
+
+    @Test
+    public void getIndexFingerprint_declaredSettingChanged_shouldChange() {
+        final BaseSearchIndexProvider provider =
+                new BaseSearchIndexProvider(R.xml.display_settings) {
+                    @Override
+                    protected List<Uri> getIndexInvalidationUris() {
+                        return Arrays.asList(
+                                Settings.Global.getUriFor(Settings.Global.AUTO_TIME_ZONE));
+                    }
+                };
+        Settings.Global.putInt(mContext.getContentResolver(), Settings.Global.AUTO_TIME_ZONE, 1);
+        final String fingerprint = provider.getIndexFingerprint(mContext);
+
+        Settings.Global.putInt(mContext.getContentResolver(), Settings.Global.AUTO_TIME_ZONE, 0);
+
+        assertThat(fingerprint).isNotNull();
+        assertThat(provider.getIndexFingerprint(mContext)).isNotEqualTo(fingerprint);
+    }
+
+    @Test
+    public void getIndexFingerprint_declaredBroadcastReceived_shouldChange() {
+        final BaseSearchIndexProvider provider =
+                new BaseSearchIndexProvider(R.xml.display_settings) {
+                    @Override
+                    protected List<String> getIndexInvalidationActions() {
+                        return Arrays.asList(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+                    }
+                };
+        final String fingerprint = provider.getIndexFingerprint(mContext);
+        assertThat(provider.getIndexFingerprint(mContext)).isEqualTo(fingerprint);
+
+        mContext.sendBroadcast(new Intent(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED));
+        ShadowLooper.idleMainLooper();
+
+        assertThat(provider.getIndexFingerprint(mContext)).isNotEqualTo(fingerprint);
+    }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public class SearchIndexCacheTest {
+
+    private static final String PROVIDER = "com.android.settings.FakeSettings";
+
+    private Context mContext;
+    private SearchIndexCache mCache;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mCache = new SearchIndexCache(mContext);
+    }
+
+    @Test
+    public void getNonIndexableKeys_noFingerprint_shouldReturnNull() {
+        mCache.putNonIndexableKeys(PROVIDER, null /* fingerprint */, Arrays.asList("key"));
+
+        assertThat(mCache.getNonIndexableKeys(PROVIDER, null /* fingerprint */)).isNull();
+    }
+
+    @Test
+    public void getNonIndexableKeys_sameFingerprint_shouldReturnCachedKeys() {
+        mCache.putNonIndexableKeys(PROVIDER, "1", Arrays.asList("key1", "key2"));
+
+        assertThat(mCache.getNonIndexableKeys(PROVIDER, "1")).containsExactly("key1", "key2");
+        assertThat(new SearchIndexCache(mContext).getNonIndexableKeys(PROVIDER, "1"))
+                .containsExactly("key1", "key2");
+    }
+
+    @Test
+    public void getNonIndexableKeys_fingerprintChanged_shouldReturnNull() {
+        mCache.putNonIndexableKeys(PROVIDER, "1", Arrays.asList("key1"));
+
+        assertThat(mCache.getNonIndexableKeys(PROVIDER, "2")).isNull();
+    }
+
+    @Test
+    public void putNonIndexableKeys_sameKeys_shouldNotBumpGeneration() {
+        mCache.putNonIndexableKeys(PROVIDER, null /* fingerprint */, Arrays.asList("key1"));
+        final long generation = mCache.getGeneration();
+
+        mCache.putNonIndexableKeys(PROVIDER, null /* fingerprint */, Arrays.asList("key1"));
+
+        assertThat(mCache.getGeneration()).isEqualTo(generation);
+        assertThat(mCache.getNonIndexableKeysChangedSince(generation)).isEmpty();
+    }
+
+    @Test
+    public void getNonIndexableKeysChangedSince_shouldReturnOnlyChangedProviders() {
+        mCache.putNonIndexableKeys(PROVIDER, null /* fingerprint */, Arrays.asList("key1"));
+        mCache.putNonIndexableKeys("other", null /* fingerprint */, Arrays.asList("key2"));
+        final long generation = mCache.getGeneration();
+
+        mCache.putNonIndexableKeys(PROVIDER, null /* fingerprint */, Collections.emptyList());
+
+        final Map<String, List<String>> changed =
+                mCache.getNonIndexableKeysChangedSince(generation);
+        assertThat(changed.keySet()).containsExactly(PROVIDER);
+        assertThat(changed.get(PROVIDER)).isEmpty();
+        assertThat(mCache.getGeneration()).isGreaterThan(generation);
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.settings.network.NetworkDashboardFragment;
+import com.android.settingslib.search.SearchIndexableData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@RunWith(RobolectricTestRunner.class)
+public class SearchIndexProviderRunnerTest {
+
+    private static final String SECTION = "section";
+
+    private ExecutorService mExecutor;
+    private SearchIndexProviderRunner mRunner;
+    private SearchIndexableData mFastBundle;
+    private SearchIndexableData mSlowBundle;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newFixedThreadPool(2);
+        mRunner = new SearchIndexProviderRunner(mExecutor, 100 /* timeBudgetMs */);
+        mFastBundle = new SearchIndexableData(FakeSettingsFragment.class,
+                FakeSettingsFragment.SEARCH_INDEX_DATA_PROVIDER);
+        mSlowBundle = new SearchIndexableData(NetworkDashboardFragment.class,
+                NetworkDashboardFragment.SEARCH_INDEX_DATA_PROVIDER);
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void run_shouldReturnResultsInBundleOrder() {
+        final List<String> results = mRunner.run(SECTION,
+                Arrays.asList(mFastBundle, mSlowBundle),
+                bundle -> bundle.getTargetClass().getSimpleName());
+
+        assertThat(results).containsExactly(FakeSettingsFragment.class.getSimpleName(),
+                NetworkDashboardFragment.class.getSimpleName()).inOrder();
+    }
+
+    @Test
+    public void run_providerThrows_shouldReturnLastGoodResult() {
+        final AtomicBoolean shouldFail = new AtomicBoolean(false);
+        final SearchIndexProviderRunner.ProviderCall<String> call = bundle -> {
+            if (shouldFail.get()) {
+                throw new IllegalStateException("broken controller");
+            }
+            return "good";
+        };
+        mRunner.run(SECTION, Arrays.asList(mFastBundle), call);
+
+        shouldFail.set(true);
+
+        assertThat(mRunner.run(SECTION, Arrays.asList(mFastBundle), call))
+                .containsExactly("good");
+    }
+
+    @Test
+    public void run_providerThrowsWithoutGoodResult_shouldReturnNull() {
+        final List<String> results = mRunner.run(SECTION, Arrays.asList(mFastBundle),
+                bundle -> {
+                    throw new IllegalStateException("broken controller");
+                });
+
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0)).isNull();
+    }
+
+    @Test
+    public void run_providerOverrunsBudget_shouldReturnLastGoodResultAndOthers() {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean shouldBlock = new AtomicBoolean(false);
+        final SearchIndexProviderRunner.ProviderCall<String> call = bundle -> {
+            if (bundle == mSlowBundle && shouldBlock.get()) {
+                release.await();
+                return "late";
+            }
+            return bundle.getTargetClass().getSimpleName();
+        };
+        mRunner.run(SECTION, Arrays.asList(mFastBundle, mSlowBundle), call);
+
+        shouldBlock.set(true);
+        final List<String> results =
+                mRunner.run(SECTION, Arrays.asList(mFastBundle, mSlowBundle), call);
+        release.countDown();
+
+        assertThat(results).containsExactly(FakeSettingsFragment.class.getSimpleName(),
+                NetworkDashboardFragment.class.getSimpleName()).inOrder();
+        final StringWriter writer = new StringWriter();
+        mRunner.dump(new PrintWriter(writer));
+        assertThat(writer.toString()).contains("timeouts=1");
+    }
+
+    @Test
+    public void run_providerOverrunsBudgetWithoutGoodResult_shouldCancelAndUseFallback()
+            throws InterruptedException {
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final List<String> results = mRunner.run(SECTION, Arrays.asList(mSlowBundle),
+                bundle -> {
+                    try {
+                        new CountDownLatch(1).await();
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                    }
+                    return "late";
+                },
+                bundle -> "fallback");
+
+        assertThat(results).containsExactly("fallback");
+        assertThat(interrupted.await(1, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void run_providerThrowsAndFallbackThrows_shouldReturnNull() {
+        final List<String> results = mRunner.run(SECTION, Arrays.asList(mFastBundle),
+                bundle -> {
+                    throw new IllegalStateException("broken controller");
+                },
+                bundle -> {
+                    throw new IllegalStateException("broken xml");
+                });
+
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0)).isNull();
+    }
+
+    @Test
+    public void dump_shouldContainProviderLatencies() {
+        mRunner.run(SECTION, Arrays.asList(mFastBundle), bundle -> "result");
+
+        final StringWriter writer = new StringWriter();
+        mRunner.dump(new PrintWriter(writer));
+
+        assertThat(writer.toString()).contains(SECTION);
+        assertThat(writer.toString()).contains(FakeSettingsFragment.class.getName());
+        assertThat(writer.toString()).contains("count=1");
+    }
+}
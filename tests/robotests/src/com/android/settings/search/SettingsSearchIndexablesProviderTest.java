@@ -149,6 +149,37 @@ public class SettingsSearchIndexablesProviderTest {
         assertThat(keys).containsAtLeast("pref_key_1", "pref_key_3", "pref_key_5");
     }
 
+    @Test
+    @Config(qualifiers = "mcc999")
+    public void testNonIndexablesDeltaFetched() {
+        final Uri deltaUri = Uri.parse(BASE_AUTHORITY
+                + SettingsSearchIndexablesProvider.NON_INDEXABLES_KEYS_DELTA_PATH
+                + "?" + SettingsSearchIndexablesProvider.QUERY_PARAMETER_GENERATION + "=0");
+
+        final List<String> keys = new ArrayList<>();
+        final long generation;
+        try (Cursor cursor = mProvider.query(deltaUri,
+                SettingsSearchIndexablesProvider.NON_INDEXABLES_KEYS_DELTA_COLUMNS, null, null,
+                null)) {
+            while (cursor.moveToNext()) {
+                assertThat(cursor.getString(0)).isEqualTo(FakeSettingsFragment.class.getName());
+                keys.add(cursor.getString(1));
+            }
+            generation = cursor.getExtras().getLong(
+                    SettingsSearchIndexablesProvider.EXTRA_GENERATION);
+        }
+
+        assertThat(keys).containsAtLeast("pref_key_1", "pref_key_3", "pref_key_5");
+        try (Cursor cursor = mProvider.query(Uri.parse(BASE_AUTHORITY
+                        + SettingsSearchIndexablesProvider.NON_INDEXABLES_KEYS_DELTA_PATH
+                        + "?" + SettingsSearchIndexablesProvider.QUERY_PARAMETER_GENERATION
+                        + "=" + generation),
+                SettingsSearchIndexablesProvider.NON_INDEXABLES_KEYS_DELTA_COLUMNS, null, null,
+                null)) {
+            assertThat(cursor.getCount()).isEqualTo(0);
+        }
+    }
+
     @Test
     public void refreshSearchEnabledState_classNotFoundInCategoryMap_hasInjectionRawData() {
         mProvider.refreshSearchEnabledState(mContext,
@@ -312,6 +312,50 @@ public class SlicesDatabaseAccessorTest {
         assertThat(data.getUnavailableSliceSubtitle()).isEqualTo(subtitle);
     }
 
+    @Test
+    public void getSliceDataFromKey_readTwice_secondReadServedFromCache() {
+        final String key = "key";
+        SliceTestUtils.insertSliceToDb(mContext, key);
+        mAccessor.getSliceDataFromKey(key);
+
+        SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase()
+                .delete(SlicesDatabaseHelper.Tables.TABLE_SLICES_INDEX, null, null);
+        final SliceData data = mAccessor.getSliceDataFromKey(key);
+
+        assertThat(data.getKey()).isEqualTo(key);
+        assertThat(data.getTitle()).isEqualTo(SliceTestUtils.FAKE_TITLE);
+    }
+
+    @Test
+    public void getSliceDataFromUri_cachedByKey_shouldUseUriOfRequest() {
+        final String key = "key";
+        SliceTestUtils.insertSliceToDb(mContext, key);
+        mAccessor.getSliceDataFromKey(key);
+        final Uri uri = new Uri.Builder()
+                .scheme(ContentResolver.SCHEME_CONTENT)
+                .authority(SettingsSliceProvider.SLICE_AUTHORITY)
+                .appendPath(SettingsSlicesContract.PATH_SETTING_INTENT)
+                .appendPath(key)
+                .build();
+
+        final SliceData data = mAccessor.getSliceDataFromUri(uri);
+
+        assertThat(data.getUri()).isEqualTo(uri);
+        assertThat(data.getSliceType()).isEqualTo(SliceData.SliceType.INTENT);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void getSliceDataFromKey_afterReconstruct_shouldNotServeStaleData() {
+        final String key = "key";
+        SliceTestUtils.insertSliceToDb(mContext, key);
+        mAccessor.getSliceDataFromKey(key);
+
+        final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
+        helper.reconstruct(helper.getWritableDatabase());
+
+        mAccessor.getSliceDataFromKey(key);
+    }
+
     @Implements(ApplicationPackageManager.class)
     public static class ShadowApplicationPackageManager extends
             org.robolectric.shadows.ShadowApplicationPackageManager {
@@ -18,8 +18,13 @@ package com.android.settings.slices;
 
 import static com.google.common.truth.Truth.assertThat;
 
-import static org.mockito.Mockito.doReturn;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import android.content.ContentValues;
 import android.content.Context;
@@ -37,8 +42,11 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
 
 @RunWith(RobolectricTestRunner.class)
 public class SlicesIndexerTest {
@@ -69,6 +77,13 @@ public class SlicesIndexerTest {
     @After
     public void cleanUp() {
         DatabaseTestUtils.clearDb(mContext);
+        final File[] snapshots = new File(mContext.getNoBackupFilesDir(),
+                SlicesIndexSnapshot.SNAPSHOT_DIR).listFiles();
+        if (snapshots != null) {
+            for (File snapshot : snapshots) {
+                snapshot.delete();
+            }
+        }
     }
 
     @Test
@@ -97,7 +112,7 @@ public class SlicesIndexerTest {
     public void testInsertSliceData_indexedStateSet() {
         final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
         helper.setIndexedState();
-        doReturn(new ArrayList<SliceData>()).when(mManager).getSliceData();
+        stubSliceData(mManager, new ArrayList<>());
 
         mManager.run();
 
@@ -107,7 +122,7 @@ public class SlicesIndexerTest {
     @Test
     public void testInsertSliceData_nonPublicSlice_mockDataInserted() {
         final List<SliceData> sliceData = getMockIndexableData(false);
-        doReturn(sliceData).when(mManager).getSliceData();
+        stubSliceData(mManager, sliceData);
 
         mManager.run();
 
@@ -152,7 +167,7 @@ public class SlicesIndexerTest {
     @Test
     public void insertSliceData_publicSlice_mockDataInserted() {
         final List<SliceData> sliceData = getMockIndexableData(true);
-        doReturn(sliceData).when(mManager).getSliceData();
+        stubSliceData(mManager, sliceData);
 
         mManager.run();
 
@@ -194,6 +209,90 @@ public class SlicesIndexerTest {
         }
     }
 
+    @Test
+    public void indexSliceData_snapshotAvailable_seedsDatabaseAndSchedulesRebuild() {
+        final List<SliceData> sliceData = getMockIndexableData(true);
+        stubSliceData(mManager, sliceData);
+        mManager.run();
+        final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
+        helper.reconstruct(helper.getWritableDatabase());
+
+        final SlicesIndexer indexer = spy(new SlicesIndexer(mContext));
+        stubSliceData(indexer, sliceData.subList(0, 1));
+        doNothing().when(indexer).scheduleRebuild();
+        indexer.run();
+
+        // The database is seeded without running the converter.
+        verify(indexer).scheduleRebuild();
+        verify(indexer, never()).forEachSliceDataPage(any());
+        assertThat(helper.isSliceDataIndexed()).isFalse();
+        final SQLiteDatabase db = helper.getWritableDatabase();
+        try (Cursor cursor = db.rawQuery("SELECT * FROM slices_index", null)) {
+            assertThat(cursor.getCount()).isEqualTo(sliceData.size());
+        }
+
+        indexer.rebuildIndex();
+
+        assertThat(helper.isSliceDataIndexed()).isTrue();
+        try (Cursor cursor = db.rawQuery("SELECT * FROM slices_index", null)) {
+            // The seeded rows are replaced by the ones of the converter.
+            assertThat(cursor.getCount()).isEqualTo(1);
+            cursor.moveToFirst();
+            assertThat(cursor.getString(cursor.getColumnIndex(IndexColumns.KEY)))
+                    .isEqualTo(KEYS[0]);
+            assertThat(cursor.getString(cursor.getColumnIndex(IndexColumns.SLICE_URI)))
+                    .isEqualTo(URI.toSafeString());
+            assertThat(cursor.getInt(cursor.getColumnIndex(IndexColumns.PUBLIC_SLICE)))
+                    .isEqualTo(1);
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void indexSliceData_rebuildPending_doesNotSeedAgain() {
+        stubSliceData(mManager, getMockIndexableData(false));
+        mManager.run();
+        final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
+        helper.reconstruct(helper.getWritableDatabase());
+
+        final SlicesIndexer indexer = spy(new SlicesIndexer(mContext));
+        doNothing().when(indexer).scheduleRebuild();
+        indexer.run();
+        indexer.run();
+
+        verify(indexer, times(1)).scheduleRebuild();
+        verify(indexer, never()).forEachSliceDataPage(any());
+    }
+
+    @Test
+    public void indexSliceData_snapshotOfOtherLocale_usesConverter() {
+        final Locale defaultLocale = Locale.getDefault();
+        stubSliceData(mManager, getMockIndexableData(false));
+        mManager.run();
+        final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
+        helper.reconstruct(helper.getWritableDatabase());
+
+        final SlicesIndexer indexer = spy(new SlicesIndexer(mContext));
+        stubSliceData(indexer, new ArrayList<>());
+        try {
+            Locale.setDefault(Locale.JAPAN);
+            indexer.run();
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+
+        verify(indexer).forEachSliceDataPage(any());
+    }
+
+    private static void stubSliceData(SlicesIndexer indexer, List<SliceData> sliceData) {
+        doAnswer(invocation -> {
+            final Consumer<List<SliceData>> consumer = invocation.getArgument(0);
+            consumer.accept(sliceData);
+            return null;
+        }).when(indexer).forEachSliceDataPage(any());
+    }
+
     private void insertSpecialCase(String key, String title) {
         final ContentValues values = new ContentValues();
         values.put(IndexColumns.KEY, key);
@@ -22,6 +22,7 @@ import static com.android.settingslib.drawer.TileUtils.META_DATA_PREFERENCE_KEYH
 
 import static com.google.common.truth.Truth.assertThat;
 
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.pm.ActivityInfo;
 import android.content.pm.ApplicationInfo;
@@ -32,6 +33,7 @@ import android.util.Pair;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
+import com.android.settings.Settings;
 import com.android.settingslib.drawer.ActivityTile;
 import com.android.settingslib.drawer.CategoryKey;
 import com.android.settingslib.drawer.DashboardCategory;
@@ -42,13 +44,16 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RunWith(AndroidJUnit4.class)
 public class CategoryManagerTest {
 
     private ActivityInfo mActivityInfo;
+    private ActivityInfo mSettingsActivityInfo;
     private Context mContext;
     private CategoryManager mCategoryManager;
     private Map<Pair<String, String>, Tile> mTileByComponentCache;
@@ -61,6 +66,11 @@ public class CategoryManagerTest {
         mActivityInfo.packageName = "pkg";
         mActivityInfo.name = "class";
         mActivityInfo.applicationInfo = new ApplicationInfo();
+        // The compat copies of the tiles are built from the info of an existing activity.
+        mSettingsActivityInfo = new ActivityInfo();
+        mSettingsActivityInfo.packageName = mContext.getPackageName();
+        mSettingsActivityInfo.name = Settings.class.getName();
+        mSettingsActivityInfo.applicationInfo = new ApplicationInfo();
         mTileByComponentCache = new HashMap<>();
         mCategoryByKeyMap = new HashMap<>();
         mCategoryManager = CategoryManager.get(mContext);
@@ -71,6 +81,28 @@ public class CategoryManagerTest {
         assertThat(mCategoryManager).isSameInstanceAs(CategoryManager.get(mContext));
     }
 
+    @Test
+    public void reloadCategoriesForPackages_packageWithoutTiles_shouldNotReload() {
+        mCategoryManager.getCategories(mContext);
+
+        assertThat(mCategoryManager.reloadCategoriesForPackages(mContext,
+                Collections.singleton("com.android.settings.no.tiles"))).isFalse();
+    }
+
+    @Test
+    public void updateCategoryFromDenylist_shouldNotChangeReturnedCategories() {
+        final List<DashboardCategory> categories = mCategoryManager.getCategories(mContext);
+        final Map<ComponentName, Tile> tiles = mCategoryManager.getTileByComponentMap();
+        final int tilesCount = getTilesCount(categories);
+
+        mCategoryManager.updateCategoryFromDenylist(tiles.keySet());
+
+        assertThat(mCategoryManager.getTileByComponentMap()).isEmpty();
+        assertThat(getTilesCount(mCategoryManager.getCategories(mContext))).isEqualTo(0);
+        assertThat(getTilesCount(categories)).isEqualTo(tilesCount);
+        mCategoryManager.reloadAllCategories(mContext);
+    }
+
     @Test
     public void backwardCompatCleanupForCategory_shouldNotChangeCategoryForNewKeys() {
         final Tile tile1 = new ActivityTile(mActivityInfo, CategoryKey.CATEGORY_ACCOUNT);
@@ -82,7 +114,8 @@ public class CategoryManagerTest {
         mTileByComponentCache.put(new Pair<>("PACKAGE", "1"), tile1);
         mTileByComponentCache.put(new Pair<>("PACKAGE", "2"), tile2);
 
-        mCategoryManager.backwardCompatCleanupForCategory(mTileByComponentCache, mCategoryByKeyMap);
+        mCategoryManager.backwardCompatCleanupForCategory(mContext, mTileByComponentCache,
+                mCategoryByKeyMap);
 
         assertThat(mCategoryByKeyMap.size()).isEqualTo(1);
         assertThat(mCategoryByKeyMap.get(CategoryKey.CATEGORY_ACCOUNT)).isNotNull();
@@ -102,7 +135,8 @@ public class CategoryManagerTest {
         mTileByComponentCache.put(new Pair<>("PACKAGE", "CLASS1"), tile1);
         mTileByComponentCache.put(new Pair<>("PACKAGE", "CLASS2"), tile2);
 
-        mCategoryManager.backwardCompatCleanupForCategory(mTileByComponentCache, mCategoryByKeyMap);
+        mCategoryManager.backwardCompatCleanupForCategory(mContext, mTileByComponentCache,
+                mCategoryByKeyMap);
 
         assertThat(mCategoryByKeyMap.size()).isEqualTo(2);
         assertThat(
@@ -113,14 +147,15 @@ public class CategoryManagerTest {
     @Test
     public void backwardCompatCleanupForCategory_shouldChangeCategoryForOldKeys() {
         final String oldCategory = "com.android.settings.category.wireless";
-        final Tile tile1 = new ActivityTile(mActivityInfo, oldCategory);
+        final Tile tile1 = new ActivityTile(mSettingsActivityInfo, oldCategory);
         tile1.setCategory(oldCategory);
         final DashboardCategory category1 = new DashboardCategory(oldCategory);
         category1.addTile(tile1);
         mCategoryByKeyMap.put(oldCategory, category1);
         mTileByComponentCache.put(new Pair<>("PACKAGE", "CLASS1"), tile1);
 
-        mCategoryManager.backwardCompatCleanupForCategory(mTileByComponentCache, mCategoryByKeyMap);
+        mCategoryManager.backwardCompatCleanupForCategory(mContext, mTileByComponentCache,
+                mCategoryByKeyMap);
 
         // Added 1 more category to category map.
         assertThat(mCategoryByKeyMap.size()).isEqualTo(2);
@@ -131,6 +166,46 @@ public class CategoryManagerTest {
         assertThat(mCategoryByKeyMap.get(oldCategory).getTilesCount()).isEqualTo(1);
     }
 
+    @Test
+    public void backwardCompatCleanupForCategory_oldKeys_shouldNotChangeCachedTile() {
+        final String oldCategory = "com.android.settings.category.wireless";
+        final Tile tile1 = new ActivityTile(mSettingsActivityInfo, oldCategory);
+        final DashboardCategory category1 = new DashboardCategory(oldCategory);
+        category1.addTile(tile1);
+        mCategoryByKeyMap.put(oldCategory, category1);
+        mTileByComponentCache.put(new Pair<>("PACKAGE", "CLASS1"), tile1);
+
+        mCategoryManager.backwardCompatCleanupForCategory(mContext, mTileByComponentCache,
+                mCategoryByKeyMap);
+
+        final Tile newTile = mCategoryByKeyMap.get(CategoryKey.CATEGORY_NETWORK).getTile(0);
+        assertThat(newTile).isNotSameInstanceAs(tile1);
+        assertThat(newTile.getCategory()).isEqualTo(CategoryKey.CATEGORY_NETWORK);
+        assertThat(newTile.getIntent().getComponent())
+                .isEqualTo(tile1.getIntent().getComponent());
+        assertThat(tile1.getCategory()).isEqualTo(oldCategory);
+    }
+
+    @Test
+    public void backwardCompatCleanupForCategory_oldKeysTwice_shouldReuseCopiedTile() {
+        final String oldCategory = "com.android.settings.category.wireless";
+        final Tile tile1 = new ActivityTile(mSettingsActivityInfo, oldCategory);
+        final DashboardCategory category1 = new DashboardCategory(oldCategory);
+        category1.addTile(tile1);
+        mCategoryByKeyMap.put(oldCategory, category1);
+        mTileByComponentCache.put(new Pair<>("PACKAGE", "CLASS_REUSED"), tile1);
+        mCategoryManager.backwardCompatCleanupForCategory(mContext, mTileByComponentCache,
+                mCategoryByKeyMap);
+        final Tile newTile = mCategoryByKeyMap.get(CategoryKey.CATEGORY_NETWORK).getTile(0);
+        mCategoryByKeyMap.remove(CategoryKey.CATEGORY_NETWORK);
+
+        mCategoryManager.backwardCompatCleanupForCategory(mContext, mTileByComponentCache,
+                mCategoryByKeyMap);
+
+        assertThat(mCategoryByKeyMap.get(CategoryKey.CATEGORY_NETWORK).getTile(0))
+                .isSameInstanceAs(newTile);
+    }
+
     @Test
     public void sortCategories_singlePackage_shouldReorderBasedOnPriority() {
         // Create some fake tiles that are not sorted.
@@ -315,6 +390,14 @@ public class CategoryManagerTest {
         assertThat(category.getTilesCount()).isEqualTo(1);
     }
 
+    private static int getTilesCount(List<DashboardCategory> categories) {
+        int count = 0;
+        for (DashboardCategory category : categories) {
+            count += category.getTilesCount();
+        }
+        return count;
+    }
+
     private Tile createActivityTile(String categoryKey, String packageName, String className,
             int order) {
         final ActivityInfo activityInfo = new ActivityInfo();
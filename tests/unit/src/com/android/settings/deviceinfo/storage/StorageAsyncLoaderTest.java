@@ -22,20 +22,30 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atMost;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import android.content.ContentResolver;
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
 import android.content.pm.UserInfo;
 import android.content.res.Resources;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
 import android.net.TrafficStats;
+import android.os.Bundle;
 import android.os.UserHandle;
 import android.os.UserManager;
+import android.provider.MediaStore;
+import android.provider.MediaStore.Files.FileColumns;
+import android.provider.MediaStore.MediaColumns;
 import android.util.SparseArray;
 
 import androidx.test.core.app.ApplicationProvider;
@@ -53,6 +63,8 @@ import org.mockito.MockitoAnnotations;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @RunWith(AndroidJUnit4.class)
 @SmallTest
@@ -159,6 +171,20 @@ public class StorageAsyncLoaderTest {
         assertThat(result.get(SECONDARY_USER_ID).externalStats.totalBytes).isEqualTo(10L);
     }
 
+    @Test
+    public void testMultipleUsers_duplicateCodeSizeCountedForLaterUsers() throws Exception {
+        UserInfo info = new UserInfo();
+        info.id = SECONDARY_USER_ID;
+        mUsers.add(info);
+        addPackage(PACKAGE_NAME_1, 0, 1, 10, ApplicationInfo.CATEGORY_UNDEFINED);
+
+        SparseArray<StorageAsyncLoader.StorageResult> result = mLoader.loadInBackground();
+
+        assertThat(result.size()).isEqualTo(2);
+        assertThat(result.get(PRIMARY_USER_ID).duplicateCodeSize).isEqualTo(0L);
+        assertThat(result.get(SECONDARY_USER_ID).duplicateCodeSize).isEqualTo(1L);
+    }
+
     @Test
     public void testUpdatedSystemAppCodeSizeIsCounted() throws Exception {
         ApplicationInfo systemApp =
@@ -208,6 +234,156 @@ public class StorageAsyncLoaderTest {
         assertThat(result.get(PRIMARY_USER_ID).allAppsExceptGamesSize).isEqualTo(33L);
     }
 
+    @Test
+    public void testUserLoadFailedInBackground_loadedAgain() throws Exception {
+        when(mPackageManager.getInstalledApplicationsAsUser(eq(PRIMARY_USER_ID), anyInt()))
+                .thenThrow(new IllegalStateException())
+                .thenReturn(mInfo);
+        addPackage(PACKAGE_NAME_1, 0, 1, 10, ApplicationInfo.CATEGORY_UNDEFINED);
+
+        SparseArray<StorageAsyncLoader.StorageResult> result = mLoader.loadInBackground();
+
+        assertThat(result.size()).isEqualTo(1);
+        assertThat(result.get(PRIMARY_USER_ID).allAppsExceptGamesSize).isEqualTo(11L);
+    }
+
+    @Test
+    public void testInterrupted_usersNotLoadedAgain() throws Exception {
+        final CountDownLatch loadReleased = new CountDownLatch(1);
+        when(mPackageManager.getInstalledApplicationsAsUser(eq(PRIMARY_USER_ID), anyInt()))
+                .thenAnswer(invocation -> {
+                    loadReleased.await();
+                    return mInfo;
+                });
+        addPackage(PACKAGE_NAME_1, 0, 1, 10, ApplicationInfo.CATEGORY_UNDEFINED);
+
+        SparseArray<StorageAsyncLoader.StorageResult> result;
+        try {
+            Thread.currentThread().interrupt();
+            result = mLoader.loadInBackground();
+        } finally {
+            // Clears the interrupt flag kept by the loader.
+            assertThat(Thread.interrupted()).isTrue();
+            loadReleased.countDown();
+        }
+
+        assertThat(result.size()).isEqualTo(0);
+        // Only the cancelled background load may have queried the apps.
+        verify(mPackageManager, atMost(1))
+                .getInstalledApplicationsAsUser(eq(PRIMARY_USER_ID), anyInt());
+    }
+
+    @Test
+    public void testGroupedFilesQuery_sizesMappedToCategories() throws Exception {
+        final MatrixCursor cursor = new MatrixCursor(new String[] {
+                MediaColumns.IS_TRASHED, FileColumns.MEDIA_TYPE, "sum(" + MediaColumns.SIZE + ")"});
+        cursor.addRow(new Object[] {0, FileColumns.MEDIA_TYPE_IMAGE, 1L});
+        cursor.addRow(new Object[] {0, FileColumns.MEDIA_TYPE_VIDEO, 2L});
+        cursor.addRow(new Object[] {0, FileColumns.MEDIA_TYPE_AUDIO, 4L});
+        cursor.addRow(new Object[] {0, FileColumns.MEDIA_TYPE_NONE, 8L});
+        cursor.addRow(new Object[] {0, FileColumns.MEDIA_TYPE_PLAYLIST, 16L});
+        cursor.addRow(new Object[] {1, FileColumns.MEDIA_TYPE_IMAGE, 32L});
+        cursor.addRow(new Object[] {1, FileColumns.MEDIA_TYPE_NONE, 64L});
+        final ContentResolver contentResolver = mockUserContentResolver();
+        when(contentResolver.query(any(Uri.class), any(String[].class), any(Bundle.class),
+                any())).thenReturn(cursor);
+
+        StorageAsyncLoader.StorageResult result =
+                createLoaderWithUserContext().loadInBackground().get(PRIMARY_USER_ID);
+
+        assertThat(result.imagesSize).isEqualTo(1L);
+        assertThat(result.videosSize).isEqualTo(2L);
+        assertThat(result.audioSize).isEqualTo(4L);
+        assertThat(result.documentsAndOtherSize).isEqualTo(24L);
+        assertThat(result.trashSize).isEqualTo(96L);
+    }
+
+    @Test
+    public void testGroupedFilesQueryNotSupported_categoriesQueriedOneByOne() throws Exception {
+        final ContentResolver contentResolver = mockUserContentResolver();
+        final Uri filesUri = MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL);
+        when(contentResolver.query(any(Uri.class), any(String[].class), any(), any()))
+                .thenAnswer(invocation -> {
+                    final Uri uri = invocation.getArgument(0);
+                    final Bundle queryArgs = invocation.getArgument(2);
+                    if (queryArgs != null
+                            && queryArgs.containsKey(ContentResolver.QUERY_ARG_SQL_GROUP_BY)) {
+                        throw new IllegalArgumentException();
+                    }
+                    if (uri.equals(MediaStore.Images.Media.EXTERNAL_CONTENT_URI)) {
+                        return createSizeCursor(1L);
+                    } else if (uri.equals(MediaStore.Video.Media.EXTERNAL_CONTENT_URI)) {
+                        return createSizeCursor(2L);
+                    } else if (uri.equals(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI)) {
+                        return createSizeCursor(4L);
+                    } else if (uri.equals(filesUri) && queryArgs != null
+                            && queryArgs.containsKey(MediaStore.QUERY_ARG_MATCH_TRASHED)) {
+                        return createSizeCursor(16L);
+                    } else if (uri.equals(filesUri)) {
+                        return createSizeCursor(8L);
+                    }
+                    return null;
+                });
+
+        StorageAsyncLoader.StorageResult result =
+                createLoaderWithUserContext().loadInBackground().get(PRIMARY_USER_ID);
+
+        assertThat(result.imagesSize).isEqualTo(1L);
+        assertThat(result.videosSize).isEqualTo(2L);
+        assertThat(result.audioSize).isEqualTo(4L);
+        assertThat(result.documentsAndOtherSize).isEqualTo(8L);
+        assertThat(result.trashSize).isEqualTo(16L);
+    }
+
+    @Test
+    public void testFilesSizesListener_notifiedBeforeAppsAreLoaded() throws Exception {
+        final MatrixCursor cursor = new MatrixCursor(new String[] {
+                MediaColumns.IS_TRASHED, FileColumns.MEDIA_TYPE, "sum(" + MediaColumns.SIZE + ")"});
+        cursor.addRow(new Object[] {0, FileColumns.MEDIA_TYPE_IMAGE, 1L});
+        final ContentResolver contentResolver = mockUserContentResolver();
+        when(contentResolver.query(any(Uri.class), any(String[].class), any(Bundle.class),
+                any())).thenReturn(cursor);
+        final AtomicBoolean appsLoaded = new AtomicBoolean();
+        when(mPackageManager.getInstalledApplicationsAsUser(eq(PRIMARY_USER_ID), anyInt()))
+                .thenAnswer(invocation -> {
+                    appsLoaded.set(true);
+                    return mInfo;
+                });
+        final List<Integer> notifiedUserIds = new ArrayList<>();
+        final StorageAsyncLoader loader = createLoaderWithUserContext();
+        loader.setFilesSizesListener((userId, result) -> {
+            assertThat(appsLoaded.get()).isFalse();
+            assertThat(result.imagesSize).isEqualTo(1L);
+            notifiedUserIds.add(userId);
+        });
+
+        loader.loadInBackground();
+
+        assertThat(notifiedUserIds).containsExactly(PRIMARY_USER_ID);
+    }
+
+    private ContentResolver mockUserContentResolver() throws Exception {
+        final ContentResolver contentResolver = mock(ContentResolver.class);
+        final Context userContext = mock(Context.class);
+        when(userContext.getContentResolver()).thenReturn(contentResolver);
+        doReturn(userContext).when(mContext).createPackageContextAsUser(
+                anyString(), anyInt(), any(UserHandle.class));
+        return contentResolver;
+    }
+
+    private StorageAsyncLoader createLoaderWithUserContext() {
+        // The loader keeps the application context, let it be the spied context.
+        doReturn(mContext).when(mContext).getApplicationContext();
+        return new StorageAsyncLoader(mContext, mUserManager, "id", mSource, mPackageManager);
+    }
+
+    private static Cursor createSizeCursor(long size) {
+        final MatrixCursor cursor =
+                new MatrixCursor(new String[] {"sum(" + MediaColumns.SIZE + ")"});
+        cursor.addRow(new Object[] {size});
+        return cursor;
+    }
+
     private ApplicationInfo addPackage(String packageName, long cacheSize, long codeSize,
             long dataSize, int category) throws Exception {
         StorageStatsSource.AppStorageStats storageStats =
@@ -166,6 +166,60 @@ public class NetworkSelectSettingsTest {
         assertThat(mNetworkSelectSettings.doAggregation(testList)).isEqualTo(expected);
     }
 
+    @Test
+    public void doAggregation_incrementalResults_mergeResultsOfEachScan() {
+        mNetworkSelectSettings.doAggregation(Arrays.asList(
+                createLteCellInfo(true, 123, "123", "232", "CarrierA"),
+                createGsmCellInfo(false, 123, "123", "232", "CarrierB")));
+        List<CellInfo> testList = Arrays.asList(
+                createLteCellInfo(false, 1234, "123", "232", "CarrierB"),
+                createLteCellInfo(true, 1234, "123", "232", "CarrierA"));
+        List<CellInfo> expected = Arrays.asList(
+                createLteCellInfo(true, 1234, "123", "232", "CarrierA"),
+                createGsmCellInfo(false, 123, "123", "232", "CarrierB"),
+                createLteCellInfo(false, 1234, "123", "232", "CarrierB"));
+        assertThat(mNetworkSelectSettings.doAggregation(testList)).isEqualTo(expected);
+    }
+
+    @Test
+    public void doAggregation_sameResults_keepSameCellInfo() {
+        final CellInfo cellInfo = createLteCellInfo(true, 123, "123", "232", "CarrierA");
+        mNetworkSelectSettings.doAggregation(Arrays.asList(cellInfo));
+
+        final List<CellInfo> result = mNetworkSelectSettings.doAggregation(
+                Arrays.asList(createLteCellInfo(true, 123, "123", "232", "CarrierA")));
+
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0)).isSameInstanceAs(cellInfo);
+    }
+
+    @Test
+    public void doAggregation_sameCellNewTimeStamp_keepSameCellInfo() {
+        final CellInfo cellInfo = createLteCellInfo(true, 123, "123", "232", "CarrierA");
+        mNetworkSelectSettings.doAggregation(Arrays.asList(cellInfo));
+        final CellInfoLte rescannedCellInfo =
+                createLteCellInfo(true, 123, "123", "232", "CarrierA");
+        rescannedCellInfo.setTimeStamp(44);
+
+        final List<CellInfo> result =
+                mNetworkSelectSettings.doAggregation(Arrays.asList(rescannedCellInfo));
+
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0)).isSameInstanceAs(cellInfo);
+    }
+
+    @Test
+    public void doAggregation_aggregationDisabled_returnLatestResults() {
+        mNetworkSelectSettings.mIsAggregationEnabled = false;
+        mNetworkSelectSettings.doAggregation(Arrays.asList(
+                createLteCellInfo(true, 123, "123", "232", "CarrierA")));
+        List<CellInfo> testList = Arrays.asList(
+                createGsmCellInfo(false, 123, "123", "232", "CarrierB"),
+                createGsmCellInfo(false, 123, "123", "232", "CarrierB"));
+
+        assertThat(mNetworkSelectSettings.doAggregation(testList)).isEqualTo(testList);
+    }
+
     private CellInfoLte createLteCellInfo(boolean registered, int cellId, String mcc, String mnc,
             String plmnName) {
         CellIdentityLte cil = new CellIdentityLte(
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.network.telephony;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.telephony.SubscriptionManager;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+@RunWith(AndroidJUnit4.class)
+public class TelephonyAvailabilityEngineTest {
+    private static final int SUB_ID = 1;
+    private static final int OTHER_SUB_ID = 2;
+
+    @Mock
+    private SubscriptionManager mSubscriptionManager;
+
+    private Context mContext;
+    private TelephonyAvailabilityEngine mEngine;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        mContext = spy(ApplicationProvider.getApplicationContext());
+        when(mContext.getSystemService(SubscriptionManager.class))
+                .thenReturn(mSubscriptionManager);
+        mEngine = new TelephonyAvailabilityEngine(mContext);
+    }
+
+    @Test
+    public void getAvailabilityStatus_sameSubId_computedOnce() throws Exception {
+        final TestPreferenceController controller = new TestPreferenceController(SUB_ID);
+        final TestPreferenceController otherController = new TestPreferenceController(SUB_ID);
+
+        assertThat(mEngine.getAvailabilityStatus(controller))
+                .isEqualTo(TestPreferenceController.AVAILABLE);
+        assertThat(mEngine.getAvailabilityStatus(otherController))
+                .isEqualTo(TestPreferenceController.AVAILABLE);
+
+        assertThat(controller.mComputeCount).isEqualTo(1);
+        assertThat(otherController.mComputeCount).isEqualTo(0);
+        assertThat(mEngine.getCachedAvailabilityStatus(otherController))
+                .isEqualTo(TestPreferenceController.AVAILABLE);
+    }
+
+    @Test
+    public void getAvailabilityStatus_invalidated_computedAgain() throws Exception {
+        final TestPreferenceController controller = new TestPreferenceController(SUB_ID);
+        mEngine.getAvailabilityStatus(controller);
+
+        mEngine.invalidate(SUB_ID);
+        mEngine.getAvailabilityStatus(controller);
+
+        assertThat(controller.mComputeCount).isEqualTo(2);
+    }
+
+    @Test
+    public void invalidate_otherSubId_keepsAvailability() throws Exception {
+        final TestPreferenceController controller = new TestPreferenceController(SUB_ID);
+        mEngine.getAvailabilityStatus(controller);
+
+        mEngine.invalidate(OTHER_SUB_ID);
+
+        assertThat(mEngine.getCachedAvailabilityStatus(controller))
+                .isEqualTo(TestPreferenceController.AVAILABLE);
+    }
+
+    @Test
+    public void onSubscriptionsChanged_dropsAvailability() throws Exception {
+        final TestPreferenceController controller = new TestPreferenceController(SUB_ID);
+        mEngine.getAvailabilityStatus(controller);
+
+        mEngine.onSubscriptionsChanged();
+
+        assertThat(mEngine.getCachedAvailabilityStatus(controller)).isNull();
+    }
+
+    /**
+     * Test preference controller for {@link TelephonyAvailabilityEngine}
+     */
+    public class TestPreferenceController extends TelephonyBasePreferenceController {
+        private int mComputeCount;
+
+        public TestPreferenceController(int subId) {
+            super(mContext, "prefKey");
+            mSubId = subId;
+        }
+
+        @Override
+        public int getAvailabilityStatus(int subId) {
+            mComputeCount++;
+            return AVAILABLE;
+        }
+    }
+}